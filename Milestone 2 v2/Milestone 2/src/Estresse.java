@@ -0,0 +1,281 @@
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Teste de estresse da {@link Facade} com várias threads, sem o EasyAccept: executa operações concorrentes e
+ * verifica invariantes que os roteiros sequenciais não alcançam.
+ * <ul>
+ *     <li>amizades: com convites concorrentes em ambos os sentidos, cada par é amigo (dos dois lados) se e
+ *     somente se os dois se convidaram;</li>
+ *     <li>recados: lidos por várias threads ao mesmo tempo em que são enviados, cada recado é lido exatamente
+ *     uma vez;</li>
+ *     <li>mensagens de comunidade: cada membro lê cada mensagem exatamente uma vez, tanto na entrega direta
+ *     (comunidade pequena) quanto pelo log (comunidade grande).</li>
+ * </ul>
+ * Uso: {@code java Estresse [threads] [usuarios] [operacoes por thread]}. O motor de persistência é o de
+ * "jackut.persistencia"; "jackut.senhas.iteracoes" baixo acelera a abertura das sessões. Termina com código 1 se
+ * alguma verificação falhar.
+ */
+public class Estresse {
+    private static final String SENHA = "senha";
+
+    private final Facade facade = new Facade();
+    private final int threads;
+    private final String[] logins;
+    private final String[] sessoes;
+    private final int operacoes;
+    private final List<String> falhas = new ArrayList<>();
+
+    private Estresse(int threads, int usuarios, int operacoes) {
+        this.threads = threads;
+        this.logins = new String[usuarios];
+        this.sessoes = new String[usuarios];
+        this.operacoes = operacoes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int usuarios = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int operacoes = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        Estresse estresse = new Estresse(threads, usuarios, operacoes);
+        estresse.executar();
+        if (!estresse.falhas.isEmpty()) {
+            estresse.falhas.forEach(System.out::println);
+            System.exit(1);
+        }
+        System.out.println("\nTeste de estresse concluído sem falhas.");
+    }
+
+    private void executar() throws Exception {
+        facade.zerarSistema();
+        for (int i = 0; i < logins.length; i++) {
+            logins[i] = "usuario" + i;
+            facade.criarUsuario(logins[i], SENHA, "Usuário " + i);
+        }
+        for (int i = 0; i < logins.length; i++) {
+            sessoes[i] = facade.abrirSessao(logins[i], SENHA);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            amizades(executor);
+            recados(executor);
+            mensagens(executor, "pequena", Math.min(logins.length, 16));
+            mensagens(executor, "grande", logins.length);
+        } finally {
+            executor.shutdown();
+        }
+        facade.encerrarSistema();
+    }
+
+    /**
+     * Convites de amizade aleatórios, em ambos os sentidos. Os convites recusados (repetidos ou para quem já é
+     * amigo) são esperados e ignorados.
+     */
+    private void amizades(ExecutorService executor) throws Exception {
+        Set<Long> convites = ConcurrentHashMap.newKeySet();
+        paralelo(executor, "amizades", () -> {
+            ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+            for (int n = 0; n < operacoes; n++) {
+                int de = aleatorio.nextInt(logins.length);
+                int para = aleatorio.nextInt(logins.length);
+                if (de == para) {
+                    continue;
+                }
+                try {
+                    facade.adicionarAmigo(sessoes[de], logins[para]);
+                } catch (RuntimeException e) {
+                    // Convite repetido ou já são amigos
+                }
+                convites.add((long) de * logins.length + para);
+            }
+        });
+
+        int amizades = 0;
+        for (int a = 0; a < logins.length; a++) {
+            for (int b = a + 1; b < logins.length; b++) {
+                boolean ab = facade.ehAmigo(logins[a], logins[b]);
+                boolean ba = facade.ehAmigo(logins[b], logins[a]);
+                boolean esperado = convites.contains((long) a * logins.length + b)
+                        && convites.contains((long) b * logins.length + a);
+                if (ab != ba) {
+                    falhar("amizade assimétrica entre " + logins[a] + " e " + logins[b]);
+                } else if (ab != esperado) {
+                    falhar("amizade entre " + logins[a] + " e " + logins[b] + ": " + ab + ", esperado " + esperado);
+                }
+                amizades += ab ? 1 : 0;
+            }
+        }
+        System.out.println("Amizades: " + convites.size() + " convites, " + amizades + " amizades.");
+    }
+
+    /**
+     * Metade das threads envia recados enquanto a outra metade os lê; no fim, as caixas restantes são esvaziadas.
+     */
+    private void recados(ExecutorService executor) throws Exception {
+        Set<String> enviados = ConcurrentHashMap.newKeySet();
+        Set<String> lidos = ConcurrentHashMap.newKeySet();
+        AtomicBoolean enviando = new AtomicBoolean(true);
+        int remetentes = Math.max(1, threads / 2);
+
+        List<Future<?>> leitores = new ArrayList<>();
+        for (int i = remetentes; i < threads; i++) {
+            leitores.add(executor.submit(() -> {
+                ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                while (enviando.get()) {
+                    lerRecado(aleatorio.nextInt(logins.length), lidos);
+                }
+            }));
+        }
+        paralelo(executor, "recados", remetentes, indice -> {
+            ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+            for (int n = 0; n < operacoes; n++) {
+                int de = aleatorio.nextInt(logins.length);
+                int para = aleatorio.nextInt(logins.length);
+                if (de == para) {
+                    continue;
+                }
+                String recado = "recado " + indice + "-" + n;
+                facade.enviarRecado(sessoes[de], logins[para], recado);
+                enviados.add(recado);
+            }
+        });
+        enviando.set(false);
+        for (Future<?> leitor : leitores) {
+            leitor.get();
+        }
+
+        for (int i = 0; i < logins.length; i++) {
+            while (lerRecado(i, lidos)) {
+                // Esvazia a caixa
+            }
+        }
+        if (!lidos.equals(enviados)) {
+            Set<String> perdidos = new HashSet<>(enviados);
+            perdidos.removeAll(lidos);
+            falhar("recados: " + enviados.size() + " enviados, " + lidos.size() + " lidos, " + perdidos.size()
+                    + " perdidos");
+        }
+        System.out.println("Recados: " + enviados.size() + " enviados, " + lidos.size() + " lidos.");
+    }
+
+    /**
+     * Lê um recado do usuário, registrando-o como lido.
+     *
+     * @return false se a caixa estava vazia
+     */
+    private boolean lerRecado(int usuario, Set<String> lidos) {
+        String recado;
+        try {
+            recado = facade.lerRecado(sessoes[usuario]);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        if (!lidos.add(recado)) {
+            falhar("recado lido mais de uma vez: " + recado);
+        }
+        return true;
+    }
+
+    /**
+     * Todos os membros enviam mensagens à comunidade ao mesmo tempo em que leem as suas; no fim, cada membro deve
+     * ter lido cada mensagem exatamente uma vez.
+     */
+    private void mensagens(ExecutorService executor, String comunidade, int membros) throws Exception {
+        facade.criarComunidade(sessoes[0], comunidade, "Comunidade " + comunidade);
+        for (int i = 1; i < membros; i++) {
+            facade.adicionarComunidade(sessoes[i], comunidade);
+        }
+
+        Set<String> enviadas = ConcurrentHashMap.newKeySet();
+        List<Set<String>> lidas = new ArrayList<>();
+        for (int i = 0; i < membros; i++) {
+            lidas.add(ConcurrentHashMap.newKeySet());
+        }
+        int porThread = Math.max(1, operacoes / 10);
+        paralelo(executor, "mensagens", threads, indice -> {
+            ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+            for (int n = 0; n < porThread; n++) {
+                String mensagem = comunidade + " " + indice + "-" + n;
+                facade.enviarMensagem(sessoes[aleatorio.nextInt(membros)], comunidade, mensagem);
+                enviadas.add(mensagem);
+                int leitor = aleatorio.nextInt(membros);
+                lerMensagem(leitor, lidas.get(leitor));
+            }
+        });
+
+        for (int i = 0; i < membros; i++) {
+            while (lerMensagem(i, lidas.get(i))) {
+                // Esvazia a caixa
+            }
+            if (!lidas.get(i).equals(enviadas)) {
+                falhar("mensagens de " + comunidade + ": " + logins[i] + " leu " + lidas.get(i).size() + " de "
+                        + enviadas.size());
+            }
+        }
+        System.out.println("Mensagens (" + comunidade + "): " + enviadas.size() + " enviadas, lidas por "
+                + membros + " membros.");
+    }
+
+    private boolean lerMensagem(int usuario, Set<String> lidas) {
+        String mensagem;
+        try {
+            mensagem = facade.lerMensagem(sessoes[usuario]);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        if (!lidas.add(mensagem)) {
+            falhar("mensagem lida mais de uma vez por " + logins[usuario] + ": " + mensagem);
+        }
+        return true;
+    }
+
+    /**
+     * Tarefa executada por uma das threads; recebe o índice da thread.
+     */
+    private interface Tarefa {
+        void executar(int indice) throws Exception;
+    }
+
+    private void paralelo(ExecutorService executor, String fase, Runnable tarefa) throws Exception {
+        paralelo(executor, fase, threads, indice -> tarefa.run());
+    }
+
+    /**
+     * Executa a tarefa em várias threads, liberadas ao mesmo tempo, e espera todas terminarem.
+     */
+    private void paralelo(ExecutorService executor, String fase, int quantidade, Tarefa tarefa) throws Exception {
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> execucoes = new ArrayList<>();
+        for (int i = 0; i < quantidade; i++) {
+            int indice = i;
+            execucoes.add(executor.submit(() -> {
+                largada.await();
+                tarefa.executar(indice);
+                return null;
+            }));
+        }
+        long inicio = System.nanoTime();
+        largada.countDown();
+        for (Future<?> execucao : execucoes) {
+            execucao.get();
+        }
+        System.out.printf("Fase %s: %d threads, %.1f ms%n", fase, quantidade, (System.nanoTime() - inicio) / 1e6);
+    }
+
+    private synchronized void falhar(String falha) {
+        falhas.add(falha);
+    }
+}
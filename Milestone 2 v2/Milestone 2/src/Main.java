@@ -1,49 +1,47 @@
+import br.ufal.ic.p2.jackut.persistencia.JackutStore;
 import easyaccept.EasyAccept;
 
 
 public class Main {
+    private static final String[] MILESTONE_1 = {"us1_1", "us1_2", "us2_1", "us2_2", "us3_1", "us3_2", "us4_1", "us4_2"};
+    private static final String[] MILESTONE_2 = {"us5_1", "us5_2", "us6_1", "us6_2", "us7_1", "us7_2", "us8_1", "us8_2",
+            "us9_1", "us9_2"};
+    private static final String[] CONSULTAS = {"us10_1", "us11_1", "us12_1", "us12_2", "us13_1", "us14_1"};
+
+    /**
+     * Motores de armazenamento testados quando "jackut.persistencia" não é informado.
+     */
+    private static final String[] MOTORES = {"serializacao", "journal", "sql"};
+
     public static void main(String[] args) {
-        String[] args2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us1_1.txt"};
-        String[] args3 = {"br.ufal.ic.p2.jackut.Facade", "tests/us1_2.txt"};
-        String[] args4 = {"br.ufal.ic.p2.jackut.Facade", "tests/us2_1.txt"};
-        String[] args5 = {"br.ufal.ic.p2.jackut.Facade", "tests/us2_2.txt"};
-        String[] args6 = {"br.ufal.ic.p2.jackut.Facade", "tests/us3_1.txt"};
-        String[] args7 = {"br.ufal.ic.p2.jackut.Facade", "tests/us3_2.txt"};
-        String[] args8 = {"br.ufal.ic.p2.jackut.Facade", "tests/us4_1.txt"};
-        String[] args9 = {"br.ufal.ic.p2.jackut.Facade", "tests/us4_2.txt"};
-
-        EasyAccept.main(args2);
-        EasyAccept.main(args3);
-        EasyAccept.main(args4);
-        EasyAccept.main(args5);
-        EasyAccept.main(args6);
-        EasyAccept.main(args7);
-        EasyAccept.main(args8);
-        EasyAccept.main(args9);
-
-        System.out.println("\nBateria de testes da milestone 1 concluda.");
-        System.out.println("Iniciando bateria da milestone 2:\n");
-
-        String[] args10 = {"br.ufal.ic.p2.jackut.Facade", "tests/us5_1.txt"};
-        String[] args11 = {"br.ufal.ic.p2.jackut.Facade", "tests/us5_2.txt"};
-        String[] args12 = {"br.ufal.ic.p2.jackut.Facade", "tests/us6_1.txt"};
-        String[] args13 = {"br.ufal.ic.p2.jackut.Facade", "tests/us6_2.txt"};
-        String[] args14 = {"br.ufal.ic.p2.jackut.Facade", "tests/us7_1.txt"};
-        String[] args15 = {"br.ufal.ic.p2.jackut.Facade", "tests/us7_2.txt"};
-        String[] args16 = {"br.ufal.ic.p2.jackut.Facade", "tests/us8_1.txt"};
-        String[] args17 = {"br.ufal.ic.p2.jackut.Facade", "tests/us8_2.txt"};
-        String[] args18 = {"br.ufal.ic.p2.jackut.Facade", "tests/us9_1.txt"};
-        String[] args19 = {"br.ufal.ic.p2.jackut.Facade", "tests/us9_2.txt"};
-
-        EasyAccept.main(args10);
-        EasyAccept.main(args11);
-        EasyAccept.main(args12);
-        EasyAccept.main(args13);
-        EasyAccept.main(args14);
-        EasyAccept.main(args15);
-        EasyAccept.main(args16);
-        EasyAccept.main(args17);
-        EasyAccept.main(args18);
-        EasyAccept.main(args19);
+        String configurado = System.getProperty("jackut.persistencia");
+        String[] motores = configurado == null ? MOTORES : new String[]{configurado};
+
+        for (String motor : motores) {
+            if (!JackutStore.disponivel(motor)) {
+                System.out.println("\nMotor de persistência \"" + motor + "\" indisponível (sem driver JDBC), ignorado.");
+                continue;
+            }
+            System.setProperty("jackut.persistencia", motor);
+            System.out.println("\nMotor de persistência: " + motor + "\n");
+
+            executar(MILESTONE_1);
+
+            System.out.println("\nBateria de testes da milestone 1 concluída.");
+            System.out.println("Iniciando bateria da milestone 2:\n");
+
+            executar(MILESTONE_2);
+
+            System.out.println("\nBateria de testes da milestone 2 concluída.");
+            System.out.println("Iniciando bateria das consultas:\n");
+
+            executar(CONSULTAS);
+        }
+    }
+
+    private static void executar(String[] roteiros) {
+        for (String roteiro : roteiros) {
+            EasyAccept.main(new String[]{"br.ufal.ic.p2.jackut.Facade", "tests/" + roteiro + ".txt"});
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,270 @@
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Verificação da busca de usuários, sem o EasyAccept, que não consegue passar um {@link Map} para
+ * {@link Facade#buscarUsuarios(Map)}: cadastra perfis aleatórios pela {@link Facade}, guarda uma cópia deles e
+ * compara cada busca com o cálculo por força bruta sobre essa cópia.
+ * <ul>
+ *     <li>buscas com vários critérios, por valor exato e por prefixo, escritas com maiúsculas, acentos e espaços
+ *     diferentes dos valores cadastrados;</li>
+ *     <li>as mesmas buscas depois de perfis editados e de usuários removidos, e depois de o sistema ser encerrado
+ *     e reaberto;</li>
+ *     <li>login e senha nunca são encontrados;</li>
+ *     <li>buscas inválidas (sem critérios, atributo ou valor nulos) são recusadas.</li>
+ * </ul>
+ * Uso: {@code java VerificacaoBusca [usuarios] [semente]}. O motor de persistência é o de "jackut.persistencia";
+ * "jackut.senhas.iteracoes" baixo acelera a abertura das sessões. Termina com código 1 se alguma verificação
+ * falhar.
+ */
+public class VerificacaoBusca {
+    private static final String SENHA = "segredo";
+
+    /**
+     * Quantidade de buscas sorteadas em cada verificação.
+     */
+    private static final int BUSCAS = 300;
+
+    /**
+     * Valores possíveis de cada atributo, cada um como {valor cadastrado, valor normalizado}.
+     */
+    private static final Map<String, String[][]> VALORES = new LinkedHashMap<>();
+
+    static {
+        VALORES.put("nome", new String[][]{{"Maria José", "maria jose"}, {"João da Silva", "joao da silva"},
+                {"Antônio Araújo", "antonio araujo"}, {"Ana", "ana"}, {"Ana Maria", "ana maria"}});
+        VALORES.put("cidade", new String[][]{{"São Paulo", "sao paulo"}, {"Maceió", "maceio"},
+                {"Rio de Janeiro", "rio de janeiro"}, {"Recife", "recife"}, {"Rio Largo", "rio largo"}});
+        VALORES.put("estado", new String[][]{{"Alagoas", "alagoas"}, {"Pernambuco", "pernambuco"},
+                {"São Paulo", "sao paulo"}, {"Paraná", "parana"}});
+        VALORES.put("profissao", new String[][]{{"Professor", "professor"}, {"Médico", "medico"},
+                {"Engenheira", "engenheira"}, {"Músico", "musico"}, {"Professora", "professora"}});
+    }
+
+    private final Facade facade = new Facade();
+    private final Random aleatorio;
+    private final String[] logins;
+    private final String[] sessoes;
+
+    /**
+     * Cópia dos perfis: índice do valor de cada atributo, por usuário (sem o atributo se não estiver preenchido),
+     * ou null para usuários removidos.
+     */
+    private final List<Map<String, Integer>> perfis = new ArrayList<>();
+    private final List<String> falhas = new ArrayList<>();
+
+    private VerificacaoBusca(int usuarios, long semente) {
+        this.logins = new String[usuarios];
+        this.sessoes = new String[usuarios];
+        this.aleatorio = new Random(semente);
+    }
+
+    public static void main(String[] args) {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long semente = args.length > 1 ? Long.parseLong(args[1]) : 42;
+
+        VerificacaoBusca verificacao = new VerificacaoBusca(usuarios, semente);
+        verificacao.executar();
+        if (!verificacao.falhas.isEmpty()) {
+            verificacao.falhas.stream().limit(50).forEach(System.out::println);
+            System.out.println(verificacao.falhas.size() + " falhas.");
+            System.exit(1);
+        }
+        System.out.println("\nVerificação da busca concluída sem falhas.");
+    }
+
+    private void executar() {
+        facade.zerarSistema();
+        cadastrar();
+        verificar(facade, "cadastro");
+
+        editarERemover();
+        verificar(facade, "edições e remoções");
+        senhasELogins(facade);
+        invalidas();
+        facade.encerrarSistema();
+
+        Facade reaberta = new Facade();
+        verificar(reaberta, "reabertura");
+        senhasELogins(reaberta);
+        reaberta.encerrarSistema();
+    }
+
+    /**
+     * Cadastra os usuários com um nome e parte dos atributos, cada valor escrito de uma forma diferente.
+     */
+    private void cadastrar() {
+        for (int i = 0; i < logins.length; i++) {
+            logins[i] = "usuario" + i;
+            Map<String, Integer> perfil = new HashMap<>();
+            int nome = aleatorio.nextInt(VALORES.get("nome").length);
+            facade.criarUsuario(logins[i], SENHA, variante(VALORES.get("nome")[nome]));
+            perfil.put("nome", nome);
+            sessoes[i] = facade.abrirSessao(logins[i], SENHA);
+            for (Map.Entry<String, String[][]> atributo : VALORES.entrySet()) {
+                if (!atributo.getKey().equals("nome") && aleatorio.nextInt(4) > 0) {
+                    editar(i, perfil, atributo.getKey());
+                }
+            }
+            perfis.add(perfil);
+        }
+    }
+
+    private void editar(int usuario, Map<String, Integer> perfil, String atributo) {
+        String[][] valores = VALORES.get(atributo);
+        int valor = aleatorio.nextInt(valores.length);
+        facade.editarPerfil(sessoes[usuario], atributo, variante(valores[valor]));
+        perfil.put(atributo, valor);
+    }
+
+    /**
+     * Edita um atributo de um quarto dos usuários e remove um décimo deles.
+     */
+    private void editarERemover() {
+        String[] atributos = {"cidade", "estado", "profissao"};
+        int editados = 0;
+        int removidos = 0;
+        for (int i = 0; i < logins.length; i++) {
+            if (aleatorio.nextInt(4) == 0) {
+                editar(i, perfis.get(i), atributos[aleatorio.nextInt(atributos.length)]);
+                editados++;
+            }
+            if (aleatorio.nextInt(10) == 0) {
+                facade.removerUsuario(sessoes[i]);
+                perfis.set(i, null);
+                removidos++;
+            }
+        }
+        System.out.println("Perfis: " + editados + " edições, " + removidos + " remoções.");
+    }
+
+    /**
+     * Escreve um valor com maiúsculas, acentos ou espaços diferentes, sem mudar o seu valor normalizado.
+     */
+    private String variante(String[] valor) {
+        switch (aleatorio.nextInt(5)) {
+            case 0:
+                return valor[0];
+            case 1:
+                return valor[0].toUpperCase(Locale.ROOT);
+            case 2:
+                return valor[1];
+            case 3:
+                return "  " + valor[1].toUpperCase(Locale.ROOT) + " ";
+            default:
+                return valor[0].replace(" ", "   ");
+        }
+    }
+
+    /**
+     * Compara buscas sorteadas com a cópia dos perfis: com um a três critérios exatos, com um critério exato e
+     * por prefixo.
+     */
+    private void verificar(Facade f, String fase) {
+        List<String> atributos = new ArrayList<>(VALORES.keySet());
+        int encontrados = 0;
+        for (int n = 0; n < BUSCAS; n++) {
+            Map<String, String> criterios = new HashMap<>();
+            Map<String, Integer> esperados = new HashMap<>();
+            int quantidade = 1 + aleatorio.nextInt(3);
+            while (criterios.size() < quantidade) {
+                String atributo = atributos.get(aleatorio.nextInt(atributos.size()));
+                String[][] valores = VALORES.get(atributo);
+                int valor = aleatorio.nextInt(valores.length);
+                criterios.put(atributo, variante(valores[valor]));
+                esperados.put(atributo, valor);
+            }
+            String esperado = esperado(esperados, null);
+            comparar(fase, "buscarUsuarios(" + criterios + ")", f.buscarUsuarios(criterios), esperado);
+            encontrados += esperado.equals("{}") ? 0 : 1;
+
+            Map.Entry<String, String> primeiro = criterios.entrySet().iterator().next();
+            String atributo = primeiro.getKey();
+            comparar(fase, "buscarUsuarios(" + atributo + ", " + primeiro.getValue() + ")",
+                    f.buscarUsuarios(atributo, primeiro.getValue()),
+                    esperado(Map.of(atributo, esperados.get(atributo)), null));
+
+            String normalizado = VALORES.get(atributo)[esperados.get(atributo)][1];
+            String prefixo = normalizado.substring(0, 1 + aleatorio.nextInt(normalizado.length()));
+            comparar(fase, "buscarUsuariosPorPrefixo(" + atributo + ", " + prefixo + ")",
+                    f.buscarUsuariosPorPrefixo(atributo, prefixo.toUpperCase(Locale.ROOT)),
+                    esperado(Map.of(), new String[]{atributo, prefixo}));
+        }
+        System.out.println("Buscas (" + fase + "): " + BUSCAS + " com vários critérios, " + encontrados
+                + " com resultados.");
+    }
+
+    /**
+     * Calcula o resultado esperado percorrendo todos os perfis.
+     *
+     * @param criterios Índice do valor exigido em cada atributo
+     * @param prefixo   {atributo, prefixo normalizado} exigido, ou null
+     */
+    private String esperado(Map<String, Integer> criterios, String[] prefixo) {
+        TreeSet<String> encontrados = new TreeSet<>();
+        for (int i = 0; i < logins.length; i++) {
+            Map<String, Integer> perfil = perfis.get(i);
+            if (perfil == null) {
+                continue;
+            }
+            boolean atende = true;
+            for (Map.Entry<String, Integer> c : criterios.entrySet()) {
+                atende &= c.getValue().equals(perfil.get(c.getKey()));
+            }
+            if (prefixo != null) {
+                Integer valor = perfil.get(prefixo[0]);
+                atende &= valor != null && VALORES.get(prefixo[0])[valor][1].startsWith(prefixo[1]);
+            }
+            if (atende) {
+                encontrados.add(logins[i]);
+            }
+        }
+        return "{" + String.join(",", encontrados) + "}";
+    }
+
+    private void senhasELogins(Facade f) {
+        comparar("senhas", "senha", f.buscarUsuarios(Map.of("senha", SENHA)), "{}");
+        comparar("senhas", "senha por prefixo", f.buscarUsuariosPorPrefixo("senha", ""), "{}");
+        comparar("senhas", "login", f.buscarUsuarios(Map.of("login", logins[0])), "{}");
+        comparar("senhas", "login por prefixo", f.buscarUsuariosPorPrefixo("login", ""), "{}");
+    }
+
+    private void invalidas() {
+        recusada("sem critérios", new HashMap<>(), "Busca inválida.");
+        Map<String, String> semAtributo = new HashMap<>();
+        semAtributo.put(null, "Recife");
+        recusada("atributo nulo", semAtributo, "Atributo inválido.");
+        Map<String, String> semValor = new HashMap<>();
+        semValor.put("cidade", null);
+        recusada("valor nulo", semValor, "Valor inválido.");
+    }
+
+    private void recusada(String caso, Map<String, String> criterios, String mensagem) {
+        try {
+            facade.buscarUsuarios(criterios);
+            falhar("busca " + caso + " não foi recusada");
+        } catch (RuntimeException e) {
+            if (!mensagem.equals(e.getMessage())) {
+                falhar("busca " + caso + ": \"" + e.getMessage() + "\", esperado \"" + mensagem + "\"");
+            }
+        }
+    }
+
+    private void comparar(String fase, String busca, String obtido, String esperado) {
+        if (!obtido.equals(esperado)) {
+            falhar(fase + ": " + busca + " devolveu " + obtido + ", esperado " + esperado);
+        }
+    }
+
+    private void falhar(String falha) {
+        falhas.add(falha);
+    }
+}
@@ -0,0 +1,244 @@
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.Metricas;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Verificação do cache das listagens formatadas ({@code CacheListagens}) com um limite de memória pequeno, sem o
+ * EasyAccept, que não consegue ler as métricas: intercala leituras e alterações de amigos, fãs e membros pela
+ * {@link Facade} e acompanha as métricas "listagens.cache.*".
+ * <ul>
+ *     <li>toda listagem lida é igual à calculada a partir de uma cópia dos relacionamentos, com entradas
+ *     despejadas e invalidadas no caminho;</li>
+ *     <li>a memória ocupada nunca passa do limite, e o limite é o configurado;</li>
+ *     <li>a segunda leitura seguida de uma listagem é um acerto, e a primeira depois de uma alteração é uma
+ *     falha;</li>
+ *     <li>com mais listagens do que cabem no limite, há despejos;</li>
+ *     <li>uma listagem maior que o limite nunca é guardada;</li>
+ *     <li>a taxa de acertos corresponde aos acertos e falhas.</li>
+ * </ul>
+ * Uso: {@code java VerificacaoCache [usuarios] [operacoes] [semente]}. O limite é o de
+ * "jackut.cache.listagens.bytes", por padrão 4096 aqui; ele é lido uma vez por processo, então precisa ser definido
+ * antes de o sistema ser criado. O motor de persistência é o de "jackut.persistencia"; "jackut.senhas.iteracoes"
+ * baixo acelera a abertura das sessões. Termina com código 1 se alguma verificação falhar.
+ */
+public class VerificacaoCache {
+    private static final String SENHA = "segredo";
+    private static final String LIMITE = "jackut.cache.listagens.bytes";
+
+    private final Facade facade = new Facade();
+    private final Metricas metricas = facade.getMetricas();
+    private final Random aleatorio;
+    private final String[] logins;
+    private final String[] sessoes;
+    private final int operacoes;
+    private final long limite;
+
+    /**
+     * Cópia dos relacionamentos, na ordem de inserção: amigos e fãs de cada usuário, membros de cada comunidade.
+     */
+    private final List<Set<String>> amigos = new ArrayList<>();
+    private final List<Set<String>> fas = new ArrayList<>();
+    private final List<Set<String>> membros = new ArrayList<>();
+    private final List<String> falhas = new ArrayList<>();
+
+    private VerificacaoCache(int usuarios, int operacoes, long semente) {
+        this.logins = new String[usuarios];
+        this.sessoes = new String[usuarios];
+        this.operacoes = operacoes;
+        this.aleatorio = new Random(semente);
+        this.limite = Long.getLong(LIMITE);
+    }
+
+    public static void main(String[] args) {
+        if (System.getProperty(LIMITE) == null) {
+            System.setProperty(LIMITE, "4096");
+        }
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int operacoes = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        long semente = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        VerificacaoCache verificacao = new VerificacaoCache(usuarios, operacoes, semente);
+        verificacao.executar();
+        if (!verificacao.falhas.isEmpty()) {
+            verificacao.falhas.stream().limit(50).forEach(System.out::println);
+            System.out.println(verificacao.falhas.size() + " falhas.");
+            System.exit(1);
+        }
+        System.out.println("\nVerificação do cache das listagens concluída sem falhas.");
+    }
+
+    private void executar() {
+        facade.zerarSistema();
+        if (metricas.get("listagens.cache.limiteBytes") != limite) {
+            falhar("limite de " + metricas.get("listagens.cache.limiteBytes") + " bytes, configurado " + limite);
+        }
+        cadastrar();
+        acertosEFalhas();
+        intercalar();
+        listagemGrande();
+        taxa();
+        System.out.println("Métricas: " + metricas.valores().entrySet().stream()
+                .filter(m -> m.getKey().startsWith("listagens.cache.")).toList());
+        facade.encerrarSistema();
+    }
+
+    /**
+     * Cadastra os usuários e uma comunidade para cada dez deles, criada pelo primeiro.
+     */
+    private void cadastrar() {
+        for (int i = 0; i < logins.length; i++) {
+            logins[i] = "usuario" + i;
+            facade.criarUsuario(logins[i], SENHA, "Usuário " + i);
+            sessoes[i] = facade.abrirSessao(logins[i], SENHA);
+            amigos.add(new LinkedHashSet<>());
+            fas.add(new LinkedHashSet<>());
+        }
+        for (int c = 0; c * 10 < logins.length; c++) {
+            facade.criarComunidade(sessoes[c * 10], comunidade(c), "Comunidade " + c);
+            Set<String> m = new LinkedHashSet<>();
+            m.add(logins[c * 10]);
+            membros.add(m);
+        }
+    }
+
+    private static String comunidade(int c) {
+        return "comunidade" + c;
+    }
+
+    /**
+     * Lê a mesma listagem duas vezes seguidas, altera o conjunto e lê de novo.
+     */
+    private void acertosEFalhas() {
+        fazerAmizade(0, 1);
+        long acertos = metricas.get("listagens.cache.acertos");
+        long falhasAntes = metricas.get("listagens.cache.falhas");
+        verificarAmigos(0);
+        verificarAmigos(0);
+        comparar("acertos depois de duas leituras", metricas.get("listagens.cache.acertos") - acertos, 1);
+        comparar("falhas depois de duas leituras", metricas.get("listagens.cache.falhas") - falhasAntes, 1);
+
+        fazerAmizade(0, 2);
+        falhasAntes = metricas.get("listagens.cache.falhas");
+        verificarAmigos(0);
+        comparar("falhas na leitura depois de uma alteração", metricas.get("listagens.cache.falhas") - falhasAntes,
+                1);
+    }
+
+    /**
+     * Sorteia leituras e alterações de amigos, fãs e membros, conferindo cada leitura e o limite de memória.
+     */
+    private void intercalar() {
+        long despejos = metricas.get("listagens.cache.despejos");
+        for (int n = 0; n < operacoes; n++) {
+            int u = aleatorio.nextInt(logins.length);
+            int v = aleatorio.nextInt(logins.length);
+            int c = aleatorio.nextInt(membros.size());
+            switch (aleatorio.nextInt(6)) {
+                case 0 -> {
+                    if (u != v && !amigos.get(u).contains(logins[v])) {
+                        fazerAmizade(u, v);
+                    }
+                }
+                case 1 -> {
+                    if (u != v && !fas.get(v).contains(logins[u])) {
+                        facade.adicionarIdolo(sessoes[u], logins[v]);
+                        fas.get(v).add(logins[u]);
+                    }
+                }
+                case 2 -> {
+                    if (!membros.get(c).contains(logins[u])) {
+                        facade.adicionarComunidade(sessoes[u], comunidade(c));
+                        membros.get(c).add(logins[u]);
+                    }
+                }
+                case 3 -> verificarAmigos(u);
+                case 4 -> comparar("getFas(" + logins[u] + ")", facade.getFas(logins[u]), formatar(fas.get(u)));
+                default -> comparar("getMembrosComunidade(" + comunidade(c) + ")",
+                        facade.getMembrosComunidade(comunidade(c)), formatar(membros.get(c)));
+            }
+            long ocupado = metricas.get("listagens.cache.bytes");
+            if (ocupado > limite) {
+                falhar("operação " + n + ": " + ocupado + " bytes ocupados, limite " + limite);
+            }
+        }
+        if (metricas.get("listagens.cache.despejos") == despejos) {
+            falhar("nenhum despejo com " + logins.length + " usuários e limite de " + limite + " bytes");
+        }
+        if (metricas.get("listagens.cache.entradas") <= 0) {
+            falhar("nenhuma entrada guardada com limite de " + limite + " bytes");
+        }
+        System.out.println("Operações intercaladas: " + operacoes + ", despejos: "
+                + (metricas.get("listagens.cache.despejos") - despejos) + ".");
+    }
+
+    /**
+     * Uma comunidade com todos os usuários tem uma listagem maior que o limite, que não pode ser guardada: cada
+     * leitura é uma falha e a memória ocupada não cresce.
+     */
+    private void listagemGrande() {
+        String nome = "todos";
+        facade.criarComunidade(sessoes[0], nome, "Todos os usuários");
+        Set<String> todos = new LinkedHashSet<>();
+        todos.add(logins[0]);
+        for (int i = 1; i < logins.length; i++) {
+            facade.adicionarComunidade(sessoes[i], nome);
+            todos.add(logins[i]);
+        }
+        String esperado = formatar(todos);
+        if (esperado.length() <= limite) {
+            System.out.println("Listagem de " + esperado.length() + " caracteres cabe no limite; caso ignorado.");
+            return;
+        }
+        long falhasAntes = metricas.get("listagens.cache.falhas");
+        long ocupado = metricas.get("listagens.cache.bytes");
+        for (int i = 0; i < 3; i++) {
+            comparar("getMembrosComunidade(" + nome + ")", facade.getMembrosComunidade(nome), esperado);
+        }
+        comparar("falhas nas leituras da listagem grande", metricas.get("listagens.cache.falhas") - falhasAntes, 3);
+        if (metricas.get("listagens.cache.bytes") > ocupado) {
+            falhar("listagem maior que o limite foi guardada");
+        }
+    }
+
+    private void taxa() {
+        long acertos = metricas.get("listagens.cache.acertos");
+        long total = acertos + metricas.get("listagens.cache.falhas");
+        comparar("taxa de acertos", metricas.get("listagens.cache.taxaAcertos"), total == 0 ? 0 : acertos * 100 / total);
+    }
+
+    private void fazerAmizade(int u, int v) {
+        facade.adicionarAmigo(sessoes[u], logins[v]);
+        facade.adicionarAmigo(sessoes[v], logins[u]);
+        amigos.get(u).add(logins[v]);
+        amigos.get(v).add(logins[u]);
+    }
+
+    private void verificarAmigos(int u) {
+        comparar("getAmigos(" + logins[u] + ")", facade.getAmigos(logins[u]), formatar(amigos.get(u)));
+    }
+
+    private static String formatar(Set<String> logins) {
+        return "{" + String.join(",", logins) + "}";
+    }
+
+    private void comparar(String caso, long obtido, long esperado) {
+        if (obtido != esperado) {
+            falhar(caso + ": " + obtido + ", esperado " + esperado);
+        }
+    }
+
+    private void comparar(String caso, String obtido, String esperado) {
+        if (!obtido.equals(esperado)) {
+            falhar(caso + ": " + obtido + ", esperado " + esperado);
+        }
+    }
+
+    private void falhar(String falha) {
+        falhas.add(falha);
+    }
+}
@@ -0,0 +1,298 @@
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.GrafoCsr;
+import br.ufal.ic.p2.jackut.Relacionamentos.TipoRelacionamento;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Verificação das consultas analíticas do {@link GrafoCsr}, sem o EasyAccept: monta uma rede aleatória pela
+ * {@link Facade}, guarda uma cópia dela em conjuntos comuns e compara cada consulta com o cálculo por força bruta
+ * sobre essa cópia.
+ * <ul>
+ *     <li>graus e distribuição dos graus de amigos, ídolos e fãs;</li>
+ *     <li>amigos em comum de amigos de amigos e de pares aleatórios;</li>
+ *     <li>alcance em k saltos pelas amizades e pelos ídolos, de 0 saltos até a rede inteira;</li>
+ *     <li>componentes conexas de amigos (só dentro de cada grupo, com alguns usuários isolados) e de ídolos;</li>
+ *     <li>graus e componentes de amigos de novo, depois de o sistema ser encerrado e reaberto.</li>
+ * </ul>
+ * As amizades só ligam usuários do mesmo grupo, então a rede tem pelo menos uma componente por grupo. Com a rede
+ * padrão, os níveis mais largos das buscas passam do tamanho em que a expansão é dividida entre threads.
+ * <p>
+ * Uso: {@code java VerificacaoGrafo [usuarios] [amizades por usuario] [grupos] [semente]}. O motor de persistência
+ * é o de "jackut.persistencia"; "jackut.senhas.iteracoes" baixo acelera a abertura das sessões. Termina com código
+ * 1 se alguma verificação falhar.
+ * </p>
+ */
+public class VerificacaoGrafo {
+    private static final String SENHA = "senha";
+
+    /**
+     * Quantidade de usuários sorteados para as consultas de um usuário ou de um par.
+     */
+    private static final int AMOSTRAS = 200;
+
+    private final Facade facade = new Facade();
+    private final Random aleatorio;
+    private final String[] logins;
+    private final int amizadesPorUsuario;
+    private final int grupos;
+    private final List<Set<Integer>> amigos = new ArrayList<>();
+    private final List<Set<Integer>> idolos = new ArrayList<>();
+    private final List<Set<Integer>> fas = new ArrayList<>();
+    private final List<String> falhas = new ArrayList<>();
+
+    private VerificacaoGrafo(int usuarios, int amizadesPorUsuario, int grupos, long semente) {
+        this.logins = new String[usuarios];
+        this.amizadesPorUsuario = amizadesPorUsuario;
+        this.grupos = grupos;
+        this.aleatorio = new Random(semente);
+    }
+
+    public static void main(String[] args) {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int amizades = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int grupos = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        long semente = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        VerificacaoGrafo verificacao = new VerificacaoGrafo(usuarios, amizades, grupos, semente);
+        verificacao.executar();
+        if (!verificacao.falhas.isEmpty()) {
+            verificacao.falhas.stream().limit(50).forEach(System.out::println);
+            System.out.println(verificacao.falhas.size() + " falhas.");
+            System.exit(1);
+        }
+        System.out.println("\nVerificação do grafo concluída sem falhas.");
+    }
+
+    private void executar() {
+        facade.zerarSistema();
+        montarRede();
+        GrafoCsr grafo = facade.atualizarGrafo();
+
+        if (grafo.contarUsuarios() != logins.length) {
+            falhar("usuários: " + grafo.contarUsuarios() + ", esperado " + logins.length);
+        }
+        graus(grafo, TipoRelacionamento.AMIGOS, amigos);
+        graus(grafo, TipoRelacionamento.IDOLOS, idolos);
+        graus(grafo, TipoRelacionamento.FAS, fas);
+        amigosEmComum(grafo);
+        alcance(grafo, TipoRelacionamento.AMIGOS, amigos);
+        alcance(grafo, TipoRelacionamento.IDOLOS, idolos);
+        componentes(grafo, TipoRelacionamento.AMIGOS, amigos);
+        componentes(grafo, TipoRelacionamento.IDOLOS, idolos);
+
+        try {
+            grafo.alcancaveis(TipoRelacionamento.AMIGOS, logins[0], -1);
+            falhar("alcance com saltos negativos não foi recusado");
+        } catch (RuntimeException e) {
+            // Esperado
+        }
+        facade.encerrarSistema();
+
+        // Depois de reaberto, o sistema lê os usuários do snapshot sob demanda; a fotografia deve incluir todos
+        Facade reaberta = new Facade();
+        grafo = reaberta.atualizarGrafo();
+        if (grafo.contarUsuarios() != logins.length) {
+            falhar("usuários depois de reaberto: " + grafo.contarUsuarios() + ", esperado " + logins.length);
+        }
+        graus(grafo, TipoRelacionamento.AMIGOS, amigos);
+        componentes(grafo, TipoRelacionamento.AMIGOS, amigos);
+        reaberta.encerrarSistema();
+    }
+
+    /**
+     * Cria os usuários e os relacionamentos, guardando a cópia da rede. O último 1% dos usuários fica sem amigos.
+     */
+    private void montarRede() {
+        String[] sessoes = new String[logins.length];
+        for (int i = 0; i < logins.length; i++) {
+            logins[i] = "usuario" + i;
+            facade.criarUsuario(logins[i], SENHA, "Usuário " + i);
+            sessoes[i] = facade.abrirSessao(logins[i], SENHA);
+            amigos.add(new HashSet<>());
+            idolos.add(new HashSet<>());
+            fas.add(new HashSet<>());
+        }
+
+        int comAmigos = logins.length - logins.length / 100;
+        for (int a = 0; a < comAmigos; a++) {
+            for (int n = 0; n < amizadesPorUsuario; n++) {
+                // Outro usuário do mesmo grupo (mesmo resto da divisão pela quantidade de grupos)
+                int b = aleatorio.nextInt(comAmigos / grupos) * grupos + a % grupos;
+                if (b == a || b >= comAmigos || amigos.get(a).contains(b)) {
+                    continue;
+                }
+                facade.adicionarAmigo(sessoes[a], logins[b]);
+                facade.adicionarAmigo(sessoes[b], logins[a]);
+                amigos.get(a).add(b);
+                amigos.get(b).add(a);
+            }
+        }
+        for (int a = 0; a < logins.length; a++) {
+            int b = aleatorio.nextInt(logins.length);
+            if (b == a || idolos.get(a).contains(b)) {
+                continue;
+            }
+            facade.adicionarIdolo(sessoes[a], logins[b]);
+            idolos.get(a).add(b);
+            fas.get(b).add(a);
+        }
+    }
+
+    private void graus(GrafoCsr grafo, TipoRelacionamento tipo, List<Set<Integer>> rede) {
+        int[] esperada = new int[1];
+        int arestas = 0;
+        for (int u = 0; u < logins.length; u++) {
+            int g = rede.get(u).size();
+            if (grafo.grau(tipo, logins[u]) != g) {
+                falhar("grau de " + logins[u] + " em " + tipo + ": " + grafo.grau(tipo, logins[u]) + ", esperado " + g);
+            }
+            if (g >= esperada.length) {
+                esperada = Arrays.copyOf(esperada, g + 1);
+            }
+            esperada[g]++;
+            arestas += g;
+        }
+        int[] distribuicao = grafo.distribuicaoDeGraus(tipo);
+        if (!Arrays.equals(distribuicao, esperada)) {
+            falhar("distribuição dos graus de " + tipo + ": " + Arrays.toString(distribuicao) + ", esperada "
+                    + Arrays.toString(esperada));
+        }
+        if (grafo.contarArestas(tipo) != arestas) {
+            falhar("arestas de " + tipo + ": " + grafo.contarArestas(tipo) + ", esperado " + arestas);
+        }
+        System.out.println("Graus (" + tipo + "): " + arestas + " arestas, grau máximo " + (esperada.length - 1) + ".");
+    }
+
+    private void amigosEmComum(GrafoCsr grafo) {
+        int pares = 0;
+        for (int n = 0; n < AMOSTRAS; n++) {
+            int a = aleatorio.nextInt(logins.length);
+            // Metade dos pares com um amigo de um amigo de a, que tem pelo menos um amigo em comum com ele
+            int b = n % 2 == 0 ? amigoAleatorio(amigoAleatorio(a)) : aleatorio.nextInt(logins.length);
+            Set<Integer> comuns = new HashSet<>(amigos.get(a));
+            comuns.retainAll(amigos.get(b));
+            int obtido = grafo.amigosEmComum(logins[a], logins[b]);
+            if (obtido != comuns.size()) {
+                falhar("amigos em comum de " + logins[a] + " e " + logins[b] + ": " + obtido + ", esperado "
+                        + comuns.size());
+            }
+            pares += comuns.isEmpty() ? 0 : 1;
+        }
+        System.out.println("Amigos em comum: " + AMOSTRAS + " pares, " + pares + " com amigos em comum.");
+    }
+
+    private int amigoAleatorio(int u) {
+        List<Integer> candidatos = new ArrayList<>(amigos.get(u));
+        return candidatos.isEmpty() ? u : candidatos.get(aleatorio.nextInt(candidatos.size()));
+    }
+
+    private void alcance(GrafoCsr grafo, TipoRelacionamento tipo, List<Set<Integer>> rede) {
+        int maior = 0;
+        int maisLargo = 0;
+        for (int n = 0; n < AMOSTRAS / 10; n++) {
+            int origem = aleatorio.nextInt(logins.length);
+            int[] distancias = distancias(rede, origem);
+            int excentricidade = Arrays.stream(distancias).max().getAsInt();
+            for (int k = 0; k <= excentricidade + 1; k++) {
+                int limite = k;
+                long esperado = Arrays.stream(distancias).filter(d -> d > 0 && d <= limite).count();
+                int obtido = grafo.alcancaveis(tipo, logins[origem], k);
+                if (obtido != esperado) {
+                    falhar("alcance de " + logins[origem] + " em " + k + " saltos (" + tipo + "): " + obtido
+                            + ", esperado " + esperado);
+                }
+            }
+            int[] niveis = new int[excentricidade + 1];
+            for (int d : distancias) {
+                if (d >= 0) {
+                    niveis[d]++;
+                }
+            }
+            maior = Math.max(maior, excentricidade);
+            maisLargo = Math.max(maisLargo, Arrays.stream(niveis).max().getAsInt());
+        }
+        System.out.println("Alcance (" + tipo + "): " + AMOSTRAS / 10 + " origens, até " + maior
+                + " saltos, nível mais largo com " + maisLargo + " usuários.");
+    }
+
+    /**
+     * Distâncias, em saltos, da origem a cada usuário, seguindo o sentido dos relacionamentos.
+     *
+     * @return Vetor indexado pelo usuário, com -1 para os inalcançáveis
+     */
+    private int[] distancias(List<Set<Integer>> rede, int origem) {
+        int[] distancias = new int[logins.length];
+        Arrays.fill(distancias, -1);
+        distancias[origem] = 0;
+        ArrayDeque<Integer> fila = new ArrayDeque<>();
+        fila.add(origem);
+        while (!fila.isEmpty()) {
+            int u = fila.poll();
+            for (int v : rede.get(u)) {
+                if (distancias[v] < 0) {
+                    distancias[v] = distancias[u] + 1;
+                    fila.add(v);
+                }
+            }
+        }
+        return distancias;
+    }
+
+    /**
+     * Compara a quantidade e os tamanhos das componentes (os IDs internos não são visíveis daqui).
+     */
+    private void componentes(GrafoCsr grafo, TipoRelacionamento tipo, List<Set<Integer>> rede) {
+        int[] pais = new int[logins.length];
+        for (int u = 0; u < pais.length; u++) {
+            pais[u] = u;
+        }
+        for (int u = 0; u < logins.length; u++) {
+            for (int v : rede.get(u)) {
+                pais[raiz(pais, u)] = raiz(pais, v);
+            }
+        }
+        Map<Integer, Integer> esperados = new HashMap<>();
+        for (int u = 0; u < logins.length; u++) {
+            esperados.merge(raiz(pais, u), 1, Integer::sum);
+        }
+
+        Map<Integer, Integer> obtidos = new HashMap<>();
+        for (int c : grafo.componentes(tipo)) {
+            if (c >= 0) {
+                obtidos.merge(c, 1, Integer::sum);
+            }
+        }
+        int[] tamanhosEsperados = esperados.values().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int[] tamanhosObtidos = obtidos.values().stream().mapToInt(Integer::intValue).sorted().toArray();
+        if (!Arrays.equals(tamanhosObtidos, tamanhosEsperados)) {
+            falhar("componentes de " + tipo + ": " + tamanhosObtidos.length + ", esperado " + tamanhosEsperados.length);
+        }
+        if (grafo.quantidadeDeComponentes(tipo) != esperados.size()) {
+            falhar("quantidade de componentes de " + tipo + ": " + grafo.quantidadeDeComponentes(tipo)
+                    + ", esperado " + esperados.size());
+        }
+        System.out.println("Componentes (" + tipo + "): " + esperados.size() + ", a maior com "
+                + tamanhosEsperados[tamanhosEsperados.length - 1] + " usuários.");
+    }
+
+    private static int raiz(int[] pais, int u) {
+        while (pais[u] != u) {
+            pais[u] = pais[pais[u]];
+            u = pais[u];
+        }
+        return u;
+    }
+
+    private void falhar(String falha) {
+        falhas.add(falha);
+    }
+}
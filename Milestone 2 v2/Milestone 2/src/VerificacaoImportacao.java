@@ -0,0 +1,403 @@
+import br.ufal.ic.p2.jackut.Configuracao;
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.ImportadorCsv;
+import br.ufal.ic.p2.jackut.OrdenacaoExterna;
+import br.ufal.ic.p2.jackut.persistencia.Snapshot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Verificação do {@link ImportadorCsv}, sem o EasyAccept, que não consegue gerar arquivos: sorteia arquivos CSV e
+ * TSV com linhas válidas e inválidas, importa-os para o diretório atual com poucas linhas por bloco de ordenação, e
+ * abre o resultado pela {@link Facade}, comparando com uma cópia dos dados calculada à parte.
+ * <ul>
+ *     <li>{@link OrdenacaoExterna} com blocos pequenos grava os blocos em disco, intercala-os em mais de uma
+ *     passada, devolve as linhas ordenadas e sem repetições, e não deixa arquivos temporários;</li>
+ *     <li>são recusadas as mesmas linhas que as operações individuais recusariam: logins repetidos, senha igual ao
+ *     login, usuários e comunidades inexistentes, amizade, fã ou inimigo de si mesmo, amizade ou fã entre
+ *     inimigos, comunidade repetida; e linhas malformadas;</li>
+ *     <li>as amizades ficam nos dois usuários, sem repetições, mesmo escritas nos dois sentidos ou mais de uma
+ *     vez; fãs, comunidades, membros e inimigos são os aceitos;</li>
+ *     <li>campos entre aspas podem conter vírgulas e aspas, e as senhas importadas abrem sessões;</li>
+ *     <li>a importação não deixa arquivos temporários no destino.</li>
+ * </ul>
+ * Uso: {@code java VerificacaoImportacao [usuarios] [semente]}, num diretório sem dados do Jackut, onde o snapshot
+ * é gerado. As linhas por bloco são as de "jackut.importacao.linhasPorBloco", por padrão 16 aqui, e as senhas são
+ * codificadas com "jackut.senhas.iteracoes", por padrão 1000 aqui. O motor de persistência precisa ler snapshots
+ * ("serializacao" ou "journal"). Termina com código 1 se alguma verificação falhar.
+ */
+public class VerificacaoImportacao {
+    private static final String SENHA = "segredo";
+    private static final String BLOCO = "jackut.importacao.linhasPorBloco";
+    private static final String ITERACOES = "jackut.senhas.iteracoes";
+
+    private final Random aleatorio;
+    private final int quantidadeUsuarios;
+    private final Path entrada;
+
+    /**
+     * Linhas de cada arquivo de entrada, já formatadas.
+     */
+    private final Map<String, List<String>> linhas = new LinkedHashMap<>();
+
+    /**
+     * Cópia dos dados que devem ser importados.
+     */
+    private final Map<String, String> nomes = new TreeMap<>();
+    private final Map<String, Set<String>> amigos = new HashMap<>();
+    private final Map<String, Set<String>> fas = new HashMap<>();
+    private final Map<String, Set<String>> comunidadesDe = new HashMap<>();
+    private final Set<String> inimigos = new HashSet<>();
+    private final List<String[]> paresInimigos = new ArrayList<>();
+    private final Map<String, String> donos = new TreeMap<>();
+    private final Map<String, Set<String>> membros = new HashMap<>();
+    private final Map<String, Long> aceitas = new TreeMap<>();
+    private final Map<String, Long> recusadas = new TreeMap<>();
+
+    private final List<String> falhas = new ArrayList<>();
+
+    private VerificacaoImportacao(int usuarios, long semente, Path entrada) {
+        this.quantidadeUsuarios = usuarios;
+        this.aleatorio = new Random(semente);
+        this.entrada = entrada;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (System.getProperty(BLOCO) == null) {
+            System.setProperty(BLOCO, "16");
+        }
+        if (System.getProperty(ITERACOES) == null) {
+            System.setProperty(ITERACOES, "1000");
+        }
+        if (System.getProperty("jackut.persistencia", "serializacao").equalsIgnoreCase("sql")) {
+            System.out.println("O motor sql não lê snapshots; use serializacao ou journal.");
+            System.exit(1);
+        }
+        Path destino = Paths.get(".");
+        if (Snapshot.existe(destino) || Files.exists(destino.resolve(Configuracao.arquivoJournal()))) {
+            System.out.println("O diretório atual já tem dados do Jackut; execute num diretório vazio.");
+            System.exit(1);
+        }
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        long semente = args.length > 1 ? Long.parseLong(args[1]) : 42;
+
+        Path entrada = Files.createTempDirectory("jackut-csv");
+        VerificacaoImportacao verificacao = new VerificacaoImportacao(usuarios, semente, entrada);
+        try {
+            verificacao.ordenacao();
+            verificacao.sortear();
+            verificacao.importar(destino);
+            verificacao.verificar();
+        } finally {
+            apagar(entrada);
+        }
+        if (!verificacao.falhas.isEmpty()) {
+            verificacao.falhas.stream().limit(50).forEach(System.out::println);
+            System.out.println(verificacao.falhas.size() + " falhas.");
+            System.exit(1);
+        }
+        System.out.println("\nVerificação da importação concluída sem falhas.");
+    }
+
+    /**
+     * Ordena linhas repetidas com blocos de 7 linhas: mais blocos do que cabem numa única intercalação.
+     */
+    private void ordenacao() throws IOException {
+        Path diretorio = Files.createTempDirectory("jackut-ordenacao");
+        TreeSet<String> esperado = new TreeSet<>();
+        try (OrdenacaoExterna ordenacao = new OrdenacaoExterna(7, diretorio)) {
+            for (int i = 0; i < 5000; i++) {
+                String linha = "linha" + aleatorio.nextInt(3000) + "\t" + aleatorio.nextInt(3);
+                ordenacao.adicionar(linha);
+                esperado.add(linha);
+            }
+            long blocos = contar(diretorio);
+            if (blocos <= 64) {
+                falhar("ordenação com " + blocos + " blocos em disco, esperados mais de 64");
+            }
+            comparar("linhas distintas ordenadas", ordenacao.ordenar(), esperado.size());
+            List<String> lidas = new ArrayList<>();
+            try (BufferedReader leitor = ordenacao.ler()) {
+                for (String linha = leitor.readLine(); linha != null; linha = leitor.readLine()) {
+                    lidas.add(linha);
+                }
+            }
+            if (!lidas.equals(new ArrayList<>(esperado))) {
+                falhar("linhas ordenadas diferentes das esperadas: " + lidas.size() + " linhas, esperadas "
+                        + esperado.size());
+            }
+            System.out.println("Ordenação: 5000 linhas, " + blocos + " blocos em disco.");
+        }
+        comparar("arquivos temporários da ordenação", contar(diretorio), 0);
+        Files.delete(diretorio);
+    }
+
+    /**
+     * Sorteia as linhas dos arquivos e calcula o resultado esperado. Os logins desconhecido0 a desconhecido4
+     * nunca são cadastrados.
+     */
+    private void sortear() {
+        List<String> usuarios = arquivo("usuarios");
+        usuarios.add("login,senha,nome");
+        usuarios.add("# comentário");
+        for (int i = 0; i < quantidadeUsuarios; i++) {
+            String login = login(i);
+            String nome = i % 7 == 0 ? "Ana \"Bia\", " + i : "Usuário " + i;
+            usuarios.add(login + "," + SENHA + "," + campo(nome));
+            nomes.put(login, nome);
+            amigos.put(login, new TreeSet<>());
+            fas.put(login, new TreeSet<>());
+            comunidadesDe.put(login, new TreeSet<>());
+            aceitar("usuarios");
+            if (i % 50 == 0) {
+                usuarios.add(login + "," + SENHA + ",Repetido");
+                usuarios.add("mesmasenha" + i + ",mesmasenha" + i + ",Mesma senha");
+                usuarios.add("incompleto" + i + "," + SENHA);
+                usuarios.add("");
+                recusar("usuarios", 3);
+            }
+        }
+
+        List<String> linhasInimigos = arquivo("inimigos");
+        for (int i = 0; i < quantidadeUsuarios / 10; i++) {
+            String a = login(aleatorio.nextInt(quantidadeUsuarios));
+            String b = login(aleatorio.nextInt(quantidadeUsuarios));
+            linhasInimigos.add(a + "," + b);
+            if (a.equals(b)) {
+                recusar("inimigos", 1);
+            } else {
+                inimigos.add(par(a, b));
+                paresInimigos.add(new String[]{a, b});
+                aceitar("inimigos");
+            }
+        }
+        linhasInimigos.add(login(0) + ",desconhecido0");
+        recusar("inimigos", 1);
+
+        List<String> linhasAmizades = arquivo("amizades");
+        for (int i = 0; i < 4 * quantidadeUsuarios; i++) {
+            String a = sortearLogin();
+            String b = aleatorio.nextInt(40) == 0 ? a : sortearLogin();
+            linhasAmizades.add(a + "," + b);
+            if (!nomes.containsKey(a) || !nomes.containsKey(b) || a.equals(b) || inimigos.contains(par(a, b))) {
+                recusar("amizades", 1);
+            } else {
+                amigos.get(a).add(b);
+                amigos.get(b).add(a);
+                aceitar("amizades");
+                if (aleatorio.nextInt(10) == 0) {
+                    // A mesma amizade de novo, no outro sentido
+                    linhasAmizades.add(b + "," + a);
+                    aceitar("amizades");
+                }
+            }
+        }
+
+        List<String> linhasFas = arquivo("fas.tsv");
+        for (int i = 0; i < 2 * quantidadeUsuarios; i++) {
+            String fa = sortearLogin();
+            String idolo = aleatorio.nextInt(40) == 0 ? fa : sortearLogin();
+            linhasFas.add(fa + "\t" + idolo);
+            if (!nomes.containsKey(fa) || !nomes.containsKey(idolo) || fa.equals(idolo)
+                    || inimigos.contains(par(fa, idolo))) {
+                recusar("fas", 1);
+            } else {
+                fas.get(idolo).add(fa);
+                aceitar("fas");
+            }
+        }
+
+        List<String> linhasComunidades = arquivo("comunidades");
+        int quantidadeComunidades = Math.max(2, quantidadeUsuarios / 10);
+        for (int c = 0; c < quantidadeComunidades; c++) {
+            String nome = "comunidade" + c;
+            String dono = login(aleatorio.nextInt(quantidadeUsuarios));
+            linhasComunidades.add(nome + "," + dono + "," + campo("Comunidade " + c + ", a descrição"));
+            donos.put(nome, dono);
+            membros.put(nome, new TreeSet<>());
+            comunidadesDe.get(dono).add(nome);
+            aceitar("comunidades");
+        }
+        linhasComunidades.add("comunidade0," + login(1) + ",Repetida");
+        linhasComunidades.add("orfa,desconhecido1,Sem dono");
+        recusar("comunidades", 2);
+
+        List<String> linhasMembros = arquivo("membros");
+        for (int i = 0; i < 3 * quantidadeUsuarios; i++) {
+            String comunidade = aleatorio.nextInt(30) == 0 ? "inexistente"
+                    : "comunidade" + aleatorio.nextInt(quantidadeComunidades);
+            String login = sortearLogin();
+            linhasMembros.add(comunidade + "," + login);
+            if (!nomes.containsKey(login) || !donos.containsKey(comunidade)) {
+                recusar("membros", 1);
+            } else {
+                membros.get(comunidade).add(login);
+                comunidadesDe.get(login).add(comunidade);
+                aceitar("membros");
+            }
+        }
+    }
+
+    private List<String> arquivo(String nome) {
+        return linhas.computeIfAbsent(nome, n -> new ArrayList<>());
+    }
+
+    private String sortearLogin() {
+        return aleatorio.nextInt(50) == 0 ? "desconhecido" + aleatorio.nextInt(5)
+                : login(aleatorio.nextInt(quantidadeUsuarios));
+    }
+
+    private static String login(int i) {
+        return "usuario" + i;
+    }
+
+    private static String campo(String valor) {
+        return "\"" + valor.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String par(String a, String b) {
+        return a.compareTo(b) < 0 ? a + "\t" + b : b + "\t" + a;
+    }
+
+    private void aceitar(String tipo) {
+        aceitas.merge(tipo, 1L, Long::sum);
+    }
+
+    private void recusar(String tipo, long quantidade) {
+        recusadas.merge(tipo, quantidade, Long::sum);
+    }
+
+    /**
+     * Grava os arquivos de entrada e importa-os para o destino.
+     */
+    private void importar(Path destino) throws IOException {
+        Set<Path> antes = listar(destino);
+        ImportadorCsv importador = new ImportadorCsv(destino);
+        for (Map.Entry<String, List<String>> arquivo : linhas.entrySet()) {
+            String nome = arquivo.getKey().endsWith(".tsv") ? arquivo.getKey() : arquivo.getKey() + ".csv";
+            Path caminho = entrada.resolve(nome);
+            try (PrintWriter escritor = new PrintWriter(Files.newBufferedWriter(caminho, StandardCharsets.UTF_8))) {
+                arquivo.getValue().forEach(escritor::println);
+            }
+            importador.setEntrada(nome.substring(0, nome.indexOf('.')), caminho);
+        }
+        importador.importar();
+        comparar("linhas aceitas", importador.getAceitas().toString(), aceitas.toString());
+        comparar("linhas recusadas", importador.getRecusadas().toString(), recusadas.toString());
+
+        Set<Path> criados = listar(destino);
+        criados.removeAll(antes);
+        Set<Path> esperados = Set.of(Snapshot.arquivoUsuarios(destino, 1).normalize(),
+                Snapshot.arquivoComunidades(destino, 1).normalize());
+        if (!criados.equals(esperados)) {
+            falhar("arquivos criados pela importação: " + criados + ", esperados " + esperados);
+        }
+    }
+
+    /**
+     * Abre o snapshot importado e compara cada usuário e comunidade com a cópia.
+     */
+    private void verificar() {
+        Facade facade = new Facade();
+        for (Map.Entry<String, String> usuario : nomes.entrySet()) {
+            String login = usuario.getKey();
+            comparar("nome de " + login, facade.getAtributoUsuario(login, "nome"), usuario.getValue());
+            comparar("amigos de " + login, facade.getAmigos(login), formatar(amigos.get(login)));
+            comparar("fãs de " + login, facade.getFas(login), formatar(fas.get(login)));
+            comparar("comunidades de " + login, facade.getComunidades(login), formatar(comunidadesDe.get(login)));
+        }
+        for (Map.Entry<String, String> comunidade : donos.entrySet()) {
+            String nome = comunidade.getKey();
+            comparar("dono de " + nome, facade.getDonoComunidade(nome), comunidade.getValue());
+            // O dono vem primeiro; os demais membros, em ordem de login
+            List<String> esperados = new ArrayList<>();
+            esperados.add(comunidade.getValue());
+            membros.get(nome).stream().filter(m -> !m.equals(comunidade.getValue())).forEach(esperados::add);
+            comparar("membros de " + nome, facade.getMembrosComunidade(nome),
+                    "{" + String.join(",", esperados) + "}");
+        }
+        for (String[] inimigo : paresInimigos) {
+            for (int lado = 0; lado < 2; lado++) {
+                String login = inimigo[lado];
+                String outro = inimigo[1 - lado];
+                try {
+                    facade.adicionarAmigo(facade.abrirSessao(login, SENHA), outro);
+                    falhar("amizade entre os inimigos " + login + " e " + outro + " aceita");
+                } catch (RuntimeException e) {
+                    comparar("amizade entre inimigos", e.getMessage(),
+                            "Função inválida: " + nomes.get(outro) + " é seu inimigo.");
+                }
+            }
+        }
+        for (String desconhecido : List.of("desconhecido0", "mesmasenha0", "incompleto0", "orfa")) {
+            try {
+                facade.getAtributoUsuario(desconhecido, "nome");
+                falhar(desconhecido + " foi importado");
+            } catch (RuntimeException e) {
+                comparar(desconhecido, e.getMessage(), "Usuário não cadastrado.");
+            }
+        }
+        facade.encerrarSistema();
+        System.out.println("Importação: aceitas " + aceitas + ", recusadas " + recusadas + ".");
+    }
+
+    private static String formatar(Set<String> logins) {
+        return "{" + String.join(",", logins) + "}";
+    }
+
+    private static long contar(Path diretorio) throws IOException {
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            return arquivos.count();
+        }
+    }
+
+    private static Set<Path> listar(Path diretorio) throws IOException {
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            Set<Path> caminhos = new HashSet<>();
+            arquivos.forEach(p -> caminhos.add(p.normalize()));
+            return caminhos;
+        }
+    }
+
+    private static void apagar(Path diretorio) throws IOException {
+        try (Stream<Path> arquivos = Files.walk(diretorio)) {
+            for (Path p : arquivos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private void comparar(String caso, long obtido, long esperado) {
+        if (obtido != esperado) {
+            falhar(caso + ": " + obtido + ", esperado " + esperado);
+        }
+    }
+
+    private void comparar(String caso, String obtido, String esperado) {
+        if (!obtido.equals(esperado)) {
+            falhar(caso + ": " + obtido + ", esperado " + esperado);
+        }
+    }
+
+    private void falhar(String falha) {
+        falhas.add(falha);
+    }
+}
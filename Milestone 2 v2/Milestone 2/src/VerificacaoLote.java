@@ -0,0 +1,274 @@
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.ImportacaoEmLote;
+import br.ufal.ic.p2.jackut.ResultadoLote;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Verificação da {@link ImportacaoEmLote}, sem o EasyAccept, que não consegue montar listas de itens: aplica os
+ * mesmos usuários, pedidos de amizade e recados sorteados uma vez em lotes e outra vez um a um pela
+ * {@link Facade}, e compara as duas execuções.
+ * <ul>
+ *     <li>o erro de cada item do lote é a mensagem que a chamada individual equivalente lança, ou nenhum se ela
+ *     não lança: logins repetidos, inválidos ou não cadastrados, amizades consigo mesmo, convites repetidos,
+ *     recados para si mesmo;</li>
+ *     <li>um item malformado no meio de cada lote é recusado com "Item inválido." sem interromper o lote, e os
+ *     itens depois dele são aplicados;</li>
+ *     <li>depois de salvos e reabertos, os dois sistemas têm os mesmos usuários, amigos e recados, na mesma
+ *     ordem.</li>
+ * </ul>
+ * Uso: {@code java VerificacaoLote [usuarios] [amizades] [recados] [semente]}. O motor de persistência é o de
+ * "jackut.persistencia"; "jackut.senhas.iteracoes" baixo acelera os cadastros e a abertura das sessões. Termina
+ * com código 1 se alguma verificação falhar.
+ */
+public class VerificacaoLote {
+    private static final String SENHA = "segredo";
+    private static final String ITEM_INVALIDO = "Item inválido.";
+
+    private final Random aleatorio;
+    private final int quantidadeUsuarios;
+    private final List<String[]> usuarios = new ArrayList<>();
+    private final List<String[]> amizades = new ArrayList<>();
+    private final List<String[]> recados = new ArrayList<>();
+    private final List<String> falhas = new ArrayList<>();
+
+    private VerificacaoLote(int usuarios, long semente) {
+        this.quantidadeUsuarios = usuarios;
+        this.aleatorio = new Random(semente);
+    }
+
+    public static void main(String[] args) {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int amizades = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+        int recados = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long semente = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        VerificacaoLote verificacao = new VerificacaoLote(usuarios, semente);
+        verificacao.sortear(amizades, recados);
+        verificacao.executar();
+        if (!verificacao.falhas.isEmpty()) {
+            verificacao.falhas.stream().limit(50).forEach(System.out::println);
+            System.out.println(verificacao.falhas.size() + " falhas.");
+            System.exit(1);
+        }
+        System.out.println("\nVerificação da importação em lote concluída sem falhas.");
+    }
+
+    /**
+     * Sorteia os lotes. Os logins vão de usuario0 a usuario(n + 4): os cinco últimos nunca são cadastrados.
+     */
+    private void sortear(int quantidadeAmizades, int quantidadeRecados) {
+        for (int i = 0; i < quantidadeUsuarios; i++) {
+            usuarios.add(new String[]{login(i), SENHA, "Usuário " + i});
+            switch (aleatorio.nextInt(40)) {
+                case 0 -> usuarios.add(new String[]{login(aleatorio.nextInt(i + 1)), SENHA, "Repetido"});
+                case 1 -> usuarios.add(new String[]{null, SENHA, "Sem login"});
+                case 2 -> usuarios.add(new String[]{"sem-senha" + i, null, "Sem senha"});
+                default -> {
+                }
+            }
+        }
+        for (int i = 0; i < quantidadeAmizades; i++) {
+            // Pares entre poucos usuários, para que haja convites aceitos e repetidos
+            int a = sortearUsuario();
+            int b = aleatorio.nextInt(30) == 0 ? a : sortearUsuario();
+            amizades.add(new String[]{login(a), login(b)});
+        }
+        for (int i = 0; i < quantidadeRecados; i++) {
+            int a = sortearUsuario();
+            int b = aleatorio.nextInt(30) == 0 ? a : sortearUsuario();
+            recados.add(new String[]{login(a), login(b), "recado " + i});
+        }
+        usuarios.add(usuarios.size() / 2, new String[]{"malformado"});
+        amizades.add(amizades.size() / 2, new String[]{login(0)});
+        recados.add(recados.size() / 2, new String[]{login(0), login(1)});
+    }
+
+    private int sortearUsuario() {
+        return aleatorio.nextInt(10) == 0 ? aleatorio.nextInt(quantidadeUsuarios + 5)
+                : aleatorio.nextInt(Math.min(quantidadeUsuarios, 40));
+    }
+
+    private static String login(int i) {
+        return "usuario" + i;
+    }
+
+    private void executar() {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        facade.encerrarSistema();
+
+        ImportacaoEmLote lote = new ImportacaoEmLote();
+        List<ResultadoLote> resultados = List.of(lote.criarUsuarios(usuarios), lote.adicionarAmizades(amizades),
+                lote.enviarRecados(recados));
+        lote.encerrar();
+        Map<String, String> emLote = estado();
+
+        List<String[]> individuais = umAUm();
+        Map<String, String> umAUm = estado();
+
+        String[] nomes = {"criarUsuarios", "adicionarAmizades", "enviarRecados"};
+        List<List<String[]>> lotes = List.of(usuarios, amizades, recados);
+        for (int l = 0; l < nomes.length; l++) {
+            ResultadoLote resultado = resultados.get(l);
+            String[] esperados = individuais.get(l);
+            comparar(nomes[l] + ": tamanho do resultado", resultado.getTamanho(), esperados.length);
+            int falhasEsperadas = 0;
+            for (int i = 0; i < esperados.length; i++) {
+                falhasEsperadas += esperados[i] != null ? 1 : 0;
+                if (!Objects.equals(resultado.getErro(i), esperados[i])) {
+                    falhar(nomes[l] + "[" + i + "] " + String.join(",", mostrar(lotes.get(l).get(i))) + ": "
+                            + resultado.getErro(i) + ", esperado " + esperados[i]);
+                }
+            }
+            comparar(nomes[l] + ": falhas", resultado.getFalhas(), falhasEsperadas);
+            comparar(nomes[l] + ": sucessos", resultado.getSucessos(), esperados.length - falhasEsperadas);
+
+            int meio = lotes.get(l).size() / 2;
+            boolean aplicadoDepois = false;
+            for (int i = meio + 1; i < esperados.length; i++) {
+                aplicadoDepois |= resultado.ok(i);
+            }
+            if (!aplicadoDepois) {
+                falhar(nomes[l] + ": nenhum item aplicado depois do item malformado");
+            }
+            System.out.println(nomes[l] + ": " + resultado);
+        }
+
+        for (Map.Entry<String, String> e : umAUm.entrySet()) {
+            String obtido = emLote.get(e.getKey());
+            if (!e.getValue().equals(obtido)) {
+                falhar(e.getKey() + ": em lote " + obtido + ", um a um " + e.getValue());
+            }
+        }
+    }
+
+    private static String[] mostrar(String[] item) {
+        String[] campos = new String[item.length];
+        for (int i = 0; i < item.length; i++) {
+            campos[i] = String.valueOf(item[i]);
+        }
+        return campos;
+    }
+
+    /**
+     * Aplica os itens um a um pela Facade, num sistema zerado.
+     *
+     * @return Mensagem de erro de cada item de cada lote, ou null se ele foi aplicado
+     */
+    private List<String[]> umAUm() {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        String[] errosUsuarios = new String[usuarios.size()];
+        for (int i = 0; i < usuarios.size(); i++) {
+            String[] u = usuarios.get(i);
+            if (u.length != 3) {
+                errosUsuarios[i] = ITEM_INVALIDO;
+                continue;
+            }
+            try {
+                facade.criarUsuario(u[0], u[1], u[2]);
+            } catch (RuntimeException e) {
+                errosUsuarios[i] = e.getMessage();
+            }
+        }
+
+        Map<String, String> sessoes = new HashMap<>();
+        String[] errosAmizades = new String[amizades.size()];
+        for (int i = 0; i < amizades.size(); i++) {
+            String[] p = amizades.get(i);
+            if (p.length != 2) {
+                errosAmizades[i] = ITEM_INVALIDO;
+                continue;
+            }
+            try {
+                facade.adicionarAmigo(sessao(facade, sessoes, p[0]), p[1]);
+            } catch (RuntimeException e) {
+                errosAmizades[i] = e.getMessage();
+            }
+        }
+
+        String[] errosRecados = new String[recados.size()];
+        for (int i = 0; i < recados.size(); i++) {
+            String[] r = recados.get(i);
+            if (r.length != 3) {
+                errosRecados[i] = ITEM_INVALIDO;
+                continue;
+            }
+            try {
+                facade.enviarRecado(sessao(facade, sessoes, r[0]), r[1], r[2]);
+            } catch (RuntimeException e) {
+                errosRecados[i] = e.getMessage();
+            }
+        }
+        facade.encerrarSistema();
+        return List.of(errosUsuarios, errosAmizades, errosRecados);
+    }
+
+    /**
+     * Sessão do usuário, aberta na primeira vez; para um usuário não cadastrado, um ID de sessão que não existe.
+     */
+    private static String sessao(Facade facade, Map<String, String> sessoes, String login) {
+        return sessoes.computeIfAbsent(login, l -> {
+            try {
+                return facade.abrirSessao(l, SENHA);
+            } catch (RuntimeException e) {
+                return "sem-sessao";
+            }
+        });
+    }
+
+    /**
+     * Reabre o sistema salvo e lê, de cada login sorteado, o nome, os amigos e os recados (o que os consome).
+     */
+    private Map<String, String> estado() {
+        Facade facade = new Facade();
+        Map<String, String> estado = new LinkedHashMap<>();
+        for (int i = 0; i < quantidadeUsuarios + 5; i++) {
+            estado.put(login(i), descrever(facade, login(i)));
+        }
+        for (String[] u : usuarios) {
+            if (u.length == 3 && u[0] != null && !estado.containsKey(u[0])) {
+                estado.put(u[0], descrever(facade, u[0]));
+            }
+        }
+        facade.encerrarSistema();
+        return estado;
+    }
+
+    private static String descrever(Facade facade, String login) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            sb.append(facade.getAtributoUsuario(login, "nome")).append(' ').append(facade.getAmigos(login));
+            String sessao = facade.abrirSessao(login, SENHA);
+            List<String> lidos = new ArrayList<>();
+            while (true) {
+                try {
+                    lidos.add(facade.lerRecado(sessao));
+                } catch (RuntimeException e) {
+                    break;
+                }
+            }
+            sb.append(' ').append(lidos);
+        } catch (RuntimeException e) {
+            sb.append(e.getMessage());
+        }
+        return sb.toString();
+    }
+
+    private void comparar(String caso, long obtido, long esperado) {
+        if (obtido != esperado) {
+            falhar(caso + ": " + obtido + ", esperado " + esperado);
+        }
+    }
+
+    private void falhar(String falha) {
+        falhas.add(falha);
+    }
+}
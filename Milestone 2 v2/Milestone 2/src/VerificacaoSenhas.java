@@ -0,0 +1,223 @@
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.Metricas;
+import br.ufal.ic.p2.jackut.Senhas;
+import br.ufal.ic.p2.jackut.exceptions.InformacaoInvalidaException;
+import br.ufal.ic.p2.jackut.exceptions.LimiteDeTentativasException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verificação das senhas ({@link Senhas}) com custos baixos, sem o EasyAccept, que não consegue trocar o custo entre
+ * um sistema e outro, disparar logins simultâneos nem ler as métricas: cadastra usuários pela {@link Facade} e
+ * reabre o sistema com outras configurações de "jackut.senhas.*".
+ * <ul>
+ *     <li>a senha codificada tem o formato "pbkdf2-sha256$iterações$sal$hash", com sal diferente a cada
+ *     codificação, e só é verificada com a senha certa;</li>
+ *     <li>com o custo mudado, cada senha é recodificada no primeiro login, uma única vez, e a recodificação
+ *     continua valendo depois de o sistema ser reaberto; um login errado não recodifica nada;</li>
+ *     <li>logins repetidos com a mesma senha armazenada usam o cache de verificações;</li>
+ *     <li>com uma thread e dois cálculos pendentes no máximo, uma rajada de logins simultâneos é em parte recusada
+ *     com {@link LimiteDeTentativasException}, contada em "senhas.recusadasPorLimite", e o sistema volta a aceitar
+ *     logins quando a rajada termina;</li>
+ *     <li>a latência de abrirSessao é registrada a cada chamada.</li>
+ * </ul>
+ * Uso: {@code java VerificacaoSenhas [usuarios]}. As configurações de "jackut.senhas.*" são trocadas pela própria
+ * verificação. O motor de persistência é o de "jackut.persistencia". Termina com código 1 se alguma verificação
+ * falhar.
+ */
+public class VerificacaoSenhas {
+    private static final String SENHA = "segredo";
+    private static final String ITERACOES = "jackut.senhas.iteracoes";
+    private static final String THREADS = "jackut.senhas.threads";
+    private static final String PENDENTES = "jackut.senhas.maximoPendentes";
+
+    /**
+     * Logins simultâneos da rajada.
+     */
+    private static final int RAJADA = 12;
+
+    private final String[] logins;
+    private final List<String> falhas = Collections.synchronizedList(new ArrayList<>());
+
+    private VerificacaoSenhas(int usuarios) {
+        this.logins = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            logins[i] = "usuario" + i;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        VerificacaoSenhas verificacao = new VerificacaoSenhas(usuarios);
+        verificacao.executar();
+        if (!verificacao.falhas.isEmpty()) {
+            verificacao.falhas.forEach(System.out::println);
+            System.out.println(verificacao.falhas.size() + " falhas.");
+            System.exit(1);
+        }
+        System.out.println("\nVerificação das senhas concluída sem falhas.");
+    }
+
+    private void executar() throws InterruptedException {
+        formato();
+        recodificacao();
+        limite();
+    }
+
+    private void formato() {
+        Senhas senhas = new Senhas(new Metricas(), 1000, 1, 4, 0);
+        String primeira = senhas.codificar(SENHA);
+        String segunda = senhas.codificar(SENHA);
+        String formato = "pbkdf2-sha256\\$1000\\$[A-Za-z0-9+/]+=*\\$[A-Za-z0-9+/]+=*";
+        if (!primeira.matches(formato)) {
+            falhar("senha codificada fora do formato: " + primeira);
+        }
+        if (primeira.equals(segunda)) {
+            falhar("duas codificações da mesma senha iguais: " + primeira);
+        }
+        if (!senhas.verificar(SENHA, primeira) || !senhas.verificar(SENHA, segunda)) {
+            falhar("senha certa recusada");
+        }
+        if (senhas.verificar("outra", primeira)) {
+            falhar("senha errada aceita");
+        }
+        if (senhas.precisaRecodificar(primeira)) {
+            falhar("senha com o custo atual precisa ser recodificada");
+        }
+        if (!new Senhas(new Metricas(), 2000, 1, 4, 0).precisaRecodificar(primeira)) {
+            falhar("senha com outro custo não precisa ser recodificada");
+        }
+        if (!senhas.precisaRecodificar(SENHA) || !senhas.verificar(SENHA, SENHA)) {
+            falhar("senha em texto puro não é aceita e recodificada");
+        }
+    }
+
+    /**
+     * Cadastra os usuários com um custo e reabre o sistema com outro.
+     */
+    private void recodificacao() {
+        System.setProperty(ITERACOES, "1000");
+        Facade antes = new Facade();
+        antes.zerarSistema();
+        for (String login : logins) {
+            antes.criarUsuario(login, SENHA, login);
+        }
+        antes.encerrarSistema();
+
+        System.setProperty(ITERACOES, "2000");
+        Facade depois = new Facade();
+        Metricas metricas = depois.getMetricas();
+        comparar("iterações", metricas.get("senhas.iteracoes"), 2000);
+        for (String login : logins) {
+            depois.abrirSessao(login, SENHA);
+        }
+        comparar("senhas recodificadas no primeiro login", metricas.get("senhas.recodificadas"), logins.length);
+
+        // O segundo login verifica a senha recodificada e a guarda no cache; o terceiro a encontra lá
+        long acertos = metricas.get("senhas.cache.acertos");
+        for (int vez = 0; vez < 2; vez++) {
+            for (String login : logins) {
+                depois.abrirSessao(login, SENHA);
+            }
+        }
+        comparar("senhas recodificadas nos logins seguintes", metricas.get("senhas.recodificadas"), logins.length);
+        comparar("acertos do cache no terceiro login", metricas.get("senhas.cache.acertos") - acertos,
+                logins.length);
+
+        try {
+            depois.abrirSessao(logins[0], "errada");
+            falhar("login com senha errada aceito");
+        } catch (InformacaoInvalidaException e) {
+            // esperado
+        }
+        comparar("senhas recodificadas depois de um login errado", metricas.get("senhas.recodificadas"),
+                logins.length);
+        comparar("latências de abrirSessao registradas", metricas.get("sessoes.abrir.latencia.quantidade"),
+                3L * logins.length + 1);
+        depois.encerrarSistema();
+
+        Facade reaberta = new Facade();
+        for (String login : logins) {
+            reaberta.abrirSessao(login, SENHA);
+        }
+        comparar("senhas recodificadas depois de reabrir", reaberta.getMetricas().get("senhas.recodificadas"), 0);
+        reaberta.encerrarSistema();
+    }
+
+    /**
+     * Dispara logins simultâneos com senhas erradas, que nunca saem do cache, contra uma senha de custo alto.
+     */
+    private void limite() throws InterruptedException {
+        System.setProperty(ITERACOES, "200000");
+        System.setProperty(THREADS, "1");
+        System.setProperty(PENDENTES, "2");
+        Facade facade = new Facade();
+        Metricas metricas = facade.getMetricas();
+        facade.zerarSistema();
+        facade.criarUsuario("lento", SENHA, "Lento");
+        long recusadasAntes = metricas.get("senhas.recusadasPorLimite");
+
+        AtomicInteger limitados = new AtomicInteger();
+        AtomicInteger errados = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(RAJADA);
+        for (int i = 0; i < RAJADA; i++) {
+            String senha = "errada" + i;
+            pool.execute(() -> {
+                try {
+                    largada.await();
+                    facade.abrirSessao("lento", senha);
+                    falhar("login com senha errada aceito na rajada");
+                } catch (LimiteDeTentativasException e) {
+                    limitados.incrementAndGet();
+                } catch (InformacaoInvalidaException e) {
+                    errados.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        largada.countDown();
+        pool.shutdown();
+        if (!pool.awaitTermination(2, TimeUnit.MINUTES)) {
+            falhar("rajada de logins não terminou");
+        }
+
+        if (limitados.get() == 0) {
+            falhar("nenhum de " + RAJADA + " logins simultâneos recusado pelo limite");
+        }
+        if (errados.get() == 0) {
+            falhar("nenhum de " + RAJADA + " logins simultâneos verificado");
+        }
+        comparar("logins recusados pelo limite", metricas.get("senhas.recusadasPorLimite") - recusadasAntes,
+                limitados.get());
+        comparar("cálculos pendentes depois da rajada", metricas.get("senhas.pendentes"), 0);
+        try {
+            facade.abrirSessao("lento", SENHA);
+        } catch (RuntimeException e) {
+            falhar("login depois da rajada: " + e.getMessage());
+        }
+        System.out.println("Rajada: " + limitados.get() + " recusados pelo limite, " + errados.get()
+                + " verificados.");
+        facade.zerarSistema();
+        facade.encerrarSistema();
+    }
+
+    private void comparar(String caso, long obtido, long esperado) {
+        if (obtido != esperado) {
+            falhar(caso + ": " + obtido + ", esperado " + esperado);
+        }
+    }
+
+    private void falhar(String falha) {
+        falhas.add(falha);
+    }
+}
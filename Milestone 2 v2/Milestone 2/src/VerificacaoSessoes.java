@@ -0,0 +1,237 @@
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.Metricas;
+import br.ufal.ic.p2.jackut.exceptions.UsuarioNaoCadastradoException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Verificação das sessões em tabela ({@code SessoesEmTabela}) com prazos curtos, sem o EasyAccept, que não consegue
+ * esperar o tempo passar nem ler as métricas: abre sessões pela {@link Facade} e confere, a cada passo, quais
+ * continuam válidas e as métricas "sessoes.*".
+ * <ul>
+ *     <li>os IDs de sessão são tokens aleatórios de 22 caracteres base64url, todos diferentes e sem o login;</li>
+ *     <li>uma sessão sem uso expira depois do tempo de inatividade, e uma sessão usada a intervalos menores
+ *     continua válida;</li>
+ *     <li>uma sessão sempre em uso expira depois da duração máxima;</li>
+ *     <li>as sessões expiradas são liberadas da tabela;</li>
+ *     <li>acima do limite de sessões, as mais antigas são encerradas e a quantidade de sessões abertas não passa
+ *     do limite;</li>
+ *     <li>remover um usuário encerra todas as sessões dele, e só as dele, inclusive depois de ele ser cadastrado
+ *     de novo.</li>
+ * </ul>
+ * Uso: {@code java VerificacaoSessoes}. Os prazos e o limite são os de "jackut.sessoes.inatividadeMs",
+ * "jackut.sessoes.duracaoMaximaMs" e "jackut.sessoes.maximo", por padrão 400 ms, 2000 ms e 8 aqui; eles são lidos
+ * quando o sistema é criado. O motor de persistência é o de "jackut.persistencia"; "jackut.senhas.iteracoes" baixo
+ * acelera a abertura das sessões. Termina com código 1 se alguma verificação falhar.
+ */
+public class VerificacaoSessoes {
+    private static final String SENHA = "segredo";
+    private static final String INATIVIDADE = "jackut.sessoes.inatividadeMs";
+    private static final String DURACAO = "jackut.sessoes.duracaoMaximaMs";
+    private static final String MAXIMO = "jackut.sessoes.maximo";
+
+    /**
+     * Folga, em milissegundos, entre um prazo e o instante em que ele é conferido.
+     */
+    private static final long FOLGA = 150;
+
+    private final Facade facade = new Facade();
+    private final Metricas metricas = facade.getMetricas();
+    private final long inatividade = Long.getLong(INATIVIDADE);
+    private final long duracao = Long.getLong(DURACAO);
+    private final int maximo = Integer.getInteger(MAXIMO);
+    private final List<String> falhas = new ArrayList<>();
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("jackut.sessoes.modo", "tabela");
+        padrao(INATIVIDADE, "400");
+        padrao(DURACAO, "2000");
+        padrao(MAXIMO, "8");
+
+        VerificacaoSessoes verificacao = new VerificacaoSessoes();
+        verificacao.executar();
+        if (!verificacao.falhas.isEmpty()) {
+            verificacao.falhas.forEach(System.out::println);
+            System.out.println(verificacao.falhas.size() + " falhas.");
+            System.exit(1);
+        }
+        System.out.println("\nVerificação das sessões concluída sem falhas.");
+    }
+
+    private static void padrao(String propriedade, String valor) {
+        if (System.getProperty(propriedade) == null) {
+            System.setProperty(propriedade, valor);
+        }
+    }
+
+    private void executar() throws InterruptedException {
+        facade.zerarSistema();
+        comparar("limite de sessões", metricas.get("sessoes.maximo"), maximo);
+        formato();
+        expiracaoPorInatividade();
+        duracaoMaxima();
+        limite();
+        remocao();
+        System.out.println("Métricas: " + metricas.valores().entrySet().stream()
+                .filter(m -> m.getKey().startsWith("sessoes.") && !m.getKey().contains("latencia")).toList());
+        facade.encerrarSistema();
+    }
+
+    /**
+     * Abre várias sessões do mesmo usuário e confere o formato dos IDs.
+     */
+    private void formato() {
+        facade.criarUsuario("formato", SENHA, "Formato");
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            String id = facade.abrirSessao("formato", SENHA);
+            if (!id.matches("[A-Za-z0-9_-]{22}")) {
+                falhar("ID de sessão fora do formato: " + id);
+            }
+            if (id.contains("formato")) {
+                falhar("ID de sessão contém o login: " + id);
+            }
+            if (!ids.add(id)) {
+                falhar("ID de sessão repetido: " + id);
+            }
+        }
+        facade.zerarSistema();
+        comparar("sessões abertas depois de zerar o sistema", metricas.get("sessoes.abertas"), 0);
+    }
+
+    /**
+     * Uma sessão é usada a cada quarto do tempo de inatividade por duas vezes esse tempo, e outra não é usada.
+     */
+    private void expiracaoPorInatividade() throws InterruptedException {
+        facade.criarUsuario("ativo", SENHA, "Ativo");
+        facade.criarUsuario("parado", SENHA, "Parado");
+        String ativa = facade.abrirSessao("ativo", SENHA);
+        String parada = facade.abrirSessao("parado", SENHA);
+        long inicio = System.currentTimeMillis();
+        while (System.currentTimeMillis() - inicio < 2 * inatividade) {
+            Thread.sleep(inatividade / 4);
+            valida("sessão usada a cada " + inatividade / 4 + " ms", ativa);
+        }
+        invalida("sessão sem uso por " + 2 * inatividade + " ms", parada);
+
+        long expiradas = metricas.get("sessoes.expiradas");
+        Thread.sleep(inatividade + FOLGA);
+        invalida("sessão sem uso por " + (inatividade + FOLGA) + " ms", ativa);
+        // A abertura percorre a roda e libera as sessões cujo prazo passou
+        String nova = facade.abrirSessao("ativo", SENHA);
+        comparar("sessões expiradas liberadas", metricas.get("sessoes.expiradas") - expiradas, 2);
+        comparar("sessões abertas depois da expiração", metricas.get("sessoes.abertas"), 1);
+        valida("sessão aberta depois da expiração", nova);
+        facade.zerarSistema();
+    }
+
+    /**
+     * Uma sessão é usada a cada quarto do tempo de inatividade até passar da duração máxima.
+     */
+    private void duracaoMaxima() throws InterruptedException {
+        facade.criarUsuario("longo", SENHA, "Longo");
+        String id = facade.abrirSessao("longo", SENHA);
+        long inicio = System.currentTimeMillis();
+        long decorrido;
+        while ((decorrido = System.currentTimeMillis() - inicio) < duracao + FOLGA) {
+            if (decorrido < duracao - FOLGA && !valida(id)) {
+                falhar("sessão em uso expirou depois de " + decorrido + " ms, duração máxima " + duracao + " ms");
+                break;
+            }
+            Thread.sleep(inatividade / 4);
+        }
+        invalida("sessão em uso por " + (duracao + FOLGA) + " ms", id);
+        facade.zerarSistema();
+    }
+
+    /**
+     * Abre uma sessão para cada usuário, quatro a mais que o limite, em instantes diferentes.
+     */
+    private void limite() throws InterruptedException {
+        long despejadas = metricas.get("sessoes.despejadas");
+        String[] ids = new String[maximo + 4];
+        for (int i = 0; i < ids.length; i++) {
+            facade.criarUsuario("usuario" + i, SENHA, "Usuário " + i);
+            ids[i] = facade.abrirSessao("usuario" + i, SENHA);
+            if (metricas.get("sessoes.abertas") > maximo) {
+                falhar(metricas.get("sessoes.abertas") + " sessões abertas, limite " + maximo);
+            }
+            Thread.sleep(20);
+        }
+        comparar("sessões despejadas acima do limite", metricas.get("sessoes.despejadas") - despejadas, 4);
+        comparar("sessões abertas no limite", metricas.get("sessoes.abertas"), maximo);
+        for (int i = 0; i < ids.length; i++) {
+            if (i < 4) {
+                invalida("sessão mais antiga que as " + maximo + " últimas", ids[i]);
+            } else {
+                valida("sessão entre as " + maximo + " últimas", ids[i]);
+            }
+        }
+        facade.zerarSistema();
+    }
+
+    /**
+     * Remove um usuário com três sessões abertas por uma delas; as sessões de outro usuário continuam válidas.
+     */
+    private void remocao() {
+        facade.criarUsuario("removido", SENHA, "Removido");
+        facade.criarUsuario("outro", SENHA, "Outro");
+        String[] doRemovido = new String[3];
+        for (int i = 0; i < doRemovido.length; i++) {
+            doRemovido[i] = facade.abrirSessao("removido", SENHA);
+        }
+        String[] doOutro = {facade.abrirSessao("outro", SENHA), facade.abrirSessao("outro", SENHA)};
+
+        facade.removerUsuario(doRemovido[1]);
+        facade.aguardarExclusoes();
+        for (String id : doRemovido) {
+            invalida("sessão de usuário removido", id);
+        }
+        for (String id : doOutro) {
+            valida("sessão de outro usuário depois da remoção", id);
+        }
+        comparar("sessões abertas depois da remoção", metricas.get("sessoes.abertas"), doOutro.length);
+
+        facade.criarUsuario("removido", SENHA, "Removido de novo");
+        String nova = facade.abrirSessao("removido", SENHA);
+        for (String id : doRemovido) {
+            invalida("sessão de usuário removido e cadastrado de novo", id);
+        }
+        valida("sessão de usuário cadastrado de novo", nova);
+        facade.zerarSistema();
+    }
+
+    private boolean valida(String id) {
+        try {
+            facade.contarPaqueras(id);
+            return true;
+        } catch (UsuarioNaoCadastradoException e) {
+            return false;
+        }
+    }
+
+    private void valida(String caso, String id) {
+        if (!valida(id)) {
+            falhar(caso + ": recusada");
+        }
+    }
+
+    private void invalida(String caso, String id) {
+        if (valida(id)) {
+            falhar(caso + ": aceita");
+        }
+    }
+
+    private void comparar(String caso, long obtido, long esperado) {
+        if (obtido != esperado) {
+            falhar(caso + ": " + obtido + ", esperado " + esperado);
+        }
+    }
+
+    private void falhar(String falha) {
+        falhas.add(falha);
+    }
+}
@@ -0,0 +1,278 @@
+import br.ufal.ic.p2.jackut.DicionarioLogins;
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.Metricas;
+import br.ufal.ic.p2.jackut.Sessoes;
+import br.ufal.ic.p2.jackut.SessoesAssinadas;
+import br.ufal.ic.p2.jackut.SessoesEmTabela;
+import br.ufal.ic.p2.jackut.exceptions.UsuarioNaoCadastradoException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Verificação das sessões assinadas ({@link SessoesAssinadas}) com duração curta e chaves fixas, sem o EasyAccept,
+ * que não consegue esperar o tempo passar nem trocar as chaves entre um sistema e outro: abre sessões pela
+ * {@link Facade} e confere quais tokens cada sistema aceita.
+ * <ul>
+ *     <li>os tokens são base64url, diferentes entre si, e trazem a versão e o login do usuário;</li>
+ *     <li>um token com qualquer byte alterado, truncado ou assinado com outra chave é recusado;</li>
+ *     <li>um token expira depois da duração máxima, mesmo sem uso;</li>
+ *     <li>rotação: um sistema reaberto com uma chave nova acrescentada continua aceitando os tokens das chaves
+ *     anteriores, até que elas saiam das últimas quatro, e os seus tokens novos não são aceitos por quem ainda não
+ *     conhece a chave nova;</li>
+ *     <li>revogação: remover um usuário recusa todos os tokens dele emitidos até ali, e só os dele, inclusive
+ *     depois de ele ser cadastrado de novo; a revogação é descartada quando esses tokens já teriam expirado.</li>
+ * </ul>
+ * Ao final, compara o custo de validar um token assinado com o de consultar a tabela de {@link SessoesEmTabela}.
+ * <p>
+ * Uso: {@code java VerificacaoSessoesAssinadas}. A duração é a de "jackut.sessoes.duracaoMaximaMs", por padrão
+ * 1000 ms aqui (a rotação usa uma duração longa); as chaves de "jackut.sessoes.chaves" são trocadas pela própria
+ * verificação. O motor de persistência é o de "jackut.persistencia"; "jackut.senhas.iteracoes" baixo acelera a
+ * abertura das sessões. Termina com código 1 se alguma verificação falhar.
+ * </p>
+ */
+public class VerificacaoSessoesAssinadas {
+    private static final String SENHA = "segredo";
+    private static final String DURACAO = "jackut.sessoes.duracaoMaximaMs";
+    private static final String CHAVES = "jackut.sessoes.chaves";
+
+    /**
+     * Folga, em milissegundos, entre um prazo e o instante em que ele é conferido.
+     */
+    private static final long FOLGA = 150;
+
+    /**
+     * Validações medidas na comparação com a tabela de sessões.
+     */
+    private static final int VALIDACOES = 500_000;
+
+    private final long duracao = Long.getLong(DURACAO);
+    private final List<String> falhas = new ArrayList<>();
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("jackut.sessoes.modo", "assinada");
+        if (System.getProperty(DURACAO) == null) {
+            System.setProperty(DURACAO, "1000");
+        }
+
+        VerificacaoSessoesAssinadas verificacao = new VerificacaoSessoesAssinadas();
+        verificacao.executar();
+        if (!verificacao.falhas.isEmpty()) {
+            verificacao.falhas.forEach(System.out::println);
+            System.out.println(verificacao.falhas.size() + " falhas.");
+            System.exit(1);
+        }
+        System.out.println("\nVerificação das sessões assinadas concluída sem falhas.");
+    }
+
+    private void executar() throws InterruptedException {
+        Facade facade = abrir(1, 1);
+        facade.zerarSistema();
+        formato(facade);
+        alteracoes(facade);
+        expiracao(facade);
+        revogacao(facade);
+        facade.encerrarSistema();
+        rotacao();
+        comparar();
+    }
+
+    /**
+     * Cria um sistema configurado com as chaves de primeira a ultima (só as quatro últimas ficam valendo), que
+     * assina com a última.
+     */
+    private static Facade abrir(int primeira, int ultima) {
+        List<String> chaves = new ArrayList<>();
+        for (int i = primeira; i <= ultima; i++) {
+            byte[] segredo = new byte[32];
+            Arrays.fill(segredo, (byte) i);
+            chaves.add(Base64.getEncoder().encodeToString(segredo));
+        }
+        System.setProperty(CHAVES, String.join(",", chaves));
+        return new Facade();
+    }
+
+    private void formato(Facade facade) {
+        facade.criarUsuario("formato", SENHA, "Formato");
+        Set<String> tokens = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            String token = facade.abrirSessao("formato", SENHA);
+            if (!token.matches("[A-Za-z0-9_-]+")) {
+                falhar("token fora do formato base64url: " + token);
+                continue;
+            }
+            byte[] bytes = Base64.getUrlDecoder().decode(token);
+            if (bytes[0] != 1) {
+                falhar("token com versão " + bytes[0] + ": " + token);
+            }
+            if (!new String(bytes, StandardCharsets.UTF_8).contains("formato")) {
+                falhar("token sem o login: " + token);
+            }
+            if (!tokens.add(token)) {
+                falhar("token repetido: " + token);
+            }
+        }
+    }
+
+    /**
+     * Altera cada byte de um token válido, um de cada vez.
+     */
+    private void alteracoes(Facade facade) {
+        String token = facade.abrirSessao("formato", SENHA);
+        valido(facade, "token sem alterações", token);
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] alterado = bytes.clone();
+            alterado[i] ^= 1;
+            invalido(facade, "token com o byte " + i + " alterado", Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(alterado));
+        }
+        invalido(facade, "token truncado", token.substring(0, token.length() - 2));
+        invalido(facade, "token que não é base64", token + "!");
+    }
+
+    private void expiracao(Facade facade) throws InterruptedException {
+        String token = facade.abrirSessao("formato", SENHA);
+        Thread.sleep(duracao - FOLGA);
+        valido(facade, "token perto da duração máxima", token);
+        Thread.sleep(2 * FOLGA);
+        invalido(facade, "token depois da duração máxima", token);
+    }
+
+    /**
+     * Remove um usuário com três tokens; os tokens de outro usuário continuam valendo.
+     */
+    private void revogacao(Facade facade) throws InterruptedException {
+        Metricas metricas = facade.getMetricas();
+        facade.criarUsuario("removido", SENHA, "Removido");
+        facade.criarUsuario("outro", SENHA, "Outro");
+        String[] doRemovido = new String[3];
+        for (int i = 0; i < doRemovido.length; i++) {
+            doRemovido[i] = facade.abrirSessao("removido", SENHA);
+        }
+        String doOutro = facade.abrirSessao("outro", SENHA);
+
+        facade.removerUsuario(doRemovido[0]);
+        facade.aguardarExclusoes();
+        for (String token : doRemovido) {
+            invalido(facade, "token de usuário removido", token);
+        }
+        valido(facade, "token de outro usuário depois da remoção", doOutro);
+        comparar("revogações guardadas", metricas.get("sessoes.revogacoes"), 1);
+
+        facade.criarUsuario("removido", SENHA, "Removido de novo");
+        String novo = facade.abrirSessao("removido", SENHA);
+        for (String token : doRemovido) {
+            invalido(facade, "token de usuário removido e cadastrado de novo", token);
+        }
+        valido(facade, "token de usuário cadastrado de novo", novo);
+
+        // Depois da duração máxima, nenhum token revogado pode estar válido e a revogação é descartada
+        Thread.sleep(duracao + FOLGA);
+        facade.removerUsuario(facade.abrirSessao("outro", SENHA));
+        facade.aguardarExclusoes();
+        comparar("revogações guardadas depois da duração máxima", metricas.get("sessoes.revogacoes"), 1);
+    }
+
+    /**
+     * Reabre o sistema acrescentando uma chave de cada vez, como numa implantação com rotação de chaves.
+     */
+    private void rotacao() {
+        // Uma duração longa, para que nenhum token expire durante as reaberturas
+        System.setProperty(DURACAO, String.valueOf(10 * 60 * 1000));
+        Facade primeira = abrir(1, 1);
+        primeira.zerarSistema();
+        primeira.criarUsuario("rotacao", SENHA, "Rotação");
+        String[] tokens = new String[6];
+        tokens[1] = primeira.abrirSessao("rotacao", SENHA);
+        primeira.encerrarSistema();
+
+        for (int ultima = 2; ultima < tokens.length; ultima++) {
+            Facade facade = abrir(1, ultima);
+            tokens[ultima] = facade.abrirSessao("rotacao", SENHA);
+            for (int chave = 1; chave <= ultima; chave++) {
+                String caso = "token da chave " + chave + " com as chaves até " + ultima;
+                if (chave > ultima - 4) {
+                    valido(facade, caso, tokens[chave]);
+                } else {
+                    invalido(facade, caso, tokens[chave]);
+                }
+            }
+            facade.encerrarSistema();
+
+            Facade anterior = abrir(1, ultima - 1);
+            invalido(anterior, "token da chave " + ultima + " com as chaves até " + (ultima - 1), tokens[ultima]);
+            anterior.encerrarSistema();
+        }
+
+        // Mesmo ID de chave, segredo diferente
+        Facade outra = abrir(9, 9);
+        invalido(outra, "token da chave 1 com outra chave no lugar", tokens[1]);
+        outra.encerrarSistema();
+    }
+
+    /**
+     * Mede a validação de tokens assinados e de IDs da tabela de sessões, com a mesma quantidade de usuários.
+     */
+    private static void comparar() {
+        DicionarioLogins dicionario = new DicionarioLogins();
+        Sessoes tabela = new SessoesEmTabela(dicionario, new Metricas(), 60_000, 60_000, 100_000);
+        Sessoes assinadas = new SessoesAssinadas(new Metricas(), 60_000, null);
+        for (int rodada = 0; rodada < 3; rodada++) {
+            double ns1 = medir(tabela);
+            double ns2 = medir(assinadas);
+            if (rodada == 2) {
+                System.out.printf("Validação: tabela %.0f ns, token assinado %.0f ns%n", ns1, ns2);
+            }
+        }
+    }
+
+    private static double medir(Sessoes sessoes) {
+        String[] tokens = new String[1000];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = sessoes.abrir("usuario" + i);
+        }
+        int encontrados = 0;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < VALIDACOES; i++) {
+            encontrados += sessoes.login(tokens[i % tokens.length]) != null ? 1 : 0;
+        }
+        long fim = System.nanoTime();
+        if (encontrados != VALIDACOES) {
+            throw new IllegalStateException(encontrados + " de " + VALIDACOES + " tokens válidos");
+        }
+        return (fim - inicio) / (double) VALIDACOES;
+    }
+
+    private void valido(Facade facade, String caso, String token) {
+        try {
+            facade.contarPaqueras(token);
+        } catch (UsuarioNaoCadastradoException e) {
+            falhar(caso + ": recusado");
+        }
+    }
+
+    private void invalido(Facade facade, String caso, String token) {
+        try {
+            facade.contarPaqueras(token);
+            falhar(caso + ": aceito");
+        } catch (UsuarioNaoCadastradoException e) {
+            // esperado
+        }
+    }
+
+    private void comparar(String caso, long obtido, long esperado) {
+        if (obtido != esperado) {
+            falhar(caso + ": " + obtido + ", esperado " + esperado);
+        }
+    }
+
+    private void falhar(String falha) {
+        falhas.add(falha);
+    }
+}
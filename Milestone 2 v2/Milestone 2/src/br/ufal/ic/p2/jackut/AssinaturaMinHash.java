@@ -0,0 +1,156 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * Assinatura MinHash de um conjunto de IDs do {@link DicionarioLogins}: para cada uma de {@link #TAMANHO} funções
+ * de hash, o menor hash entre os elementos do conjunto.
+ * <p>
+ * A fração de posições iguais nas assinaturas de dois conjuntos estima a similaridade de Jaccard entre eles
+ * (tamanho da interseção dividido pelo tamanho da união) em tempo constante, sem percorrer os conjuntos, com erro
+ * padrão de cerca de 1/8 (um sobre a raiz de {@link #TAMANHO}). A assinatura da união de vários conjuntos é o
+ * mínimo, posição a posição, das assinaturas deles.
+ * </p>
+ * <p>
+ * Adicionar um elemento custa {@link #TAMANHO} hashes. Remover só exige percorrer o conjunto quando o elemento
+ * removido era o mínimo de alguma posição, o que acontece com probabilidade de cerca de {@link #TAMANHO}/n.
+ * Não é thread-safe.
+ * </p>
+ */
+final class AssinaturaMinHash {
+    /**
+     * Quantidade de funções de hash (posições da assinatura).
+     */
+    static final int TAMANHO = 64;
+
+    private static final int[] SEMENTES = new int[TAMANHO];
+
+    static {
+        int s = 0x2545F491;
+        for (int i = 0; i < TAMANHO; i++) {
+            s = misturar(s + 0x9E3779B9);
+            SEMENTES[i] = s;
+        }
+    }
+
+    private final int[] minimos = new int[TAMANHO];
+
+    /**
+     * Cria a assinatura de um conjunto vazio.
+     */
+    AssinaturaMinHash() {
+        Arrays.fill(minimos, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finalizador do MurmurHash3, usado como família de hashes com uma semente por posição.
+     */
+    private static int misturar(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int hash(int id, int posicao) {
+        return misturar(id ^ SEMENTES[posicao]);
+    }
+
+    /**
+     * Atualiza a assinatura com um elemento adicionado ao conjunto.
+     *
+     * @param id Elemento adicionado
+     */
+    void adicionar(int id) {
+        for (int i = 0; i < TAMANHO; i++) {
+            int h = hash(id, i);
+            if (h < minimos[i]) {
+                minimos[i] = h;
+            }
+        }
+    }
+
+    /**
+     * Atualiza a assinatura com um elemento removido do conjunto. As posições em que ele era o mínimo são
+     * recalculadas percorrendo o conjunto; as demais não mudam.
+     *
+     * @param id       Elemento removido
+     * @param conjunto Conjunto já sem o elemento
+     */
+    void remover(int id, ConjuntoInt conjunto) {
+        long afetadas = 0;
+        for (int i = 0; i < TAMANHO; i++) {
+            if (hash(id, i) == minimos[i]) {
+                afetadas |= 1L << i;
+                minimos[i] = Integer.MAX_VALUE;
+            }
+        }
+        if (afetadas == 0) {
+            return;
+        }
+        for (PrimitiveIterator.OfInt it = conjunto.iterador(); it.hasNext(); ) {
+            int elemento = it.nextInt();
+            for (long p = afetadas; p != 0; p &= p - 1) {
+                int i = Long.numberOfTrailingZeros(p);
+                int h = hash(elemento, i);
+                if (h < minimos[i]) {
+                    minimos[i] = h;
+                }
+            }
+        }
+    }
+
+    /**
+     * Refaz a assinatura a partir de todo o conjunto.
+     *
+     * @param conjunto Conjunto
+     */
+    void recalcular(ConjuntoInt conjunto) {
+        Arrays.fill(minimos, Integer.MAX_VALUE);
+        for (PrimitiveIterator.OfInt it = conjunto.iterador(); it.hasNext(); ) {
+            adicionar(it.nextInt());
+        }
+    }
+
+    /**
+     * Acrescenta a esta assinatura os elementos de outro conjunto, tornando-a a assinatura da união.
+     *
+     * @param outra Assinatura do outro conjunto
+     */
+    void unir(AssinaturaMinHash outra) {
+        for (int i = 0; i < TAMANHO; i++) {
+            minimos[i] = Math.min(minimos[i], outra.minimos[i]);
+        }
+    }
+
+    /**
+     * Estima a similaridade de Jaccard com outro conjunto.
+     *
+     * @param outra Assinatura do outro conjunto
+     * @return Similaridade estimada, de 0 a 1; 0 se algum dos conjuntos for vazio
+     */
+    double similaridade(AssinaturaMinHash outra) {
+        int iguais = 0;
+        for (int i = 0; i < TAMANHO; i++) {
+            int m = minimos[i];
+            if (m == outra.minimos[i] && m != Integer.MAX_VALUE) {
+                iguais++;
+            }
+        }
+        return (double) iguais / TAMANHO;
+    }
+
+    /**
+     * Copia a assinatura.
+     *
+     * @return Cópia independente
+     */
+    AssinaturaMinHash copiar() {
+        AssinaturaMinHash copia = new AssinaturaMinHash();
+        System.arraycopy(minimos, 0, copia.minimos, 0, TAMANHO);
+        return copia;
+    }
+}
@@ -0,0 +1,428 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto de inteiros não negativos (IDs do {@link DicionarioLogins}) guardado como um bitmap compactado, no
+ * estilo do Roaring: os valores são divididos em blocos pelos 16 bits altos, e cada bloco guarda os 16 bits baixos
+ * em um vetor ordenado, se tiver até {@value #MAXIMO_VETOR} valores, ou em um mapa de 65536 bits, se tiver mais.
+ * <p>
+ * Conjuntos pequenos ou esparsos ocupam cerca de 2 bytes por valor, e os densos no máximo 8 KB por bloco. A
+ * interseção e a união são feitas bloco a bloco, sem percorrer os valores um a um quando os dois blocos são mapas
+ * de bits (64 valores por operação), e os blocos ausentes em um dos lados são pulados inteiros.
+ * </p>
+ * <p>
+ * Não é thread-safe.
+ * </p>
+ */
+final class BitmapCompactado {
+    /**
+     * Quantidade máxima de valores de um bloco guardado como vetor.
+     */
+    private static final int MAXIMO_VETOR = 4096;
+
+    /**
+     * Palavras de um bloco guardado como mapa de bits (65536 bits).
+     */
+    private static final int PALAVRAS = 1024;
+
+    private char[] chaves = new char[0];
+    private Object[] blocos = new Object[0];
+    private int[] tamanhos = new int[0];
+    private int n;
+
+    /**
+     * Cria um conjunto vazio.
+     */
+    BitmapCompactado() {
+    }
+
+    /**
+     * Adiciona um valor.
+     *
+     * @param valor Valor (não negativo)
+     * @return true se o valor ainda não estava no conjunto
+     */
+    boolean adicionar(int valor) {
+        char chave = (char) (valor >>> 16);
+        char baixo = (char) valor;
+        int i = Arrays.binarySearch(chaves, 0, n, chave);
+        if (i < 0) {
+            inserirBloco(-i - 1, chave, new char[]{baixo}, 1);
+            return true;
+        }
+        int t = tamanhos[i];
+        if (blocos[i] instanceof long[]) {
+            long[] bits = (long[]) blocos[i];
+            long mascara = 1L << baixo;
+            if ((bits[baixo >>> 6] & mascara) != 0) {
+                return false;
+            }
+            bits[baixo >>> 6] |= mascara;
+            tamanhos[i] = t + 1;
+            return true;
+        }
+
+        char[] vetor = (char[]) blocos[i];
+        int p = Arrays.binarySearch(vetor, 0, t, baixo);
+        if (p >= 0) {
+            return false;
+        }
+        p = -p - 1;
+        if (t == MAXIMO_VETOR) {
+            long[] bits = paraBits(vetor, t);
+            bits[baixo >>> 6] |= 1L << baixo;
+            blocos[i] = bits;
+        } else {
+            if (t == vetor.length) {
+                vetor = Arrays.copyOf(vetor, Math.min(MAXIMO_VETOR, t * 2));
+                blocos[i] = vetor;
+            }
+            System.arraycopy(vetor, p, vetor, p + 1, t - p);
+            vetor[p] = baixo;
+        }
+        tamanhos[i] = t + 1;
+        return true;
+    }
+
+    /**
+     * Remove um valor.
+     *
+     * @param valor Valor
+     * @return true se o valor estava no conjunto
+     */
+    boolean remover(int valor) {
+        char chave = (char) (valor >>> 16);
+        char baixo = (char) valor;
+        int i = Arrays.binarySearch(chaves, 0, n, chave);
+        if (i < 0) {
+            return false;
+        }
+        int t = tamanhos[i];
+        if (blocos[i] instanceof long[]) {
+            long[] bits = (long[]) blocos[i];
+            long mascara = 1L << baixo;
+            if ((bits[baixo >>> 6] & mascara) == 0) {
+                return false;
+            }
+            bits[baixo >>> 6] &= ~mascara;
+            // Só volta a ser vetor bem abaixo do limite, para não converter a cada inclusão e remoção alternadas
+            if (t - 1 <= MAXIMO_VETOR / 2) {
+                blocos[i] = paraVetor(bits, t - 1);
+            }
+        } else {
+            char[] vetor = (char[]) blocos[i];
+            int p = Arrays.binarySearch(vetor, 0, t, baixo);
+            if (p < 0) {
+                return false;
+            }
+            System.arraycopy(vetor, p + 1, vetor, p, t - p - 1);
+        }
+        if (t == 1) {
+            removerBloco(i);
+        } else {
+            tamanhos[i] = t - 1;
+        }
+        return true;
+    }
+
+    /**
+     * Verifica se um valor está no conjunto.
+     *
+     * @param valor Valor
+     * @return true se estiver
+     */
+    boolean contem(int valor) {
+        char baixo = (char) valor;
+        int i = Arrays.binarySearch(chaves, 0, n, (char) (valor >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        if (blocos[i] instanceof long[]) {
+            return (((long[]) blocos[i])[baixo >>> 6] & (1L << baixo)) != 0;
+        }
+        return Arrays.binarySearch((char[]) blocos[i], 0, tamanhos[i], baixo) >= 0;
+    }
+
+    /**
+     * Quantidade de valores.
+     *
+     * @return Tamanho do conjunto
+     */
+    int tamanho() {
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            total += tamanhos[i];
+        }
+        return total;
+    }
+
+    /**
+     * Verifica se o conjunto está vazio.
+     *
+     * @return true se não houver valores
+     */
+    boolean vazio() {
+        return n == 0;
+    }
+
+    /**
+     * Copia o conjunto.
+     *
+     * @return Cópia independente
+     */
+    BitmapCompactado copiar() {
+        BitmapCompactado copia = new BitmapCompactado();
+        copia.chaves = Arrays.copyOf(chaves, n);
+        copia.tamanhos = Arrays.copyOf(tamanhos, n);
+        copia.blocos = new Object[n];
+        for (int i = 0; i < n; i++) {
+            copia.blocos[i] = blocos[i] instanceof long[]
+                    ? ((long[]) blocos[i]).clone()
+                    : Arrays.copyOf((char[]) blocos[i], tamanhos[i]);
+        }
+        copia.n = n;
+        return copia;
+    }
+
+    /**
+     * Calcula a interseção com outro conjunto, sem alterar nenhum dos dois.
+     *
+     * @param outro Outro conjunto
+     * @return Novo conjunto com os valores presentes nos dois
+     */
+    BitmapCompactado e(BitmapCompactado outro) {
+        BitmapCompactado resultado = new BitmapCompactado();
+        int i = 0;
+        int j = 0;
+        while (i < n && j < outro.n) {
+            if (chaves[i] < outro.chaves[j]) {
+                i++;
+            } else if (chaves[i] > outro.chaves[j]) {
+                j++;
+            } else {
+                resultado.intersecao(chaves[i], blocos[i], tamanhos[i], outro.blocos[j], outro.tamanhos[j]);
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Acrescenta a este conjunto os valores de outro.
+     *
+     * @param outro Outro conjunto (não é alterado)
+     */
+    void ou(BitmapCompactado outro) {
+        int total = n + outro.n;
+        char[] novasChaves = new char[total];
+        Object[] novosBlocos = new Object[total];
+        int[] novosTamanhos = new int[total];
+        int k = 0;
+        int i = 0;
+        int j = 0;
+        while (i < n || j < outro.n) {
+            if (j == outro.n || (i < n && chaves[i] < outro.chaves[j])) {
+                novasChaves[k] = chaves[i];
+                novosBlocos[k] = blocos[i];
+                novosTamanhos[k++] = tamanhos[i++];
+            } else if (i == n || chaves[i] > outro.chaves[j]) {
+                novasChaves[k] = outro.chaves[j];
+                novosBlocos[k] = outro.blocos[j] instanceof long[]
+                        ? ((long[]) outro.blocos[j]).clone()
+                        : Arrays.copyOf((char[]) outro.blocos[j], outro.tamanhos[j]);
+                novosTamanhos[k++] = outro.tamanhos[j++];
+            } else {
+                novasChaves[k] = chaves[i];
+                uniao(blocos[i], tamanhos[i], outro.blocos[j], outro.tamanhos[j], novosBlocos, novosTamanhos, k++);
+                i++;
+                j++;
+            }
+        }
+        chaves = novasChaves;
+        blocos = novosBlocos;
+        tamanhos = novosTamanhos;
+        n = k;
+    }
+
+    /**
+     * Percorre os valores em ordem crescente.
+     *
+     * @param destino Recebe cada valor
+     */
+    void paraCada(IntConsumer destino) {
+        for (int i = 0; i < n; i++) {
+            int alto = chaves[i] << 16;
+            if (blocos[i] instanceof long[]) {
+                long[] bits = (long[]) blocos[i];
+                for (int w = 0; w < PALAVRAS; w++) {
+                    for (long palavra = bits[w]; palavra != 0; palavra &= palavra - 1) {
+                        destino.accept(alto | (w << 6) | Long.numberOfTrailingZeros(palavra));
+                    }
+                }
+            } else {
+                char[] vetor = (char[]) blocos[i];
+                for (int p = 0, t = tamanhos[i]; p < t; p++) {
+                    destino.accept(alto | vetor[p]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Acrescenta ao final a interseção de dois blocos com a mesma chave, se ela não for vazia.
+     */
+    private void intersecao(char chave, Object a, int ta, Object b, int tb) {
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] x = (long[]) a;
+            long[] y = (long[]) b;
+            long[] bits = new long[PALAVRAS];
+            int t = 0;
+            for (int w = 0; w < PALAVRAS; w++) {
+                bits[w] = x[w] & y[w];
+                t += Long.bitCount(bits[w]);
+            }
+            if (t > 0) {
+                inserirBloco(n, chave, t <= MAXIMO_VETOR ? paraVetor(bits, t) : bits, t);
+            }
+            return;
+        }
+        if (a instanceof long[]) {
+            intersecao(chave, b, tb, a, ta);
+            return;
+        }
+
+        char[] vetor = (char[]) a;
+        char[] saida = new char[Math.min(ta, tb)];
+        int t = 0;
+        if (b instanceof long[]) {
+            long[] bits = (long[]) b;
+            for (int p = 0; p < ta; p++) {
+                char v = vetor[p];
+                if ((bits[v >>> 6] & (1L << v)) != 0) {
+                    saida[t++] = v;
+                }
+            }
+        } else if (ta * 32 < tb || tb * 32 < ta) {
+            // Tamanhos muito diferentes: cada valor do menor é procurado no maior
+            char[] menor = ta <= tb ? vetor : (char[]) b;
+            char[] maior = ta <= tb ? (char[]) b : vetor;
+            int tMenor = Math.min(ta, tb);
+            int tMaior = Math.max(ta, tb);
+            for (int p = 0, inicio = 0; p < tMenor && inicio < tMaior; p++) {
+                int q = Arrays.binarySearch(maior, inicio, tMaior, menor[p]);
+                if (q >= 0) {
+                    saida[t++] = menor[p];
+                    inicio = q + 1;
+                } else {
+                    inicio = -q - 1;
+                }
+            }
+        } else {
+            char[] outro = (char[]) b;
+            for (int p = 0, q = 0; p < ta && q < tb; ) {
+                if (vetor[p] < outro[q]) {
+                    p++;
+                } else if (vetor[p] > outro[q]) {
+                    q++;
+                } else {
+                    saida[t++] = vetor[p++];
+                    q++;
+                }
+            }
+        }
+        if (t > 0) {
+            inserirBloco(n, chave, saida, t);
+        }
+    }
+
+    /**
+     * Guarda em destino[k] a união de dois blocos com a mesma chave.
+     */
+    private static void uniao(Object a, int ta, Object b, int tb, Object[] destino, int[] tamanhosDestino, int k) {
+        if (a instanceof char[] && b instanceof char[] && ta + tb <= MAXIMO_VETOR) {
+            char[] x = (char[]) a;
+            char[] y = (char[]) b;
+            char[] saida = new char[ta + tb];
+            int t = 0;
+            int p = 0;
+            int q = 0;
+            while (p < ta || q < tb) {
+                if (q == tb || (p < ta && x[p] < y[q])) {
+                    saida[t++] = x[p++];
+                } else if (p == ta || x[p] > y[q]) {
+                    saida[t++] = y[q++];
+                } else {
+                    saida[t++] = x[p++];
+                    q++;
+                }
+            }
+            destino[k] = saida;
+            tamanhosDestino[k] = t;
+            return;
+        }
+
+        long[] bits = a instanceof long[] ? (long[]) a : paraBits((char[]) a, ta);
+        if (b instanceof long[]) {
+            long[] y = (long[]) b;
+            for (int w = 0; w < PALAVRAS; w++) {
+                bits[w] |= y[w];
+            }
+        } else {
+            char[] y = (char[]) b;
+            for (int q = 0; q < tb; q++) {
+                bits[y[q] >>> 6] |= 1L << y[q];
+            }
+        }
+        int t = 0;
+        for (long palavra : bits) {
+            t += Long.bitCount(palavra);
+        }
+        destino[k] = bits;
+        tamanhosDestino[k] = t;
+    }
+
+    private static long[] paraBits(char[] vetor, int t) {
+        long[] bits = new long[PALAVRAS];
+        for (int p = 0; p < t; p++) {
+            bits[vetor[p] >>> 6] |= 1L << vetor[p];
+        }
+        return bits;
+    }
+
+    private static char[] paraVetor(long[] bits, int t) {
+        char[] vetor = new char[t];
+        int p = 0;
+        for (int w = 0; w < PALAVRAS; w++) {
+            for (long palavra = bits[w]; palavra != 0; palavra &= palavra - 1) {
+                vetor[p++] = (char) ((w << 6) | Long.numberOfTrailingZeros(palavra));
+            }
+        }
+        return vetor;
+    }
+
+    private void inserirBloco(int i, char chave, Object bloco, int tamanho) {
+        if (n == chaves.length) {
+            int capacidade = Math.max(4, n * 2);
+            chaves = Arrays.copyOf(chaves, capacidade);
+            blocos = Arrays.copyOf(blocos, capacidade);
+            tamanhos = Arrays.copyOf(tamanhos, capacidade);
+        }
+        System.arraycopy(chaves, i, chaves, i + 1, n - i);
+        System.arraycopy(blocos, i, blocos, i + 1, n - i);
+        System.arraycopy(tamanhos, i, tamanhos, i + 1, n - i);
+        chaves[i] = chave;
+        blocos[i] = bloco;
+        tamanhos[i] = tamanho;
+        n++;
+    }
+
+    private void removerBloco(int i) {
+        System.arraycopy(chaves, i + 1, chaves, i, n - i - 1);
+        System.arraycopy(blocos, i + 1, blocos, i, n - i - 1);
+        System.arraycopy(tamanhos, i + 1, tamanhos, i, n - i - 1);
+        blocos[--n] = null;
+    }
+}
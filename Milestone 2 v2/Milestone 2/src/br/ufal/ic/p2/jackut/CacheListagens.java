@@ -0,0 +1,182 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limite global de memória para as listagens formatadas ("{a,b,c}") guardadas pelos {@link ConjuntoLogins}
+ * (amigos, fãs, paqueras e membros de comunidades).
+ * <p>
+ * Cada conjunto guarda a sua última listagem em uma {@link Entrada}, marcada com a versão do conjunto em que foi
+ * montada; qualquer alteração do conjunto muda a versão, e a entrada deixa de valer. Este cache apenas contabiliza
+ * o tamanho das entradas vivas: quando ele passa de "jackut.cache.listagens.bytes", as entradas mais antigas são
+ * descartadas (esvaziadas, sem acessar o conjunto dono), com uma segunda chance para as lidas desde a última
+ * passagem. A leitura de uma entrada não trava nada além da trava do dono, que quem lê já tem.
+ * </p>
+ * <p>
+ * O limite e as métricas são do processo, compartilhados por todos os sistemas abertos nele.
+ * </p>
+ */
+public final class CacheListagens {
+    /**
+     * Memória aproximada de uma entrada além dos caracteres da listagem (objetos da entrada e da String).
+     */
+    private static final int SOBRECARGA = 64;
+
+    private static final long LIMITE = Configuracao.tamanhoCacheListagens();
+
+    private static final Queue<Entrada> fila = new ConcurrentLinkedQueue<>();
+    private static final AtomicLong ocupado = new AtomicLong();
+    private static final AtomicInteger vivas = new AtomicInteger();
+    private static final AtomicInteger descartadas = new AtomicInteger();
+
+    private static final LongAdder acertos = new LongAdder();
+    private static final LongAdder falhas = new LongAdder();
+    private static final LongAdder despejos = new LongAdder();
+
+    private CacheListagens() {
+    }
+
+    /**
+     * Listagem guardada por um conjunto, válida enquanto ele estiver na mesma versão e ela não for despejada.
+     */
+    static final class Entrada {
+        private static final AtomicReferenceFieldUpdater<Entrada, String> TEXTO =
+                AtomicReferenceFieldUpdater.newUpdater(Entrada.class, String.class, "texto");
+
+        private final int versao;
+        private final int tamanho;
+        private volatile String texto;
+        private volatile boolean lida;
+
+        private Entrada(int versao, String texto) {
+            this.versao = versao;
+            this.tamanho = texto.length() + SOBRECARGA;
+            this.texto = texto;
+        }
+
+        /**
+         * Esvazia a entrada, descontando o seu tamanho uma única vez mesmo que o dono e o despejo a descartem
+         * ao mesmo tempo.
+         *
+         * @return true se esta chamada a esvaziou
+         */
+        private boolean descartar() {
+            String atual = texto;
+            if (atual == null || !TEXTO.compareAndSet(this, atual, null)) {
+                return false;
+            }
+            ocupado.addAndGet(-tamanho);
+            vivas.decrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Lê uma listagem guardada.
+     *
+     * @param entrada Entrada guardada pelo conjunto (pode ser null)
+     * @param versao  Versão atual do conjunto
+     * @return A listagem, ou null se não houver uma válida
+     */
+    static String ler(Entrada entrada, int versao) {
+        String texto = entrada == null || entrada.versao != versao ? null : entrada.texto;
+        if (texto == null) {
+            falhas.increment();
+            return null;
+        }
+        if (!entrada.lida) {
+            entrada.lida = true;
+        }
+        acertos.increment();
+        return texto;
+    }
+
+    /**
+     * Guarda uma listagem recém-montada no lugar da anterior do mesmo conjunto.
+     *
+     * @param anterior Entrada anterior do conjunto (pode ser null)
+     * @param versao   Versão do conjunto em que a listagem foi montada
+     * @param texto    Listagem
+     * @return A nova entrada, ou null se a listagem não couber no limite
+     */
+    static Entrada guardar(Entrada anterior, int versao, String texto) {
+        if (anterior != null && anterior.descartar()) {
+            descartadas.incrementAndGet();
+        }
+        if (texto.length() + SOBRECARGA > LIMITE) {
+            return null;
+        }
+        Entrada nova = new Entrada(versao, texto);
+        vivas.incrementAndGet();
+        fila.add(nova);
+        if (ocupado.addAndGet(nova.tamanho) > LIMITE) {
+            despejar();
+        }
+        int mortas = descartadas.get();
+        if (mortas > 1024 && mortas > vivas.get()) {
+            limparFila();
+        }
+        return nova;
+    }
+
+    /**
+     * Descarta entradas, das mais antigas para as mais novas, até voltar ao limite. Uma entrada lida desde a
+     * última passagem volta para o fim da fila uma vez.
+     */
+    private static synchronized void despejar() {
+        while (ocupado.get() > LIMITE) {
+            Entrada e = fila.poll();
+            if (e == null) {
+                return;
+            }
+            if (e.texto == null) {
+                descartadas.decrementAndGet();
+            } else if (e.lida) {
+                e.lida = false;
+                fila.add(e);
+            } else if (e.descartar()) {
+                despejos.increment();
+            }
+        }
+    }
+
+    /**
+     * Tira da fila as entradas já descartadas pelos seus donos, que continuariam nela até serem alcançadas por
+     * um despejo.
+     */
+    private static synchronized void limparFila() {
+        int removidas = 0;
+        for (Iterator<Entrada> it = fila.iterator(); it.hasNext(); ) {
+            if (it.next().texto == null) {
+                it.remove();
+                removidas++;
+            }
+        }
+        descartadas.addAndGet(-removidas);
+    }
+
+    /**
+     * Registra as métricas do cache ("listagens.cache.*") em um sistema.
+     *
+     * @param metricas Métricas do sistema
+     */
+    static void registrarMetricas(Metricas metricas) {
+        metricas.registrar("listagens.cache.acertos", acertos::sum);
+        metricas.registrar("listagens.cache.falhas", falhas::sum);
+        metricas.registrar("listagens.cache.taxaAcertos", () -> {
+            long a = acertos.sum();
+            long total = a + falhas.sum();
+            return total == 0 ? 0 : a * 100 / total;
+        });
+        metricas.registrar("listagens.cache.despejos", despejos::sum);
+        metricas.registrar("listagens.cache.entradas", vivas::get);
+        metricas.registrar("listagens.cache.bytes", ocupado::get);
+        metricas.registrar("listagens.cache.limiteBytes", () -> LIMITE);
+    }
+}
@@ -0,0 +1,210 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Fila FIFO sem travas para vários produtores e um único consumidor, usada como caixa de recados e de mensagens
+ * de um {@link Usuario}.
+ * <p>
+ * Os itens são guardados em blocos de tamanho fixo encadeados, e não em um nó por item: cada produtor reserva
+ * uma posição do bloco atual com um incremento atômico e publica o item nela; quando o bloco enche, um novo é
+ * encadeado por CAS. A ordem de leitura é a ordem das reservas.
+ * </p>
+ * <p>
+ * {@link #adicionar(Object)} pode ser chamado por qualquer thread. Os demais métodos são do consumidor e devem ser
+ * chamados por uma thread de cada vez (no sistema, com a trava do usuário). Um item cuja posição já foi reservada
+ * mas ainda não publicada esconde os seguintes até ser publicado, então uma leitura concorrente com um envio pode
+ * encontrar a caixa vazia.
+ * </p>
+ * <p>
+ * Itens não são removidos do meio da fila: quem quiser descartá-los os marca (por exemplo, com
+ * {@link Comunicado#marcarRemovido()}), e os itens marcados, segundo o predicado informado na criação, são
+ * pulados na leitura.
+ * </p>
+ *
+ * @param <T> tipo dos itens
+ */
+public class CaixaDeEntrada<T> implements Iterable<T> {
+    private static final int TAMANHO_BLOCO = 16;
+
+    private static final class Bloco {
+        final AtomicReferenceArray<Object> itens = new AtomicReferenceArray<>(TAMANHO_BLOCO);
+        final AtomicInteger reservados = new AtomicInteger();
+        final AtomicReference<Bloco> proximo = new AtomicReference<>();
+    }
+
+    /**
+     * Bloco em que os produtores estão reservando posições.
+     */
+    private final AtomicReference<Bloco> cauda;
+
+    /**
+     * Bloco e posição do próximo item a ser lido. Só o consumidor os acessa.
+     */
+    private Bloco cabeca;
+    private int lidos;
+
+    /**
+     * Indica os itens descartados depois de adicionados.
+     */
+    private final Predicate<? super T> descartado;
+
+    /**
+     * Cria uma caixa vazia, cujos itens nunca são descartados.
+     */
+    public CaixaDeEntrada() {
+        this(item -> false);
+    }
+
+    /**
+     * Cria uma caixa vazia.
+     *
+     * @param descartado condição que indica os itens a pular na leitura
+     */
+    public CaixaDeEntrada(Predicate<? super T> descartado) {
+        this.descartado = descartado;
+        cabeca = new Bloco();
+        cauda = new AtomicReference<>(cabeca);
+    }
+
+    /**
+     * Adiciona um item ao final da fila. Pode ser chamado por várias threads ao mesmo tempo.
+     *
+     * @param item item a adicionar (não nulo)
+     */
+    public void adicionar(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            Bloco bloco = cauda.get();
+            int posicao = bloco.reservados.getAndIncrement();
+            if (posicao < TAMANHO_BLOCO) {
+                bloco.itens.set(posicao, item);
+                return;
+            }
+            // Bloco cheio: encadeia um novo (ou usa o que outro produtor encadeou) e avança a cauda.
+            Bloco proximo = bloco.proximo.get();
+            if (proximo == null) {
+                Bloco novo = new Bloco();
+                proximo = bloco.proximo.compareAndSet(null, novo) ? novo : bloco.proximo.get();
+            }
+            cauda.compareAndSet(bloco, proximo);
+        }
+    }
+
+    /**
+     * Retira o primeiro item da fila.
+     *
+     * @return o item, ou null se a fila estiver vazia
+     */
+    @SuppressWarnings("unchecked")
+    public T retirar() {
+        while (true) {
+            if (lidos == TAMANHO_BLOCO) {
+                Bloco proximo = cabeca.proximo.get();
+                if (proximo == null) {
+                    return null;
+                }
+                cabeca = proximo;
+                lidos = 0;
+            }
+            Object item = cabeca.itens.get(lidos);
+            if (item == null) {
+                return null;
+            }
+            cabeca.itens.set(lidos, null);
+            lidos++;
+            if (!descartado.test((T) item)) {
+                return (T) item;
+            }
+        }
+    }
+
+    /**
+     * Obtém o primeiro item da fila sem retirá-lo.
+     *
+     * @return o item, ou null se a fila estiver vazia
+     */
+    public T espiar() {
+        Iterator<T> it = iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * Verifica se não há itens para ler.
+     *
+     * @return true se a fila estiver vazia
+     */
+    public boolean estaVazia() {
+        return !iterator().hasNext();
+    }
+
+    /**
+     * Copia os itens ainda não lidos, na ordem de leitura.
+     *
+     * @return lista com os itens
+     */
+    public List<T> paraLista() {
+        List<T> itens = new ArrayList<>();
+        forEach(itens::add);
+        return itens;
+    }
+
+    /**
+     * Percorre os itens ainda não lidos, na ordem de leitura, sem retirá-los. Chamado pelo consumidor.
+     *
+     * @return iterador sobre os itens
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private Bloco bloco = cabeca;
+            private int posicao = lidos;
+            private Object proximo = avancar();
+
+            @SuppressWarnings("unchecked")
+            private Object avancar() {
+                while (bloco != null) {
+                    for (; posicao < TAMANHO_BLOCO; posicao++) {
+                        Object item = bloco.itens.get(posicao);
+                        if (item == null) {
+                            bloco = null;
+                            return null;
+                        }
+                        if (!descartado.test((T) item)) {
+                            posicao++;
+                            return item;
+                        }
+                    }
+                    bloco = bloco.proximo.get();
+                    posicao = 0;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return proximo != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (proximo == null) {
+                    throw new NoSuchElementException();
+                }
+                Object item = proximo;
+                proximo = avancar();
+                return (T) item;
+            }
+        };
+    }
+}
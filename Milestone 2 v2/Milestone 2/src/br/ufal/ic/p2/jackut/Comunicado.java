@@ -1,17 +1,19 @@
 
 package br.ufal.ic.p2.jackut;
 
-import java.io.Serializable;
 
 /**
  * Classe que representa um Comunicados.
- * Cada recado possui uma mensagem e um remetente.
- * Implementa a interface Serializable para possibilitar sua serializao.
+ * Cada recado possui uma mensagem e um remetente. Mensagens de comunidade também possuem um número de
+ * sequência global, que define a ordem de leitura entre mensagens de comunidades diferentes.
+ * É persistido pelo codec binário {@link br.ufal.ic.p2.jackut.persistencia.ComunicadoCodec}.
  */
-public class Comunicado implements Serializable {
+public class Comunicado {
 
     private String remetente;
     private String mensagem;
+    private final long sequencia;
+    private boolean removido;
 
     /**
      * Construtor da classe Comunicados.
@@ -20,12 +22,50 @@ public class Comunicado implements Serializable {
      * @param remetente O remetente do recado.
      */
     public Comunicado(String mensagem, String remetente) {
+        this(mensagem, remetente, 0);
+    }
+
+    /**
+     * Construtor de uma mensagem de comunidade.
+     *
+     * @param mensagem  A mensagem.
+     * @param remetente O remetente da mensagem.
+     * @param sequencia Número de sequência do envio.
+     */
+    public Comunicado(String mensagem, String remetente, long sequencia) {
         this.remetente = remetente;
         this.mensagem = mensagem;
+        this.sequencia = sequencia;
+    }
+
+    /**
+     * Obtém o número de sequência do envio. Recados e mensagens anteriores à sequência valem 0.
+     *
+     * @return O número de sequência.
+     */
+    public long getSequencia() {
+        return sequencia;
+    }
+
+    /**
+     * Verifica se o comunicado foi removido (porque o remetente foi deletado). Comunicados removidos
+     * continuam nas caixas de entrada, mas são pulados na leitura.
+     *
+     * @return true se o comunicado foi removido.
+     */
+    public boolean isRemovido() {
+        return removido;
+    }
+
+    /**
+     * Marca o comunicado como removido.
+     */
+    public void marcarRemovido() {
+        removido = true;
     }
 
     /**
-     * Obtm o remetente do recado.
+     * Obtém o remetente do recado.
      *
      * @return O remetente do recado.
      */
@@ -43,7 +83,7 @@ public class Comunicado implements Serializable {
     }
 
     /**
-     * Obtm a mensagem do recado.
+     * Obtém a mensagem do recado.
      *
      * @return A mensagem do recado.
      */
@@ -61,7 +101,7 @@ public class Comunicado implements Serializable {
     }
 
     /**
-     * Retorna uma representao em String do recado.
+     * Retorna uma representação em String do recado.
      *
      * @return Uma String no formato "remetente: mensagem".
      */
@@ -3,38 +3,49 @@ package br.ufal.ic.p2.jackut;
 import br.ufal.ic.p2.jackut.exceptions.MembroNaoExistenteException;
 import br.ufal.ic.p2.jackut.exceptions.UsuarioJaExistenteException;
 
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.Set;
-import java.io.Serializable;
 
 /**
- * Classe de comunidade. Ir indicar os donos, membros, seu nome e tambm possuir uma descrio.
+ * Classe de comunidade. Irá indicar os donos, membros, seu nome e também possuirá uma descrição.
  */
-public class Comunidade implements Serializable {
+public class Comunidade {
     private String dono;
     private String nome;
     private String descricao;
-    private Set<String> membros = new LinkedHashSet<>();
+    private ConjuntoLogins membros;
+    private final DicionarioLogins dicionario;
+    private final LogDeMensagens mensagens = new LogDeMensagens();
+
+    /**
+     * Assinatura MinHash dos membros, válida enquanto a versão dos membros for {@link #versaoAssinatura}. Alterações
+     * feitas diretamente em {@link #getMembrosSet()} (leitura de arquivos, importação) a invalidam, e ela é refeita
+     * na próxima consulta.
+     */
+    private final AssinaturaMinHash assinatura = new AssinaturaMinHash();
+    private int versaoAssinatura = -1;
 
     /**
      * Construtora de comunidade.
      * @param dono Dono da comunidade.
      * @param nome Nome da comunidade.
-     * @param descricao Descrio da comunidade.
+     * @param descricao Descrição da comunidade.
+     * @param dicionario Dicionário de logins do sistema, onde os membros são guardados como IDs.
      */
-    public Comunidade(String dono, String nome, String descricao) {
-        this.dono = dono;
+    public Comunidade(String dono, String nome, String descricao, DicionarioLogins dicionario) {
+        this.dono = dicionario.canonico(dono);
         this.nome = nome;
         this.descricao = descricao;
+        this.dicionario = dicionario;
+        this.membros = new ConjuntoLogins(dicionario);
         membros.add(dono);
 
     }
 
     /**
-     * Retorna a descrio da comunidade.
-     * @return Descrio.
+     * Retorna a descrição da comunidade.
+     * @return Descrição.
      */
     public String getDescricao() {
         return descricao;
@@ -61,7 +72,7 @@ public class Comunidade implements Serializable {
      * @return String: Lista de membros.
      */
     public String getMembros() {
-        return "{" + String.join(",", membros) + "}";
+        return membros.formatar();
     }
 
     /**
@@ -72,15 +83,28 @@ public class Comunidade implements Serializable {
         return membros;
     }
 
+    /**
+     * Retorna o log de mensagens enviadas à comunidade, lido por todos os membros.
+     * @return Log de mensagens.
+     */
+    public LogDeMensagens getMensagens() {
+        return mensagens;
+    }
+
     /**
      * Adiciona um membro.
      * @param membro nome do membro.
      */
     public void adicionarMembro(String membro) {
         if (membros.contains(membro)) {
-            throw new UsuarioJaExistenteException("Usuario j faz parte dessa comunidade.");
+            throw new UsuarioJaExistenteException("Usuario já faz parte dessa comunidade.");
         }
+        boolean emDia = versaoAssinatura == membros.getIds().versao();
         membros.add(membro);
+        if (emDia) {
+            assinatura.adicionar(dicionario.buscar(membro));
+            versaoAssinatura = membros.getIds().versao();
+        }
     }
 
     /**
@@ -89,9 +113,27 @@ public class Comunidade implements Serializable {
      */
     public void removerMembro(String membro) {
         if (!membros.contains(membro)) {
-            throw new MembroNaoExistenteException("Membro no faz parte da comunidade.");
+            throw new MembroNaoExistenteException("Membro não faz parte da comunidade.");
         }
+        boolean emDia = versaoAssinatura == membros.getIds().versao();
         membros.remove(membro);
+        if (emDia) {
+            assinatura.remover(dicionario.buscar(membro), membros.getIds());
+            versaoAssinatura = membros.getIds().versao();
+        }
+    }
+
+    /**
+     * Retorna a assinatura MinHash dos membros, usada para estimar a semelhança entre comunidades sem comparar os
+     * conjuntos de membros.
+     * @return Assinatura (alterada junto com os membros; quem a guardar deve copiá-la).
+     */
+    AssinaturaMinHash getAssinatura() {
+        if (versaoAssinatura != membros.getIds().versao()) {
+            assinatura.recalcular(membros.getIds());
+            versaoAssinatura = membros.getIds().versao();
+        }
+        return assinatura;
     }
 
 }
@@ -0,0 +1,248 @@
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.persistencia.PoliticaFsync;
+
+/**
+ * Reúne as opções de implantação do Jackut.
+ * <p>
+ * Como a Facade é instanciada pelo EasyAccept sem argumentos, as opções são lidas das propriedades
+ * de sistema da JVM (ex.: {@code -Djackut.persistencia=journal}). Quando a propriedade não é informada,
+ * o comportamento original do sistema é mantido.
+ * </p>
+ */
+public final class Configuracao {
+
+    private Configuracao() {
+    }
+
+    /**
+     * Motor de armazenamento do sistema (ver {@link br.ufal.ic.p2.jackut.persistencia.JackutStore}).
+     *
+     * @return Valor de "jackut.persistencia" em minúsculas: "serializacao" (padrão), "journal" ou "sql"
+     */
+    public static String motorPersistencia() {
+        return System.getProperty("jackut.persistencia", "serializacao").toLowerCase();
+    }
+
+    /**
+     * URL JDBC do banco usado pelo motor "sql".
+     *
+     * @return URL configurada em "jackut.sql.url", por padrão "jdbc:h2:./jackut" (o H2 vem em lib/)
+     */
+    public static String urlSql() {
+        return System.getProperty("jackut.sql.url", "jdbc:h2:./jackut");
+    }
+
+    /**
+     * Nome do arquivo de journal.
+     *
+     * @return Caminho do arquivo, por padrão "jackut.journal"
+     */
+    public static String arquivoJournal() {
+        return System.getProperty("jackut.journal.arquivo", "jackut.journal");
+    }
+
+    /**
+     * Política de fsync do journal.
+     *
+     * @return Política configurada em "jackut.journal.fsync", por padrão PERIODICO
+     */
+    public static PoliticaFsync politicaFsync() {
+        return PoliticaFsync.valueOf(System.getProperty("jackut.journal.fsync", "periodico").toUpperCase());
+    }
+
+    /**
+     * Intervalo entre fsyncs do journal quando a política for PERIODICO.
+     *
+     * @return Intervalo em milissegundos, por padrão 5
+     */
+    public static long intervaloFsyncMs() {
+        return Long.getLong("jackut.journal.intervaloMs", 5L);
+    }
+
+    /**
+     * Intervalo entre verificações do agendador de snapshots no motor "journal" (ou de compactação, no "sql").
+     *
+     * @return Intervalo em milissegundos, por padrão 60000; 0 desativa os snapshots em segundo plano
+     */
+    public static long intervaloSnapshotMs() {
+        return Long.getLong("jackut.snapshot.intervaloMs", 60_000L);
+    }
+
+    /**
+     * Tamanho mínimo do journal ativo (ou das operações guardadas, no motor "sql") para que um novo snapshot seja
+     * gerado.
+     *
+     * @return Tamanho em bytes, por padrão 1 MiB
+     */
+    public static long tamanhoMinimoSnapshot() {
+        return Long.getLong("jackut.snapshot.tamanhoMinimo", 1L << 20);
+    }
+
+    /**
+     * Quantidade máxima de usuários não alterados mantidos em memória depois de lidos do snapshot.
+     * Usuários alterados ficam sempre em memória até o próximo snapshot.
+     *
+     * @return Quantidade configurada em "jackut.usuarios.residentes", por padrão 10000 (mínimo 16)
+     */
+    public static int usuariosResidentes() {
+        return Math.max(16, Integer.getInteger("jackut.usuarios.residentes", 10_000));
+    }
+
+    /**
+     * Quantidade de faixas de travas usadas para sincronizar o acesso concorrente a usuários e comunidades.
+     *
+     * @return Quantidade configurada em "jackut.travas", por padrão 64
+     */
+    public static int faixasDeTravas() {
+        return Integer.getInteger("jackut.travas", 64);
+    }
+
+    /**
+     * Tamanho máximo de uma comunidade para que suas mensagens sejam entregues diretamente na fila de cada
+     * membro. Em comunidades maiores, a mensagem é guardada uma única vez no log da comunidade e lida dali.
+     *
+     * @return Quantidade de membros configurada em "jackut.mensagens.limiteEntregaDireta", por padrão 32;
+     * 0 faz todas as comunidades usarem o log
+     */
+    public static int limiteEntregaDireta() {
+        return Math.max(0, Integer.getInteger("jackut.mensagens.limiteEntregaDireta", 32));
+    }
+
+    /**
+     * Quantidade de usuários (ou de comunidades) tratados de cada vez pela exclusão de usuários em segundo plano.
+     * As travas são liberadas entre um lote e outro.
+     *
+     * @return Tamanho configurado em "jackut.exclusao.lote", por padrão 256 (mínimo 1)
+     */
+    public static int loteExclusao() {
+        return Math.max(1, Integer.getInteger("jackut.exclusao.lote", 256));
+    }
+
+    /**
+     * Tempo sem uso depois do qual uma sessão expira.
+     *
+     * @return Tempo em milissegundos configurado em "jackut.sessoes.inatividadeMs", por padrão 30 minutos
+     */
+    public static long inatividadeSessaoMs() {
+        return Math.max(1, Long.getLong("jackut.sessoes.inatividadeMs", 30 * 60 * 1000L));
+    }
+
+    /**
+     * Tempo desde a abertura depois do qual uma sessão expira, mesmo que esteja em uso.
+     *
+     * @return Tempo em milissegundos configurado em "jackut.sessoes.duracaoMaximaMs", por padrão 24 horas
+     */
+    public static long duracaoMaximaSessaoMs() {
+        return Math.max(1, Long.getLong("jackut.sessoes.duracaoMaximaMs", 24 * 60 * 60 * 1000L));
+    }
+
+    /**
+     * Quantidade máxima de sessões abertas. No limite, a sessão mais próxima de expirar é encerrada.
+     *
+     * @return Quantidade configurada em "jackut.sessoes.maximo", por padrão 100000 (mínimo 1)
+     */
+    public static int maximoSessoes() {
+        return Math.max(1, Integer.getInteger("jackut.sessoes.maximo", 100_000));
+    }
+
+    /**
+     * Indica se os IDs de sessão devem ser tokens assinados, validados sem tabela de sessões
+     * (ver {@link SessoesAssinadas}), em vez de sessões guardadas em memória.
+     *
+     * @return true se a propriedade "jackut.sessoes.modo" for "assinada"
+     */
+    public static boolean usarSessoesAssinadas() {
+        return "assinada".equalsIgnoreCase(System.getProperty("jackut.sessoes.modo", "tabela"));
+    }
+
+    /**
+     * Chaves de assinatura dos tokens de sessão, compartilhadas pelas instâncias que aceitam os mesmos tokens.
+     *
+     * @return Chaves em base64 separadas por vírgula, da mais antiga para a mais nova, configuradas em
+     * "jackut.sessoes.chaves"; null para gerar uma chave aleatória
+     */
+    public static String chavesSessao() {
+        return System.getProperty("jackut.sessoes.chaves");
+    }
+
+    /**
+     * Iterações do PBKDF2 nas senhas novas (ver {@link Senhas}). Mudar o valor não invalida as senhas já
+     * armazenadas: elas são recodificadas com o novo custo no próximo login.
+     *
+     * @return Quantidade configurada em "jackut.senhas.iteracoes", por padrão 600000 (mínimo 1)
+     */
+    public static int iteracoesSenha() {
+        return Math.max(1, Integer.getInteger("jackut.senhas.iteracoes", 600_000));
+    }
+
+    /**
+     * Threads dedicadas ao cálculo das senhas.
+     *
+     * @return Quantidade configurada em "jackut.senhas.threads", por padrão a quantidade de processadores
+     */
+    public static int threadsSenha() {
+        return Math.max(1, Integer.getInteger("jackut.senhas.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Quantidade máxima de cálculos de senha em andamento ou esperando uma thread. Acima dela, logins e
+     * cadastros são recusados com {@link br.ufal.ic.p2.jackut.exceptions.LimiteDeTentativasException}.
+     *
+     * @return Quantidade configurada em "jackut.senhas.maximoPendentes", por padrão 4 por thread
+     */
+    public static int maximoSenhasPendentes() {
+        return Math.max(1, Integer.getInteger("jackut.senhas.maximoPendentes", 4 * threadsSenha()));
+    }
+
+    /**
+     * Quantidade de verificações de senha bem-sucedidas guardadas para não refazer o cálculo.
+     *
+     * @return Quantidade configurada em "jackut.senhas.cache", por padrão 10000; 0 desativa o cache
+     */
+    public static int tamanhoCacheSenhas() {
+        return Math.max(0, Integer.getInteger("jackut.senhas.cache", 10_000));
+    }
+
+    /**
+     * Memória máxima ocupada pelas listagens formatadas guardadas (amigos, fãs, paqueras, membros), somadas em
+     * todo o processo ({@link CacheListagens}).
+     *
+     * @return Tamanho aproximado em bytes configurado em "jackut.cache.listagens.bytes", por padrão 32 MiB;
+     * 0 desativa o cache
+     */
+    public static long tamanhoCacheListagens() {
+        return Math.max(0, Long.getLong("jackut.cache.listagens.bytes", 32L << 20));
+    }
+
+    /**
+     * Quantidade de amigos a partir da qual a sugestão de amigos ({@link SugestaoAmigos}) é dividida entre várias
+     * threads.
+     *
+     * @return Quantidade configurada em "jackut.sugestoes.minimoParalelo", por padrão 512
+     */
+    public static int minimoParaleloSugestoes() {
+        return Math.max(1, Integer.getInteger("jackut.sugestoes.minimoParalelo", 512));
+    }
+
+    /**
+     * Intervalo entre as montagens da fotografia dos relacionamentos usada nas consultas analíticas
+     * ({@link GrafoCsr}).
+     *
+     * @return Intervalo em milissegundos configurado em "jackut.analise.intervaloMs", por padrão 60000; 0 desativa
+     * a montagem periódica (a fotografia é montada apenas quando pedida)
+     */
+    public static long intervaloGrafoMs() {
+        return Math.max(0, Long.getLong("jackut.analise.intervaloMs", 60_000L));
+    }
+
+    /**
+     * Quantidade de linhas mantidas em memória por cada ordenação da importação em lote ({@link ImportadorCsv});
+     * acima disso, as linhas são ordenadas em arquivos temporários.
+     *
+     * @return Quantidade configurada em "jackut.importacao.linhasPorBloco", por padrão 250000
+     */
+    public static int linhasPorBlocoImportacao() {
+        return Math.max(1, Integer.getInteger("jackut.importacao.linhasPorBloco", 250_000));
+    }
+}
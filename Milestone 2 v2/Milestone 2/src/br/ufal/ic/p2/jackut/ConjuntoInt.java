@@ -0,0 +1,301 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Conjunto de ints não negativos que preserva a ordem de inserção, sem um objeto por elemento.
+ * <p>
+ * Os elementos ficam em um vetor, na ordem de inserção; uma tabela hash de endereçamento aberto (sondagem linear)
+ * guarda, para cada elemento, a sua posição nesse vetor. A remoção deixa um buraco no vetor, reaproveitado quando
+ * ele precisaria crescer, e reorganiza a tabela sem deixar marcas de remoção. Um conjunto vazio não aloca vetores.
+ * </p>
+ * <p>
+ * Não é thread-safe: no sistema, é acessado apenas com a trava do usuário dono.
+ * </p>
+ */
+public class ConjuntoInt {
+    private static final int[] VAZIO = new int[0];
+    private static final int BURACO = -1;
+
+    /**
+     * Elementos na ordem de inserção; as posições removidas guardam BURACO.
+     */
+    private int[] elementos = VAZIO;
+
+    /**
+     * Posições já usadas em elementos, inclusive buracos.
+     */
+    private int usados;
+
+    private int tamanho;
+
+    /**
+     * Incrementada a cada alteração do conteúdo, para que quem guardar algo derivado dele saiba quando descartá-lo.
+     */
+    private int versao;
+
+    /**
+     * Para cada elemento, sua posição em elementos + 1; 0 indica posição livre. O tamanho é potência de 2.
+     */
+    private int[] tabela = VAZIO;
+
+    /**
+     * Adiciona um elemento ao final da ordem de inserção, se ele ainda não estiver no conjunto.
+     *
+     * @param valor Elemento (não negativo)
+     * @return true se o elemento foi adicionado
+     */
+    public boolean adicionar(int valor) {
+        if (valor < 0) {
+            throw new IllegalArgumentException("Elemento negativo: " + valor);
+        }
+        if (contem(valor)) {
+            return false;
+        }
+        if (usados == elementos.length) {
+            if (usados - tamanho > usados / 2) {
+                compactar();
+            } else {
+                elementos = Arrays.copyOf(elementos, Math.max(2, usados * 2));
+            }
+        }
+        if ((tamanho + 1) * 4 > tabela.length * 3) {
+            reconstruirTabela(Math.max(4, tabela.length * 2));
+        }
+        elementos[usados++] = valor;
+        tabela[-posicaoNaTabela(valor) - 1] = usados;
+        tamanho++;
+        versao++;
+        return true;
+    }
+
+    /**
+     * Verifica se um elemento está no conjunto.
+     *
+     * @param valor Elemento
+     * @return true se estiver
+     */
+    public boolean contem(int valor) {
+        return tamanho > 0 && posicaoNaTabela(valor) >= 0;
+    }
+
+    /**
+     * Remove um elemento do conjunto.
+     *
+     * @param valor Elemento
+     * @return true se o elemento estava no conjunto
+     */
+    public boolean remover(int valor) {
+        if (tamanho == 0) {
+            return false;
+        }
+        int p = posicaoNaTabela(valor);
+        if (p < 0) {
+            return false;
+        }
+        elementos[tabela[p] - 1] = BURACO;
+        liberar(p);
+        if (--tamanho == 0) {
+            usados = 0;
+        }
+        versao++;
+        return true;
+    }
+
+    /**
+     * Quantidade de elementos.
+     *
+     * @return Tamanho do conjunto
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Versão do conteúdo: muda sempre que um elemento é adicionado ou removido.
+     *
+     * @return Versão atual
+     */
+    public int versao() {
+        return versao;
+    }
+
+    /**
+     * Remove todos os elementos e libera os vetores.
+     */
+    public void limpar() {
+        elementos = VAZIO;
+        tabela = VAZIO;
+        usados = 0;
+        tamanho = 0;
+        versao++;
+    }
+
+    /**
+     * Copia os elementos, na ordem de inserção.
+     *
+     * @return Vetor com os elementos
+     */
+    public int[] paraVetor() {
+        int[] copia = new int[tamanho];
+        copiarPara(copia, 0);
+        return copia;
+    }
+
+    /**
+     * Copia os elementos, na ordem de inserção, para um vetor já existente.
+     *
+     * @param destino Vetor com pelo menos {@link #tamanho()} posições a partir de inicio
+     * @param inicio  Primeira posição de destino a preencher
+     * @return Quantidade de elementos copiados
+     */
+    public int copiarPara(int[] destino, int inicio) {
+        int n = inicio;
+        for (int i = 0; i < usados; i++) {
+            if (elementos[i] != BURACO) {
+                destino[n++] = elementos[i];
+            }
+        }
+        return n - inicio;
+    }
+
+    /**
+     * Percorre os elementos na ordem de inserção. O iterador aceita remover o elemento atual; outras alterações
+     * durante a iteração não são permitidas.
+     *
+     * @return Iterador sobre os elementos
+     */
+    public PrimitiveIterator.OfInt iterador() {
+        return iterador(0);
+    }
+
+    /**
+     * Obtém a posição interna de um elemento, para retomar a iteração depois dele com {@link #iterador(int)}.
+     * <p>
+     * A posição só vale enquanto o vetor de elementos não for compactado (o que pode acontecer em uma adição
+     * depois de remoções); uma posição antiga aponta para o mesmo elemento ou para um ponto mais adiante.
+     * </p>
+     *
+     * @param valor Elemento
+     * @return Posição do elemento, ou -1 se ele não estiver no conjunto
+     */
+    public int posicao(int valor) {
+        if (tamanho == 0) {
+            return -1;
+        }
+        int p = posicaoNaTabela(valor);
+        return p < 0 ? -1 : tabela[p] - 1;
+    }
+
+    /**
+     * Percorre os elementos na ordem de inserção a partir de uma posição interna (ver {@link #posicao(int)}).
+     *
+     * @param inicio Posição do primeiro elemento a percorrer; posições além do fim resultam em um iterador vazio
+     * @return Iterador sobre os elementos a partir de inicio
+     */
+    public PrimitiveIterator.OfInt iterador(int inicio) {
+        return new PrimitiveIterator.OfInt() {
+            private int posicao = pular(Math.max(0, inicio));
+            private int atual = BURACO;
+
+            private int pular(int i) {
+                while (i < usados && elementos[i] == BURACO) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return posicao < usados;
+            }
+
+            @Override
+            public int nextInt() {
+                if (posicao >= usados) {
+                    throw new NoSuchElementException();
+                }
+                atual = elementos[posicao];
+                posicao = pular(posicao + 1);
+                return atual;
+            }
+
+            @Override
+            public void remove() {
+                if (atual == BURACO) {
+                    throw new IllegalStateException();
+                }
+                remover(atual);
+                atual = BURACO;
+            }
+        };
+    }
+
+    private static int espalhar(int valor) {
+        int h = valor * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Procura um elemento na tabela.
+     *
+     * @return posição do elemento na tabela, ou -(posição livre onde ele entraria) - 1
+     */
+    private int posicaoNaTabela(int valor) {
+        int mascara = tabela.length - 1;
+        for (int i = espalhar(valor) & mascara; ; i = (i + 1) & mascara) {
+            int p = tabela[i];
+            if (p == 0) {
+                return -i - 1;
+            }
+            if (elementos[p - 1] == valor) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Libera uma posição da tabela, trazendo para ela os elementos seguintes da mesma sequência de sondagem, para
+     * que nenhuma busca pare antes da hora.
+     */
+    private void liberar(int livre) {
+        int mascara = tabela.length - 1;
+        for (int i = (livre + 1) & mascara; tabela[i] != 0; i = (i + 1) & mascara) {
+            int ideal = espalhar(elementos[tabela[i] - 1]) & mascara;
+            // O elemento em i só pode ir para a posição livre se ela estiver entre a sua posição ideal e i.
+            boolean podeMover = livre <= i
+                    ? ideal <= livre || ideal > i
+                    : ideal <= livre && ideal > i;
+            if (podeMover) {
+                tabela[livre] = tabela[i];
+                livre = i;
+            }
+        }
+        tabela[livre] = 0;
+    }
+
+    /**
+     * Remove os buracos do vetor de elementos, mantendo a ordem.
+     */
+    private void compactar() {
+        int n = 0;
+        for (int i = 0; i < usados; i++) {
+            if (elementos[i] != BURACO) {
+                elementos[n++] = elementos[i];
+            }
+        }
+        usados = n;
+        reconstruirTabela(tabela.length);
+    }
+
+    private void reconstruirTabela(int capacidade) {
+        tabela = new int[capacidade];
+        for (int i = 0; i < usados; i++) {
+            if (elementos[i] != BURACO) {
+                tabela[-posicaoNaTabela(elementos[i]) - 1] = i + 1;
+            }
+        }
+    }
+}
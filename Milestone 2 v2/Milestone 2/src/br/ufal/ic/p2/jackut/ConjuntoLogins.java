@@ -0,0 +1,132 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+/**
+ * Conjunto de logins guardado como um {@link ConjuntoInt} de IDs do {@link DicionarioLogins}.
+ * <p>
+ * Funciona como um {@link java.util.Set} de Strings, preservando a ordem de inserção, mas cada elemento ocupa
+ * alguns bytes em vez de uma entrada de LinkedHashSet; os logins devolvidos na iteração são os do dicionário.
+ * Não é thread-safe.
+ * </p>
+ */
+public class ConjuntoLogins extends AbstractSet<String> {
+    private final ConjuntoInt ids = new ConjuntoInt();
+    private final DicionarioLogins dicionario;
+
+    /**
+     * Última listagem formatada, válida enquanto {@link ConjuntoInt#versao()} não mudar.
+     */
+    private CacheListagens.Entrada formatado;
+
+    /**
+     * Cria um conjunto vazio.
+     *
+     * @param dicionario Dicionário que atribui os IDs
+     */
+    public ConjuntoLogins(DicionarioLogins dicionario) {
+        this.dicionario = dicionario;
+    }
+
+    /**
+     * Obtém os IDs dos logins, para quem quiser percorrê-los sem converter para String.
+     *
+     * @return Conjunto de IDs (alterações se refletem neste conjunto)
+     */
+    public ConjuntoInt getIds() {
+        return ids;
+    }
+
+    /**
+     * Formata os logins como "{login1,login2,...}", na ordem de inserção. A listagem fica guardada até a próxima
+     * alteração do conjunto ou até ser despejada pelo limite global de {@link CacheListagens}.
+     *
+     * @return Listagem formatada
+     */
+    public String formatar() {
+        if (ids.tamanho() == 0) {
+            return "{}";
+        }
+        int versao = ids.versao();
+        String texto = CacheListagens.ler(formatado, versao);
+        if (texto == null) {
+            texto = "{" + String.join(",", this) + "}";
+            formatado = CacheListagens.guardar(formatado, versao, texto);
+        }
+        return texto;
+    }
+
+    /**
+     * Obtém a posição interna de um login, para retomar a iteração depois dele (ver {@link ConjuntoInt#posicao(int)}).
+     *
+     * @param login Login
+     * @return Posição do login, ou -1 se ele não estiver no conjunto
+     */
+    public int posicao(String login) {
+        int id = dicionario.buscar(login);
+        return id < 0 ? -1 : ids.posicao(id);
+    }
+
+    /**
+     * Percorre os logins a partir de uma posição interna.
+     *
+     * @param inicio Posição do primeiro login a percorrer
+     * @return Iterador sobre os logins a partir de inicio
+     */
+    public Iterator<String> iterador(int inicio) {
+        return logins(ids.iterador(inicio));
+    }
+
+    @Override
+    public boolean add(String login) {
+        return ids.adicionar(dicionario.id(login));
+    }
+
+    @Override
+    public boolean contains(Object login) {
+        int id = login instanceof String ? dicionario.buscar((String) login) : -1;
+        return id >= 0 && ids.contem(id);
+    }
+
+    @Override
+    public boolean remove(Object login) {
+        int id = login instanceof String ? dicionario.buscar((String) login) : -1;
+        return id >= 0 && ids.remover(id);
+    }
+
+    @Override
+    public int size() {
+        return ids.tamanho();
+    }
+
+    @Override
+    public void clear() {
+        ids.limpar();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return logins(ids.iterador());
+    }
+
+    private Iterator<String> logins(PrimitiveIterator.OfInt it) {
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return dicionario.login(it.nextInt());
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+            }
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Atribui a cada login um ID inteiro denso (0, 1, 2...), para que os relacionamentos guardem ints em vez de
+ * Strings (ver {@link ConjuntoLogins}).
+ * <p>
+ * Há um único dicionário por {@link Sistema}, criado na leitura do snapshot e compartilhado por usuários,
+ * comunidades e comunicados. Ele também guarda a instância canônica de cada login ({@link #canonico(String)}):
+ * remetentes, donos e logins guardados como String apontam para ela, em vez de cada um ter a sua cópia (por
+ * exemplo, uma por registro lido do arquivo), e a comparação entre eles termina na igualdade de referências.
+ * </p>
+ * <p>
+ * Os IDs só existem em memória: a persistência continua gravando os logins. Um ID nunca é reutilizado por outro
+ * login; se um usuário for removido e o login cadastrado de novo, ele recebe o mesmo ID. Consultas são feitas sem
+ * bloqueio; apenas a criação de IDs é serializada.
+ * </p>
+ */
+public class DicionarioLogins {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Login de cada ID. Um novo vetor é publicado antes do ID que passa a caber nele.
+     */
+    private volatile String[] logins = new String[64];
+    private int quantidade;
+
+    /**
+     * Obtém o ID de um login, criando-o se necessário.
+     *
+     * @param login Login (não nulo)
+     * @return ID do login
+     */
+    public int id(String login) {
+        Integer id = ids.get(login);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(login);
+            if (id != null) {
+                return id;
+            }
+            int novo = quantidade;
+            String[] atual = logins;
+            if (novo == atual.length) {
+                atual = Arrays.copyOf(atual, novo * 2);
+            }
+            atual[novo] = login;
+            logins = atual;
+            quantidade++;
+            ids.put(login, novo);
+            return novo;
+        }
+    }
+
+    /**
+     * Atribui IDs a vários logins de uma vez (importação em lote), com um único crescimento do vetor de logins.
+     *
+     * @param novos Logins (não nulos); os que já têm ID são ignorados
+     */
+    public synchronized void reservar(Collection<String> novos) {
+        Map<String, Integer> atribuidos = new HashMap<>(novos.size() * 4 / 3 + 1);
+        for (String login : novos) {
+            if (!ids.containsKey(login) && !atribuidos.containsKey(login)) {
+                atribuidos.put(login, quantidade + atribuidos.size());
+            }
+        }
+        if (atribuidos.isEmpty()) {
+            return;
+        }
+        String[] atual = logins;
+        int necessario = quantidade + atribuidos.size();
+        if (necessario > atual.length) {
+            atual = Arrays.copyOf(atual, Math.max(necessario, atual.length * 2));
+        }
+        for (Map.Entry<String, Integer> e : atribuidos.entrySet()) {
+            atual[e.getValue()] = e.getKey();
+        }
+        logins = atual;
+        quantidade = necessario;
+        ids.putAll(atribuidos);
+    }
+
+    /**
+     * Obtém a instância canônica de um login, atribuindo-lhe um ID se necessário.
+     *
+     * @param login Login
+     * @return String igual a login, compartilhada por todos que a obtiverem; null se login for null
+     */
+    public String canonico(String login) {
+        return login == null ? null : login(id(login));
+    }
+
+    /**
+     * Obtém o ID de um login, sem criá-lo.
+     *
+     * @param login Login
+     * @return ID do login, ou -1 se ele nunca recebeu um ID
+     */
+    public int buscar(String login) {
+        Integer id = login == null ? null : ids.get(login);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Obtém o login de um ID.
+     *
+     * @param id ID obtido de {@link #id(String)}
+     * @return Login correspondente
+     */
+    public String login(int id) {
+        return logins[id];
+    }
+
+    /**
+     * Quantidade de IDs já atribuídos.
+     *
+     * @return Quantidade de logins
+     */
+    public int tamanho() {
+        return ids.size();
+    }
+}
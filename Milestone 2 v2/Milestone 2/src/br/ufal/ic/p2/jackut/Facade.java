@@ -2,26 +2,30 @@ package br.ufal.ic.p2.jackut;
 
 import br.ufal.ic.p2.jackut.exceptions.*;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Classe Facade, que serve de fachada para sistema.
  * <p>
- * Esta classe implementa o padro Facade, fornecendo uma interface simplificada
- * para todas as operaes do sistema Jackut, delegando as chamadas para a classe
- * Sistema que contm a implementao real.
+ * Esta classe implementa o padrão Facade, fornecendo uma interface simplificada
+ * para todas as operações do sistema Jackut, delegando as chamadas para a classe
+ * Sistema que contém a implementação real.
  * </p>
  * <p>
- * A Facade serve como um ponto nico de acesso para o sistema, escondendo a complexidade
- * das operaes e fornecendo uma API mais limpa para os clientes.
+ * A Facade serve como um ponto único de acesso para o sistema, escondendo a complexidade
+ * das operações e fornecendo uma API mais limpa para os clientes.
  * </p>
  */
 public class Facade {
     private Sistema sistema;
 
     /**
-     * Constri uma nova Facade inicializando o sistema Jackut.
+     * Constrói uma nova Facade inicializando o sistema Jackut.
      * <p>
-     * O construtor inicializa uma nova instncia do Sistema, que carrega
-     * os dados persistentes dos arquivos "usuarios.ser" e "comunidades.ser".
+     * O construtor inicializa uma nova instância do Sistema, que carrega
+     * os dados persistentes do último snapshot ("usuarios.N.ser" e "comunidades.N.ser").
      * </p>
      */
     public Facade() {
@@ -29,20 +33,20 @@ public class Facade {
     }
 
     /**
-     * Remove todos os usurios e comunidades cadastradas, zerando o sistema.
+     * Remove todos os usuários e comunidades cadastradas, zerando o sistema.
      */
     public void zerarSistema() {
         sistema.zerarSistema();
     }
 
     /**
-     * Cria um novo usurio na plataforma.
+     * Cria um novo usuário na plataforma.
      *
-     * @param login Login do usurio (deve ser nico)
-     * @param senha Senha do usurio
-     * @param nome  Nome completo do usurio
-     * @throws InformacaoInvalidaException Se alguma informao for invlida
-     * @throws UsuarioJaExistenteException Se o login j estiver cadastrado
+     * @param login Login do usuário (deve ser único)
+     * @param senha Senha do usuário
+     * @param nome  Nome completo do usuário
+     * @throws InformacaoInvalidaException Se alguma informação for inválida
+     * @throws UsuarioJaExistenteException Se o login já estiver cadastrado
      * @throws ConflitoInformacaoException Se a senha for igual ao nome ou login
      */
     public void criarUsuario(String login, String senha, String nome) {
@@ -50,97 +54,209 @@ public class Facade {
     }
 
     /**
-     * Obtm um atributo especfico de um usurio.
+     * Cria vários usuários de uma vez, para importações. Um item inválido não interrompe o lote.
      *
-     * @param login    Login do usurio
+     * @param usuarios Usuários a criar, cada um como {login, senha, nome}
+     * @return Resultado de cada item, com a mensagem de erro dos que não foram criados
+     */
+    public ResultadoLote criarUsuarios(List<String[]> usuarios) {
+        return sistema.criarUsuarios(usuarios);
+    }
+
+    /**
+     * Obtém um atributo específico de um usuário.
+     *
+     * @param login    Login do usuário
      * @param atributo Nome do atributo a ser recuperado
      * @return Valor do atributo solicitado
-     * @throws UsuarioNaoCadastradoException Se o usurio no estiver cadastrado
+     * @throws UsuarioNaoCadastradoException Se o usuário não estiver cadastrado
      */
     public String getAtributoUsuario(String login, String atributo) {
         return sistema.getAtributoUsuario(login, atributo);
     }
 
     /**
-     * Autentica um usurio e abre uma nova sesso.
+     * Procura os usuários com um valor em um atributo do perfil, ignorando maiúsculas, acentos e espaços extras.
      *
-     * @param login Login do usurio
-     * @param senha Senha do usurio
-     * @return ID da sesso criada
-     * @throws InformacaoInvalidaException Se o login ou senha forem invlidos
+     * @param atributo Nome do atributo ("nome" ou um atributo do perfil)
+     * @param valor    Valor procurado
+     * @return Logins encontrados, em ordem alfabética, no formato "{login1,login2,...}"
+     * @throws InformacaoInvalidaException Se o atributo ou o valor forem nulos
+     */
+    public String buscarUsuarios(String atributo, String valor) {
+        return sistema.buscarUsuarios(atributo, valor);
+    }
+
+    /**
+     * Procura os usuários cujo valor de um atributo do perfil começa com um prefixo.
+     *
+     * @param atributo Nome do atributo
+     * @param prefixo  Prefixo procurado
+     * @return Logins encontrados, em ordem alfabética, no formato "{login1,login2,...}"
+     * @throws InformacaoInvalidaException Se o atributo ou o prefixo forem nulos
+     */
+    public String buscarUsuariosPorPrefixo(String atributo, String prefixo) {
+        return sistema.buscarUsuariosPorPrefixo(atributo, prefixo);
+    }
+
+    /**
+     * Procura os usuários que têm todos os valores pedidos, cada um no seu atributo.
+     *
+     * @param criterios Valor procurado para cada atributo
+     * @return Logins encontrados, em ordem alfabética, no formato "{login1,login2,...}"
+     * @throws InformacaoInvalidaException Se não houver critérios ou algum atributo ou valor for nulo
+     */
+    public String buscarUsuarios(Map<String, String> criterios) {
+        return sistema.buscarUsuarios(criterios);
+    }
+
+    /**
+     * Autentica um usuário e abre uma nova sessão.
+     *
+     * @param login Login do usuário
+     * @param senha Senha do usuário
+     * @return ID da sessão criada
+     * @throws InformacaoInvalidaException Se o login ou senha forem inválidos
      */
     public String abrirSessao(String login, String senha) {
         return sistema.abrirSessao(login, senha);
     }
 
     /**
-     * Edita um atributo do perfil do usurio autenticado.
+     * Edita um atributo do perfil do usuário autenticado.
      *
-     * @param id       ID da sesso do usurio
+     * @param id       ID da sessão do usuário
      * @param atributo Nome do atributo a ser modificado
      * @param valor    Novo valor para o atributo
-     * @throws UsuarioNaoCadastradoException Se a sesso for invlida
+     * @throws UsuarioNaoCadastradoException Se a sessão for inválida
      */
     public void editarPerfil(String id, String atributo, String valor) {
         sistema.editarPerfil(id, atributo, valor);
     }
 
     /**
-     * Adiciona um amigo  lista de amizades do usurio autenticado.
+     * Adiciona um amigo à lista de amizades do usuário autenticado.
      *
-     * @param id    ID da sesso do usurio
-     * @param amigo Login do usurio a ser adicionado como amigo
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
+     * @param id    ID da sessão do usuário
+     * @param amigo Login do usuário a ser adicionado como amigo
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
      * @throws ConflitoInformacaoException   Se tentar adicionar a si mesmo
-     * @throws InimigoException Se os usurios forem inimigos
+     * @throws InimigoException Se os usuários forem inimigos
      */
     public void adicionarAmigo(String id, String amigo) {
         sistema.adicionarAmigo(id, amigo);
     }
 
     /**
-     * Verifica se dois usurios so amigos.
+     * Verifica se dois usuários são amigos.
      *
-     * @param login Login do primeiro usurio
-     * @param amigo Login do segundo usurio
-     * @return true se forem amigos, false caso contrrio
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
+     * @param login Login do primeiro usuário
+     * @param amigo Login do segundo usuário
+     * @return true se forem amigos, false caso contrário
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
      */
     public boolean ehAmigo(String login, String amigo) {
         return sistema.ehAmigo(login, amigo);
     }
 
     /**
-     * Obtm a lista de amigos de um usurio.
+     * Obtém a lista de amigos de um usuário.
      *
-     * @param login Login do usurio
+     * @param login Login do usuário
      * @return String formatada com a lista de amigos no formato "{amigo1,amigo2,...}"
-     * @throws UsuarioNaoCadastradoException Se o usurio no existir
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
      */
     public String getAmigos(String login) {
         return sistema.getAmigos(login);
     }
 
     /**
-     * Envia um recado para outro usurio.
+     * Retorna uma página da lista de amigos de um usuário (ver {@link Pagina}).
+     *
+     * @param login  Login do usuário
+     * @param limite Quantidade máxima de amigos na página
+     * @param cursor Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return Página de amigos
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se o limite ou o cursor forem inválidos
+     */
+    public Pagina paginarAmigos(String login, int limite, String cursor) {
+        return sistema.paginarAmigos(login, limite, cursor);
+    }
+
+    /**
+     * Escreve a lista de amigos de um usuário em um destino, no formato da listagem completa,
+     * sem montá-la em uma String.
+     *
+     * @param login   Login do usuário
+     * @param destino Destino da listagem (ex.: um Writer)
+     * @throws IOException                   Se a escrita no destino falhar
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public void escreverAmigos(String login, Appendable destino) throws IOException {
+        sistema.escreverAmigos(login, destino);
+    }
+
+    /**
+     * Conta os amigos de um usuário sem montar a listagem e sem alocar objetos.
+     *
+     * @param login  Login do usuário
+     * @return Quantidade de amigos
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public int contarAmigos(String login) {
+        return sistema.contarAmigos(login);
+    }
+
+    /**
+     * Sugere amigos a um usuário, pelos amigos em comum.
      *
-     * @param id           ID da sesso do remetente
-     * @param destinatario Login do destinatrio
-     * @param mensagem     Contedo do recado
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
+     * @param login Login do usuário
+     * @param k     Quantidade máxima de sugestões
+     * @return Logins sugeridos, do que tem mais amigos em comum para o que tem menos (em empate, na ordem dos
+     * logins), no formato "{login1,login2,...}"
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se k não for positivo
+     */
+    public String sugerirAmigos(String login, int k) {
+        return sistema.sugerirAmigos(login, k);
+    }
+
+    /**
+     * Sugere comunidades a um usuário, entre as comunidades dos seus amigos e ídolos.
+     *
+     * @param login Login do usuário
+     * @param k     Quantidade máxima de sugestões
+     * @return Nomes das comunidades sugeridas, das que têm mais amigos e ídolos do usuário para as que têm menos
+     * (em empate, da maior para a menor, depois da mais semelhante às comunidades do usuário e na ordem dos nomes),
+     * no formato "{nome1,nome2,...}"
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se k não for positivo
+     */
+    public String sugerirComunidades(String login, int k) {
+        return sistema.sugerirComunidades(login, k);
+    }
+
+    /**
+     * Envia um recado para outro usuário.
+     *
+     * @param id           ID da sessão do remetente
+     * @param destinatario Login do destinatário
+     * @param mensagem     Conteúdo do recado
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
      * @throws ConflitoInformacaoException   Se tentar enviar recado para si mesmo
-     * @throws InimigoException Se os usurios forem inimigos
+     * @throws InimigoException Se os usuários forem inimigos
      */
     public void enviarRecado(String id, String destinatario, String mensagem) {
         sistema.enviarRecado(id, destinatario, mensagem);
     }
 
     /**
-     * L o prximo recado no lido do usurio autenticado.
+     * Lê o próximo recado não lido do usuário autenticado.
      *
-     * @param id ID da sesso do usurio
-     * @return Contedo do recado
-     * @throws UsuarioNaoCadastradoException Se a sesso for invlida
+     * @param id ID da sessão do usuário
+     * @return Conteúdo do recado
+     * @throws UsuarioNaoCadastradoException Se a sessão for inválida
      */
     public String lerRecado(String id) {
         return sistema.lerRecado(id);
@@ -149,78 +265,154 @@ public class Facade {
     /**
      * Cria uma nova comunidade.
      *
-     * @param id        ID da sesso do criador
-     * @param nome      Nome da comunidade (deve ser nico)
-     * @param descricao Descrio da comunidade
-     * @throws UsuarioNaoCadastradoException  Se a sesso for invlida
-     * @throws ComunidadeJaExistenteException Se o nome da comunidade j existir
+     * @param id        ID da sessão do criador
+     * @param nome      Nome da comunidade (deve ser único)
+     * @param descricao Descrição da comunidade
+     * @throws UsuarioNaoCadastradoException  Se a sessão for inválida
+     * @throws ComunidadeJaExistenteException Se o nome da comunidade já existir
      */
     public void criarComunidade(String id, String nome, String descricao) {
         sistema.criarComunidade(id, nome, descricao);
     }
 
     /**
-     * Obtm a descrio de uma comunidade.
+     * Obtém a descrição de uma comunidade.
      *
      * @param nomecomunidade Nome da comunidade
-     * @return Descrio da comunidade
-     * @throws ComunidadeNaoExistenteException Se a comunidade no existir
+     * @return Descrição da comunidade
+     * @throws ComunidadeNaoExistenteException Se a comunidade não existir
      */
     public String getDescricaoComunidade(String nomecomunidade) {
         return sistema.getDescricaoComunidade(nomecomunidade);
     }
 
     /**
-     * Obtm o dono de uma comunidade.
+     * Obtém o dono de uma comunidade.
      *
      * @param nomecomunidade Nome da comunidade
      * @return Login do dono da comunidade
-     * @throws ComunidadeNaoExistenteException Se a comunidade no existir
+     * @throws ComunidadeNaoExistenteException Se a comunidade não existir
      */
     public String getDonoComunidade(String nomecomunidade) {
         return sistema.getDonoComunidade(nomecomunidade);
     }
 
     /**
-     * Obtm a lista de membros de uma comunidade.
+     * Obtém a lista de membros de uma comunidade.
      *
      * @param nomecomunidade Nome da comunidade
      * @return String formatada com a lista de membros no formato "{membro1,membro2,...}"
-     * @throws ComunidadeNaoExistenteException Se a comunidade no existir
+     * @throws ComunidadeNaoExistenteException Se a comunidade não existir
      */
     public String getMembrosComunidade(String nomecomunidade) {
         return sistema.getMembrosComunidade(nomecomunidade);
     }
 
     /**
-     * Obtm a lista de comunidades que um usurio participa.
+     * Retorna uma página da lista de membros da comunidade (ver {@link Pagina}).
      *
-     * @param login Login do usurio
+     * @param nomecomunidade nome da comunidade
+     * @param limite         Quantidade máxima de membros na página
+     * @param cursor         Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return Página de membros
+     * @throws ComunidadeNaoExistenteException se a comunidade não existir
+     * @throws InformacaoInvalidaException     Se o limite ou o cursor forem inválidos
+     */
+    public Pagina paginarMembrosComunidade(String nomecomunidade, int limite, String cursor) {
+        return sistema.paginarMembrosComunidade(nomecomunidade, limite, cursor);
+    }
+
+    /**
+     * Escreve a lista de membros da comunidade em um destino, no formato da listagem completa,
+     * sem montá-la em uma String.
+     *
+     * @param nomecomunidade nome da comunidade
+     * @param destino        Destino da listagem (ex.: um Writer)
+     * @throws IOException                     Se a escrita no destino falhar
+     * @throws ComunidadeNaoExistenteException se a comunidade não existir
+     */
+    public void escreverMembrosComunidade(String nomecomunidade, Appendable destino) throws IOException {
+        sistema.escreverMembrosComunidade(nomecomunidade, destino);
+    }
+
+    /**
+     * Conta os membros da comunidade sem montar a listagem e sem alocar objetos.
+     *
+     * @param nomecomunidade nome da comunidade
+     * @return Quantidade de membros
+     * @throws ComunidadeNaoExistenteException se a comunidade não existir
+     */
+    public int contarMembros(String nomecomunidade) {
+        return sistema.contarMembros(nomecomunidade);
+    }
+
+    /**
+     * Obtém a lista de comunidades que um usuário participa.
+     *
+     * @param login Login do usuário
      * @return String formatada com a lista de comunidades no formato "{comunidade1,comunidade2,...}"
-     * @throws UsuarioNaoCadastradoException Se o usurio no existir
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
      */
     public String getComunidades(String login) {
         return sistema.getComunidades(login);
     }
 
     /**
-     * Adiciona o usurio autenticado a uma comunidade.
+     * Retorna uma página da lista de comunidades da qual o usuário participa (ver {@link Pagina}).
+     *
+     * @param login  Login do usuário
+     * @param limite Quantidade máxima de comunidades na página
+     * @param cursor Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return Página de comunidades
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se o limite ou o cursor forem inválidos
+     */
+    public Pagina paginarComunidades(String login, int limite, String cursor) {
+        return sistema.paginarComunidades(login, limite, cursor);
+    }
+
+    /**
+     * Escreve a lista de comunidades da qual o usuário participa em um destino, no formato da listagem completa,
+     * sem montá-la em uma String.
      *
-     * @param id   ID da sesso do usurio
+     * @param login   Login do usuário
+     * @param destino Destino da listagem (ex.: um Writer)
+     * @throws IOException                   Se a escrita no destino falhar
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public void escreverComunidades(String login, Appendable destino) throws IOException {
+        sistema.escreverComunidades(login, destino);
+    }
+
+    /**
+     * Conta as comunidades da qual o usuário participa sem montar a listagem e sem alocar objetos.
+     *
+     * @param login  Login do usuário
+     * @return Quantidade de comunidades
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public int contarComunidades(String login) {
+        return sistema.contarComunidades(login);
+    }
+
+    /**
+     * Adiciona o usuário autenticado a uma comunidade.
+     *
+     * @param id   ID da sessão do usuário
      * @param nome Nome da comunidade
-     * @throws UsuarioNaoCadastradoException   Se a sesso for invlida
-     * @throws ComunidadeNaoExistenteException Se a comunidade no existir
+     * @throws UsuarioNaoCadastradoException   Se a sessão for inválida
+     * @throws ComunidadeNaoExistenteException Se a comunidade não existir
      */
     public void adicionarComunidade(String id, String nome) {
         sistema.adicionarComunidade(id, nome);
     }
 
     /**
-     * L a prxima mensagem no lida do usurio autenticado.
+     * Lê a próxima mensagem não lida do usuário autenticado.
      *
-     * @param id ID da sesso do usurio
-     * @return Contedo da mensagem
-     * @throws UsuarioNaoCadastradoException Se a sesso for invlida
+     * @param id ID da sessão do usuário
+     * @return Conteúdo da mensagem
+     * @throws UsuarioNaoCadastradoException Se a sessão for inválida
      */
     public String lerMensagem(String id) {
         return sistema.lerMensagem(id);
@@ -229,116 +421,200 @@ public class Facade {
     /**
      * Envia uma mensagem para todos os membros de uma comunidade.
      *
-     * @param id         ID da sesso do remetente
+     * @param id         ID da sessão do remetente
      * @param comunidade Nome da comunidade
-     * @param mensagem   Contedo da mensagem
-     * @throws UsuarioNaoCadastradoException   Se a sesso for invlida
-     * @throws ComunidadeNaoExistenteException Se a comunidade no existir
+     * @param mensagem   Conteúdo da mensagem
+     * @throws UsuarioNaoCadastradoException   Se a sessão for inválida
+     * @throws ComunidadeNaoExistenteException Se a comunidade não existir
      */
     public void enviarMensagem(String id, String comunidade, String mensagem) {
         sistema.enviarMensagem(id, comunidade, mensagem);
     }
 
     /**
-     * Verifica se um usurio  f de outro.
+     * Verifica se um usuário é fã de outro.
      *
-     * @param login Login do possvel f
-     * @param idolo Login do possvel dolo
-     * @return true se for f, false caso contrrio
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
+     * @param login Login do possível fã
+     * @param idolo Login do possível ídolo
+     * @return true se for fã, false caso contrário
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
      */
     public boolean ehFa(String login, String idolo) {
         return sistema.ehFa(login, idolo);
     }
 
     /**
-     * Adiciona um dolo  lista do usurio autenticado e se adiciona como f do dolo.
+     * Adiciona um ídolo à lista do usuário autenticado e se adiciona como fã do ídolo.
      *
-     * @param id    ID da sesso do usurio
-     * @param idolo Login do dolo
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
-     * @throws ConflitoInformacaoException   Se tentar adicionar a si mesmo como dolo
-     * @throws InimigoException Se os usurios forem inimigos
+     * @param id    ID da sessão do usuário
+     * @param idolo Login do ídolo
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
+     * @throws ConflitoInformacaoException   Se tentar adicionar a si mesmo como ídolo
+     * @throws InimigoException Se os usuários forem inimigos
      */
     public void adicionarIdolo(String id, String idolo) {
         sistema.adicionarIdolo(id, idolo);
     }
 
     /**
-     * Obtm a lista de fs de um usurio.
+     * Obtém a lista de fãs de um usuário.
      *
-     * @param login Login do usurio
-     * @return String formatada com a lista de fs no formato "{fa1,fa2,...}"
-     * @throws UsuarioNaoCadastradoException Se o usurio no existir
+     * @param login Login do usuário
+     * @return String formatada com a lista de fãs no formato "{fa1,fa2,...}"
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
      */
     public String getFas(String login) {
         return sistema.getFas(login);
     }
 
     /**
-     * Verifica se um usurio  paquera do usurio autenticado.
+     * Retorna uma página da lista de fãs de um usuário (ver {@link Pagina}).
+     *
+     * @param login  Login do usuário
+     * @param limite Quantidade máxima de fãs na página
+     * @param cursor Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return Página de fãs
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se o limite ou o cursor forem inválidos
+     */
+    public Pagina paginarFas(String login, int limite, String cursor) {
+        return sistema.paginarFas(login, limite, cursor);
+    }
+
+    /**
+     * Escreve a lista de fãs de um usuário em um destino, no formato da listagem completa,
+     * sem montá-la em uma String.
      *
-     * @param id   ID da sesso do usurio
-     * @param nome Login do possvel paquera
-     * @return true se for paquera, false caso contrrio
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
+     * @param login   Login do usuário
+     * @param destino Destino da listagem (ex.: um Writer)
+     * @throws IOException                   Se a escrita no destino falhar
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public void escreverFas(String login, Appendable destino) throws IOException {
+        sistema.escreverFas(login, destino);
+    }
+
+    /**
+     * Conta os fãs de um usuário sem montar a listagem e sem alocar objetos.
+     *
+     * @param login  Login do usuário
+     * @return Quantidade de fãs
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public int contarFas(String login) {
+        return sistema.contarFas(login);
+    }
+
+    /**
+     * Verifica se um usuário é paquera do usuário autenticado.
+     *
+     * @param id   ID da sessão do usuário
+     * @param nome Login do possível paquera
+     * @return true se for paquera, false caso contrário
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
      */
     public boolean ehPaquera(String id, String nome) {
         return sistema.ehPaquera(id, nome);
     }
 
     /**
-     * Adiciona um paquera  lista do usurio autenticado.
-     * Se for um paquera mtuo, envia recados especiais para ambos.
+     * Adiciona um paquera à lista do usuário autenticado.
+     * Se for um paquera mútuo, envia recados especiais para ambos.
      *
-     * @param id   ID da sesso do usurio
+     * @param id   ID da sessão do usuário
      * @param nome Login do paquera
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
-     * @throws InimigoException Se os usurios forem inimigos
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
+     * @throws InimigoException Se os usuários forem inimigos
      */
     public void adicionarPaquera(String id, String nome) {
         sistema.adicionarPaquera(id, nome);
     }
 
     /**
-     * Obtm a lista de paqueras do usurio autenticado.
+     * Obtém a lista de paqueras do usuário autenticado.
      *
-     * @param id ID da sesso do usurio
+     * @param id ID da sessão do usuário
      * @return String formatada com a lista de paqueras no formato "{paquera1,paquera2,...}"
-     * @throws UsuarioNaoCadastradoException Se a sesso for invlida
+     * @throws UsuarioNaoCadastradoException Se a sessão for inválida
      */
     public String getPaqueras(String id) {
         return sistema.getPaqueras(id);
     }
 
     /**
-     * Adiciona um inimigo  lista do usurio autenticado.
+     * Retorna uma página da lista de paqueras do usuário autenticado (ver {@link Pagina}).
+     *
+     * @param id     ID da sessão do usuário
+     * @param limite Quantidade máxima de paqueras na página
+     * @param cursor Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return Página de paqueras
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se o limite ou o cursor forem inválidos
+     */
+    public Pagina paginarPaqueras(String id, int limite, String cursor) {
+        return sistema.paginarPaqueras(id, limite, cursor);
+    }
+
+    /**
+     * Escreve a lista de paqueras do usuário autenticado em um destino, no formato da listagem completa,
+     * sem montá-la em uma String.
+     *
+     * @param id      ID da sessão do usuário
+     * @param destino Destino da listagem (ex.: um Writer)
+     * @throws IOException                   Se a escrita no destino falhar
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public void escreverPaqueras(String id, Appendable destino) throws IOException {
+        sistema.escreverPaqueras(id, destino);
+    }
+
+    /**
+     * Conta os paqueras do usuário autenticado sem montar a listagem e sem alocar objetos.
      *
-     * @param id      ID da sesso do usurio
+     * @param id ID da sessão do usuário
+     * @return Quantidade de paqueras
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public int contarPaqueras(String id) {
+        return sistema.contarPaqueras(id);
+    }
+
+    /**
+     * Adiciona um inimigo à lista do usuário autenticado.
+     *
+     * @param id      ID da sessão do usuário
      * @param inimigo Login do inimigo
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
      */
     public void adicionarInimigo(String id, String inimigo) {
         sistema.adicionarInimigo(id, inimigo);
     }
 
     /**
-     * Remove permanentemente o usurio autenticado do sistema.
+     * Remove permanentemente o usuário autenticado do sistema.
      * <p>
-     * Remove todas as referncias ao usurio em amigos, comunidades, etc.
+     * Remove todas as referências ao usuário em amigos, comunidades, etc.
      * </p>
      *
-     * @param id ID da sesso do usurio a ser removido
-     * @throws UsuarioNaoCadastradoException Se a sesso for invlida
+     * @param id ID da sessão do usuário a ser removido
+     * @throws UsuarioNaoCadastradoException Se a sessão for inválida
      */
     public void removerUsuario(String id) {
         sistema.removerUsuario(id);
     }
 
     /**
-     * Salva os dados do sistema nos arquivos de persistncia e encerra o sistema.
+     * Espera a conclusão das exclusões de usuários ainda em andamento em segundo plano.
+     * Os efeitos de uma exclusão já são visíveis antes disso; útil em testes e ao medir o sistema.
+     */
+    public void aguardarExclusoes() {
+        sistema.aguardarExclusoes();
+    }
+
+    /**
+     * Salva os dados do sistema nos arquivos de persistência e encerra o sistema.
      * <p>
-     * Os dados so salvos nos arquivos "usuarios.ser" e "comunidades.ser".
+     * Os dados são salvos em um novo par de arquivos "usuarios.N.ser" e "comunidades.N.ser".
      * </p>
      */
     public void encerrarSistema() {
@@ -346,9 +622,54 @@ public class Facade {
     }
 
     /**
-     * Retorna uma representao textual do estado atual do sistema.
+     * Obtém as métricas de funcionamento do sistema (ex.: limite de entrega direta de mensagens).
+     *
+     * @return Métricas do sistema
+     */
+    public Metricas getMetricas() {
+        return sistema.getMetricas();
+    }
+
+    /**
+     * Obtém a fotografia mais recente dos relacionamentos, para consultas analíticas.
+     *
+     * @return Fotografia dos relacionamentos (ver {@link GrafoCsr})
+     */
+    public GrafoCsr getGrafo() {
+        return sistema.getGrafo();
+    }
+
+    /**
+     * Monta uma nova fotografia dos relacionamentos a partir do estado atual.
+     *
+     * @return A nova fotografia
+     */
+    public GrafoCsr atualizarGrafo() {
+        return sistema.atualizarGrafo();
+    }
+
+    /**
+     * Calcula o grau de separação entre dois usuários pelas amizades, com um caminho mais curto entre eles.
+     * <p>
+     * Usa a fotografia dos relacionamentos ({@link #getGrafo()}) sem remontá-la, então a resposta pode estar
+     * defasada em até "jackut.analise.intervaloMs"; {@link #atualizarGrafo()} antes da chamada a deixa em dia.
+     * </p>
+     *
+     * @param login1 Login do primeiro usuário
+     * @param login2 Login do segundo usuário
+     * @param saltos Quantidade máxima de saltos procurados
+     * @return Separação entre os usuários; o caminho é exibido no formato "{login1,...,login2}"
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
+     * @throws InformacaoInvalidaException   Se a quantidade de saltos for negativa
+     */
+    public Separacao grauDeSeparacao(String login1, String login2, int saltos) {
+        return sistema.grauDeSeparacao(login1, login2, saltos);
+    }
+
+    /**
+     * Retorna uma representação textual do estado atual do sistema.
      *
-     * @return String contendo informaes sobre usurios, sesses e comunidades
+     * @return String contendo informações sobre usuários, sessões e comunidades
      */
     @Override
     public String toString() {
@@ -0,0 +1,562 @@
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.Relacionamentos.TipoRelacionamento;
+import br.ufal.ic.p2.jackut.exceptions.InformacaoInvalidaException;
+import br.ufal.ic.p2.jackut.exceptions.UsuarioNaoCadastradoException;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Fotografia imutável dos relacionamentos de todos os usuários, para consultas analíticas (graus, amigos em
+ * comum, alcance em k saltos, componentes conexas).
+ * <p>
+ * Cada tipo de relacionamento ({@link TipoRelacionamento}) é guardado em formato CSR (compressed sparse row):
+ * um vetor de destinos com as linhas de todos os usuários em sequência, cada linha ordenada, e um vetor de
+ * inícios indexado pelo ID do usuário no {@link DicionarioLogins}. As consultas percorrem apenas esses vetores de
+ * int, sem travas e sem acessar os usuários, então não disputam nada com as escritas; em troca, refletem o estado
+ * do momento em que a fotografia foi montada ({@link #getConstruidoEm()}). O {@link Sistema} monta uma nova
+ * periodicamente, em segundo plano.
+ * </p>
+ * <p>
+ * As buscas em largura são feitas nível a nível; níveis grandes são expandidos em paralelo no
+ * {@link ForkJoinPool#commonPool()}, com os vértices visitados marcados por compare-and-set.
+ * </p>
+ */
+public final class GrafoCsr {
+    /**
+     * Tamanho de nível a partir do qual a expansão da busca em largura é dividida entre threads.
+     */
+    private static final int FRONTEIRA_POR_TAREFA = 2048;
+
+    /**
+     * Vetores de trabalho da busca bidirecional, reaproveitados entre as consultas feitas pela mesma thread.
+     */
+    private static final ThreadLocal<BuscaBidirecional> buscas = ThreadLocal.withInitial(BuscaBidirecional::new);
+
+    private final DicionarioLogins dicionario;
+    private final int vertices;
+    private final BitSet usuarios;
+    private final Csr[] relacionamentos;
+    private final Csr[] transpostos;
+    private final long construidoEm;
+
+    /**
+     * Relacionamentos de um tipo: a linha do usuário u é destinos[inicios[u]] até destinos[inicios[u + 1] - 1].
+     */
+    private static final class Csr {
+        private final int[] inicios;
+        private final int[] destinos;
+
+        private Csr(int[] inicios, int[] destinos) {
+            this.inicios = inicios;
+            this.destinos = destinos;
+        }
+
+        private int grau(int u) {
+            return inicios[u + 1] - inicios[u];
+        }
+    }
+
+    private GrafoCsr(DicionarioLogins dicionario, int vertices, BitSet usuarios, Csr[] relacionamentos) {
+        this.dicionario = dicionario;
+        this.vertices = vertices;
+        this.usuarios = usuarios;
+        this.relacionamentos = relacionamentos;
+        this.transpostos = new Csr[relacionamentos.length];
+        this.construidoEm = System.currentTimeMillis();
+    }
+
+    /**
+     * Monta uma fotografia linha a linha, na ordem crescente dos IDs. Usado pelo {@link Sistema}, que lê cada
+     * usuário com a sua trava.
+     */
+    static final class Construtor {
+        private final DicionarioLogins dicionario;
+        private final int vertices;
+        private final BitSet usuarios = new BitSet();
+        private final int[][] inicios = new int[TipoRelacionamento.values().length][];
+        private final int[][] destinos = new int[inicios.length][];
+        private final int[] usados = new int[inicios.length];
+        private final int[] proximaLinha = new int[inicios.length];
+
+        /**
+         * Cria o construtor.
+         *
+         * @param dicionario Dicionário de logins do sistema
+         * @param vertices   Quantidade de IDs atribuídos; IDs posteriores são ignorados
+         */
+        Construtor(DicionarioLogins dicionario, int vertices) {
+            this.dicionario = dicionario;
+            this.vertices = vertices;
+            for (int t = 0; t < inicios.length; t++) {
+                inicios[t] = new int[vertices + 1];
+                destinos[t] = new int[16];
+            }
+        }
+
+        /**
+         * Adiciona um usuário e os seus relacionamentos. Os IDs devem ser adicionados em ordem crescente.
+         *
+         * @param id      ID do usuário
+         * @param usuario Usuário, lido com a sua trava
+         */
+        void adicionar(int id, Usuario usuario) {
+            usuarios.set(id);
+            for (TipoRelacionamento tipo : TipoRelacionamento.values()) {
+                int t = tipo.ordinal();
+                ConjuntoInt ids = usuario.getRelacionamento(tipo).getIds();
+                Arrays.fill(inicios[t], proximaLinha[t], id + 1, usados[t]);
+                proximaLinha[t] = id + 1;
+                if (usados[t] + ids.tamanho() > destinos[t].length) {
+                    destinos[t] = Arrays.copyOf(destinos[t], Math.max(usados[t] + ids.tamanho(), destinos[t].length * 2));
+                }
+                int inicio = usados[t];
+                int fim = inicio + ids.copiarPara(destinos[t], inicio);
+                Arrays.sort(destinos[t], inicio, fim);
+                // Usuários cadastrados depois do início da construção ficam de fora.
+                while (fim > inicio && destinos[t][fim - 1] >= vertices) {
+                    fim--;
+                }
+                usados[t] = fim;
+            }
+        }
+
+        /**
+         * Conclui a fotografia.
+         *
+         * @return Fotografia imutável
+         */
+        GrafoCsr construir() {
+            Csr[] csr = new Csr[inicios.length];
+            for (int t = 0; t < csr.length; t++) {
+                Arrays.fill(inicios[t], proximaLinha[t], vertices + 1, usados[t]);
+                csr[t] = new Csr(inicios[t], Arrays.copyOf(destinos[t], usados[t]));
+            }
+            return new GrafoCsr(dicionario, vertices, usuarios, csr);
+        }
+    }
+
+    /**
+     * Momento em que a fotografia foi montada.
+     *
+     * @return Instante em milissegundos (System.currentTimeMillis())
+     */
+    public long getConstruidoEm() {
+        return construidoEm;
+    }
+
+    /**
+     * Quantidade de usuários na fotografia.
+     *
+     * @return Quantidade de usuários
+     */
+    public int contarUsuarios() {
+        return usuarios.cardinality();
+    }
+
+    /**
+     * Quantidade de relacionamentos de um tipo (cada amizade conta duas vezes, uma em cada sentido).
+     *
+     * @param tipo Tipo de relacionamento
+     * @return Quantidade de arestas
+     */
+    public int contarArestas(TipoRelacionamento tipo) {
+        return relacionamentos[tipo.ordinal()].destinos.length;
+    }
+
+    /**
+     * Grau de um usuário em um tipo de relacionamento (quantos amigos, fãs etc.).
+     *
+     * @param tipo  Tipo de relacionamento
+     * @param login Login do usuário
+     * @return Grau do usuário
+     * @throws UsuarioNaoCadastradoException Se o usuário não estiver na fotografia
+     */
+    public int grau(TipoRelacionamento tipo, String login) {
+        return relacionamentos[tipo.ordinal()].grau(id(login));
+    }
+
+    /**
+     * Distribuição dos graus de um tipo de relacionamento.
+     *
+     * @param tipo Tipo de relacionamento
+     * @return Vetor em que a posição g guarda quantos usuários têm grau g
+     */
+    public int[] distribuicaoDeGraus(TipoRelacionamento tipo) {
+        Csr csr = relacionamentos[tipo.ordinal()];
+        int[] distribuicao = new int[1];
+        for (int u = usuarios.nextSetBit(0); u >= 0; u = usuarios.nextSetBit(u + 1)) {
+            int g = csr.grau(u);
+            if (g >= distribuicao.length) {
+                distribuicao = Arrays.copyOf(distribuicao, g + 1);
+            }
+            distribuicao[g]++;
+        }
+        return distribuicao;
+    }
+
+    /**
+     * Conta os amigos em comum de dois usuários, pela interseção das suas linhas ordenadas.
+     *
+     * @param login1 Login do primeiro usuário
+     * @param login2 Login do segundo usuário
+     * @return Quantidade de amigos em comum
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não estiver na fotografia
+     */
+    public int amigosEmComum(String login1, String login2) {
+        Csr csr = relacionamentos[TipoRelacionamento.AMIGOS.ordinal()];
+        int a = id(login1);
+        int b = id(login2);
+        int i = csr.inicios[a];
+        int fimA = csr.inicios[a + 1];
+        int j = csr.inicios[b];
+        int fimB = csr.inicios[b + 1];
+        int comuns = 0;
+        while (i < fimA && j < fimB) {
+            int x = csr.destinos[i];
+            int y = csr.destinos[j];
+            if (x == y) {
+                comuns++;
+                i++;
+                j++;
+            } else if (x < y) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return comuns;
+    }
+
+    /**
+     * Conta os usuários alcançáveis a partir de um usuário em até k saltos, seguindo o sentido dos relacionamentos
+     * (ex.: em {@link TipoRelacionamento#IDOLOS}, os ídolos, os ídolos dos ídolos...).
+     *
+     * @param tipo   Tipo de relacionamento
+     * @param login  Login do usuário de origem
+     * @param saltos Quantidade máxima de saltos (k)
+     * @return Quantidade de usuários alcançados, sem contar a origem
+     * @throws UsuarioNaoCadastradoException Se o usuário não estiver na fotografia
+     * @throws InformacaoInvalidaException   Se a quantidade de saltos for negativa
+     */
+    public int alcancaveis(TipoRelacionamento tipo, String login, int saltos) {
+        if (saltos < 0) {
+            throw new InformacaoInvalidaException("Quantidade de saltos inválida.");
+        }
+        AtomicIntegerArray marcas = new AtomicIntegerArray(vertices);
+        return percorrer(relacionamentos[tipo.ordinal()], null, id(login), 1, marcas, saltos) - 1;
+    }
+
+    /**
+     * Identifica as componentes conexas de um tipo de relacionamento, ignorando o sentido das arestas.
+     *
+     * @param tipo Tipo de relacionamento
+     * @return Vetor indexado pelo ID do usuário, com o menor ID da sua componente, ou -1 para IDs que não são de
+     * usuários na fotografia
+     */
+    public int[] componentes(TipoRelacionamento tipo) {
+        Csr saida = relacionamentos[tipo.ordinal()];
+        Csr entrada = tipo.simetrico() ? null : transposto(tipo);
+        AtomicIntegerArray marcas = new AtomicIntegerArray(vertices);
+        for (int u = usuarios.nextSetBit(0); u >= 0; u = usuarios.nextSetBit(u + 1)) {
+            if (marcas.get(u) == 0) {
+                // Guardada como ID + 1, para que 0 signifique "não visitado".
+                percorrer(saida, entrada, u, u + 1, marcas, Integer.MAX_VALUE);
+            }
+        }
+        int[] componentes = new int[vertices];
+        for (int u = 0; u < vertices; u++) {
+            componentes[u] = marcas.get(u) - 1;
+        }
+        return componentes;
+    }
+
+    /**
+     * Conta as componentes conexas de um tipo de relacionamento, ignorando o sentido das arestas.
+     *
+     * @param tipo Tipo de relacionamento
+     * @return Quantidade de componentes (um usuário sem relacionamentos é uma componente)
+     */
+    public int quantidadeDeComponentes(TipoRelacionamento tipo) {
+        int[] componentes = componentes(tipo);
+        int quantidade = 0;
+        for (int u = 0; u < vertices; u++) {
+            if (componentes[u] == u) {
+                quantidade++;
+            }
+        }
+        return quantidade;
+    }
+
+    /**
+     * Procura um caminho mais curto de amizades entre dois usuários, com uma busca em largura bidirecional: as
+     * buscas partem dos dois lados, expandindo sempre o lado de menor fronteira, até se encontrarem.
+     * <p>
+     * Os visitados de cada lado ficam em bitsets indexados pelo ID e os pais em vetores, ambos reaproveitados
+     * entre as consultas da mesma thread e limpos apenas nas posições usadas; a busca em si não aloca nada.
+     * </p>
+     *
+     * @param login1 Login do primeiro usuário
+     * @param login2 Login do segundo usuário
+     * @param saltos Quantidade máxima de saltos
+     * @return Separação entre os usuários; sem caminho se algum deles não estiver na fotografia ou se estiverem a
+     * mais de "saltos" saltos um do outro
+     * @throws InformacaoInvalidaException Se a quantidade de saltos for negativa
+     */
+    public Separacao separacao(String login1, String login2, int saltos) {
+        if (saltos < 0) {
+            throw new InformacaoInvalidaException("Quantidade de saltos inválida.");
+        }
+        int a = login1 == null ? -1 : dicionario.buscar(login1);
+        int b = login2 == null ? -1 : dicionario.buscar(login2);
+        if (a < 0 || b < 0 || a >= vertices || b >= vertices || !usuarios.get(a) || !usuarios.get(b)) {
+            return new Separacao(new String[0]);
+        }
+        int[] ids = buscas.get().procurar(relacionamentos[TipoRelacionamento.AMIGOS.ordinal()], vertices, a, b, saltos);
+        String[] caminho = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            caminho[i] = dicionario.login(ids[i]);
+        }
+        return new Separacao(caminho);
+    }
+
+    /**
+     * Estado de uma busca bidirecional: para cada lado, a fila de visitados (em ordem de nível), o bitset dos
+     * visitados e o pai de cada visitado.
+     */
+    private static final class BuscaBidirecional {
+        private long[][] visitados = {new long[0], new long[0]};
+        private int[][] pais = {new int[0], new int[0]};
+        private int[][] filas = {new int[0], new int[0]};
+        private final int[] tamanhos = new int[2];
+
+        /**
+         * Início do nível atual de cada lado na sua fila.
+         */
+        private final int[] niveis = new int[2];
+
+        private void preparar(int vertices) {
+            if (pais[0].length < vertices) {
+                for (int l = 0; l < 2; l++) {
+                    visitados[l] = new long[(vertices + 63) >>> 6];
+                    pais[l] = new int[vertices];
+                    filas[l] = new int[vertices];
+                }
+            }
+        }
+
+        private boolean visitado(int lado, int v) {
+            return (visitados[lado][v >>> 6] & (1L << v)) != 0;
+        }
+
+        private void visitar(int lado, int v, int pai) {
+            visitados[lado][v >>> 6] |= 1L << v;
+            pais[lado][v] = pai;
+            filas[lado][tamanhos[lado]++] = v;
+        }
+
+        /**
+         * @return IDs do caminho de a até b, ou vetor vazio
+         */
+        private int[] procurar(Csr amigos, int vertices, int a, int b, int saltos) {
+            preparar(vertices);
+            tamanhos[0] = 0;
+            tamanhos[1] = 0;
+            try {
+                visitar(0, a, -1);
+                if (a == b) {
+                    return new int[]{a};
+                }
+                visitar(1, b, -1);
+                niveis[0] = 0;
+                niveis[1] = 0;
+                for (int percorridos = 0; percorridos < saltos; percorridos++) {
+                    int fronteira0 = tamanhos[0] - niveis[0];
+                    int fronteira1 = tamanhos[1] - niveis[1];
+                    if (fronteira0 == 0 || fronteira1 == 0) {
+                        break;
+                    }
+                    int lado = fronteira0 <= fronteira1 ? 0 : 1;
+                    int outro = 1 - lado;
+                    int fim = tamanhos[lado];
+                    for (int i = niveis[lado]; i < fim; i++) {
+                        int u = filas[lado][i];
+                        for (int j = amigos.inicios[u]; j < amigos.inicios[u + 1]; j++) {
+                            int v = amigos.destinos[j];
+                            if (visitado(lado, v)) {
+                                continue;
+                            }
+                            visitar(lado, v, u);
+                            if (visitado(outro, v)) {
+                                return caminho(v);
+                            }
+                        }
+                    }
+                    niveis[lado] = fim;
+                }
+                return new int[0];
+            } finally {
+                for (int l = 0; l < 2; l++) {
+                    for (int i = 0; i < tamanhos[l]; i++) {
+                        visitados[l][filas[l][i] >>> 6] = 0;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Monta o caminho que passa pelo ponto de encontro das duas buscas.
+         */
+        private int[] caminho(int encontro) {
+            int ate = 0;
+            for (int v = encontro; v != -1; v = pais[0][v]) {
+                ate++;
+            }
+            int depois = 0;
+            for (int v = pais[1][encontro]; v != -1; v = pais[1][v]) {
+                depois++;
+            }
+            int[] caminho = new int[ate + depois];
+            int i = ate - 1;
+            for (int v = encontro; v != -1; v = pais[0][v]) {
+                caminho[i--] = v;
+            }
+            i = ate;
+            for (int v = pais[1][encontro]; v != -1; v = pais[1][v]) {
+                caminho[i++] = v;
+            }
+            return caminho;
+        }
+    }
+
+    /**
+     * Obtém o ID de um usuário da fotografia.
+     */
+    private int id(String login) {
+        int id = login == null ? -1 : dicionario.buscar(login);
+        if (id < 0 || id >= vertices || !usuarios.get(id)) {
+            throw new UsuarioNaoCadastradoException("Usuário não cadastrado.");
+        }
+        return id;
+    }
+
+    /**
+     * Relacionamentos de um tipo no sentido contrário, montados na primeira vez que forem necessários.
+     */
+    private synchronized Csr transposto(TipoRelacionamento tipo) {
+        int t = tipo.ordinal();
+        if (transpostos[t] == null) {
+            Csr csr = relacionamentos[t];
+            int[] inicios = new int[vertices + 1];
+            for (int d : csr.destinos) {
+                inicios[d + 1]++;
+            }
+            for (int u = 0; u < vertices; u++) {
+                inicios[u + 1] += inicios[u];
+            }
+            int[] proximo = Arrays.copyOf(inicios, vertices);
+            int[] destinos = new int[csr.destinos.length];
+            // Percorrendo as origens em ordem crescente, cada linha transposta já sai ordenada.
+            for (int u = 0; u < vertices; u++) {
+                for (int i = csr.inicios[u]; i < csr.inicios[u + 1]; i++) {
+                    destinos[proximo[csr.destinos[i]]++] = u;
+                }
+            }
+            transpostos[t] = new Csr(inicios, destinos);
+        }
+        return transpostos[t];
+    }
+
+    /**
+     * Busca em largura nível a nível, marcando os vértices visitados.
+     *
+     * @param saida    Arestas seguidas no sentido direto
+     * @param entrada  Arestas seguidas no sentido contrário, ou null
+     * @param origem   Vértice inicial
+     * @param marca    Valor (diferente de 0) gravado nos visitados
+     * @param marcas   Marcas dos vértices; 0 indica não visitado
+     * @param niveis   Quantidade máxima de níveis expandidos
+     * @return Quantidade de vértices visitados, incluindo a origem
+     */
+    private static int percorrer(Csr saida, Csr entrada, int origem, int marca, AtomicIntegerArray marcas, int niveis) {
+        marcas.set(origem, marca);
+        int[] fronteira = {origem};
+        int visitados = 1;
+        for (int nivel = 0; nivel < niveis && fronteira.length > 0; nivel++) {
+            fronteira = fronteira.length >= FRONTEIRA_POR_TAREFA
+                    ? ForkJoinPool.commonPool().invoke(new Expansao(saida, entrada, fronteira, 0, fronteira.length, marca, marcas))
+                    : expandir(saida, entrada, fronteira, 0, fronteira.length, marca, marcas);
+            visitados += fronteira.length;
+        }
+        return visitados;
+    }
+
+    /**
+     * Expande uma faixa do nível atual: devolve os vizinhos ainda não visitados, marcando-os.
+     */
+    private static int[] expandir(Csr saida, Csr entrada, int[] fronteira, int de, int ate, int marca,
+                                  AtomicIntegerArray marcas) {
+        int[] proximos = new int[16];
+        int n = 0;
+        Csr[] sentidos = entrada == null ? new Csr[]{saida} : new Csr[]{saida, entrada};
+        for (int i = de; i < ate; i++) {
+            int u = fronteira[i];
+            for (Csr csr : sentidos) {
+                for (int j = csr.inicios[u]; j < csr.inicios[u + 1]; j++) {
+                    int v = csr.destinos[j];
+                    if (marcas.get(v) == 0 && marcas.compareAndSet(v, 0, marca)) {
+                        if (n == proximos.length) {
+                            proximos = Arrays.copyOf(proximos, n * 2);
+                        }
+                        proximos[n++] = v;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(proximos, n);
+    }
+
+    /**
+     * Expansão de um nível dividida ao meio até as faixas ficarem pequenas.
+     */
+    private static final class Expansao extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Csr saida;
+        private final Csr entrada;
+        private final int[] fronteira;
+        private final int de;
+        private final int ate;
+        private final int marca;
+        private final AtomicIntegerArray marcas;
+
+        private Expansao(Csr saida, Csr entrada, int[] fronteira, int de, int ate, int marca, AtomicIntegerArray marcas) {
+            this.saida = saida;
+            this.entrada = entrada;
+            this.fronteira = fronteira;
+            this.de = de;
+            this.ate = ate;
+            this.marca = marca;
+            this.marcas = marcas;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (ate - de <= FRONTEIRA_POR_TAREFA) {
+                return expandir(saida, entrada, fronteira, de, ate, marca, marcas);
+            }
+            int meio = (de + ate) >>> 1;
+            Expansao esquerda = new Expansao(saida, entrada, fronteira, de, meio, marca, marcas);
+            esquerda.fork();
+            int[] b = new Expansao(saida, entrada, fronteira, meio, ate, marca, marcas).compute();
+            int[] a = esquerda.join();
+            int[] juntos = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, juntos, a.length, b.length);
+            return juntos;
+        }
+    }
+}
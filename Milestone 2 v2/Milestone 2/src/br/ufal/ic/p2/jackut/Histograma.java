@@ -0,0 +1,93 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências, em faixas de potências de 2 microssegundos (até 1, 2, 4, 8... µs).
+ * <p>
+ * Registrar uma medida é incrementar um contador, sem bloqueio, então pode ser feito em qualquer operação.
+ * Os percentis são aproximados pelo limite superior da faixa em que caem (erro de no máximo 2 vezes).
+ * É criado e exposto por {@link Metricas#histograma(String)}.
+ * </p>
+ */
+public class Histograma {
+    private static final int FAIXAS = 40;
+
+    private final LongAdder[] faixas = new LongAdder[FAIXAS];
+    private final LongAdder quantidade = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Cria um histograma vazio.
+     */
+    public Histograma() {
+        for (int i = 0; i < FAIXAS; i++) {
+            faixas[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registra uma medida.
+     *
+     * @param nanos Duração em nanossegundos
+     */
+    public void registrar(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int faixa = Math.min(FAIXAS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        faixas[faixa].increment();
+        quantidade.increment();
+        maximo.accumulate(micros);
+    }
+
+    /**
+     * Registra a duração de uma operação iniciada em um instante.
+     *
+     * @param inicio Instante de início, obtido de {@link System#nanoTime()}
+     */
+    public void registrarDesde(long inicio) {
+        registrar(System.nanoTime() - inicio);
+    }
+
+    /**
+     * Quantidade de medidas registradas.
+     *
+     * @return Quantidade
+     */
+    public long getQuantidade() {
+        return quantidade.sum();
+    }
+
+    /**
+     * Maior medida registrada.
+     *
+     * @return Duração em microssegundos
+     */
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Obtém um percentil aproximado.
+     *
+     * @param percentil Percentil desejado, entre 0 e 100
+     * @return Limite superior, em microssegundos, da faixa do percentil; 0 se não houver medidas
+     */
+    public long percentil(double percentil) {
+        long[] contagens = new long[FAIXAS];
+        long total = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            contagens[i] = faixas[i].sum();
+            total += contagens[i];
+        }
+        long alvo = (long) Math.ceil(total * percentil / 100);
+        long acumulado = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            acumulado += contagens[i];
+            if (acumulado >= alvo && acumulado > 0) {
+                return Math.min(1L << i, getMaximo());
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,61 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.List;
+
+/**
+ * Ponto de entrada das importações em lote, separado da {@link Facade}.
+ * <p>
+ * Os lotes aplicam operações em nome de vários usuários sem sessões, então não fazem parte da API dos clientes:
+ * servem a ferramentas de carga, que abrem os dados do Jackut com esta classe, aplicam os lotes e os salvam em
+ * {@link #encerrar()}. Assim como o {@link ImportadorCsv}, deve ser usada com o sistema parado, já que tem o seu
+ * próprio {@link Sistema} sobre os mesmos arquivos.
+ * </p>
+ */
+public class ImportacaoEmLote {
+    private final Sistema sistema;
+
+    /**
+     * Abre os dados persistentes do Jackut, pelo motor de armazenamento configurado.
+     */
+    public ImportacaoEmLote() {
+        this.sistema = new Sistema();
+    }
+
+    /**
+     * Cria vários usuários de uma vez. Um item inválido não interrompe o lote.
+     *
+     * @param usuarios Usuários a criar, cada um como {login, senha, nome}
+     * @return Resultado de cada item, com a mensagem de erro dos que não foram criados
+     */
+    public ResultadoLote criarUsuarios(List<String[]> usuarios) {
+        return sistema.criarUsuarios(usuarios);
+    }
+
+    /**
+     * Aplica vários pedidos de amizade de uma vez. Cada par equivale a {@link Facade#adicionarAmigo(String, String)}
+     * feito pelo primeiro usuário.
+     *
+     * @param pares Pedidos, cada um como {login, amigo}
+     * @return Resultado de cada item, com a mensagem de erro dos que não foram aplicados
+     */
+    public ResultadoLote adicionarAmizades(List<String[]> pares) {
+        return sistema.adicionarAmizades(pares);
+    }
+
+    /**
+     * Envia vários recados de uma vez, com as mesmas regras de {@link Facade#enviarRecado(String, String, String)}.
+     *
+     * @param recados Recados, cada um como {remetente, destinatario, mensagem}
+     * @return Resultado de cada item, com a mensagem de erro dos que não foram enviados
+     */
+    public ResultadoLote enviarRecados(List<String[]> recados) {
+        return sistema.enviarRecados(recados);
+    }
+
+    /**
+     * Salva os dados importados e encerra o sistema.
+     */
+    public void encerrar() {
+        sistema.encerrarSistema();
+    }
+}
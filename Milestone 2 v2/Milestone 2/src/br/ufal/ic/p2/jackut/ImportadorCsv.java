@@ -0,0 +1,594 @@
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.Relacionamentos.TipoRelacionamento;
+import br.ufal.ic.p2.jackut.persistencia.GravadorComunidades;
+import br.ufal.ic.p2.jackut.persistencia.GravadorUsuarios;
+import br.ufal.ic.p2.jackut.persistencia.Snapshot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Ferramenta de migração: gera o snapshot ("usuarios.1.ser" e "comunidades.1.ser") carregado por {@link Sistema}
+ * diretamente de arquivos CSV de usuários e de arestas, sem passar pela {@link Facade} chamada a chamada.
+ * <p>
+ * Cada arquivo tem um registro por linha, com os campos separados por vírgula (ou por tabulação, se o nome do
+ * arquivo terminar em ".tsv"); em CSV, um campo entre aspas duplas pode conter vírgulas. Linhas vazias ou
+ * iniciadas por # são ignoradas, assim como uma primeira linha com os nomes das colunas:
+ * </p>
+ * <pre>
+ * usuarios:    login, senha, nome
+ * amizades:    login, amigo         (amizade já aceita, guardada nos dois usuários)
+ * fas:         fa, idolo
+ * inimigos:    login, inimigo
+ * comunidades: nome, dono, descricao
+ * membros:     comunidade, login
+ * </pre>
+ * <p>
+ * São verificadas as mesmas regras das operações individuais: logins e comunidades únicos, senha diferente do
+ * login e do nome, usuários e comunidades existentes, ninguém amigo, fã ou inimigo de si mesmo, e nenhuma
+ * amizade ou relação de fã entre inimigos (em qualquer sentido). As amizades são sempre gravadas nos dois
+ * usuários, e o índice reverso de referências de cada um é preenchido. Uma linha que viola alguma regra é
+ * recusada e relatada, sem interromper a importação. Os relacionamentos de cada usuário ficam em ordem de
+ * login, e não na ordem das linhas dos arquivos.
+ * </p>
+ * <p>
+ * As arestas não são mantidas em memória: passam por {@link OrdenacaoExterna}, que as agrupa por usuário e por
+ * comunidade, e cada usuário é montado, gravado e descartado em seguida. Ficam em memória apenas os logins
+ * (para validar as arestas e montar a tabela de strings do arquivo) e os membros de uma comunidade por vez.
+ * As senhas são codificadas como em {@link Senhas}, ou gravadas em texto puro com "senhas=texto" (elas são
+ * codificadas no primeiro login de cada usuário).
+ * </p>
+ * <p>
+ * Uso: {@code java br.ufal.ic.p2.jackut.ImportadorCsv usuarios=u.csv amizades=a.csv fas=f.csv
+ * inimigos=i.csv comunidades=c.csv membros=m.csv [destino=diretório] [senhas=texto]}. Só o arquivo de usuários
+ * é obrigatório. O destino não pode ter um snapshot nem um journal.
+ * </p>
+ */
+public class ImportadorCsv {
+    private static final String SEP = "\t";
+    private static final int BLOCO_USUARIOS = 1024;
+    private static final int MAXIMO_RELATADAS = 1000;
+
+    /**
+     * Colunas de cada tipo de arquivo, na ordem.
+     */
+    private static final Map<String, String[]> COLUNAS = new LinkedHashMap<>();
+
+    static {
+        COLUNAS.put("usuarios", new String[]{"login", "senha", "nome"});
+        COLUNAS.put("amizades", new String[]{"login", "amigo"});
+        COLUNAS.put("fas", new String[]{"fa", "idolo"});
+        COLUNAS.put("inimigos", new String[]{"login", "inimigo"});
+        COLUNAS.put("comunidades", new String[]{"nome", "dono", "descricao"});
+        COLUNAS.put("membros", new String[]{"comunidade", "login"});
+    }
+
+    /**
+     * Recebe os campos de uma linha válida de um arquivo de entrada.
+     */
+    private interface Linha {
+        void aceitar(String[] campos, long numero) throws IOException;
+    }
+
+    private final Path destino;
+    private final Map<String, Path> entradas = new HashMap<>();
+    private boolean codificarSenhas = true;
+    private int linhasPorBloco = Configuracao.linhasPorBlocoImportacao();
+
+    private final Map<String, Long> aceitas = new TreeMap<>();
+    private final Map<String, Long> recusadas = new TreeMap<>();
+    private long relatadas;
+
+    private final Set<String> logins = new HashSet<>();
+    private final DicionarioLogins dicionario = new DicionarioLogins();
+
+    /**
+     * Cria um importador.
+     *
+     * @param destino Diretório onde os arquivos do snapshot serão criados
+     */
+    public ImportadorCsv(Path destino) {
+        this.destino = destino;
+    }
+
+    /**
+     * Define um arquivo de entrada.
+     *
+     * @param tipo    "usuarios", "amizades", "fas", "inimigos", "comunidades" ou "membros"
+     * @param arquivo Arquivo CSV ou TSV
+     * @throws IllegalArgumentException Se o tipo não existir
+     */
+    public void setEntrada(String tipo, Path arquivo) {
+        if (!COLUNAS.containsKey(tipo)) {
+            throw new IllegalArgumentException("Tipo de arquivo desconhecido: " + tipo);
+        }
+        entradas.put(tipo, arquivo);
+    }
+
+    /**
+     * Define se as senhas são codificadas na importação (o padrão) ou gravadas em texto puro, para serem
+     * codificadas no primeiro login de cada usuário.
+     *
+     * @param codificarSenhas false para gravar as senhas em texto puro
+     */
+    public void setCodificarSenhas(boolean codificarSenhas) {
+        this.codificarSenhas = codificarSenhas;
+    }
+
+    /**
+     * Define quantas linhas de cada ordenação são mantidas em memória.
+     *
+     * @param linhasPorBloco Quantidade de linhas
+     */
+    public void setLinhasPorBloco(int linhasPorBloco) {
+        this.linhasPorBloco = linhasPorBloco;
+    }
+
+    /**
+     * Quantidade de linhas aceitas de cada arquivo.
+     *
+     * @return Mapa de tipo de arquivo para quantidade
+     */
+    public Map<String, Long> getAceitas() {
+        return aceitas;
+    }
+
+    /**
+     * Quantidade de linhas recusadas de cada arquivo.
+     *
+     * @return Mapa de tipo de arquivo para quantidade
+     */
+    public Map<String, Long> getRecusadas() {
+        return recusadas;
+    }
+
+    /**
+     * Lê os arquivos de entrada e grava o snapshot no destino.
+     *
+     * @throws IOException Se algum arquivo não puder ser lido ou gravado, ou se o destino já tiver dados
+     */
+    public void importar() throws IOException {
+        if (!entradas.containsKey("usuarios")) {
+            throw new IOException("O arquivo de usuários é obrigatório.");
+        }
+        Path usuariosFinal = Snapshot.arquivoUsuarios(destino, 1);
+        Path comunidadesFinal = Snapshot.arquivoComunidades(destino, 1);
+        if (Snapshot.existe(destino) || Files.exists(destino.resolve(Configuracao.arquivoJournal()))) {
+            throw new IOException("O destino já tem dados do Jackut: " + destino.toAbsolutePath());
+        }
+        Path usuariosTmp = usuariosFinal.resolveSibling(usuariosFinal.getFileName() + ".importacao");
+        Path comunidadesTmp = comunidadesFinal.resolveSibling(comunidadesFinal.getFileName() + ".importacao");
+
+        try (OrdenacaoExterna usuarios = new OrdenacaoExterna(linhasPorBloco, destino);
+             OrdenacaoExterna inimigos = new OrdenacaoExterna(linhasPorBloco, destino);
+             OrdenacaoExterna amizades = new OrdenacaoExterna(linhasPorBloco, destino);
+             OrdenacaoExterna fas = new OrdenacaoExterna(linhasPorBloco, destino);
+             OrdenacaoExterna comunidades = new OrdenacaoExterna(linhasPorBloco, destino);
+             OrdenacaoExterna membros = new OrdenacaoExterna(linhasPorBloco, destino);
+             OrdenacaoExterna fatos = new OrdenacaoExterna(linhasPorBloco, destino)) {
+
+            lerUsuarios(usuarios);
+            lerInimigos(inimigos, fatos);
+            lerArestas(amizades, fas);
+            lerComunidades(comunidades, membros);
+
+            inimigos.ordenar();
+            gravarComunidades(comunidades, membros, fatos, comunidadesTmp);
+            juntarAmizades(amizades, inimigos, fatos);
+            juntarFas(fas, inimigos, fatos);
+            gravarUsuarios(usuarios, fatos, usuariosTmp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(usuariosTmp);
+            Files.deleteIfExists(comunidadesTmp);
+            throw e;
+        }
+
+        // Mesma ordem de Snapshot.gravar: o arquivo de comunidades completa o par
+        Files.move(usuariosTmp, usuariosFinal, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(comunidadesTmp, comunidadesFinal, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void lerUsuarios(OrdenacaoExterna usuarios) throws IOException {
+        ler("usuarios", (c, n) -> {
+            if (logins.contains(c[0])) {
+                recusar("usuarios", n, "Conta com esse nome já existe.");
+            } else if (c[0].equals(c[1]) || c[2].equals(c[1])) {
+                recusar("usuarios", n, "A senha deve ser diferente do nome de usuário ou do login.");
+            } else {
+                logins.add(c[0]);
+                usuarios.adicionar(c[0] + SEP + c[1] + SEP + c[2]);
+                aceitar("usuarios");
+            }
+        });
+    }
+
+    private void lerInimigos(OrdenacaoExterna inimigos, OrdenacaoExterna fatos) throws IOException {
+        ler("inimigos", (c, n) -> {
+            if (!logins.contains(c[0]) || !logins.contains(c[1])) {
+                recusar("inimigos", n, "Usuário não cadastrado.");
+            } else if (c[0].equals(c[1])) {
+                recusar("inimigos", n, "Usuário não pode ser inimigo de si mesmo.");
+            } else {
+                inimigos.adicionar(par(c[0], c[1]));
+                fatos.adicionar(c[0] + SEP + "E" + SEP + c[1]);
+                fatos.adicionar(c[1] + SEP + "R" + SEP + c[0]);
+                aceitar("inimigos");
+            }
+        });
+    }
+
+    private void lerArestas(OrdenacaoExterna amizades, OrdenacaoExterna fas) throws IOException {
+        ler("amizades", (c, n) -> {
+            if (!logins.contains(c[0]) || !logins.contains(c[1])) {
+                recusar("amizades", n, "Usuário não cadastrado.");
+            } else if (c[0].equals(c[1])) {
+                recusar("amizades", n, "Usuário não pode adicionar a si mesmo como amigo.");
+            } else {
+                amizades.adicionar(par(c[0], c[1]) + SEP + n);
+            }
+        });
+        ler("fas", (c, n) -> {
+            if (!logins.contains(c[0]) || !logins.contains(c[1])) {
+                recusar("fas", n, "Usuário não cadastrado.");
+            } else if (c[0].equals(c[1])) {
+                recusar("fas", n, "Usuário não pode ser fã de si mesmo.");
+            } else {
+                fas.adicionar(par(c[0], c[1]) + SEP + c[0] + SEP + n);
+            }
+        });
+    }
+
+    private void lerComunidades(OrdenacaoExterna comunidades, OrdenacaoExterna membros) throws IOException {
+        ler("comunidades", (c, n) -> {
+            if (!logins.contains(c[1])) {
+                recusar("comunidades", n, "Usuário não cadastrado.");
+            } else {
+                // O número da linha na chave faz a primeira definição de um nome repetido ser a aceita
+                comunidades.adicionar(c[0] + SEP + String.format("%012d", n) + SEP + c[1] + SEP + c[2]);
+            }
+        });
+        ler("membros", (c, n) -> {
+            if (!logins.contains(c[1])) {
+                recusar("membros", n, "Usuário não cadastrado.");
+            } else {
+                membros.adicionar(c[0] + SEP + c[1] + SEP + n);
+            }
+        });
+    }
+
+    /**
+     * Junta as comunidades com os seus membros, ambos ordenados por nome, e grava o arquivo de comunidades.
+     * Os membros viram fatos dos usuários, para o arquivo de usuários.
+     */
+    private void gravarComunidades(OrdenacaoExterna comunidades, OrdenacaoExterna membros, OrdenacaoExterna fatos,
+                                   Path arquivo) throws IOException {
+        comunidades.ordenar();
+        membros.ordenar();
+        int quantidade = 0;
+        try (BufferedReader leitor = comunidades.ler()) {
+            String anterior = null;
+            for (String linha = leitor.readLine(); linha != null; linha = leitor.readLine()) {
+                String nome = campos(linha)[0];
+                if (!nome.equals(anterior)) {
+                    quantidade++;
+                    anterior = nome;
+                }
+            }
+        }
+
+        try (BufferedReader leitor = comunidades.ler();
+             BufferedReader leitorMembros = membros.ler();
+             GravadorComunidades gravador = new GravadorComunidades(arquivo, quantidade, 0, 0)) {
+            String[] membro = campos(leitorMembros.readLine());
+            String anterior = null;
+            for (String linha = leitor.readLine(); linha != null; linha = leitor.readLine()) {
+                String[] c = campos(linha);
+                if (c[0].equals(anterior)) {
+                    recusar("comunidades", Long.parseLong(c[1]), "Comunidade com esse nome já existe.");
+                    continue;
+                }
+                anterior = c[0];
+                aceitar("comunidades");
+
+                Comunidade comunidade = new Comunidade(c[2], c[0], c[3], dicionario);
+                while (membro != null && membro[0].compareTo(c[0]) < 0) {
+                    recusar("membros", Long.parseLong(membro[2]), "Comunidade não existe.");
+                    membro = campos(leitorMembros.readLine());
+                }
+                while (membro != null && membro[0].equals(c[0])) {
+                    comunidade.getMembrosSet().add(membro[1]);
+                    aceitar("membros");
+                    membro = campos(leitorMembros.readLine());
+                }
+
+                long fim = comunidade.getMensagens().getFim();
+                for (String login : comunidade.getMembrosSet()) {
+                    fatos.adicionar(login + SEP + "C" + SEP + c[0] + SEP + fim);
+                }
+                gravador.adicionar(comunidade);
+            }
+            while (membro != null) {
+                recusar("membros", Long.parseLong(membro[2]), "Comunidade não existe.");
+                membro = campos(leitorMembros.readLine());
+            }
+            gravador.concluir();
+        }
+    }
+
+    private void juntarAmizades(OrdenacaoExterna amizades, OrdenacaoExterna inimigos, OrdenacaoExterna fatos)
+            throws IOException {
+        amizades.ordenar();
+        try (BufferedReader leitor = amizades.ler(); BufferedReader leitorInimigos = inimigos.ler()) {
+            String inimigo = leitorInimigos.readLine();
+            String anterior = null;
+            for (String linha = leitor.readLine(); linha != null; linha = leitor.readLine()) {
+                String[] c = campos(linha);
+                String par = c[0] + SEP + c[1];
+                while (inimigo != null && inimigo.compareTo(par) < 0) {
+                    inimigo = leitorInimigos.readLine();
+                }
+                if (par.equals(inimigo)) {
+                    recusar("amizades", Long.parseLong(c[2]), String.format("Função inválida: %s é seu inimigo.", c[1]));
+                    continue;
+                }
+                aceitar("amizades");
+                if (!par.equals(anterior)) {
+                    fatos.adicionar(c[0] + SEP + "A" + SEP + c[1]);
+                    fatos.adicionar(c[1] + SEP + "A" + SEP + c[0]);
+                    anterior = par;
+                }
+            }
+        }
+    }
+
+    private void juntarFas(OrdenacaoExterna fas, OrdenacaoExterna inimigos, OrdenacaoExterna fatos)
+            throws IOException {
+        fas.ordenar();
+        try (BufferedReader leitor = fas.ler(); BufferedReader leitorInimigos = inimigos.ler()) {
+            String inimigo = leitorInimigos.readLine();
+            for (String linha = leitor.readLine(); linha != null; linha = leitor.readLine()) {
+                String[] c = campos(linha);
+                String par = c[0] + SEP + c[1];
+                while (inimigo != null && inimigo.compareTo(par) < 0) {
+                    inimigo = leitorInimigos.readLine();
+                }
+                String fa = c[2];
+                String idolo = fa.equals(c[0]) ? c[1] : c[0];
+                if (par.equals(inimigo)) {
+                    recusar("fas", Long.parseLong(c[3]), String.format("Função inválida: %s é seu inimigo.", idolo));
+                    continue;
+                }
+                aceitar("fas");
+                // Repetições são descartadas pela ordenação dos fatos
+                fatos.adicionar(fa + SEP + "I" + SEP + idolo);
+                fatos.adicionar(idolo + SEP + "F" + SEP + fa);
+            }
+        }
+    }
+
+    /**
+     * Junta os usuários com os seus fatos (relacionamentos e comunidades), ambos ordenados por login, e grava o
+     * arquivo de usuários, montando {@value #BLOCO_USUARIOS} usuários por vez.
+     */
+    private void gravarUsuarios(OrdenacaoExterna usuarios, OrdenacaoExterna fatos, Path arquivo) throws IOException {
+        usuarios.ordenar();
+        fatos.ordenar();
+        Senhas senhas = codificarSenhas ? new Senhas(new Metricas()) : null;
+        List<Usuario> bloco = new ArrayList<>(BLOCO_USUARIOS);
+        try (BufferedReader leitor = usuarios.ler();
+             BufferedReader leitorFatos = fatos.ler();
+             GravadorUsuarios gravador = new GravadorUsuarios(arquivo, 0)) {
+            String[] fato = campos(leitorFatos.readLine());
+            for (String linha = leitor.readLine(); linha != null; linha = leitor.readLine()) {
+                String[] c = campos(linha);
+                Usuario usuario = new Usuario(c[0], c[1], c[2], dicionario);
+                while (fato != null && fato[0].compareTo(c[0]) < 0) {
+                    fato = campos(leitorFatos.readLine());
+                }
+                while (fato != null && fato[0].equals(c[0])) {
+                    aplicar(usuario, fato);
+                    fato = campos(leitorFatos.readLine());
+                }
+                bloco.add(usuario);
+                if (bloco.size() == BLOCO_USUARIOS) {
+                    gravarBloco(bloco, senhas, gravador);
+                }
+            }
+            gravarBloco(bloco, senhas, gravador);
+            gravador.concluir();
+        }
+    }
+
+    private static void aplicar(Usuario usuario, String[] fato) {
+        String outro = fato[2];
+        switch (fato[1]) {
+            case "A" -> usuario.restaurarRelacionamento(TipoRelacionamento.AMIGOS, outro);
+            case "I" -> usuario.restaurarRelacionamento(TipoRelacionamento.IDOLOS, outro);
+            case "F" -> usuario.restaurarRelacionamento(TipoRelacionamento.FAS, outro);
+            case "E" -> usuario.restaurarRelacionamento(TipoRelacionamento.INIMIGOS, outro);
+            case "C" -> {
+                usuario.adicionarComunidade(outro);
+                usuario.setCursor(outro, Long.parseLong(fato[3]));
+            }
+            default -> { }
+        }
+        // Quem é amigo, fã, ídolo ou inimigo deste usuário guarda uma referência a ele
+        if (!fato[1].equals("E") && !fato[1].equals("C")) {
+            usuario.adicionarReferenciaDe(outro);
+        }
+    }
+
+    private static void gravarBloco(List<Usuario> bloco, Senhas senhas, GravadorUsuarios gravador) throws IOException {
+        if (senhas != null && !bloco.isEmpty()) {
+            List<String> textos = new ArrayList<>(bloco.size());
+            for (Usuario usuario : bloco) {
+                textos.add(usuario.getSenha());
+            }
+            String[] codificadas = senhas.codificarTodas(textos);
+            for (int i = 0; i < codificadas.length; i++) {
+                bloco.get(i).setSenha(codificadas[i]);
+            }
+        }
+        for (Usuario usuario : bloco) {
+            gravador.adicionar(usuario);
+        }
+        bloco.clear();
+    }
+
+    /**
+     * Lê um arquivo de entrada, se tiver sido informado, passando adiante as linhas com a quantidade certa de
+     * campos e sem caracteres de controle (que quebrariam a ordenação por campos).
+     */
+    private void ler(String tipo, Linha destinoLinha) throws IOException {
+        Path arquivo = entradas.get(tipo);
+        if (arquivo == null) {
+            return;
+        }
+        String[] colunas = COLUNAS.get(tipo);
+        char separador = arquivo.getFileName().toString().endsWith(".tsv") ? '\t' : ',';
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            long numero = 0;
+            boolean primeira = true;
+            for (String linha = leitor.readLine(); linha != null; linha = leitor.readLine()) {
+                numero++;
+                if (linha.isBlank() || linha.startsWith("#")) {
+                    continue;
+                }
+                String[] c = separar(linha, separador);
+                if (primeira && String.join(",", c).trim().equalsIgnoreCase(String.join(",", colunas))) {
+                    primeira = false;
+                    continue;
+                }
+                primeira = false;
+                if (c.length != colunas.length) {
+                    recusar(tipo, numero, "Quantidade de campos inválida.");
+                } else if (temControle(c)) {
+                    recusar(tipo, numero, "Caractere inválido.");
+                } else {
+                    destinoLinha.aceitar(c, numero);
+                }
+            }
+        }
+    }
+
+    private void aceitar(String tipo) {
+        aceitas.merge(tipo, 1L, Long::sum);
+    }
+
+    private void recusar(String tipo, long linha, String motivo) {
+        recusadas.merge(tipo, 1L, Long::sum);
+        if (relatadas++ < MAXIMO_RELATADAS) {
+            System.err.println(entradas.get(tipo) + ":" + linha + ": " + motivo);
+        }
+    }
+
+    private static String par(String a, String b) {
+        return a.compareTo(b) < 0 ? a + SEP + b : b + SEP + a;
+    }
+
+    private static String[] campos(String linha) {
+        return linha == null ? null : linha.split(SEP, -1);
+    }
+
+    private static boolean temControle(String[] campos) {
+        for (String campo : campos) {
+            for (int i = 0; i < campo.length(); i++) {
+                if (campo.charAt(i) < 0x20) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Separa os campos de uma linha. Com vírgula, campos entre aspas duplas podem conter o separador, e aspas
+     * duplas dentro deles são escritas duas vezes.
+     */
+    private static String[] separar(String linha, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+        boolean aspas = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (aspas) {
+                if (c != '"') {
+                    atual.append(c);
+                } else if (i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                    atual.append('"');
+                    i++;
+                } else {
+                    aspas = false;
+                }
+            } else if (c == '"' && separador == ',') {
+                aspas = true;
+            } else if (c == separador) {
+                campos.add(atual.toString());
+                atual.setLength(0);
+            } else {
+                atual.append(c);
+            }
+        }
+        campos.add(atual.toString());
+        return campos.toArray(new String[0]);
+    }
+
+    /**
+     * Executa a importação pela linha de comando.
+     *
+     * @param args Argumentos no formato chave=valor (ver a documentação da classe)
+     */
+    public static void main(String[] args) {
+        Path destino = Paths.get(".");
+        Map<String, Path> arquivos = new HashMap<>();
+        boolean codificar = true;
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            String chave = igual < 0 ? arg : arg.substring(0, igual);
+            String valor = igual < 0 ? "" : arg.substring(igual + 1);
+            if (chave.equals("destino")) {
+                destino = Paths.get(valor);
+            } else if (chave.equals("senhas")) {
+                codificar = !valor.equals("texto");
+            } else if (COLUNAS.containsKey(chave)) {
+                arquivos.put(chave, Paths.get(valor));
+            } else {
+                System.err.println("Argumento desconhecido: " + arg);
+                System.err.println("Uso: ImportadorCsv usuarios=arquivo [amizades=arquivo] [fas=arquivo] "
+                        + "[inimigos=arquivo] [comunidades=arquivo] [membros=arquivo] [destino=diretório] [senhas=texto]");
+                return;
+            }
+        }
+
+        ImportadorCsv importador = new ImportadorCsv(destino);
+        arquivos.forEach(importador::setEntrada);
+        importador.setCodificarSenhas(codificar);
+        try {
+            importador.importar();
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Ocorreu um erro na importação.");
+            return;
+        }
+        for (String tipo : COLUNAS.keySet()) {
+            if (arquivos.containsKey(tipo)) {
+                System.out.println(tipo + ": " + importador.getAceitas().getOrDefault(tipo, 0L) + " aceitas, "
+                        + importador.getRecusadas().getOrDefault(tipo, 0L) + " recusadas");
+            }
+        }
+    }
+}
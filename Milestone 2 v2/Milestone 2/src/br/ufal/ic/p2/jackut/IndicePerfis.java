@@ -0,0 +1,255 @@
+package br.ufal.ic.p2.jackut;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido dos perfis: para cada atributo e valor normalizado ({@link #normalizar(String)}), o conjunto
+ * dos IDs ({@link DicionarioLogins}) dos usuários com aquele valor, guardado como um {@link BitmapCompactado}.
+ * <p>
+ * São indexados o nome do usuário, como atributo "nome", e os atributos extras do perfil, com os mesmos valores
+ * devolvidos por {@link Sistema#getAtributoUsuario(String, String)}. Os valores de cada atributo ficam ordenados,
+ * então a busca por prefixo é a união dos conjuntos de um intervalo de valores.
+ * </p>
+ * <p>
+ * Os métodos são thread-safe: cada conjunto é alterado e lido com o seu próprio monitor, e um conjunto esvaziado
+ * é retirado do índice com o monitor, para que uma inclusão concorrente não se perca nele. Quem altera o perfil
+ * de um usuário deve fazê-lo com a trava dele, para que as alterações do mesmo usuário cheguem em ordem.
+ * </p>
+ */
+final class IndicePerfis {
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+
+    private final Map<String, ConcurrentSkipListMap<String, BitmapCompactado>> atributos = new ConcurrentHashMap<>();
+
+    /**
+     * Indica se o índice já cobre todos os usuários (ver {@link #setPronto()}).
+     */
+    private volatile boolean pronto;
+
+    /**
+     * Normaliza um valor para a busca: sem espaços nas pontas, espaços internos reduzidos a um, sem acentos e em
+     * minúsculas.
+     *
+     * @param valor Valor original
+     * @return Valor normalizado
+     */
+    static String normalizar(String valor) {
+        String s = Normalizer.normalize(valor.trim(), Normalizer.Form.NFD);
+        s = MARCAS.matcher(s).replaceAll("");
+        return ESPACOS.matcher(s).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Obtém o valor indexado de um atributo do usuário.
+     *
+     * @param usuario  Usuário
+     * @param atributo Nome do atributo
+     * @return Valor, ou null se o atributo não for indexado ou não estiver preenchido
+     */
+    static String valor(Usuario usuario, String atributo) {
+        if ("nome".equals(atributo)) {
+            return usuario.getNome();
+        } else if ("login".equals(atributo) || "senha".equals(atributo)) {
+            return null;
+        }
+        return usuario.getAtributosMap().get(atributo);
+    }
+
+    /**
+     * Indexa todos os atributos de um usuário.
+     *
+     * @param id      ID do usuário
+     * @param usuario Usuário
+     */
+    void adicionar(int id, Usuario usuario) {
+        adicionar("nome", usuario.getNome(), id);
+        for (String atributo : usuario.getAtributosMap().keySet()) {
+            adicionar(atributo, valor(usuario, atributo), id);
+        }
+    }
+
+    /**
+     * Retira do índice todos os atributos de um usuário.
+     *
+     * @param id      ID do usuário
+     * @param usuario Usuário, ainda com os valores indexados
+     */
+    void remover(int id, Usuario usuario) {
+        remover("nome", usuario.getNome(), id);
+        for (String atributo : usuario.getAtributosMap().keySet()) {
+            remover(atributo, valor(usuario, atributo), id);
+        }
+    }
+
+    /**
+     * Atualiza o valor indexado de um atributo do usuário.
+     *
+     * @param id       ID do usuário
+     * @param atributo Nome do atributo
+     * @param anterior Valor anterior (pode ser null)
+     * @param novo     Novo valor (pode ser null)
+     */
+    void trocar(int id, String atributo, String anterior, String novo) {
+        if (anterior != null && novo != null && normalizar(anterior).equals(normalizar(novo))) {
+            return;
+        }
+        remover(atributo, anterior, id);
+        adicionar(atributo, novo, id);
+    }
+
+    private void adicionar(String atributo, String valor, int id) {
+        if (valor == null) {
+            return;
+        }
+        String chave = normalizar(valor);
+        ConcurrentSkipListMap<String, BitmapCompactado> valores =
+                atributos.computeIfAbsent(atributo, a -> new ConcurrentSkipListMap<>());
+        while (true) {
+            BitmapCompactado ids = valores.computeIfAbsent(chave, c -> new BitmapCompactado());
+            synchronized (ids) {
+                // Pode ter sido esvaziado e retirado do índice antes de obtermos o monitor
+                if (valores.get(chave) == ids) {
+                    ids.adicionar(id);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void remover(String atributo, String valor, int id) {
+        ConcurrentSkipListMap<String, BitmapCompactado> valores = valor == null ? null : atributos.get(atributo);
+        if (valores == null) {
+            return;
+        }
+        String chave = normalizar(valor);
+        BitmapCompactado ids = valores.get(chave);
+        if (ids == null) {
+            return;
+        }
+        synchronized (ids) {
+            if (ids.remover(id) && ids.vazio()) {
+                valores.remove(chave, ids);
+            }
+        }
+    }
+
+    /**
+     * Procura os usuários com um valor exato (depois de normalizado) em um atributo.
+     *
+     * @param atributo Nome do atributo
+     * @param valor    Valor procurado
+     * @return IDs dos usuários (cópia, que pode ser alterada por quem chama)
+     */
+    BitmapCompactado buscar(String atributo, String valor) {
+        BitmapCompactado ids = conjunto(atributo, valor);
+        if (ids == null) {
+            return new BitmapCompactado();
+        }
+        synchronized (ids) {
+            return ids.copiar();
+        }
+    }
+
+    /**
+     * Procura os usuários cujo valor (normalizado) de um atributo começa com um prefixo.
+     *
+     * @param atributo Nome do atributo
+     * @param prefixo  Prefixo procurado
+     * @return IDs dos usuários (cópia, que pode ser alterada por quem chama)
+     */
+    BitmapCompactado buscarPorPrefixo(String atributo, String prefixo) {
+        BitmapCompactado resultado = new BitmapCompactado();
+        ConcurrentSkipListMap<String, BitmapCompactado> valores = atributos.get(atributo);
+        if (valores == null) {
+            return resultado;
+        }
+        String inicio = normalizar(prefixo);
+        NavigableMap<String, BitmapCompactado> faixa =
+                valores.subMap(inicio, true, inicio + Character.MAX_VALUE, false);
+        for (BitmapCompactado ids : faixa.values()) {
+            synchronized (ids) {
+                resultado.ou(ids);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Procura os usuários que atendem a todos os critérios (valores exatos, depois de normalizados). A interseção
+     * começa pelo menor conjunto e termina assim que ficar vazia.
+     *
+     * @param criterios Valor procurado para cada atributo
+     * @return IDs dos usuários (cópia, que pode ser alterada por quem chama)
+     */
+    BitmapCompactado buscarTodos(Map<String, String> criterios) {
+        List<BitmapCompactado> conjuntos = new ArrayList<>(criterios.size());
+        List<Integer> tamanhos = new ArrayList<>(criterios.size());
+        for (Map.Entry<String, String> c : criterios.entrySet()) {
+            BitmapCompactado ids = conjunto(c.getKey(), c.getValue());
+            if (ids == null) {
+                return new BitmapCompactado();
+            }
+            synchronized (ids) {
+                tamanhos.add(ids.tamanho());
+            }
+            conjuntos.add(ids);
+        }
+
+        int menor = 0;
+        for (int i = 1; i < conjuntos.size(); i++) {
+            if (tamanhos.get(i) < tamanhos.get(menor)) {
+                menor = i;
+            }
+        }
+        BitmapCompactado resultado;
+        synchronized (conjuntos.get(menor)) {
+            resultado = conjuntos.get(menor).copiar();
+        }
+        for (int i = 0; i < conjuntos.size() && !resultado.vazio(); i++) {
+            if (i != menor) {
+                BitmapCompactado ids = conjuntos.get(i);
+                synchronized (ids) {
+                    resultado = resultado.e(ids);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    private BitmapCompactado conjunto(String atributo, String valor) {
+        ConcurrentSkipListMap<String, BitmapCompactado> valores = atributos.get(atributo);
+        return valores == null ? null : valores.get(normalizar(valor));
+    }
+
+    /**
+     * Retira todos os usuários do índice.
+     */
+    void limpar() {
+        atributos.clear();
+    }
+
+    /**
+     * Marca o índice como completo, depois de todos os usuários existentes terem sido indexados.
+     */
+    void setPronto() {
+        pronto = true;
+    }
+
+    /**
+     * Verifica se o índice já cobre todos os usuários.
+     *
+     * @return true se estiver completo
+     */
+    boolean isPronto() {
+        return pronto;
+    }
+}
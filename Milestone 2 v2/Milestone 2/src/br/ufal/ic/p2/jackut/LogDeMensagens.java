@@ -0,0 +1,262 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Log de mensagens de uma {@link Comunidade}, lido por todos os membros.
+ * <p>
+ * Cada mensagem enviada é guardada uma única vez, em vez de uma cópia por membro; cada membro guarda apenas a
+ * posição (cursor) da próxima mensagem que ainda não leu. As posições são absolutas e nunca mudam. Cada entrada
+ * conta quantos membros ainda precisam lê-la; as entradas do início que já foram lidas por todos são descartadas,
+ * então a memória é proporcional às mensagens pendentes, e não a mensagens × membros.
+ * </p>
+ * <p>
+ * Não é thread-safe: no sistema, é acessado apenas com a trava da comunidade.
+ * </p>
+ */
+public class LogDeMensagens {
+
+    /**
+     * Mensagem do log e seu estado.
+     */
+    private static final class Entrada {
+        final Comunicado comunicado;
+        int leitoresPendentes;
+        boolean removida;
+
+        Entrada(Comunicado comunicado, int leitoresPendentes, boolean removida) {
+            this.comunicado = comunicado;
+            this.leitoresPendentes = leitoresPendentes;
+            this.removida = removida;
+        }
+    }
+
+    private final List<Entrada> entradas = new ArrayList<>();
+
+    /**
+     * Quantidade de entradas guardadas e não removidas de cada remetente.
+     */
+    private final Map<String, Integer> porRemetente = new HashMap<>();
+
+    /**
+     * Posição absoluta de entradas.get(0).
+     */
+    private long base;
+
+    /**
+     * Índice, em entradas, da primeira entrada ainda não descartada.
+     */
+    private int primeira;
+
+    /**
+     * Posição da primeira mensagem ainda guardada.
+     *
+     * @return Posição absoluta
+     */
+    public long getInicio() {
+        return base + primeira;
+    }
+
+    /**
+     * Posição que a próxima mensagem publicada vai ocupar. É o cursor de quem entra na comunidade agora.
+     *
+     * @return Posição absoluta
+     */
+    public long getFim() {
+        return base + entradas.size();
+    }
+
+    /**
+     * Anexa uma mensagem ao log.
+     *
+     * @param comunicado Mensagem enviada
+     * @param leitores   Quantidade de membros que devem lê-la
+     */
+    public void publicar(Comunicado comunicado, int leitores) {
+        entradas.add(new Entrada(comunicado, leitores, false));
+        porRemetente.merge(comunicado.getRemetente(), 1, Integer::sum);
+        descartarLidas();
+    }
+
+    /**
+     * Obtém a mensagem de uma posição.
+     *
+     * @param posicao Posição absoluta (cursor de um membro)
+     * @return A mensagem, ou null se não houver mensagem nessa posição
+     */
+    public Comunicado get(long posicao) {
+        Entrada e = entrada(posicao);
+        return e == null ? null : e.comunicado;
+    }
+
+    /**
+     * Avança um cursor sobre as mensagens removidas, marcando-as como lidas.
+     *
+     * @param cursor Cursor atual do membro
+     * @return Posição da próxima mensagem não removida (ou o fim do log)
+     */
+    public long pularRemovidas(long cursor) {
+        cursor = Math.max(cursor, getInicio());
+        Entrada e;
+        while ((e = entrada(cursor)) != null && e.removida) {
+            e.leitoresPendentes--;
+            cursor++;
+        }
+        descartarLidas();
+        return cursor;
+    }
+
+    /**
+     * Marca a mensagem de uma posição como lida por mais um membro.
+     *
+     * @param posicao Posição absoluta
+     */
+    public void marcarLida(long posicao) {
+        Entrada e = entrada(posicao);
+        if (e != null) {
+            e.leitoresPendentes--;
+            descartarLidas();
+        }
+    }
+
+    /**
+     * Marca como lidas todas as mensagens a partir de um cursor, quando um membro deixa a comunidade.
+     *
+     * @param cursor Cursor do membro que saiu
+     */
+    public void abandonar(long cursor) {
+        for (long p = Math.max(cursor, getInicio()); p < getFim(); p++) {
+            entrada(p).leitoresPendentes--;
+        }
+        descartarLidas();
+    }
+
+    /**
+     * Obtém as mensagens não removidas a partir de um cursor, sem marcá-las como lidas.
+     *
+     * @param cursor Cursor do membro
+     * @return Mensagens pendentes, em ordem
+     */
+    public List<Comunicado> naoLidas(long cursor) {
+        List<Comunicado> pendentes = new ArrayList<>();
+        for (long p = Math.max(cursor, getInicio()); p < getFim(); p++) {
+            Entrada e = entrada(p);
+            if (!e.removida) {
+                pendentes.add(e.comunicado);
+            }
+        }
+        return pendentes;
+    }
+
+    /**
+     * Remove as mensagens de um usuário que está sendo deletado. As entradas continuam ocupando suas posições,
+     * para não invalidar os cursores, mas são puladas na leitura. Se o usuário não tiver mensagens no log,
+     * nada é percorrido.
+     *
+     * @param remetente Login do usuário deletado
+     */
+    public void removerRemetente(String remetente) {
+        if (porRemetente.remove(remetente) == null) {
+            return;
+        }
+        for (int i = primeira; i < entradas.size(); i++) {
+            Entrada e = entradas.get(i);
+            if (e.comunicado.getRemetente().equals(remetente)) {
+                e.removida = true;
+            }
+        }
+    }
+
+    /**
+     * Quantidade de entradas guardadas, inclusive removidas ainda não descartadas.
+     *
+     * @return Tamanho do log
+     */
+    public int tamanho() {
+        return entradas.size() - primeira;
+    }
+
+    /**
+     * Percorre as entradas guardadas, em ordem, para a persistência.
+     *
+     * @param visitante Recebe cada entrada
+     * @param <E>       Exceção que o visitante pode lançar
+     * @throws E se o visitante lançar; as entradas seguintes não são visitadas
+     */
+    public <E extends Exception> void paraCada(Visitante<E> visitante) throws E {
+        for (int i = primeira; i < entradas.size(); i++) {
+            Entrada e = entradas.get(i);
+            visitante.visitar(e.comunicado, e.leitoresPendentes, e.removida);
+        }
+    }
+
+    /**
+     * Restaura uma entrada lida do snapshot, no final do log. Usado apenas pela persistência.
+     *
+     * @param comunicado        Mensagem
+     * @param leitoresPendentes Membros que ainda não a leram
+     * @param removida          Se o remetente foi deletado
+     */
+    public void restaurar(Comunicado comunicado, int leitoresPendentes, boolean removida) {
+        entradas.add(new Entrada(comunicado, leitoresPendentes, removida));
+        if (!removida) {
+            porRemetente.merge(comunicado.getRemetente(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Define a posição da primeira entrada. Usado apenas pela persistência, com o log vazio.
+     *
+     * @param inicio Posição absoluta
+     */
+    public void setInicio(long inicio) {
+        entradas.clear();
+        porRemetente.clear();
+        base = inicio;
+        primeira = 0;
+    }
+
+    /**
+     * Recebe as entradas do log em {@link #paraCada(Visitante)}.
+     *
+     * @param <E> Exceção que o visitante pode lançar
+     */
+    public interface Visitante<E extends Exception> {
+        /**
+         * Visita uma entrada.
+         *
+         * @param comunicado        Mensagem
+         * @param leitoresPendentes Membros que ainda não a leram
+         * @param removida          Se o remetente foi deletado
+         * @throws E se a visita falhar
+         */
+        void visitar(Comunicado comunicado, int leitoresPendentes, boolean removida) throws E;
+    }
+
+    private Entrada entrada(long posicao) {
+        if (posicao < getInicio() || posicao >= getFim()) {
+            return null;
+        }
+        return entradas.get((int) (posicao - base));
+    }
+
+    /**
+     * Descarta as entradas do início já lidas por todos e, de tempos em tempos, compacta a lista.
+     */
+    private void descartarLidas() {
+        while (primeira < entradas.size() && entradas.get(primeira).leitoresPendentes <= 0) {
+            Entrada e = entradas.get(primeira++);
+            if (!e.removida) {
+                porRemetente.computeIfPresent(e.comunicado.getRemetente(), (r, n) -> n > 1 ? n - 1 : null);
+            }
+        }
+        if (primeira > 32 && primeira * 2 > entradas.size()) {
+            entradas.subList(0, primeira).clear();
+            base += primeira;
+            primeira = 0;
+        }
+    }
+}
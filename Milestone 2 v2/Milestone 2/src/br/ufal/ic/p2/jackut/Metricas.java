@@ -0,0 +1,89 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Métricas de funcionamento do {@link Sistema}, identificadas por nome (ex.: "mensagens.entregasDiretas").
+ * <p>
+ * Cada métrica é um valor lido sob demanda: um contador, incrementado pelo sistema, ou um valor calculado
+ * na consulta (configurações, tamanhos de filas). Os métodos são thread-safe, e os contadores podem ser
+ * incrementados por várias threads sem contenção.
+ * </p>
+ */
+public class Metricas {
+    private final Map<String, LongSupplier> valores = new ConcurrentHashMap<>();
+
+    /**
+     * Cria um contador, começando em zero.
+     *
+     * @param nome Nome da métrica
+     * @return Contador, a ser incrementado pelo sistema
+     */
+    public LongAdder contador(String nome) {
+        LongAdder contador = new LongAdder();
+        valores.put(nome, contador::sum);
+        return contador;
+    }
+
+    /**
+     * Registra uma métrica calculada na consulta.
+     *
+     * @param nome  Nome da métrica
+     * @param valor Função que obtém o valor atual
+     */
+    public void registrar(String nome, LongSupplier valor) {
+        valores.put(nome, valor);
+    }
+
+    /**
+     * Cria um histograma de latências, exposto como as métricas nome.quantidade, nome.p50Us, nome.p90Us,
+     * nome.p99Us e nome.maximoUs.
+     *
+     * @param nome Prefixo das métricas
+     * @return Histograma, a ser alimentado pelo sistema
+     */
+    public Histograma histograma(String nome) {
+        Histograma histograma = new Histograma();
+        valores.put(nome + ".quantidade", histograma::getQuantidade);
+        valores.put(nome + ".p50Us", () -> histograma.percentil(50));
+        valores.put(nome + ".p90Us", () -> histograma.percentil(90));
+        valores.put(nome + ".p99Us", () -> histograma.percentil(99));
+        valores.put(nome + ".maximoUs", histograma::getMaximo);
+        return histograma;
+    }
+
+    /**
+     * Obtém o valor atual de uma métrica.
+     *
+     * @param nome Nome da métrica
+     * @return Valor atual
+     * @throws IllegalArgumentException Se a métrica não existir
+     */
+    public long get(String nome) {
+        LongSupplier valor = valores.get(nome);
+        if (valor == null) {
+            throw new IllegalArgumentException("Métrica inexistente: " + nome);
+        }
+        return valor.getAsLong();
+    }
+
+    /**
+     * Obtém o valor atual de todas as métricas.
+     *
+     * @return Mapa de nome para valor, em ordem alfabética de nome
+     */
+    public Map<String, Long> valores() {
+        Map<String, Long> atuais = new TreeMap<>();
+        valores.forEach((nome, valor) -> atuais.put(nome, valor.getAsLong()));
+        return atuais;
+    }
+
+    @Override
+    public String toString() {
+        return valores().toString();
+    }
+}
@@ -0,0 +1,204 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Ordena linhas de texto que podem não caber na memória (ordenação externa), removendo as repetidas.
+ * <p>
+ * As linhas são acumuladas em blocos de tamanho limitado; cada bloco cheio é ordenado e gravado em um arquivo
+ * temporário, e no fim os blocos são intercalados, no máximo {@value #MAXIMO_INTERCALADOS} arquivos por vez, até
+ * restar um único arquivo ordenado. Usada pela importação em lote ({@link ImportadorCsv}) para agrupar as arestas
+ * por usuário sem manter todas em memória.
+ * </p>
+ * <p>
+ * A ordem é a de {@link String#compareTo(String)}. As linhas não podem conter quebras de linha.
+ * </p>
+ */
+public class OrdenacaoExterna implements AutoCloseable {
+    private static final int MAXIMO_INTERCALADOS = 64;
+
+    private final Path diretorio;
+    private final int linhasPorBloco;
+    private String[] bloco = new String[16];
+    private int tamanhoBloco;
+    private final List<Path> arquivos = new ArrayList<>();
+    private Path ordenado;
+
+    /**
+     * Linha atual de um dos arquivos sendo intercalados.
+     */
+    private static final class Cabeca implements Comparable<Cabeca> {
+        final BufferedReader leitor;
+        String linha;
+
+        Cabeca(BufferedReader leitor) throws IOException {
+            this.leitor = leitor;
+            this.linha = leitor.readLine();
+        }
+
+        @Override
+        public int compareTo(Cabeca outra) {
+            return linha.compareTo(outra.linha);
+        }
+    }
+
+    /**
+     * Cria uma ordenação vazia.
+     *
+     * @param linhasPorBloco Quantidade máxima de linhas mantidas em memória
+     * @param diretorio      Onde criar os arquivos temporários
+     */
+    public OrdenacaoExterna(int linhasPorBloco, Path diretorio) {
+        this.diretorio = diretorio;
+        this.linhasPorBloco = Math.max(1, linhasPorBloco);
+    }
+
+    /**
+     * Adiciona uma linha.
+     *
+     * @param linha Linha, sem quebras de linha
+     * @throws IOException Se o bloco cheio não puder ser gravado
+     * @throws IllegalStateException Se a ordenação já tiver sido feita
+     */
+    public void adicionar(String linha) throws IOException {
+        if (ordenado != null) {
+            throw new IllegalStateException("Ordenação já concluída.");
+        }
+        if (tamanhoBloco == linhasPorBloco) {
+            gravarBloco();
+        } else if (tamanhoBloco == bloco.length) {
+            bloco = Arrays.copyOf(bloco, Math.min(linhasPorBloco, bloco.length * 2));
+        }
+        bloco[tamanhoBloco++] = linha;
+    }
+
+    /**
+     * Ordena as linhas adicionadas. Depois disso, não podem ser adicionadas outras.
+     *
+     * @return Quantidade de linhas distintas
+     * @throws IOException Se os arquivos temporários não puderem ser gravados ou lidos
+     */
+    public long ordenar() throws IOException {
+        gravarBloco();
+        bloco = null;
+        while (arquivos.size() > MAXIMO_INTERCALADOS) {
+            List<Path> grupo = new ArrayList<>(arquivos.subList(0, MAXIMO_INTERCALADOS));
+            arquivos.subList(0, MAXIMO_INTERCALADOS).clear();
+            Path intercalado = temporario();
+            intercalar(grupo, intercalado);
+            arquivos.add(intercalado);
+        }
+        ordenado = temporario();
+        long quantidade = intercalar(new ArrayList<>(arquivos), ordenado);
+        arquivos.clear();
+        return quantidade;
+    }
+
+    /**
+     * Abre as linhas ordenadas para leitura. Pode ser chamado várias vezes, para várias passadas.
+     *
+     * @return Leitor das linhas, em ordem e sem repetições
+     * @throws IOException Se o arquivo não puder ser aberto
+     * @throws IllegalStateException Se {@link #ordenar()} ainda não tiver sido chamado
+     */
+    public BufferedReader ler() throws IOException {
+        if (ordenado == null) {
+            throw new IllegalStateException("Ordenação ainda não concluída.");
+        }
+        return Files.newBufferedReader(ordenado, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Apaga os arquivos temporários.
+     *
+     * @throws IOException Se algum não puder ser apagado
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path arquivo : arquivos) {
+            Files.deleteIfExists(arquivo);
+        }
+        arquivos.clear();
+        if (ordenado != null) {
+            Files.deleteIfExists(ordenado);
+        }
+    }
+
+    private Path temporario() throws IOException {
+        return Files.createTempFile(diretorio, "jackut-ordenacao", ".tmp");
+    }
+
+    private void gravarBloco() throws IOException {
+        if (tamanhoBloco == 0 && !arquivos.isEmpty()) {
+            return;
+        }
+        Arrays.sort(bloco, 0, tamanhoBloco);
+        Path arquivo = temporario();
+        arquivos.add(arquivo);
+        try (BufferedWriter escritor = Files.newBufferedWriter(arquivo, StandardCharsets.UTF_8)) {
+            String anterior = null;
+            for (int i = 0; i < tamanhoBloco; i++) {
+                if (!bloco[i].equals(anterior)) {
+                    escritor.write(bloco[i]);
+                    escritor.newLine();
+                    anterior = bloco[i];
+                }
+                bloco[i] = null;
+            }
+        }
+        tamanhoBloco = 0;
+    }
+
+    /**
+     * Intercala arquivos ordenados em um só, sem repetições, e apaga os de entrada.
+     *
+     * @return Quantidade de linhas gravadas
+     */
+    private static long intercalar(List<Path> entradas, Path saida) throws IOException {
+        PriorityQueue<Cabeca> fila = new PriorityQueue<>(Math.max(1, entradas.size()));
+        long quantidade = 0;
+        try (BufferedWriter escritor = Files.newBufferedWriter(saida, StandardCharsets.UTF_8)) {
+            for (Path entrada : entradas) {
+                Cabeca cabeca = new Cabeca(Files.newBufferedReader(entrada, StandardCharsets.UTF_8));
+                if (cabeca.linha != null) {
+                    fila.add(cabeca);
+                } else {
+                    cabeca.leitor.close();
+                }
+            }
+            String anterior = null;
+            while (!fila.isEmpty()) {
+                Cabeca cabeca = fila.poll();
+                if (!cabeca.linha.equals(anterior)) {
+                    escritor.write(cabeca.linha);
+                    escritor.newLine();
+                    anterior = cabeca.linha;
+                    quantidade++;
+                }
+                cabeca.linha = cabeca.leitor.readLine();
+                if (cabeca.linha != null) {
+                    fila.add(cabeca);
+                } else {
+                    cabeca.leitor.close();
+                }
+            }
+        } finally {
+            for (Cabeca cabeca : fila) {
+                cabeca.leitor.close();
+            }
+            for (Path entrada : entradas) {
+                Files.deleteIfExists(entrada);
+            }
+        }
+        return quantidade;
+    }
+}
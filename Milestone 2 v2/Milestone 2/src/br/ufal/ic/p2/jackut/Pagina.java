@@ -0,0 +1,139 @@
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.exceptions.InformacaoInvalidaException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Página de uma listagem do {@link Sistema} (amigos, fãs, paqueras, comunidades, membros), com no máximo
+ * "limite" itens, no mesmo formato "{a,b,c}" da listagem completa.
+ * <p>
+ * A próxima página é pedida com o cursor devolvido por {@link #getProximoCursor()}, que é opaco para quem chama:
+ * ele guarda o último item entregue e a posição dele, então a listagem continua do ponto certo mesmo que itens
+ * sejam adicionados ou removidos entre as páginas. Itens adicionados depois do cursor aparecem nas páginas
+ * seguintes; se o próprio último item for removido, a listagem continua pela posição que ele ocupava.
+ * </p>
+ */
+public class Pagina {
+    private final String itens;
+    private final String proximoCursor;
+
+    private Pagina(String itens, String proximoCursor) {
+        this.itens = itens;
+        this.proximoCursor = proximoCursor;
+    }
+
+    /**
+     * Monta uma página de um conjunto. Deve ser chamado com a trava do dono do conjunto.
+     *
+     * @param conjunto Conjunto listado, na ordem de inserção
+     * @param limite   Quantidade máxima de itens
+     * @param cursor   Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return A página
+     * @throws InformacaoInvalidaException Se o limite não for positivo ou o cursor não tiver sido gerado aqui
+     */
+    static Pagina de(Set<String> conjunto, int limite, String cursor) {
+        if (limite <= 0) {
+            throw new InformacaoInvalidaException("Limite inválido.");
+        }
+        ConjuntoLogins logins = conjunto instanceof ConjuntoLogins ? (ConjuntoLogins) conjunto : null;
+
+        int inicio = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] partes = decodificar(cursor);
+            int atual = logins != null ? logins.posicao(partes[1]) : indice(conjunto, partes[1]);
+            inicio = (atual >= 0 ? atual : Integer.parseInt(partes[0])) + 1;
+        }
+
+        Iterator<String> it;
+        if (logins != null) {
+            it = logins.iterador(inicio);
+        } else {
+            it = conjunto.iterator();
+            for (int i = 0; i < inicio && it.hasNext(); i++) {
+                it.next();
+            }
+        }
+
+        StringBuilder sb = new StringBuilder("{");
+        String ultimo = null;
+        int n = 0;
+        while (n < limite && it.hasNext()) {
+            ultimo = it.next();
+            if (n++ > 0) {
+                sb.append(',');
+            }
+            sb.append(ultimo);
+        }
+        sb.append('}');
+
+        String proximo = null;
+        if (it.hasNext()) {
+            int posicao = logins != null ? logins.posicao(ultimo) : inicio + n - 1;
+            proximo = codificar(posicao, ultimo);
+        }
+        return new Pagina(sb.toString(), proximo);
+    }
+
+    /**
+     * Posição de um item em um conjunto sem posições internas (percorre o conjunto).
+     */
+    private static int indice(Set<String> conjunto, String item) {
+        int i = 0;
+        for (String s : conjunto) {
+            if (s.equals(item)) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static String codificar(int posicao, String ultimo) {
+        byte[] bytes = (posicao + ":" + ultimo).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Separa um cursor em posição e último item.
+     */
+    private static String[] decodificar(String cursor) {
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = texto.split(":", 2);
+            int posicao = partes.length == 2 ? Integer.parseInt(partes[0]) : -1;
+            if (posicao < 0 || posicao == Integer.MAX_VALUE) {
+                throw new InformacaoInvalidaException("Cursor inválido.");
+            }
+            return partes;
+        } catch (IllegalArgumentException e) {
+            throw new InformacaoInvalidaException("Cursor inválido.");
+        }
+    }
+
+    /**
+     * Itens da página.
+     *
+     * @return Itens no formato "{item1,item2,...}"
+     */
+    public String getItens() {
+        return itens;
+    }
+
+    /**
+     * Cursor da próxima página.
+     *
+     * @return Cursor a ser passado na próxima chamada, ou null se esta for a última página
+     */
+    public String getProximoCursor() {
+        return proximoCursor;
+    }
+
+    @Override
+    public String toString() {
+        return itens;
+    }
+}
@@ -1,38 +1,39 @@
 package br.ufal.ic.p2.jackut.Relacionamentos;
 
+import br.ufal.ic.p2.jackut.DicionarioLogins;
 import br.ufal.ic.p2.jackut.exceptions.ConflitoInformacaoException;
 
-import java.io.Serializable;
 
 /**
  * Representa uma amizade no Jackut. Baseado em Relacionamento.
  */
-public class Amigos extends Relacionamento implements Serializable {
+public class Amigos extends Relacionamento {
     /**
      * Construtora.
-     * @param usuarioLogado usurio atual.
+     * @param usuarioLogado usuário atual.
+     * @param dicionario dicionário que atribui os IDs dos logins.
      */
-    public Amigos(String usuarioLogado) {
-        super(usuarioLogado);
+    public Amigos(String usuarioLogado, DicionarioLogins dicionario) {
+        super(usuarioLogado, dicionario);
     }
 
     /**
-     * Evita conflitos de informao.
+     * Evita conflitos de informação.
      */
     @Override
     protected void validarRelacionamentoExistente(String nome) throws ConflitoInformacaoException {
         if (relacionamentos.contains(nome)) {
-            throw new ConflitoInformacaoException("Usurio j est adicionado como amigo.");
+            throw new ConflitoInformacaoException("Usuário já está adicionado como amigo.");
         }
     }
 
     /**
-     * Evita que o usurio se relacione consigo mesmo.
+     * Evita que o usuário se relacione consigo mesmo.
      */
     @Override
     protected void validarAutoRelacionamento(String nome) throws ConflitoInformacaoException {
         if (nome.equals(usuarioLogado)) {
-            throw new ConflitoInformacaoException("Usurio no pode adicionar a si mesmo como amigo.");
+            throw new ConflitoInformacaoException("Usuário não pode adicionar a si mesmo como amigo.");
         }
     }
 }
\ No newline at end of file
@@ -1,38 +1,39 @@
 package br.ufal.ic.p2.jackut.Relacionamentos;
+import br.ufal.ic.p2.jackut.DicionarioLogins;
 import br.ufal.ic.p2.jackut.exceptions.ConflitoInformacaoException;
 
-import java.io.Serializable;
 
 /**
  * Representa os convites.
  */
-public class Convites extends Relacionamento implements Serializable {
+public class Convites extends Relacionamento {
 
     /**
      * Construtora.
-     * @param usuarioLogado usurio atual.
+     * @param usuarioLogado usuário atual.
+     * @param dicionario dicionário que atribui os IDs dos logins.
      */
-    public Convites(String usuarioLogado) {
-        super(usuarioLogado);
+    public Convites(String usuarioLogado, DicionarioLogins dicionario) {
+        super(usuarioLogado, dicionario);
     }
 
     /**
-     * Evita conflitos de informao.
+     * Evita conflitos de informação.
      */
     @Override
     protected void validarRelacionamentoExistente(String nome) throws ConflitoInformacaoException {
         if (relacionamentos.contains(nome)) {
-            throw new ConflitoInformacaoException("Usurio j est adicionado como amigo, esperando aceitao do convite.");
+            throw new ConflitoInformacaoException("Usuário já está adicionado como amigo, esperando aceitação do convite.");
         }
     }
 
     /**
-     * Evita que o usurio se relacione consigo mesmo.
+     * Evita que o usuário se relacione consigo mesmo.
      */
     @Override
     protected void validarAutoRelacionamento(String nome) throws ConflitoInformacaoException {
         if (nome.equals(usuarioLogado)) {
-            throw new ConflitoInformacaoException("Usurio no pode adicionar a si mesmo como inimigo.");
+            throw new ConflitoInformacaoException("Usuário não pode adicionar a si mesmo como inimigo.");
         }
     }
 }
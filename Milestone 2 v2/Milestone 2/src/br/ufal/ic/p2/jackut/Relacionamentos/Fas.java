@@ -1,27 +1,28 @@
 package br.ufal.ic.p2.jackut.Relacionamentos;
 
 
+import br.ufal.ic.p2.jackut.DicionarioLogins;
 import br.ufal.ic.p2.jackut.exceptions.ConflitoInformacaoException;
 
-import java.io.Serializable;
 
 /**
- * Representa os fs.
+ * Representa os fãs.
  */
-public class Fas extends Relacionamento implements Serializable {
+public class Fas extends Relacionamento {
 
 
 
     /**
      * Construtora.
-     * @param usuarioLogado usurio atual.
+     * @param usuarioLogado usuário atual.
+     * @param dicionario dicionário que atribui os IDs dos logins.
      */
-    public Fas(String usuarioLogado) {
-        super(usuarioLogado);
+    public Fas(String usuarioLogado, DicionarioLogins dicionario) {
+        super(usuarioLogado, dicionario);
     }
 
     /**
-     * Evita conflitos de informao.
+     * Evita conflitos de informação.
      */
     @Override
     protected void validarRelacionamentoExistente(String nome) throws ConflitoInformacaoException {
@@ -29,7 +30,7 @@ public class Fas extends Relacionamento implements Serializable {
     }
 
     /**
-     * Evita que o usurio se relacione consigo mesmo.
+     * Evita que o usuário se relacione consigo mesmo.
      */
     @Override
     protected void validarAutoRelacionamento(String nome) throws ConflitoInformacaoException {
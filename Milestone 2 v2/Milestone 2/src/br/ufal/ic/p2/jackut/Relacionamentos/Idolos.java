@@ -1,39 +1,40 @@
 package br.ufal.ic.p2.jackut.Relacionamentos;
 
+import br.ufal.ic.p2.jackut.DicionarioLogins;
 import br.ufal.ic.p2.jackut.exceptions.ConflitoInformacaoException;
 
-import java.io.Serializable;
 
 /**
- * Representa os dolos de um usurio.
+ * Representa os ídolos de um usuário.
  */
-public class Idolos extends Relacionamento implements Serializable {
+public class Idolos extends Relacionamento {
 
     /**
      * Construtora.
-     * @param usuarioLogado usurio atual.
+     * @param usuarioLogado usuário atual.
+     * @param dicionario dicionário que atribui os IDs dos logins.
      */
-    public Idolos(String usuarioLogado) {
-        super(usuarioLogado);
+    public Idolos(String usuarioLogado, DicionarioLogins dicionario) {
+        super(usuarioLogado, dicionario);
     }
 
     /**
-     * Evita conflitos de informao.
+     * Evita conflitos de informação.
      */
     @Override
     protected void validarRelacionamentoExistente(String nome) throws ConflitoInformacaoException {
         if (relacionamentos.contains(nome)) {
-            throw new ConflitoInformacaoException("Usurio j est adicionado como dolo.");
+            throw new ConflitoInformacaoException("Usuário já está adicionado como ídolo.");
         }
     }
 
     /**
-     * Evita que o usurio se relacione consigo mesmo.
+     * Evita que o usuário se relacione consigo mesmo.
      */
     @Override
     protected void validarAutoRelacionamento(String nome) throws ConflitoInformacaoException {
         if (nome.equals(usuarioLogado)) {
-            throw new ConflitoInformacaoException("Usurio no pode adicionar a si mesmo como dolo.");
+            throw new ConflitoInformacaoException("Usuário não pode adicionar a si mesmo como ídolo.");
         }
     }
 }
@@ -1,38 +1,39 @@
 package br.ufal.ic.p2.jackut.Relacionamentos;
 
+import br.ufal.ic.p2.jackut.DicionarioLogins;
 import br.ufal.ic.p2.jackut.exceptions.ConflitoInformacaoException;
 
-import java.io.Serializable;
 
 /**
- * Representa os inimigos de um usurio.
+ * Representa os inimigos de um usuário.
  */
-public class Inimigos extends Relacionamento implements Serializable {
+public class Inimigos extends Relacionamento {
     /**
      * Construtora.
-     * @param usuarioLogado usurio atual.
+     * @param usuarioLogado usuário atual.
+     * @param dicionario dicionário que atribui os IDs dos logins.
      */
-    public Inimigos(String usuarioLogado) {
-        super(usuarioLogado);
+    public Inimigos(String usuarioLogado, DicionarioLogins dicionario) {
+        super(usuarioLogado, dicionario);
     }
 
     /**
-     * Evita conflitos de informao.
+     * Evita conflitos de informação.
      */
     @Override
     protected void validarRelacionamentoExistente(String nome) throws ConflitoInformacaoException {
         if (relacionamentos.contains(nome)) {
-            throw new ConflitoInformacaoException("Usurio j est adicionado como inimigo.");
+            throw new ConflitoInformacaoException("Usuário já está adicionado como inimigo.");
         }
     }
 
     /**
-     * Evita que o usurio se relacione consigo mesmo.
+     * Evita que o usuário se relacione consigo mesmo.
      */
     @Override
     protected void validarAutoRelacionamento(String nome) throws ConflitoInformacaoException {
         if (nome.equals(usuarioLogado)) {
-            throw new ConflitoInformacaoException("Usurio no pode ser inimigo de si mesmo.");
+            throw new ConflitoInformacaoException("Usuário não pode ser inimigo de si mesmo.");
         }
     }
 }
\ No newline at end of file
@@ -1,31 +1,35 @@
 package br.ufal.ic.p2.jackut.Relacionamentos;
 
+import br.ufal.ic.p2.jackut.ConjuntoInt;
+import br.ufal.ic.p2.jackut.ConjuntoLogins;
+import br.ufal.ic.p2.jackut.DicionarioLogins;
 import br.ufal.ic.p2.jackut.exceptions.ConflitoInformacaoException;
 
-import java.io.Serializable;
-import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * Classe abstrata para os diversos tipos de relacionamento. Implementa o design pattern de template method.
- * (Seu uso diminuiu o tamanho do cdigo de Usuario pela metade, ento foi o mais vivel).
+ * (Seu uso diminuiu o tamanho do código de Usuario pela metade, então foi o mais viável).
  */
-public abstract class Relacionamento implements Serializable {
-    // Nunca antes fiquei to traumatizado editando meu cdigo antigo...
-    protected Set<String> relacionamentos = new LinkedHashSet<>();
-    protected String usuarioLogado; // login do usurio atual
+public abstract class Relacionamento {
+    // Nunca antes fiquei tão traumatizado editando meu código antigo...
+    // Guardados como IDs inteiros do dicionário, mas acessados como logins (ver ConjuntoLogins).
+    protected ConjuntoLogins relacionamentos;
+    protected String usuarioLogado; // login do usuário atual
 
     /**
      * Construtora.
-     * @param usuarioLogado login do usurio que chamou a construtora.
+     * @param usuarioLogado login do usuário que chamou a construtora.
+     * @param dicionario dicionário que atribui os IDs dos logins.
      */
-    public Relacionamento(String usuarioLogado) {
+    public Relacionamento(String usuarioLogado, DicionarioLogins dicionario) {
         this.usuarioLogado = usuarioLogado;
+        this.relacionamentos = new ConjuntoLogins(dicionario);
     }
 
     /**
-     * Adiciona algum no relacionamento.
-     * @param nome Usurio a ser adicionado.
+     * Adiciona alguém no relacionamento.
+     * @param nome Usuário a ser adicionado.
      * @throws ConflitoInformacaoException Caso haja algum tipo de conflito.
      */
     public final void adicionar(String nome) throws ConflitoInformacaoException {
@@ -34,30 +38,30 @@ public abstract class Relacionamento implements Serializable {
         relacionamentos.add(nome);
     }
 
-    // Mtodos abstratos que as subclasses devem implementar
+    // Métodos abstratos que as subclasses devem implementar
 
     /**
-     *  Realiza a validao do relacionamento.
-     * @param nome login do usurio relacionado.
+     *  Realiza a validação do relacionamento.
+     * @param nome login do usuário relacionado.
      * @throws ConflitoInformacaoException caso haja algum problema.
      */
     protected abstract void validarRelacionamentoExistente(String nome) throws ConflitoInformacaoException;
 
-    // LEMBRETE - Preciso sobrescrever se necessrio com @overrides
+    // LEMBRETE - Preciso sobrescrever se necessário com @overrides
 
     /**
-     * Checagem do relacionamento. Evita que o usurio tente se relacionar consigo mesmo.
-     * @param nome Nome do usurio.
-     * @throws ConflitoInformacaoException se o usurio tentar se relacionar consigo mesmo.
+     * Checagem do relacionamento. Evita que o usuário tente se relacionar consigo mesmo.
+     * @param nome Nome do usuário.
+     * @throws ConflitoInformacaoException se o usuário tentar se relacionar consigo mesmo.
      */
     protected void validarAutoRelacionamento(String nome) throws ConflitoInformacaoException {
         if (nome.equals(usuarioLogado)) {
-            throw new ConflitoInformacaoException("Usurio no pode ter relacionamento consigo mesmo.");
+            throw new ConflitoInformacaoException("Usuário não pode ter relacionamento consigo mesmo.");
         }
     }
 
     /**
-     * Obtm os relacionamentos.
+     * Obtém os relacionamentos.
      * @return lista dos relacionamentos.
      */
     public Set<String> getRelacionamentos() {
@@ -65,16 +69,32 @@ public abstract class Relacionamento implements Serializable {
     }
 
     /**
-     * Remove algum do relacionamento.
-     * @param nome Usurio a ser removido.
+     * Obtém os IDs dos relacionados, para percorrê-los sem converter para String.
+     * @return conjunto de IDs do dicionário de logins.
+     */
+    public ConjuntoInt getIds() {
+        return relacionamentos.getIds();
+    }
+
+    /**
+     * Obtém os relacionamentos formatados, reaproveitando a listagem anterior se nada mudou desde então.
+     * @return lista no formato "{login1,login2,...}".
+     */
+    public String formatar() {
+        return relacionamentos.formatar();
+    }
+
+    /**
+     * Remove alguém do relacionamento.
+     * @param nome Usuário a ser removido.
      */
     public void remover(String nome) {
         relacionamentos.remove(nome);
     }
 
     /**
-     * Checa se o usurio est relacionado com outro usurio.
-     * @param nome usurio a ser buscado na lista.
+     * Checa se o usuário está relacionado com outro usuário.
+     * @param nome usuário a ser buscado na lista.
      * @return true ou false, de acordo com o resultado.
      */
     public boolean contem(String nome) {
@@ -0,0 +1,27 @@
+package br.ufal.ic.p2.jackut.Relacionamentos;
+
+/**
+ * Tipos de relacionamento guardados por um usuário, um para cada subclasse de {@link Relacionamento}.
+ */
+public enum TipoRelacionamento {
+    AMIGOS(true),
+    CONVITES(false),
+    IDOLOS(false),
+    FAS(false),
+    PAQUERAS(false),
+    INIMIGOS(false);
+
+    private final boolean simetrico;
+
+    TipoRelacionamento(boolean simetrico) {
+        this.simetrico = simetrico;
+    }
+
+    /**
+     * Indica se o relacionamento vale nos dois sentidos (se A está no de B, B está no de A).
+     * @return true apenas para amigos.
+     */
+    public boolean simetrico() {
+        return simetrico;
+    }
+}
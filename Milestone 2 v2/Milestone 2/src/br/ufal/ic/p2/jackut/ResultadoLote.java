@@ -0,0 +1,87 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * Resultado de uma operação em lote do {@link Sistema} (ex.: {@link Sistema#criarUsuarios(java.util.List)}).
+ * <p>
+ * Um item com erro não interrompe o lote: para cada item fica registrada a mensagem da exceção que a operação
+ * individual lançaria, ou null se ele foi aplicado.
+ * </p>
+ */
+public class ResultadoLote {
+    private final String[] erros;
+    private int falhas;
+
+    /**
+     * Cria o resultado de um lote, com todos os itens aplicados.
+     *
+     * @param tamanho Quantidade de itens do lote
+     */
+    public ResultadoLote(int tamanho) {
+        this.erros = new String[tamanho];
+    }
+
+    /**
+     * Registra a falha de um item.
+     *
+     * @param indice Posição do item no lote
+     * @param erro   Mensagem de erro
+     */
+    void falhar(int indice, String erro) {
+        if (erros[indice] == null) {
+            falhas++;
+        }
+        erros[indice] = erro;
+    }
+
+    /**
+     * Verifica se um item foi aplicado.
+     *
+     * @param indice Posição do item no lote
+     * @return true se o item foi aplicado
+     */
+    public boolean ok(int indice) {
+        return erros[indice] == null;
+    }
+
+    /**
+     * Obtém o erro de um item.
+     *
+     * @param indice Posição do item no lote
+     * @return Mensagem de erro, ou null se o item foi aplicado
+     */
+    public String getErro(int indice) {
+        return erros[indice];
+    }
+
+    /**
+     * Quantidade de itens do lote.
+     *
+     * @return Quantidade de itens
+     */
+    public int getTamanho() {
+        return erros.length;
+    }
+
+    /**
+     * Quantidade de itens aplicados.
+     *
+     * @return Quantidade de itens sem erro
+     */
+    public int getSucessos() {
+        return erros.length - falhas;
+    }
+
+    /**
+     * Quantidade de itens com erro.
+     *
+     * @return Quantidade de itens com erro
+     */
+    public int getFalhas() {
+        return falhas;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote{sucessos=" + getSucessos() + ", falhas=" + falhas + "}";
+    }
+}
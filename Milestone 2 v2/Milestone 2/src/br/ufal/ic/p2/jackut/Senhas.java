@@ -0,0 +1,283 @@
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.exceptions.LimiteDeTentativasException;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Codifica e verifica as senhas dos usuários com PBKDF2 (HMAC-SHA256), com sal aleatório e custo configurável.
+ * <p>
+ * A senha armazenada tem o formato "pbkdf2-sha256$iterações$sal$hash" (sal e hash em base64), então o custo pode
+ * mudar entre implantações: senhas de outro custo continuam sendo verificadas com o custo com que foram geradas e
+ * são recodificadas no próximo login ({@link #precisaRecodificar(String)}). Senhas em texto puro, de snapshots e
+ * journals anteriores, também são aceitas e recodificadas da mesma forma.
+ * </p>
+ * <p>
+ * Os cálculos são feitos em um executor próprio, com poucas threads, e quem os pede espera sem segurar nenhuma
+ * trava do sistema. A quantidade de cálculos pendentes é limitada: acima do limite, novos pedidos são recusados
+ * com {@link LimiteDeTentativasException} em vez de enfileirados, então uma enxurrada de tentativas de login ocupa
+ * no máximo as threads do executor. Verificações bem-sucedidas recentes ficam em um cache (guardado como HMAC com
+ * uma chave do processo, nunca a senha), e repeti-las não refaz o cálculo; as que falham sempre pagam o custo.
+ * </p>
+ */
+public class Senhas {
+    private static final String PREFIXO = "pbkdf2-sha256$";
+    private static final String ALGORITMO = "PBKDF2WithHmacSHA256";
+    private static final int BYTES_SAL = 16;
+    private static final int BITS_HASH = 256;
+
+    private final int iteracoes;
+    private final SecureRandom aleatorio = new SecureRandom();
+    private final ThreadPoolExecutor executor;
+    private final Semaphore pendentes;
+
+    /**
+     * Verificações bem-sucedidas recentes: HMAC de (senha armazenada, senha informada), em ordem de uso.
+     */
+    private final Map<String, Boolean> verificadas;
+    private final int tamanhoCache;
+    private final ThreadLocal<Mac> macCache;
+
+    private final Histograma latencia;
+    private final LongAdder recusadas;
+    private final LongAdder acertosCache;
+
+    /**
+     * Cria o serviço com o custo e os limites configurados.
+     *
+     * @param metricas Onde registrar as métricas de senhas
+     */
+    public Senhas(Metricas metricas) {
+        this(metricas, Configuracao.iteracoesSenha(), Configuracao.threadsSenha(),
+                Configuracao.maximoSenhasPendentes(), Configuracao.tamanhoCacheSenhas());
+    }
+
+    /**
+     * Cria o serviço.
+     *
+     * @param metricas     Onde registrar as métricas de senhas
+     * @param iteracoes    Iterações do PBKDF2 nas senhas novas
+     * @param threads      Threads do executor de cálculo
+     * @param maximo       Quantidade máxima de cálculos em andamento ou na fila
+     * @param tamanhoCache Quantidade de verificações guardadas no cache; 0 desativa o cache
+     */
+    public Senhas(Metricas metricas, int iteracoes, int threads, int maximo, int tamanhoCache) {
+        this.iteracoes = iteracoes;
+        this.pendentes = new Semaphore(maximo);
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "jackut-senhas-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        // As threads só existem enquanto há senhas a calcular.
+        executor.allowCoreThreadTimeOut(true);
+
+        this.tamanhoCache = tamanhoCache;
+        this.verificadas = new LinkedHashMap<>(16, 0.75f, true);
+        byte[] chave = new byte[32];
+        aleatorio.nextBytes(chave);
+        SecretKeySpec spec = new SecretKeySpec(chave, "HmacSHA256");
+        this.macCache = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(spec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        metricas.registrar("senhas.iteracoes", () -> iteracoes);
+        metricas.registrar("senhas.pendentes", () -> maximo - pendentes.availablePermits());
+        this.latencia = metricas.histograma("senhas.calculo.latencia");
+        this.recusadas = metricas.contador("senhas.recusadasPorLimite");
+        this.acertosCache = metricas.contador("senhas.cache.acertos");
+    }
+
+    /**
+     * Codifica uma senha nova, com sal aleatório e o custo configurado.
+     *
+     * @param senha Senha em texto puro
+     * @return Senha codificada, a ser armazenada
+     * @throws LimiteDeTentativasException Se houver cálculos demais pendentes
+     */
+    public String codificar(String senha) {
+        return calcular(() -> codificarAgora(senha));
+    }
+
+    /**
+     * Codifica várias senhas novas (importação em lote), dividindo-as entre as threads do executor. Em vez de
+     * ser recusado acima do limite de pendentes, o lote espera a sua vez, e ocupa uma vaga por thread.
+     *
+     * @param senhasNovas Senhas em texto puro
+     * @return Senhas codificadas, na mesma ordem
+     */
+    public String[] codificarTodas(List<String> senhasNovas) {
+        String[] codificadas = new String[senhasNovas.size()];
+        int partes = Math.min(codificadas.length, executor.getMaximumPoolSize());
+        List<Future<?>> resultados = new ArrayList<>(partes);
+        try {
+            for (int p = 0; p < partes; p++) {
+                int primeira = p;
+                pendentes.acquire();
+                resultados.add(executor.submit(() -> {
+                    try {
+                        for (int i = primeira; i < codificadas.length; i += partes) {
+                            long inicio = System.nanoTime();
+                            codificadas[i] = codificarAgora(senhasNovas.get(i));
+                            latencia.registrarDesde(inicio);
+                        }
+                        return null;
+                    } finally {
+                        pendentes.release();
+                    }
+                }));
+            }
+            for (Future<?> resultado : resultados) {
+                resultado.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompido enquanto calculava as senhas.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Não foi possível calcular as senhas.", e.getCause());
+        }
+        return codificadas;
+    }
+
+    private String codificarAgora(String senha) throws GeneralSecurityException {
+        byte[] sal = new byte[BYTES_SAL];
+        aleatorio.nextBytes(sal);
+        byte[] hash = pbkdf2(senha, sal, iteracoes);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIXO + iteracoes + "$" + b64.encodeToString(sal) + "$" + b64.encodeToString(hash);
+    }
+
+    /**
+     * Verifica uma senha informada contra a armazenada.
+     *
+     * @param senha      Senha informada
+     * @param armazenada Senha armazenada, codificada ou (de formatos antigos) em texto puro
+     * @return true se a senha estiver correta
+     * @throws LimiteDeTentativasException Se houver cálculos demais pendentes
+     */
+    public boolean verificar(String senha, String armazenada) {
+        if (!armazenada.startsWith(PREFIXO)) {
+            return MessageDigest.isEqual(senha.getBytes(StandardCharsets.UTF_8),
+                    armazenada.getBytes(StandardCharsets.UTF_8));
+        }
+        String chaveCache = chaveCache(senha, armazenada);
+        if (chaveCache != null) {
+            synchronized (verificadas) {
+                if (verificadas.get(chaveCache) != null) {
+                    acertosCache.increment();
+                    return true;
+                }
+            }
+        }
+
+        String[] partes = armazenada.substring(PREFIXO.length()).split("\\$");
+        if (partes.length != 3) {
+            return false;
+        }
+        int custo = Integer.parseInt(partes[0]);
+        byte[] sal = Base64.getDecoder().decode(partes[1]);
+        byte[] esperado = Base64.getDecoder().decode(partes[2]);
+        boolean correta = MessageDigest.isEqual(esperado, calcular(() -> pbkdf2(senha, sal, custo)));
+
+        if (correta && chaveCache != null) {
+            synchronized (verificadas) {
+                verificadas.put(chaveCache, Boolean.TRUE);
+                if (verificadas.size() > tamanhoCache) {
+                    verificadas.remove(verificadas.keySet().iterator().next());
+                }
+            }
+        }
+        return correta;
+    }
+
+    /**
+     * Indica se uma senha armazenada deve ser recodificada: se estiver em texto puro ou com outro custo.
+     *
+     * @param armazenada Senha armazenada
+     * @return true se ela deve ser substituída por {@link #codificar(String)}
+     */
+    public boolean precisaRecodificar(String armazenada) {
+        return !armazenada.startsWith(PREFIXO + iteracoes + "$");
+    }
+
+    private String chaveCache(String senha, String armazenada) {
+        if (tamanhoCache <= 0) {
+            return null;
+        }
+        Mac mac = macCache.get();
+        mac.update(armazenada.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return Base64.getEncoder().encodeToString(mac.doFinal(senha.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Executa um cálculo no executor e espera o resultado, respeitando o limite de pendentes.
+     */
+    private <T> T calcular(Callable<T> calculo) {
+        if (!pendentes.tryAcquire()) {
+            recusadas.increment();
+            throw new LimiteDeTentativasException("Muitas tentativas simultâneas. Tente novamente mais tarde.");
+        }
+        Future<T> resultado;
+        try {
+            resultado = executor.submit(() -> {
+                long inicio = System.nanoTime();
+                try {
+                    return calculo.call();
+                } finally {
+                    latencia.registrarDesde(inicio);
+                    pendentes.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            pendentes.release();
+            throw e;
+        }
+        try {
+            return resultado.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompido enquanto calculava a senha.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Não foi possível calcular a senha.", e.getCause());
+        }
+    }
+
+    private static byte[] pbkdf2(String senha, byte[] sal, int iteracoes) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(senha.toCharArray(), sal, iteracoes, BITS_HASH);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITMO).generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
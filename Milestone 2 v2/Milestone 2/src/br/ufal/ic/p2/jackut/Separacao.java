@@ -0,0 +1,55 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * Resultado de {@link Sistema#grauDeSeparacao(String, String, int)}: o grau de separação entre dois usuários
+ * (quantos saltos de amizade os separam) e um caminho mais curto entre eles.
+ */
+public class Separacao {
+    private final String[] caminho;
+
+    /**
+     * Cria o resultado.
+     *
+     * @param caminho Logins do caminho, do primeiro usuário ao segundo; vazio se não houver caminho
+     */
+    Separacao(String[] caminho) {
+        this.caminho = caminho;
+    }
+
+    /**
+     * Verifica se os usuários estão ligados dentro do limite de saltos pedido.
+     *
+     * @return true se houver caminho
+     */
+    public boolean conectados() {
+        return caminho.length > 0;
+    }
+
+    /**
+     * Grau de separação.
+     *
+     * @return Quantidade de saltos (0 para o próprio usuário, 1 para amigos...), ou -1 se não houver caminho
+     */
+    public int getGrau() {
+        return caminho.length - 1;
+    }
+
+    /**
+     * Caminho mais curto entre os usuários.
+     *
+     * @return Logins do caminho, incluindo os dois usuários; vazio se não houver caminho
+     */
+    public String[] getCaminho() {
+        return caminho.clone();
+    }
+
+    /**
+     * Caminho no formato das listagens do sistema.
+     *
+     * @return Caminho no formato "{login1,login2,...}"
+     */
+    @Override
+    public String toString() {
+        return "{" + String.join(",", caminho) + "}";
+    }
+}
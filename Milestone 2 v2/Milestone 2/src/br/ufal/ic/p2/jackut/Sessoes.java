@@ -0,0 +1,62 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * Sessões abertas no {@link Sistema}: associam o ID devolvido por abrirSessao ao login do usuário autenticado.
+ * <p>
+ * Há dois modos, escolhidos em "jackut.sessoes.modo": "tabela" (padrão, {@link SessoesEmTabela}), em que as
+ * sessões ficam guardadas em memória, e "assinada" ({@link SessoesAssinadas}), em que o próprio ID é um token
+ * assinado, validado sem consultar nenhuma tabela, e que pode ser aceito por qualquer instância que conheça as
+ * chaves.
+ * </p>
+ */
+public interface Sessoes {
+
+    /**
+     * Cria as sessões no modo configurado.
+     *
+     * @param dicionario Dicionário de logins do sistema
+     * @param metricas   Onde registrar as métricas de sessões
+     * @return Sessões vazias
+     */
+    static Sessoes criar(DicionarioLogins dicionario, Metricas metricas) {
+        if (Configuracao.usarSessoesAssinadas()) {
+            return new SessoesAssinadas(metricas);
+        }
+        return new SessoesEmTabela(dicionario, metricas);
+    }
+
+    /**
+     * Abre uma sessão para um usuário.
+     *
+     * @param login Login do usuário, já autenticado
+     * @return ID (token) da sessão
+     */
+    String abrir(String login);
+
+    /**
+     * Valida o ID de uma sessão.
+     *
+     * @param token ID recebido
+     * @return Login do usuário da sessão, ou null se a sessão não existir, tiver expirado ou sido encerrada
+     */
+    String login(String token);
+
+    /**
+     * Encerra todas as sessões de um usuário, por exemplo porque ele foi removido.
+     *
+     * @param login Login do usuário
+     */
+    void encerrarDoUsuario(String login);
+
+    /**
+     * Encerra todas as sessões.
+     */
+    void limpar();
+
+    /**
+     * Quantidade de sessões guardadas.
+     *
+     * @return Quantidade de sessões (0 no modo assinado, que não guarda sessões)
+     */
+    int tamanho();
+}
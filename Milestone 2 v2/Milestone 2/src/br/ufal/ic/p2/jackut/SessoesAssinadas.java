@@ -0,0 +1,270 @@
+package br.ufal.ic.p2.jackut;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sessões sem estado: o ID da sessão é um token assinado com HMAC-SHA256 que carrega o login do usuário e a
+ * validade, então validá-lo é apenas calcular e comparar a assinatura, sem consultar nenhuma tabela de sessões.
+ * Qualquer instância do sistema configurada com as mesmas chaves aceita os tokens das outras.
+ * <p>
+ * Formato, em base64url: versão (1 byte) | ID da chave (1 byte) | emissão (long, ms) | expiração (long, ms) |
+ * login (UTF-8) | primeiros 16 bytes da assinatura de tudo o que vem antes. O login é usado no lugar do ID do
+ * {@link DicionarioLogins} porque os IDs só valem dentro de um processo.
+ * </p>
+ * <p>
+ * Rotação de chaves: cada token indica com que chave foi assinado, e as últimas {@value #MAXIMO_CHAVES} chaves
+ * continuam aceitas; os novos tokens usam a mais recente. As chaves vêm de "jackut.sessoes.chaves" (em base64,
+ * separadas por vírgula, da mais antiga para a mais nova) ou, se não informadas, são geradas aleatoriamente.
+ * </p>
+ * <p>
+ * Como um token não pode ser apagado, encerrar as sessões de um usuário registra o instante da revogação, e os
+ * tokens do usuário emitidos até ali passam a ser recusados. As revogações são guardadas só enquanto algum
+ * desses tokens ainda poderia estar válido, e um filtro de Bloom na frente delas evita a consulta para os
+ * usuários não revogados. Os tokens só expiram pela duração máxima: sem estado, não há como medir inatividade.
+ * </p>
+ */
+public class SessoesAssinadas implements Sessoes {
+    private static final byte VERSAO = 1;
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final int BYTES_CHAVE = 32;
+    private static final int BYTES_ASSINATURA = 16;
+    private static final int BYTES_CABECALHO = 1 + 1 + 8 + 8;
+    private static final int MAXIMO_CHAVES = 4;
+    private static final int BITS_FILTRO = 1 << 12;
+
+    /**
+     * Chave de assinatura. Mac não é thread-safe, então cada thread tem o seu, já inicializado.
+     */
+    private static final class Chave {
+        final int id;
+        final ThreadLocal<Mac> macs;
+
+        Chave(int id, byte[] segredo) {
+            this.id = id;
+            SecretKeySpec spec = new SecretKeySpec(segredo, ALGORITMO);
+            this.macs = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac mac = Mac.getInstance(ALGORITMO);
+                    mac.init(spec);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        byte[] assinar(byte[] dados, int tamanho) {
+            Mac mac = macs.get();
+            mac.update(dados, 0, tamanho);
+            return mac.doFinal();
+        }
+    }
+
+    private final long duracaoMaxima;
+    private final SecureRandom aleatorio = new SecureRandom();
+    private final Base64.Encoder codificador = Base64.getUrlEncoder().withoutPadding();
+    private final Base64.Decoder decodificador = Base64.getUrlDecoder();
+
+    /**
+     * Chaves aceitas, indexadas pelo ID. Substituído a cada rotação (cópia na escrita).
+     */
+    private volatile Chave[] chaves = new Chave[256];
+    private volatile Chave atual;
+    private final ArrayDeque<Chave> ordemChaves = new ArrayDeque<>();
+
+    /**
+     * Instante de emissão do último token. Os instantes são únicos e crescentes, para que uma revogação separe
+     * exatamente os tokens anteriores dos posteriores.
+     */
+    private final AtomicLong ultimaEmissao = new AtomicLong();
+
+    /**
+     * Login revogado -> instante da revogação.
+     */
+    private final Map<String, Long> revogados = new ConcurrentHashMap<>();
+
+    /**
+     * Filtro de Bloom dos logins em revogados. Substituído a cada alteração (cópia na escrita).
+     */
+    private volatile long[] filtro = new long[BITS_FILTRO / 64];
+
+    /**
+     * Tokens emitidos até este instante são recusados (ver {@link #limpar()}).
+     */
+    private volatile long revogadosAte;
+
+    /**
+     * Cria as sessões com a duração e as chaves configuradas.
+     *
+     * @param metricas Onde registrar as métricas de sessões
+     */
+    public SessoesAssinadas(Metricas metricas) {
+        this(metricas, Configuracao.duracaoMaximaSessaoMs(), Configuracao.chavesSessao());
+    }
+
+    /**
+     * Cria as sessões.
+     *
+     * @param metricas      Onde registrar as métricas de sessões
+     * @param duracaoMaxima Validade dos tokens, em milissegundos
+     * @param chaves        Chaves em base64, separadas por vírgula, da mais antiga para a mais nova; se null, é
+     *                      gerada uma chave aleatória
+     */
+    public SessoesAssinadas(Metricas metricas, long duracaoMaxima, String chaves) {
+        this.duracaoMaxima = duracaoMaxima;
+        if (chaves == null) {
+            rotacionarChave();
+        } else {
+            for (String chave : chaves.split(",")) {
+                adicionarChave(Base64.getDecoder().decode(chave.trim()));
+            }
+        }
+        metricas.registrar("sessoes.revogacoes", revogados::size);
+    }
+
+    /**
+     * Passa a assinar os novos tokens com uma nova chave aleatória. Os tokens já emitidos continuam válidos
+     * enquanto a chave deles for uma das {@value #MAXIMO_CHAVES} mais recentes.
+     */
+    public void rotacionarChave() {
+        byte[] segredo = new byte[BYTES_CHAVE];
+        aleatorio.nextBytes(segredo);
+        adicionarChave(segredo);
+    }
+
+    /**
+     * Passa a assinar os novos tokens com a chave informada, que deve ser adicionada na mesma ordem em todas as
+     * instâncias que compartilham os tokens. A mais antiga é descartada se houver mais de {@value #MAXIMO_CHAVES}.
+     *
+     * @param segredo Bytes da chave
+     */
+    public synchronized void adicionarChave(byte[] segredo) {
+        Chave nova = new Chave(atual == null ? 0 : (atual.id + 1) & 0xFF, segredo);
+        Chave[] copia = chaves.clone();
+        copia[nova.id] = nova;
+        ordemChaves.addLast(nova);
+        if (ordemChaves.size() > MAXIMO_CHAVES) {
+            copia[ordemChaves.removeFirst().id] = null;
+        }
+        chaves = copia;
+        atual = nova;
+    }
+
+    @Override
+    public String abrir(String login) {
+        Chave chave = atual;
+        long emissao = ultimaEmissao.updateAndGet(ultima -> Math.max(ultima + 1, System.currentTimeMillis()));
+        byte[] bytesLogin = login.getBytes(StandardCharsets.UTF_8);
+        int corpo = BYTES_CABECALHO + bytesLogin.length;
+
+        byte[] token = new byte[corpo + BYTES_ASSINATURA];
+        ByteBuffer.wrap(token)
+                .put(VERSAO)
+                .put((byte) chave.id)
+                .putLong(emissao)
+                .putLong(emissao + duracaoMaxima)
+                .put(bytesLogin);
+        System.arraycopy(chave.assinar(token, corpo), 0, token, corpo, BYTES_ASSINATURA);
+        return codificador.encodeToString(token);
+    }
+
+    @Override
+    public String login(String token) {
+        if (token == null) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = decodificador.decode(token);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int corpo = bytes.length - BYTES_ASSINATURA;
+        if (corpo < BYTES_CABECALHO || bytes[0] != VERSAO) {
+            return null;
+        }
+        Chave chave = chaves[bytes[1] & 0xFF];
+        if (chave == null) {
+            return null;
+        }
+        // Comparação em tempo constante, para não revelar quantos bytes da assinatura estão certos.
+        byte[] assinatura = chave.assinar(bytes, corpo);
+        int diferenca = 0;
+        for (int i = 0; i < BYTES_ASSINATURA; i++) {
+            diferenca |= assinatura[i] ^ bytes[corpo + i];
+        }
+        if (diferenca != 0) {
+            return null;
+        }
+
+        ByteBuffer dados = ByteBuffer.wrap(bytes);
+        long emissao = dados.getLong(2);
+        long expiracao = dados.getLong(10);
+        if (System.currentTimeMillis() >= expiracao || emissao <= revogadosAte) {
+            return null;
+        }
+        String login = new String(bytes, BYTES_CABECALHO, corpo - BYTES_CABECALHO, StandardCharsets.UTF_8);
+        if (talvezRevogado(filtro, login)) {
+            Long revogacao = revogados.get(login);
+            if (revogacao != null && emissao <= revogacao) {
+                return null;
+            }
+        }
+        return login;
+    }
+
+    @Override
+    public synchronized void encerrarDoUsuario(String login) {
+        long agora = System.currentTimeMillis();
+        revogados.put(login, ultimaEmissao.updateAndGet(ultima -> Math.max(ultima, agora)));
+        // Um token emitido até a revogação expira até revogação + duração máxima; depois disso ela é inútil.
+        revogados.values().removeIf(revogacao -> agora >= revogacao + duracaoMaxima);
+
+        long[] novo = new long[BITS_FILTRO / 64];
+        for (String revogado : revogados.keySet()) {
+            marcar(novo, revogado);
+        }
+        filtro = novo;
+    }
+
+    @Override
+    public synchronized void limpar() {
+        long agora = System.currentTimeMillis();
+        revogadosAte = ultimaEmissao.updateAndGet(ultima -> Math.max(ultima, agora));
+        revogados.clear();
+        filtro = new long[BITS_FILTRO / 64];
+    }
+
+    @Override
+    public int tamanho() {
+        return 0;
+    }
+
+    private static int bit1(String login) {
+        return (login.hashCode() * 0x9E3779B9) >>> 20;
+    }
+
+    private static int bit2(String login) {
+        return (login.hashCode() * 0x85EBCA6B + 0x27D4EB2F) >>> 20;
+    }
+
+    private static void marcar(long[] filtro, String login) {
+        filtro[bit1(login) >>> 6] |= 1L << bit1(login);
+        filtro[bit2(login) >>> 6] |= 1L << bit2(login);
+    }
+
+    private static boolean talvezRevogado(long[] filtro, String login) {
+        return (filtro[bit1(login) >>> 6] & (1L << bit1(login))) != 0
+                && (filtro[bit2(login) >>> 6] & (1L << bit2(login))) != 0;
+    }
+}
@@ -0,0 +1,280 @@
+package br.ufal.ic.p2.jackut;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sessões guardadas em uma tabela em memória, o modo padrão (ver {@link Sessoes}).
+ * <p>
+ * Cada sessão é identificada por um token aleatório de 128 bits ({@link SecureRandom}), codificado em 22
+ * caracteres base64url, e guarda apenas o ID do login no {@link DicionarioLogins}. Validar um token é uma consulta
+ * a uma tabela hash seguida da comparação com o prazo da sessão, sem bloqueio.
+ * </p>
+ * <p>
+ * Uma sessão expira depois de um tempo sem uso (inatividade) ou de um tempo desde a abertura (duração máxima),
+ * o que vier primeiro. Sessões expiradas são recusadas na validação e liberadas por uma roda de temporização:
+ * cada sessão fica no balde do instante em que pode expirar, e ao abrir uma sessão os baldes cujo instante já
+ * passou são percorridos; quem foi usado nesse meio tempo é apenas mudado de balde. A quantidade de sessões é
+ * limitada: no limite, a sessão mais próxima de expirar é encerrada para dar lugar à nova.
+ * </p>
+ * <p>
+ * Os métodos são thread-safe. Abertura e encerramento são serializados; a validação não.
+ * </p>
+ */
+public class SessoesEmTabela implements Sessoes {
+    private static final int BYTES_TOKEN = 16;
+    private static final int BALDES = 256;
+
+    /**
+     * Sessão aberta. Os campos, exceto ultimoAcesso, são protegidos pela trava de {@link SessoesEmTabela}.
+     */
+    private static final class Sessao {
+        final String token;
+        final int usuario;
+        final long abertura;
+        volatile long ultimoAcesso;
+
+        // Lista duplamente encadeada do balde da roda em que a sessão está.
+        Sessao anterior;
+        Sessao proxima;
+        int balde = -1;
+
+        Sessao(String token, int usuario, long agora) {
+            this.token = token;
+            this.usuario = usuario;
+            this.abertura = agora;
+            this.ultimoAcesso = agora;
+        }
+    }
+
+    private final DicionarioLogins dicionario;
+    private final long inatividade;
+    private final long duracaoMaxima;
+    private final int maximo;
+
+    /**
+     * Duração de cada balde da roda, em milissegundos.
+     */
+    private final long resolucao;
+
+    private final SecureRandom aleatorio = new SecureRandom();
+    private final Base64.Encoder codificador = Base64.getUrlEncoder().withoutPadding();
+
+    private final Map<String, Sessao> porToken = new ConcurrentHashMap<>();
+
+    /**
+     * Sessões de cada usuário, por ID do login, para encerrar todas as sessões de um usuário removido.
+     */
+    private final Map<Integer, Set<Sessao>> porUsuario = new HashMap<>();
+
+    /**
+     * Roda de temporização: primeira sessão de cada balde.
+     */
+    private final Sessao[] baldes = new Sessao[BALDES];
+
+    /**
+     * Último instante (em unidades de resolução) cujo balde já foi percorrido.
+     */
+    private long instanteAtual;
+
+    private final LongAdder expiradas;
+    private final LongAdder despejadas;
+
+    /**
+     * Cria o gerenciador com os prazos e o limite configurados.
+     *
+     * @param dicionario Dicionário de logins do sistema
+     * @param metricas   Onde registrar as métricas de sessões
+     */
+    public SessoesEmTabela(DicionarioLogins dicionario, Metricas metricas) {
+        this(dicionario, metricas, Configuracao.inatividadeSessaoMs(), Configuracao.duracaoMaximaSessaoMs(),
+                Configuracao.maximoSessoes());
+    }
+
+    /**
+     * Cria o gerenciador.
+     *
+     * @param dicionario    Dicionário de logins do sistema
+     * @param metricas      Onde registrar as métricas de sessões
+     * @param inatividade   Tempo máximo sem uso, em milissegundos
+     * @param duracaoMaxima Tempo máximo desde a abertura, em milissegundos
+     * @param maximo        Quantidade máxima de sessões abertas
+     */
+    public SessoesEmTabela(DicionarioLogins dicionario, Metricas metricas, long inatividade, long duracaoMaxima,
+                           int maximo) {
+        this.dicionario = dicionario;
+        this.inatividade = inatividade;
+        this.duracaoMaxima = duracaoMaxima;
+        this.maximo = maximo;
+        // A roda cobre algumas vezes o menor prazo, então cada sessão volta à roda poucas vezes.
+        this.resolucao = Math.max(1, Math.min(inatividade, duracaoMaxima) / (BALDES / 4));
+        this.instanteAtual = agora() / resolucao;
+        metricas.registrar("sessoes.abertas", porToken::size);
+        metricas.registrar("sessoes.maximo", () -> maximo);
+        this.expiradas = metricas.contador("sessoes.expiradas");
+        this.despejadas = metricas.contador("sessoes.despejadas");
+    }
+
+    @Override
+    public synchronized String abrir(String login) {
+        long agora = agora();
+        avancar(agora);
+        while (porToken.size() >= maximo && despejarMaisProxima()) {
+            despejadas.increment();
+        }
+
+        Sessao s;
+        byte[] bytes = new byte[BYTES_TOKEN];
+        do {
+            aleatorio.nextBytes(bytes);
+            s = new Sessao(codificador.encodeToString(bytes), dicionario.id(login), agora);
+        } while (porToken.putIfAbsent(s.token, s) != null);
+
+        porUsuario.computeIfAbsent(s.usuario, u -> new LinkedHashSet<>()).add(s);
+        agendar(s, prazo(s));
+        return s.token;
+    }
+
+    @Override
+    public String login(String token) {
+        Sessao s = token == null ? null : porToken.get(token);
+        if (s == null) {
+            return null;
+        }
+        long agora = agora();
+        if (agora >= prazo(s)) {
+            return null;
+        }
+        // Dentro da mesma resolução a renovação não muda o balde; evita escritas concorrentes desnecessárias.
+        if (agora - s.ultimoAcesso >= resolucao) {
+            s.ultimoAcesso = agora;
+        }
+        return dicionario.login(s.usuario);
+    }
+
+    @Override
+    public synchronized void encerrarDoUsuario(String login) {
+        Set<Sessao> doUsuario = porUsuario.remove(dicionario.buscar(login));
+        if (doUsuario == null) {
+            return;
+        }
+        for (Sessao s : doUsuario) {
+            porToken.remove(s.token);
+            desagendar(s);
+        }
+    }
+
+    @Override
+    public synchronized void limpar() {
+        porToken.clear();
+        porUsuario.clear();
+        for (int i = 0; i < BALDES; i++) {
+            baldes[i] = null;
+        }
+    }
+
+    @Override
+    public int tamanho() {
+        return porToken.size();
+    }
+
+    private static long agora() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    private long prazo(Sessao s) {
+        return Math.min(s.ultimoAcesso + inatividade, s.abertura + duracaoMaxima);
+    }
+
+    /**
+     * Percorre os baldes dos instantes que já passaram, liberando as sessões expiradas e mudando as demais para
+     * o balde do seu prazo atual. Se todos os baldes tiverem passado, cada um é percorrido uma única vez.
+     */
+    private void avancar(long agora) {
+        long alvo = agora / resolucao;
+        long passos = Math.min(alvo - instanteAtual, BALDES);
+        long primeiro = instanteAtual + 1;
+        instanteAtual = Math.max(instanteAtual, alvo);
+        for (long i = 0; i < passos; i++) {
+            int b = (int) ((primeiro + i) & (BALDES - 1));
+            Sessao s = baldes[b];
+            baldes[b] = null;
+            while (s != null) {
+                Sessao proxima = s.proxima;
+                s.anterior = s.proxima = null;
+                s.balde = -1;
+                long prazo = prazo(s);
+                if (agora >= prazo) {
+                    expiradas.increment();
+                    remover(s);
+                } else {
+                    agendar(s, prazo);
+                }
+                s = proxima;
+            }
+        }
+    }
+
+    /**
+     * Coloca a sessão no balde do seu prazo, ou no último balde da roda se o prazo estiver além dela.
+     */
+    private void agendar(Sessao s, long prazo) {
+        long instante = Math.min(Math.max(prazo / resolucao + 1, instanteAtual + 1), instanteAtual + BALDES - 1);
+        int b = (int) (instante & (BALDES - 1));
+        s.balde = b;
+        s.anterior = null;
+        s.proxima = baldes[b];
+        if (s.proxima != null) {
+            s.proxima.anterior = s;
+        }
+        baldes[b] = s;
+    }
+
+    private void desagendar(Sessao s) {
+        if (s.balde < 0) {
+            return;
+        }
+        if (s.anterior != null) {
+            s.anterior.proxima = s.proxima;
+        } else {
+            baldes[s.balde] = s.proxima;
+        }
+        if (s.proxima != null) {
+            s.proxima.anterior = s.anterior;
+        }
+        s.anterior = s.proxima = null;
+        s.balde = -1;
+    }
+
+    private void remover(Sessao s) {
+        porToken.remove(s.token);
+        desagendar(s);
+        Set<Sessao> doUsuario = porUsuario.get(s.usuario);
+        if (doUsuario != null && doUsuario.remove(s) && doUsuario.isEmpty()) {
+            porUsuario.remove(s.usuario);
+        }
+    }
+
+    /**
+     * Encerra a sessão do primeiro balde não vazio a partir do instante atual, a mais próxima de expirar (a menos
+     * da resolução e das renovações ainda não vistas pela roda).
+     *
+     * @return false se não houver sessão a encerrar
+     */
+    private boolean despejarMaisProxima() {
+        for (int i = 1; i <= BALDES; i++) {
+            Sessao s = baldes[(int) ((instanteAtual + i) & (BALDES - 1))];
+            if (s != null) {
+                remover(s);
+                return true;
+            }
+        }
+        return false;
+    }
+}
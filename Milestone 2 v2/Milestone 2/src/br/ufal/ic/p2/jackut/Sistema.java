@@ -1,296 +1,1505 @@
 package br.ufal.ic.p2.jackut;
 
+import br.ufal.ic.p2.jackut.Relacionamentos.TipoRelacionamento;
 import br.ufal.ic.p2.jackut.exceptions.*;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import br.ufal.ic.p2.jackut.persistencia.JackutStore;
+import br.ufal.ic.p2.jackut.persistencia.Operacao;
+import br.ufal.ic.p2.jackut.persistencia.Snapshot;
+import br.ufal.ic.p2.jackut.persistencia.UsuarioStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
- * Sistema representa o sistema de Jackut, realizando as operaes por trs de Facade. Possui diversas funes de controle de sesso,
- * usurio, comunidades e interaes sociais entre usurios.
+ * Sistema representa o sistema de Jackut, realizando as operações por trás de Facade. Possui diversas funções de controle de sessão,
+ * usuário, comunidades e interações sociais entre usuários.
+ *
+ * O estado fica em memória e é guardado por um motor de armazenamento ({@link JackutStore}), escolhido em
+ * {@link Configuracao#motorPersistencia()}: por padrão, a serialização completa em arquivos feita em
+ * encerrarSistema; opcionalmente, um journal em disco ou um banco de dados SQL, que recebem cada operação que
+ * altera o estado, de forma que encerrarSistema não precisa regravar todos os dados e um crash perde apenas as
+ * últimas escritas.
  *
- * O sistema mantm estados persistentes atravs de serializao de objetos em arquivos.
+ * Os métodos públicos podem ser chamados por várias threads ao mesmo tempo. O estado de cada usuário e de cada
+ * comunidade é protegido pela faixa de {@link Travas} do seu login ou nome; operações que envolvem vários usuários
+ * travam todas as faixas envolvidas, em ordem fixa, e registram a operação no motor antes de liberá-las, para
+ * que a ordem dos registros seja compatível com a ordem em que as operações foram aplicadas.
  */
 public class Sistema {
     /**
-     * Mapa de usurios cadastrados, onde a chave  o login do usurio.
+     * Usuários cadastrados, indexados pelo login. São lidos do snapshot sob demanda.
+     */
+    private UsuarioStore usuarios;
+    /**
+     * Dicionário de logins compartilhado por usuários, comunidades e comunicados (ver {@link DicionarioLogins}).
      */
-    private Map<String, Usuario> usuarios = new HashMap<>();
+    private final DicionarioLogins dicionario;
+    /**
+     * Sessões ativas, cada uma identificada por um token aleatório e associada ao login do usuário autenticado.
+     */
+    private final Sessoes sessoes;
+
+    /**
+     * Mapa de comunidades. Cada comunidade usa o próprio nome como chave primária.
+     */
+    private Map<String, Comunidade> comunidades = new ConcurrentHashMap<>();
+
+    /**
+     * Travas por faixa de login ou nome de comunidade.
+     */
+    private final Travas travas = new Travas(Configuracao.faixasDeTravas());
+
     /**
-     * Mapa de sesses ativas, onde a chave  o ID da sesso e o valor  o login do usurio autenticado.
+     * Motor de armazenamento. Fica nulo no sistema usado para compactar as operações registradas e durante a
+     * reprodução das operações na abertura.
      */
-    private Map<String, String> sessoes = new HashMap<>();
+    private JackutStore store;
 
     /**
-     * Mapa de comunidades. Cada comunidade usa o prprio nome como chave primria.
+     * Indica que o motor foi encerrado por {@link #encerrarSistema()}. A próxima operação que altera o estado o
+     * reabre, para que nada do que for feito depois do encerramento deixe de ser salvo.
      */
-    private Map<String, Comunidade> comunidades = new HashMap<>();
+    private volatile boolean encerrado;
 
     /**
-     * Obtm um usurio pelo seu login.
+     * Serializa o encerramento e a reabertura do motor.
+     */
+    private final Object reabertura = new Object();
+
+    /**
+     * Último número de sequência atribuído a uma mensagem de comunidade.
+     */
+    private AtomicLong ultimaSequencia;
+
+    /**
+     * Comunidades com até esta quantidade de membros recebem mensagens por entrega direta; as maiores, pelo log.
+     */
+    private final int limiteEntregaDireta = Configuracao.limiteEntregaDireta();
+
+    private final Metricas metricas = new Metricas();
+    private final LongAdder entregasDiretas = metricas.contador("mensagens.entregasDiretas");
+    private final LongAdder publicacoesNoLog = metricas.contador("mensagens.publicacoesNoLog");
+    private final LongAdder exclusoesConcluidas = metricas.contador("exclusoes.concluidas");
+    private final LongAdder senhasRecodificadas = metricas.contador("senhas.recodificadas");
+    private final Histograma latenciaAbrirSessao = metricas.histograma("sessoes.abrir.latencia");
+
+    /**
+     * Codificação das senhas. Os cálculos são lentos de propósito, então são sempre feitos sem nenhuma trava.
+     */
+    private final Senhas senhas = new Senhas(metricas);
+
+    /**
+     * Remoção de um usuário que já deixou de existir, mas cujas referências guardadas pelos outros usuários e
+     * pelas comunidades ainda estão sendo removidas em segundo plano.
+     */
+    private static final class Exclusao {
+        final Usuario usuario;
+        /**
+         * Comunidades do usuário, deletadas junto com ele.
+         */
+        final List<Comunidade> comunidades = new ArrayList<>();
+        final CountDownLatch concluida = new CountDownLatch(1);
+
+        Exclusao(Usuario usuario) {
+            this.usuario = usuario;
+        }
+
+        void aguardar() {
+            try {
+                concluida.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Exclusões em andamento, pelo login do usuário removido. Enquanto uma exclusão está aqui, todo usuário ou
+     * comunidade obtido por {@link #getUsuario(String)} ou {@link #getComunidade(String)} tem antes a sua parte
+     * da exclusão aplicada, então nenhuma operação enxerga o usuário removido.
+     */
+    private final Map<String, Exclusao> exclusoes = new ConcurrentHashMap<>();
+
+    /**
+     * Thread que conclui as exclusões, uma de cada vez, na ordem das remoções. Fica nula no sistema usado para
+     * gerar snapshots e depois de encerrado o sistema; nesses casos, a exclusão é concluída na própria chamada.
+     * Trocada apenas com {@link #reabertura} travado.
+     */
+    private volatile ExecutorService limpeza;
+
+    /**
+     * Fotografia mais recente dos relacionamentos, para as consultas analíticas (ver {@link GrafoCsr}).
+     */
+    private volatile GrafoCsr grafo;
+
+    /**
+     * Thread que remonta {@link #grafo} periodicamente. Fica nula no sistema usado para gerar snapshots, quando a
+     * remontagem periódica está desativada e depois de encerrado o sistema. Trocada apenas com {@link #reabertura}
+     * travado.
+     */
+    private volatile ScheduledExecutorService analise;
+
+    /**
+     * Serializa as montagens de {@link #grafo}.
+     */
+    private final Object montagemGrafo = new Object();
+
+    /**
+     * Indica se os logins do snapshot mapeado já receberam IDs (ver {@link #reservarIds()}).
+     */
+    private volatile boolean idsReservados;
+
+    /**
+     * Índice invertido dos perfis, para as buscas por atributo (ver {@link IndicePerfis}). Só é montado na
+     * primeira busca; enquanto for nulo, as alterações de perfil não precisam atualizá-lo.
+     */
+    private volatile IndicePerfis indicePerfis;
+
+    /**
+     * Serializa as montagens de {@link #indicePerfis}.
+     */
+    private final Object montagemIndice = new Object();
+
+    private final int loteExclusao = Configuracao.loteExclusao();
+
+    /**
+     * Itens processados por vez nas operações em lote: as faixas envolvidas em um bloco são travadas uma vez
+     * para o bloco inteiro, e as operações dele são registradas de uma vez.
+     */
+    private static final int BLOCO_LOTE = 1024;
+
+    /**
+     * Referências registradas sem a trava do usuário referenciado: login do referenciado para os logins de quem
+     * guarda a referência. Surgem quando as mensagens de uma comunidade deletada são transferidas para um membro,
+     * e são aplicadas ao referenciado na próxima vez que ele é obtido, ou antes de um snapshot.
+     */
+    private final Map<String, Set<String>> referenciasAdiadas = new ConcurrentHashMap<>();
+
+    /**
+     * Obtém um usuário pelo seu login.
      *
-     * @param login Login do usurio a ser obtido
+     * @param login Login do usuário a ser obtido
      * @return Objeto Usuario correspondente ao login
-     * @throws UsuarioNaoCadastradoException Se o usurio no estiver cadastrado
+     * @throws UsuarioNaoCadastradoException Se o usuário não estiver cadastrado
      */
     private Usuario getUsuario(String login) {
-        if (!usuarios.containsKey(login)) {
-            throw new UsuarioNaoCadastradoException("Usurio no cadastrado.");
+        Usuario usuario = usuarios.get(login);
+        if (usuario == null) {
+            throw new UsuarioNaoCadastradoException("Usuário não cadastrado.");
+        }
+        if (!referenciasAdiadas.isEmpty()) {
+            Set<String> adiadas = referenciasAdiadas.remove(login);
+            if (adiadas != null) {
+                adiadas.forEach(usuario::adicionarReferenciaDe);
+            }
+        }
+        if (!exclusoes.isEmpty()) {
+            for (Exclusao e : exclusoes.values()) {
+                limparUsuario(usuario, e);
+            }
         }
-        return usuarios.get(login);
+        return usuario;
     }
 
     /**
-     * Obtm um usurio pelo ID da sesso.
+     * Obtém um usuário pelo ID da sessão.
      *
-     * @param idSessao ID da sesso do usurio
-     * @return Objeto Usuario correspondente  sesso
-     * @throws UsuarioNaoCadastradoException Se a sesso no existir ou o usurio no estiver cadastrado
+     * @param idSessao ID da sessão do usuário
+     * @return Objeto Usuario correspondente à sessão
+     * @throws UsuarioNaoCadastradoException Se a sessão não existir ou o usuário não estiver cadastrado
      */
     private Usuario getUsuarioPorSessao(String idSessao) {
-        if (!sessoes.containsKey(idSessao)) {
-            throw new UsuarioNaoCadastradoException("Usurio no cadastrado.");
+        return getUsuario(getLoginPorSessao(idSessao));
+    }
+
+    /**
+     * Obtém o login do usuário de uma sessão, sem acessar o usuário (para que a faixa dele possa ser travada antes).
+     *
+     * @param idSessao ID da sessão do usuário
+     * @return Login do usuário da sessão
+     * @throws UsuarioNaoCadastradoException Se a sessão não existir ou tiver expirado
+     */
+    private String getLoginPorSessao(String idSessao) {
+        String login = sessoes.login(idSessao);
+        if (login == null) {
+            throw new UsuarioNaoCadastradoException("Usuário não cadastrado.");
+        }
+        return login;
+    }
+
+    /**
+     * Obtém uma comunidade pelo nome.
+     *
+     * @param nome Nome da comunidade
+     * @return A comunidade, ou null se não existir
+     */
+    private Comunidade getComunidade(String nome) {
+        Comunidade c = nome == null ? null : comunidades.get(nome);
+        if (c != null && !exclusoes.isEmpty()) {
+            for (Exclusao e : exclusoes.values()) {
+                limparComunidade(c, e);
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Escreve uma listagem no formato "{item1,item2,...}". É chamado depois de liberar as travas, com os itens já
+     * copiados, para que um destino lento não atrase as operações sobre o mesmo usuário ou comunidade.
+     *
+     * @param itens   Itens da listagem
+     * @param destino Destino da escrita
+     * @throws IOException Se a escrita falhar
+     */
+    private static void escrever(String[] itens, Appendable destino) throws IOException {
+        destino.append('{');
+        for (int i = 0; i < itens.length; i++) {
+            if (i > 0) {
+                destino.append(',');
+            }
+            destino.append(itens[i]);
         }
-        String login = sessoes.get(idSessao);
-        return getUsuario(login);
+        destino.append('}');
     }
 
     /**
-     * Construtor da classe. Carrega os usurios e comunidades armazenados nos arquivos
-     * "usuarios.ser" e "comunidades.ser".
+     * Construtor da classe. Carrega o estado guardado pelo motor de armazenamento configurado
+     * (ver {@link JackutStore}) e reproduz as operações registradas depois dele, se houver.
      */
     public Sistema() {
+        this(JackutStore.criar());
+    }
+
+    private Sistema(JackutStore store) {
+        this(carregar(store));
         try {
-            FileInputStream fileIn = new FileInputStream("usuarios.ser");
-            ObjectInputStream objIn = new ObjectInputStream(fileIn);
-            usuarios = (HashMap<String, Usuario>) objIn.readObject();
-            objIn.close();
-            fileIn.close();
-
-            fileIn = new FileInputStream("comunidades.ser");
-            objIn = new ObjectInputStream(fileIn);
-            comunidades = (HashMap<String, Comunidade>) objIn.readObject();
-            objIn.close();
-            fileIn.close();
-        } catch (Exception e) {
+            store.abrir(estado(), base -> new Sistema(base).estado());
+        } catch (IOException e) {
             e.printStackTrace();
+            System.err.println("Ocorreu um erro ao ler as operações registradas.");
+        }
+        // Só depois da reprodução, para que as operações reproduzidas não sejam registradas de novo.
+        this.store = store;
+        synchronized (reabertura) {
+            iniciarTarefas();
         }
     }
 
     /**
-     * Remove todos os usurios e comunidades cadastradas, zerando o sistema.
+     * Inicia as threads de {@link #limpeza} e de {@link #analise}. Chamado com {@link #reabertura} travado, na
+     * construção e ao reabrir o sistema encerrado.
+     */
+    private void iniciarTarefas() {
+        ExecutorService l = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "jackut-exclusao");
+            t.setDaemon(true);
+            return t;
+        });
+        limpeza = l;
+
+        long intervaloGrafo = Configuracao.intervaloGrafoMs();
+        if (intervaloGrafo > 0) {
+            ScheduledExecutorService a = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "jackut-analise");
+                t.setDaemon(true);
+                return t;
+            });
+            a.scheduleWithFixedDelay(() -> {
+                try {
+                    atualizarGrafo();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    System.err.println("Ocorreu um erro ao montar o grafo de relacionamentos.");
+                }
+            }, intervaloGrafo, intervaloGrafo, TimeUnit.MILLISECONDS);
+            analise = a;
+        }
+    }
+
+    /**
+     * Para as threads iniciadas por {@link #iniciarTarefas()}. Chamado com {@link #reabertura} travado.
+     */
+    private void pararTarefas() {
+        ExecutorService l = limpeza;
+        if (l != null) {
+            limpeza = null;
+            l.shutdown();
+        }
+        ScheduledExecutorService a = analise;
+        if (a != null) {
+            analise = null;
+            a.shutdownNow();
+        }
+    }
+
+    /**
+     * Cria um sistema apenas com o conteúdo de um snapshot, sem motor de armazenamento. Usado também para
+     * reconstruir, em segundo plano, o estado de um momento anterior ao compactar as operações registradas.
+     *
+     * @param base Snapshot carregado
+     */
+    private Sistema(Snapshot base) {
+        metricas.registrar("mensagens.limiteEntregaDireta", () -> limiteEntregaDireta);
+        metricas.registrar("exclusoes.pendentes", exclusoes::size);
+        CacheListagens.registrarMetricas(metricas);
+        usuarios = base.getUsuarios();
+        usuarios.setEmUso(travas::emUso);
+        dicionario = base.getDicionario();
+        sessoes = Sessoes.criar(dicionario, metricas);
+        comunidades.putAll(base.getComunidades());
+        ultimaSequencia = new AtomicLong(base.getUltimaSequencia());
+    }
+
+    private static Snapshot carregar(JackutStore store) {
+        try {
+            return store.carregar();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Expõe este sistema ao motor de armazenamento: as operações reproduzidas são reaplicadas, e a exportação
+     * trava todas as faixas enquanto o estado é gravado.
+     *
+     * @return Estado deste sistema
+     */
+    private JackutStore.Estado estado() {
+        return new JackutStore.Estado() {
+            @Override
+            public void aplicar(Operacao operacao, String[] args) {
+                Sistema.this.aplicar(operacao, args);
+            }
+
+            @Override
+            public void exportar(JackutStore.Gravacao gravacao) throws IOException {
+                Travas.Trava t = travas.travarTudo();
+                try (t) {
+                    aplicarReferenciasAdiadas();
+                    gravacao.gravar(usuarios, comunidades, ultimaSequencia.get());
+                }
+            }
+        };
+    }
+
+    /**
+     * Remove todos os usuários e comunidades cadastradas, zerando o sistema.
      */
     public void zerarSistema() {
-        usuarios.clear();
-        comunidades.clear();
+        aguardarExclusoes();
+        Travas.Trava t = travas.travarTudo();
+        try (t) {
+            usuarios.limpar();
+            comunidades.clear();
+            sessoes.limpar();
+            grafo = null;
+            IndicePerfis indice = indicePerfis;
+            if (indice != null) {
+                indice.limpar();
+            }
+            registrar(Operacao.ZERAR_SISTEMA);
+        }
+    }
+
+    /**
+     * Obtém a fotografia mais recente dos relacionamentos, para consultas analíticas que não disputam nada com as
+     * escritas. Se ainda não houver uma, ela é montada na chamada.
+     *
+     * @return Fotografia dos relacionamentos; pode estar defasada em até "jackut.analise.intervaloMs"
+     */
+    public GrafoCsr getGrafo() {
+        GrafoCsr g = grafo;
+        return g != null ? g : atualizarGrafo();
+    }
+
+    /**
+     * Calcula o grau de separação entre dois usuários pelas amizades, com um caminho mais curto entre eles.
+     * <p>
+     * A busca é feita na fotografia dos relacionamentos ({@link #getGrafo()}), sem travas e sem remontá-la, então
+     * a resposta pode estar defasada em até "jackut.analise.intervaloMs": amizades feitas ou desfeitas depois da
+     * última montagem ainda não são consideradas, e um usuário cadastrado depois dela não é alcançado (grau -1).
+     * Quem precisar da resposta do momento chama {@link #atualizarGrafo()} antes.
+     * </p>
+     *
+     * @param login1 Login do primeiro usuário
+     * @param login2 Login do segundo usuário
+     * @param saltos Quantidade máxima de saltos procurados
+     * @return Separação entre os usuários (grau -1 se não houver caminho com até "saltos" saltos)
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
+     * @throws InformacaoInvalidaException   Se a quantidade de saltos for negativa
+     */
+    public Separacao grauDeSeparacao(String login1, String login2, int saltos) {
+        Travas.Trava t = travas.travar(login1, login2);
+        try (t) {
+            getUsuario(login1);
+            getUsuario(login2);
+        }
+        return getGrafo().separacao(login1, login2, saltos);
+    }
+
+    /**
+     * Monta uma nova fotografia dos relacionamentos a partir do estado atual.
+     * <p>
+     * Cada usuário é lido com a trava da sua faixa, um de cada vez, então a montagem não bloqueia o sistema; a
+     * fotografia reflete cada usuário no momento em que ele foi lido. Os usuários do snapshot mapeado que não
+     * estão em memória são lidos do arquivo só para a montagem, sem entrar no cache nem descartar os que estão.
+     * </p>
+     *
+     * @return A nova fotografia, já publicada para {@link #getGrafo()}
+     */
+    public GrafoCsr atualizarGrafo() {
+        synchronized (montagemGrafo) {
+            reservarIds();
+            int vertices = dicionario.tamanho();
+            GrafoCsr.Construtor construtor = new GrafoCsr.Construtor(dicionario, vertices);
+            for (int id = 0; id < vertices; id++) {
+                String login = dicionario.login(id);
+                ReentrantLock faixa = travas.faixa(login);
+                faixa.lock();
+                try {
+                    Usuario user = lerDePassagem(login);
+                    if (user != null) {
+                        construtor.adicionar(id, user);
+                    }
+                } finally {
+                    faixa.unlock();
+                }
+            }
+            GrafoCsr g = construtor.construir();
+            grafo = g;
+            return g;
+        }
     }
 
     /**
-     * Cria um novo usurio na plataforma.
+     * Atribui IDs aos logins do snapshot mapeado, que só recebem um quando são lidos, para que as montagens que
+     * percorrem os IDs ({@link #atualizarGrafo()} e o índice dos perfis) incluam todos os usuários. Os logins do
+     * arquivo não mudam, e os usuários criados depois recebem ID ao serem criados, então basta fazê-lo uma vez.
+     */
+    private void reservarIds() {
+        if (!idsReservados) {
+            dicionario.reservar(usuarios.logins());
+            idsReservados = true;
+        }
+    }
+
+    /**
+     * Obtém um usuário para as montagens que percorrem todos os usuários, sem trazer para o cache do
+     * {@link UsuarioStore} os que ainda não foram lidos (ver {@link UsuarioStore#lerSemCache(String)}). Deve ser
+     * chamado com a faixa do usuário travada. Com exclusões pendentes, o usuário é obtido normalmente, para que
+     * as referências ao excluído sejam limpas antes de chegarem à montagem.
+     *
+     * @return O usuário, ou null se não existir
+     */
+    private Usuario lerDePassagem(String login) {
+        if (!exclusoes.isEmpty()) {
+            return usuarios.contem(login) ? getUsuario(login) : null;
+        }
+        return usuarios.lerSemCache(login);
+    }
+
+    /**
+     * Registra uma operação no motor de armazenamento.
+     *
+     * @param operacao Operação realizada
+     * @param args     Argumentos da operação, sempre identificando usuários pelo login
+     */
+    private void registrar(Operacao operacao, String... args) {
+        if (store == null) {
+            return;
+        }
+        try {
+            reabrirSeEncerrado();
+            store.registrar(operacao, args);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Ocorreu um erro ao registrar a operação.");
+        }
+    }
+
+    private void registrarTodos(Operacao operacao, List<String[]> argumentos) {
+        if (store == null) {
+            return;
+        }
+        try {
+            reabrirSeEncerrado();
+            store.registrarTodos(operacao, argumentos);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Ocorreu um erro ao registrar as operações.");
+        }
+    }
+
+    /**
+     * Reabre o motor, se o sistema já foi encerrado, antes de registrar uma operação feita depois do encerramento,
+     * e volta a iniciar as threads de exclusão e de análise.
+     */
+    private void reabrirSeEncerrado() throws IOException {
+        if (!encerrado) {
+            return;
+        }
+        synchronized (reabertura) {
+            if (encerrado) {
+                store.reabrir(estado(), base -> new Sistema(base).estado());
+                encerrado = false;
+                iniciarTarefas();
+            }
+        }
+    }
+
+    /**
+     * Reaplica uma operação registrada. As sessões não são persistidas, então as operações
+     * são refeitas a partir do login do usuário que as realizou.
+     *
+     * @param operacao Operação registrada
+     * @param a        Argumentos da operação
+     */
+    private void aplicar(Operacao operacao, String[] a) {
+        try {
+            switch (operacao) {
+                case ZERAR_SISTEMA -> { usuarios.limpar(); comunidades.clear(); }
+                case CRIAR_USUARIO -> inserirUsuario(a[0], a[1], a[2]);
+                case EDITAR_PERFIL -> editarPerfil(getUsuario(a[0]), a[1], a[2]);
+                case ADICIONAR_AMIGO -> adicionarAmigo(getUsuario(a[0]), a[1]);
+                case ENVIAR_RECADO -> enviarRecado(getUsuario(a[0]), a[1], a[2]);
+                case LER_RECADO -> getUsuario(a[0]).getRecado();
+                case CRIAR_COMUNIDADE -> criarComunidade(getUsuario(a[0]), a[1], a[2]);
+                case ADICIONAR_COMUNIDADE -> adicionarComunidade(getUsuario(a[0]), a[1]);
+                case LER_MENSAGEM -> lerMensagem(getUsuario(a[0]));
+                case ENVIAR_MENSAGEM -> enviarMensagem(getUsuario(a[0]), a[1], a[2]);
+                case ADICIONAR_IDOLO -> adicionarIdolo(getUsuario(a[0]), a[1]);
+                case ADICIONAR_PAQUERA -> adicionarPaquera(getUsuario(a[0]), a[1]);
+                case ADICIONAR_INIMIGO -> adicionarInimigo(getUsuario(a[0]), a[1]);
+                case REMOVER_USUARIO -> removerUsuario(getUsuario(a[0]));
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            System.err.println("Operação registrada não pôde ser reaplicada: " + operacao);
+        }
+    }
+
+    /**
+     * Cria um novo usuário na plataforma.
      *
-     * @param login Login do usurio
-     * @param senha Senha do usurio
-     * @param nome  Nome do usurio
-     * @throws InformacaoInvalidaException Se alguma informao for invlida
-     * @throws UsuarioJaExistenteException Se o login j estiver cadastrado
+     * @param login Login do usuário
+     * @param senha Senha do usuário
+     * @param nome  Nome do usuário
+     * @throws InformacaoInvalidaException Se alguma informação for inválida
+     * @throws UsuarioJaExistenteException Se o login já estiver cadastrado
      * @throws ConflitoInformacaoException Se a senha for igual ao nome ou login
+     * @throws LimiteDeTentativasException Se houver cálculos de senha demais em andamento
      */
     public void criarUsuario(String login, String senha, String nome) {
+        validarNovoUsuario(login, senha, nome);
+
+        // Codificada antes da trava; a existência é conferida de novo em inserirUsuario.
+        inserirUsuario(login, senhas.codificar(senha), nome);
+    }
+
+    private void validarNovoUsuario(String login, String senha, String nome) {
         if (login == null) {
-            throw new InformacaoInvalidaException("Login invlido.");
+            throw new InformacaoInvalidaException("Login inválido.");
         } else if (senha == null) {
-            throw new InformacaoInvalidaException("Senha invlida.");
+            throw new InformacaoInvalidaException("Senha inválida.");
         } else if (nome == null) {
-            throw new InformacaoInvalidaException("Nome invlido.");
-        } else if (usuarios.containsKey(login)) {
-            throw new UsuarioJaExistenteException("Conta com esse nome j existe.");
+            throw new InformacaoInvalidaException("Nome inválido.");
+        }
+
+        if (usuarios.contem(login)) {
+            throw new UsuarioJaExistenteException("Conta com esse nome já existe.");
         } else if (login.equals(senha) || nome.equals(senha)) {
-            throw new ConflitoInformacaoException("A senha deve ser diferente do nome de usurio ou do login.");
+            throw new ConflitoInformacaoException("A senha deve ser diferente do nome de usuário ou do login.");
+        }
+    }
+
+    /**
+     * Cria vários usuários de uma vez (importação em lote), com as mesmas regras de
+     * {@link #criarUsuario(String, String, String)}.
+     * <p>
+     * O lote inteiro é validado antes de qualquer alteração, inclusive quanto a logins repetidos dentro dele. As
+     * senhas dos itens válidos são codificadas em paralelo, e os usuários são inseridos em blocos de
+     * {@value #BLOCO_LOTE}, cada um com as suas faixas travadas uma única vez.
+     * </p>
+     *
+     * @param novos Usuários a criar, cada um como {login, senha, nome}
+     * @return Resultado de cada item, na ordem do lote
+     */
+    public ResultadoLote criarUsuarios(List<String[]> novos) {
+        ResultadoLote resultado = new ResultadoLote(novos.size());
+        Set<String> vistos = new HashSet<>(novos.size() * 4 / 3 + 1);
+        List<Integer> validos = new ArrayList<>(novos.size());
+        List<String> senhasValidas = new ArrayList<>(novos.size());
+        for (int i = 0; i < novos.size(); i++) {
+            String[] u = novos.get(i);
+            try {
+                if (u == null || u.length != 3) {
+                    throw new InformacaoInvalidaException("Item inválido.");
+                }
+                validarNovoUsuario(u[0], u[1], u[2]);
+                if (!vistos.add(u[0])) {
+                    throw new UsuarioJaExistenteException("Conta com esse nome já existe.");
+                }
+                validos.add(i);
+                senhasValidas.add(u[1]);
+            } catch (RuntimeException e) {
+                resultado.falhar(i, e.getMessage());
+            }
+        }
+
+        for (String login : vistos) {
+            Exclusao pendente = exclusoes.get(login);
+            if (pendente != null) {
+                pendente.aguardar();
+            }
         }
+        String[] codificadas = senhas.codificarTodas(senhasValidas);
+        dicionario.reservar(vistos);
 
-        Usuario usuario = new Usuario(login, senha, nome);
-        usuarios.put(login, usuario);
+        for (int inicio = 0; inicio < validos.size(); inicio += BLOCO_LOTE) {
+            int fim = Math.min(validos.size(), inicio + BLOCO_LOTE);
+            List<String> logins = new ArrayList<>(fim - inicio);
+            for (int k = inicio; k < fim; k++) {
+                logins.add(novos.get(validos.get(k))[0]);
+            }
+            Travas.Trava t = travas.travar(logins);
+            try (t) {
+                Map<String, Usuario> criados = new HashMap<>((fim - inicio) * 4 / 3 + 1);
+                List<String[]> registros = new ArrayList<>(fim - inicio);
+                for (int k = inicio; k < fim; k++) {
+                    int i = validos.get(k);
+                    String[] u = novos.get(i);
+                    // Pode ter sido cadastrado por outra thread depois da validação
+                    if (usuarios.contem(u[0])) {
+                        resultado.falhar(i, "Conta com esse nome já existe.");
+                        continue;
+                    }
+                    criados.put(u[0], new Usuario(u[0], codificadas[k], u[2], dicionario));
+                    registros.add(new String[]{u[0], codificadas[k], u[2]});
+                }
+                usuarios.adicionarTodos(criados);
+                for (Usuario criado : criados.values()) {
+                    indexarPerfil(criado);
+                }
+                registrarTodos(Operacao.CRIAR_USUARIO, registros);
+            }
+        }
+        return resultado;
     }
 
     /**
-     * Retorna um atributo do usurio.
+     * Aplica uma operação entre dois usuários a cada item de um lote, em blocos de {@value #BLOCO_LOTE} itens,
+     * cada um com as suas faixas travadas uma única vez e as suas operações registradas de uma vez.
      *
-     * @param login    Login do usurio
+     * @param itens    Itens do lote; os dois primeiros campos de cada um são os logins envolvidos
+     * @param campos   Quantidade de campos de cada item
+     * @param operacao Operação registrada, com os campos do item como argumentos
+     * @param aplicar  Aplica um item, com as faixas dos dois usuários travadas
+     * @return Resultado de cada item, na ordem do lote
+     */
+    private ResultadoLote aplicarEmLote(List<String[]> itens, int campos, Operacao operacao,
+                                        Consumer<String[]> aplicar) {
+        ResultadoLote resultado = new ResultadoLote(itens.size());
+        List<Integer> validos = new ArrayList<>(itens.size());
+        for (int i = 0; i < itens.size(); i++) {
+            String[] item = itens.get(i);
+            if (item == null || item.length != campos) {
+                resultado.falhar(i, "Item inválido.");
+            } else if (!usuarios.contem(item[0]) || !usuarios.contem(item[1])) {
+                resultado.falhar(i, "Usuário não cadastrado.");
+            } else {
+                validos.add(i);
+            }
+        }
+
+        for (int inicio = 0; inicio < validos.size(); inicio += BLOCO_LOTE) {
+            int fim = Math.min(validos.size(), inicio + BLOCO_LOTE);
+            List<String> chaves = new ArrayList<>(2 * (fim - inicio));
+            for (int k = inicio; k < fim; k++) {
+                String[] item = itens.get(validos.get(k));
+                chaves.add(item[0]);
+                chaves.add(item[1]);
+            }
+            Travas.Trava t = travas.travar(chaves);
+            try (t) {
+                List<String[]> aplicados = new ArrayList<>(fim - inicio);
+                for (int k = inicio; k < fim; k++) {
+                    int i = validos.get(k);
+                    String[] item = itens.get(i);
+                    try {
+                        aplicar.accept(item);
+                        aplicados.add(item);
+                    } catch (RuntimeException e) {
+                        resultado.falhar(i, e.getMessage());
+                    }
+                }
+                registrarTodos(operacao, aplicados);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Cadastra um usuário com a senha já codificada.
+     *
+     * @param login      Login do usuário
+     * @param armazenada Senha codificada por {@link Senhas#codificar(String)}
+     * @param nome       Nome do usuário
+     * @throws UsuarioJaExistenteException Se o login já estiver cadastrado
+     */
+    private void inserirUsuario(String login, String armazenada, String nome) {
+        // Um login removido só pode ser cadastrado de novo depois que as referências antigas a ele forem removidas.
+        Exclusao pendente = exclusoes.get(login);
+        if (pendente != null) {
+            pendente.aguardar();
+        }
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            if (usuarios.contem(login)) {
+                throw new UsuarioJaExistenteException("Conta com esse nome já existe.");
+            }
+
+            Usuario usuario = new Usuario(login, armazenada, nome, dicionario);
+            usuarios.adicionar(usuario);
+            indexarPerfil(usuario);
+            registrar(Operacao.CRIAR_USUARIO, login, armazenada, nome);
+        }
+    }
+
+    /**
+     * Acrescenta um usuário recém-criado ao índice dos perfis, se ele já tiver sido montado.
+     * Deve ser chamado com a faixa do usuário travada.
+     */
+    private void indexarPerfil(Usuario user) {
+        IndicePerfis indice = indicePerfis;
+        if (indice != null) {
+            indice.adicionar(dicionario.id(user.getLogin()), user);
+        }
+    }
+
+    /**
+     * Retorna um atributo do usuário.
+     *
+     * @param login    Login do usuário
      * @param atributo Nome do atributo a ser recuperado
      * @return O valor do atributo solicitado
-     * @throws UsuarioNaoCadastradoException Se o usurio no estiver cadastrado
+     * @throws UsuarioNaoCadastradoException Se o usuário não estiver cadastrado
      */
     public String getAtributoUsuario(String login, String atributo) {
-        Usuario usuario = getUsuario(login);
-        if (atributo.equals("nome")) {
-            return usuario.getNome();
-        } else if (atributo.equals("login")) {
-            return usuario.getLogin();
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            Usuario usuario = getUsuario(login);
+            if (atributo.equals("nome")) {
+                return usuario.getNome();
+            } else if (atributo.equals("login")) {
+                return usuario.getLogin();
+            } else {
+                return usuario.getAtributo(atributo);
+            }
+        }
+    }
+
+    /**
+     * Procura os usuários com um valor em um atributo do perfil ("nome" ou um atributo extra). A comparação ignora
+     * maiúsculas, acentos e espaços repetidos ou nas pontas (ver {@link IndicePerfis#normalizar(String)}).
+     *
+     * @param atributo Nome do atributo
+     * @param valor    Valor procurado
+     * @return Logins encontrados, em ordem alfabética, no formato "{login1,login2,...}"
+     * @throws InformacaoInvalidaException Se o atributo ou o valor forem nulos
+     */
+    public String buscarUsuarios(String atributo, String valor) {
+        validarBusca(atributo, valor);
+        return formatarIds(getIndicePerfis().buscar(atributo, valor));
+    }
+
+    /**
+     * Procura os usuários cujo valor de um atributo do perfil começa com um prefixo, com a mesma normalização de
+     * {@link #buscarUsuarios(String, String)}.
+     *
+     * @param atributo Nome do atributo
+     * @param prefixo  Prefixo procurado
+     * @return Logins encontrados, em ordem alfabética, no formato "{login1,login2,...}"
+     * @throws InformacaoInvalidaException Se o atributo ou o prefixo forem nulos
+     */
+    public String buscarUsuariosPorPrefixo(String atributo, String prefixo) {
+        validarBusca(atributo, prefixo);
+        return formatarIds(getIndicePerfis().buscarPorPrefixo(atributo, prefixo));
+    }
+
+    /**
+     * Procura os usuários que têm todos os valores pedidos, cada um no seu atributo, com a mesma normalização de
+     * {@link #buscarUsuarios(String, String)}.
+     *
+     * @param criterios Valor procurado para cada atributo
+     * @return Logins encontrados, em ordem alfabética, no formato "{login1,login2,...}"
+     * @throws InformacaoInvalidaException Se não houver critérios ou algum atributo ou valor for nulo
+     */
+    public String buscarUsuarios(Map<String, String> criterios) {
+        if (criterios == null || criterios.isEmpty()) {
+            throw new InformacaoInvalidaException("Busca inválida.");
+        }
+        for (Map.Entry<String, String> c : criterios.entrySet()) {
+            validarBusca(c.getKey(), c.getValue());
+        }
+        return formatarIds(getIndicePerfis().buscarTodos(criterios));
+    }
+
+    private static void validarBusca(String atributo, String valor) {
+        if (atributo == null) {
+            throw new InformacaoInvalidaException("Atributo inválido.");
+        } else if (valor == null) {
+            throw new InformacaoInvalidaException("Valor inválido.");
+        }
+    }
+
+    /**
+     * Formata os IDs de um resultado de busca como logins, em ordem alfabética. A ordem dos IDs não serve: ela
+     * depende da ordem em que os logins foram lidos ou cadastrados desde que o sistema foi aberto.
+     */
+    private String formatarIds(BitmapCompactado ids) {
+        List<String> logins = new ArrayList<>(ids.tamanho());
+        ids.paraCada(id -> logins.add(dicionario.login(id)));
+        logins.sort(null);
+        return "{" + String.join(",", logins) + "}";
+    }
+
+    /**
+     * Obtém o índice dos perfis, montando-o se ainda não existir.
+     * <p>
+     * A montagem lê cada usuário com a trava da sua faixa, um de cada vez, então não bloqueia o sistema, e, como
+     * em {@link #atualizarGrafo()}, não traz para o cache os usuários do snapshot mapeado. O índice
+     * é publicado antes de começar, para que as alterações feitas durante a montagem também cheguem a ele; só é
+     * usado nas buscas depois de completo.
+     * </p>
+     *
+     * @return Índice completo
+     */
+    private IndicePerfis getIndicePerfis() {
+        IndicePerfis indice = indicePerfis;
+        if (indice != null && indice.isPronto()) {
+            return indice;
+        }
+        synchronized (montagemIndice) {
+            indice = indicePerfis;
+            if (indice != null && indice.isPronto()) {
+                return indice;
+            }
+            IndicePerfis novo = new IndicePerfis();
+            indicePerfis = novo;
+            reservarIds();
+            for (int id = 0, total = dicionario.tamanho(); id < total; id++) {
+                String login = dicionario.login(id);
+                ReentrantLock faixa = travas.faixa(login);
+                faixa.lock();
+                try {
+                    Usuario user = lerDePassagem(login);
+                    if (user != null) {
+                        novo.adicionar(id, user);
+                    }
+                } finally {
+                    faixa.unlock();
+                }
+            }
+            novo.setPronto();
+            return novo;
+        }
+    }
+
+    /**
+     * Abre uma sessão para um usuário autenticado.
+     *
+     * @param login Login do usuário
+     * @param senha Senha do usuário
+     * @return ID da sessão aberta
+     * @throws InformacaoInvalidaException Se o login ou senha forem inválidos
+     * @throws LimiteDeTentativasException Se houver cálculos de senha demais em andamento
+     */
+    public String abrirSessao(String login, String senha) {
+        long inicio = System.nanoTime();
+        try {
+            if (login == null || senha == null) {
+                throw new InformacaoInvalidaException("Login ou senha inválidos.");
+            }
+            String armazenada;
+            Travas.Trava t = travas.travar(login);
+            try (t) {
+                Usuario usuario = usuarios.get(login);
+                if (usuario == null) {
+                    throw new InformacaoInvalidaException("Login ou senha inválidos.");
+                }
+                armazenada = usuario.getSenha();
+            }
+
+            // A verificação (e a recodificação, se o custo mudou) é feita sem a trava, para não bloquear o usuário
+            if (!senhas.verificar(senha, armazenada)) {
+                throw new InformacaoInvalidaException("Login ou senha inválidos.");
+            }
+            String recodificada = senhas.precisaRecodificar(armazenada) ? senhas.codificar(senha) : null;
+
+            Travas.Trava t2 = travas.travar(login);
+            try (t2) {
+                Usuario usuario = usuarios.get(login);
+                // A senha pode ter mudado (ou o usuário ter sido removido) enquanto era verificada
+                if (usuario == null || !usuario.getSenha().equals(armazenada)) {
+                    throw new InformacaoInvalidaException("Login ou senha inválidos.");
+                }
+                if (recodificada != null) {
+                    usuario.setSenha(recodificada);
+                    registrar(Operacao.EDITAR_PERFIL, login, "senha", recodificada);
+                    senhasRecodificadas.increment();
+                }
+                // Aberta com a trava, para não escapar do encerramento feito por uma remoção concorrente
+                return sessoes.abrir(login);
+            }
+        } finally {
+            latenciaAbrirSessao.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Edita um atributo do perfil do usuário autenticado.
+     *
+     * @param id       ID da sessão
+     * @param atributo Nome do atributo a ser editado
+     * @param valor    Novo valor do atributo
+     * @throws UsuarioNaoCadastradoException Se a sessão for inválida
+     * @throws LimiteDeTentativasException Se for a senha e houver cálculos de senha demais em andamento
+     */
+    public void editarPerfil(String id, String atributo, String valor) {
+        String login = getLoginPorSessao(id);
+        if ("senha".equals(atributo) && valor != null) {
+            valor = senhas.codificar(valor);
+        }
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            editarPerfil(getUsuario(login), atributo, valor);
+            registrar(Operacao.EDITAR_PERFIL, login, atributo, valor);
+        }
+    }
+
+    /**
+     * Edita um atributo do perfil e atualiza o índice dos perfis, se ele já tiver sido montado.
+     * Deve ser chamado com a faixa do usuário travada.
+     */
+    private void editarPerfil(Usuario user, String atributo, String valor) {
+        IndicePerfis indice = indicePerfis;
+        if (indice == null) {
+            user.editarPerfil(atributo, valor);
+            return;
+        }
+        // O nome é sempre conferido, porque Usuario.editarPerfil também o troca quando o atributo é igual a ele
+        String nome = user.getNome();
+        String anterior = IndicePerfis.valor(user, atributo);
+        user.editarPerfil(atributo, valor);
+        int id = dicionario.id(user.getLogin());
+        indice.trocar(id, "nome", nome, user.getNome());
+        if (!"nome".equals(atributo)) {
+            indice.trocar(id, atributo, anterior, IndicePerfis.valor(user, atributo));
+        }
+    }
+
+    /**
+     * Adiciona um amigo à lista de amizades do usuário autenticado.
+     *
+     * @param id    ID da sessão do usuário autenticado
+     * @param amigo Login do usuário a ser adicionado
+     * @throws UsuarioNaoCadastradoException Se o usuário ou amigo não estiverem cadastrados
+     * @throws ConflitoInformacaoException   Se tentar adicionar a si mesmo
+     * @throws InimigoException Se o usuário ou amigo forem inimigos
+     */
+    public void adicionarAmigo(String id, String amigo) {
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travas.travar(login, amigo);
+        try (t) {
+            adicionarAmigo(getUsuario(login), amigo);
+            registrar(Operacao.ADICIONAR_AMIGO, login, amigo);
+        }
+    }
+
+    /**
+     * Aplica vários pedidos de amizade de uma vez (importação em lote). Cada par tem o mesmo efeito de
+     * {@link #adicionarAmigo(String, String)} feito pelo primeiro usuário: um convite, ou a amizade se o outro
+     * já o tiver convidado.
+     * <p>
+     * Não exige sessão, então só é exposto por {@link ImportacaoEmLote}, e não pela {@link Facade}.
+     * </p>
+     *
+     * @param pares Pedidos, cada um como {login, amigo}
+     * @return Resultado de cada item, na ordem do lote
+     */
+    ResultadoLote adicionarAmizades(List<String[]> pares) {
+        return aplicarEmLote(pares, 2, Operacao.ADICIONAR_AMIGO, p -> adicionarAmigo(getUsuario(p[0]), p[1]));
+    }
+
+    private void adicionarAmigo(Usuario user, String amigo) {
+        Usuario user2 = getUsuario(amigo);
+
+        if (user.getLogin().equals(amigo)) {
+            throw new ConflitoInformacaoException("Usuário não pode adicionar a si mesmo como amigo.");
+        }
+
+        if (user.ehInimigo(amigo) || user2.ehInimigo(user.getLogin())) {
+            throw new InimigoException(String.format("Função inválida: %s é seu inimigo.", user2.getNome()));
+        }
+
+        if (user.checaConvite(amigo)) {
+            user.adicionarAmigo(amigo);
+            user2.adicionarAmigo(user.getLogin());
+            user2.adicionarReferenciaDe(user.getLogin());
         } else {
-            return usuario.getAtributo(atributo);
+            user2.adicionarConvite(user.getLogin());
+        }
+        user.adicionarReferenciaDe(amigo);
+    }
+
+    /**
+     * Verifica se dois usuários são amigos.
+     *
+     * @param login Login do primeiro usuário
+     * @param amigo Login do segundo usuário
+     * @return true se forem amigos, false caso contrário
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não estiver cadastrado
+     */
+    public boolean ehAmigo(String login, String amigo) {
+        Travas.Trava t = travas.travar(login, amigo);
+        try (t) {
+            Usuario user = getUsuario(login);
+            getUsuario(amigo); // apenas para verificar se existe
+            return user.ehAmigo(amigo);
+        }
+    }
+
+    /**
+     * Retorna a lista de amigos de um usuário.
+     *
+     * @param login Login do usuário
+     * @return Lista de amigos do usuário no formato "{amigo1,amigo2,...}"
+     */
+    public String getAmigos(String login) {
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            Usuario user = getUsuario(login);
+            return user.formatarAmigos();
+        }
+    }
+
+    /**
+     * Retorna uma página da lista de amigos de um usuário (ver {@link Pagina}).
+     *
+     * @param login  Login do usuário
+     * @param limite Quantidade máxima de amigos na página
+     * @param cursor Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return Página de amigos
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se o limite ou o cursor forem inválidos
+     */
+    public Pagina paginarAmigos(String login, int limite, String cursor) {
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            return getUsuario(login).paginar(TipoRelacionamento.AMIGOS, limite, cursor);
+        }
+    }
+
+    /**
+     * Escreve a lista de amigos de um usuário em um destino, no formato da listagem completa,
+     * sem montá-la em uma String.
+     *
+     * @param login   Login do usuário
+     * @param destino Destino da listagem (ex.: um Writer)
+     * @throws IOException                   Se a escrita no destino falhar
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public void escreverAmigos(String login, Appendable destino) throws IOException {
+        String[] itens;
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            itens = getUsuario(login).getAmigos().toArray(new String[0]);
+        }
+        escrever(itens, destino);
+    }
+
+    /**
+     * Conta os amigos de um usuário sem montar a listagem e sem alocar objetos.
+     *
+     * @param login  Login do usuário
+     * @return Quantidade de amigos
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public int contarAmigos(String login) {
+        ReentrantLock faixa = travas.faixa(login);
+        faixa.lock();
+        try {
+            return getUsuario(login).getAmigos().size();
+        } finally {
+            faixa.unlock();
+        }
+    }
+
+    /**
+     * Sugere amigos a um usuário: os usuários com mais amigos em comum com ele (ver {@link SugestaoAmigos}).
+     * <p>
+     * Não são sugeridos os amigos atuais, os inimigos (em qualquer direção) e quem tiver um convite de amizade
+     * pendente com ele (em qualquer direção).
+     * </p>
+     *
+     * @param login Login do usuário
+     * @param k     Quantidade máxima de sugestões
+     * @return Logins sugeridos, do que tem mais amigos em comum para o que tem menos (em empate, na ordem dos
+     * logins), no formato "{login1,login2,...}"
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se k não for positivo
+     */
+    public String sugerirAmigos(String login, int k) {
+        if (k <= 0) {
+            throw new InformacaoInvalidaException("Quantidade de sugestões inválida.");
+        }
+        int[] amigos;
+        int[] excluidos;
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            Usuario user = getUsuario(login);
+            amigos = user.getIdsAmigos().paraVetor();
+            excluidos = new int[1 + user.getInimigos().size() + user.getConvites().size()];
+            int n = 0;
+            excluidos[n++] = dicionario.id(login);
+            for (String inimigo : user.getInimigos()) {
+                excluidos[n++] = dicionario.id(inimigo);
+            }
+            for (String convite : user.getConvites()) {
+                excluidos[n++] = dicionario.id(convite);
+            }
+        }
+
+        int[] sugeridos = SugestaoAmigos.sugerir(grafoAmizades, login, amigos, excluidos, k);
+        String[] logins = new String[sugeridos.length];
+        for (int i = 0; i < sugeridos.length; i++) {
+            logins[i] = dicionario.login(sugeridos[i]);
+        }
+        return "{" + String.join(",", logins) + "}";
+    }
+
+    /**
+     * Grafo de amizades visto pela sugestão de amigos: cada usuário é lido com a trava da sua faixa, uma de cada vez.
+     */
+    private final SugestaoAmigos.Grafo grafoAmizades = new SugestaoAmigos.Grafo() {
+        @Override
+        public void amigos(int id, IntConsumer destino) {
+            String login = dicionario.login(id);
+            ReentrantLock faixa = travas.faixa(login);
+            faixa.lock();
+            try {
+                if (usuarios.get(login) == null) {
+                    return;
+                }
+                for (PrimitiveIterator.OfInt it = getUsuario(login).getIdsAmigos().iterador(); it.hasNext(); ) {
+                    destino.accept(it.nextInt());
+                }
+            } finally {
+                faixa.unlock();
+            }
+        }
+
+        @Override
+        public boolean aceita(int candidato, String usuario) {
+            String login = dicionario.login(candidato);
+            ReentrantLock faixa = travas.faixa(login);
+            faixa.lock();
+            try {
+                if (usuarios.get(login) == null) {
+                    return false;
+                }
+                Usuario user = getUsuario(login);
+                return !user.ehInimigo(usuario) && !user.checaConvite(usuario) && !user.getAmigos().contains(usuario);
+            } finally {
+                faixa.unlock();
+            }
         }
-    }
 
-    /**
-     * Abre uma sesso para um usurio autenticado.
-     *
-     * @param login Login do usurio
-     * @param senha Senha do usurio
-     * @return ID da sesso aberta
-     * @throws InformacaoInvalidaException Se o login ou senha forem invlidos
-     */
-    public String abrirSessao(String login, String senha) {
-        if (!usuarios.containsKey(login) || senha == null || getUsuario(login).comparaSenha(senha) == 0) {
-            throw new InformacaoInvalidaException("Login ou senha invlidos.");
+        @Override
+        public int totalIds() {
+            return dicionario.tamanho();
         }
 
-        String id = System.currentTimeMillis() + "-" + login;
-        sessoes.put(id, login);
-        return id;
-    }
+        @Override
+        public String login(int id) {
+            return dicionario.login(id);
+        }
+    };
 
     /**
-     * Edita um atributo do perfil do usurio autenticado.
+     * Sugere comunidades a um usuário, entre as comunidades dos seus amigos e ídolos de que ele ainda não participa.
+     * <p>
+     * As comunidades são ordenadas pela quantidade de amigos e ídolos do usuário que participam dela; em empate,
+     * a comunidade maior vem primeiro. Persistindo o empate, vem primeiro a mais semelhante às comunidades do
+     * usuário, pela semelhança entre os seus membros estimada pelas assinaturas MinHash ({@link AssinaturaMinHash},
+     * de 0 a 1) em tempo constante, sem comparar os conjuntos de membros; por fim, a de nome menor.
+     * </p>
+     * <p>
+     * Cada usuário e cada comunidade é lido com a sua própria trava, um de cada vez.
+     * </p>
      *
-     * @param id       ID da sesso
-     * @param atributo Nome do atributo a ser editado
-     * @param valor    Novo valor do atributo
-     * @throws UsuarioNaoCadastradoException Se a sesso for invlida
+     * @param login Login do usuário
+     * @param k     Quantidade máxima de sugestões
+     * @return Nomes das comunidades sugeridas, da melhor para a pior, no formato "{nome1,nome2,...}"
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se k não for positivo
      */
-    public void editarPerfil(String id, String atributo, String valor) {
-        Usuario user = getUsuarioPorSessao(id);
-        user.editarPerfil(atributo, valor);
-    }
+    public String sugerirComunidades(String login, int k) {
+        if (k <= 0) {
+            throw new InformacaoInvalidaException("Quantidade de sugestões inválida.");
+        }
+        Set<String> pessoas = new LinkedHashSet<>();
+        Set<String> minhas;
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            Usuario user = getUsuario(login);
+            pessoas.addAll(user.getAmigos());
+            pessoas.addAll(user.getIdolos());
+            minhas = new HashSet<>(user.getComunidades());
+        }
 
-    /**
-     * Adiciona um amigo  lista de amizades do usurio autenticado.
-     *
-     * @param id    ID da sesso do usurio autenticado
-     * @param amigo Login do usurio a ser adicionado
-     * @throws UsuarioNaoCadastradoException Se o usurio ou amigo no estiverem cadastrados
-     * @throws ConflitoInformacaoException   Se tentar adicionar a si mesmo
-     * @throws InimigoException Se o usurio ou amigo forem inimigos
-     */
-    public void adicionarAmigo(String id, String amigo) {
-        Usuario user = getUsuarioPorSessao(id);
-        Usuario user2 = getUsuario(amigo);
+        Map<String, int[]> participantes = new HashMap<>();
+        for (String pessoa : pessoas) {
+            ReentrantLock faixa = travas.faixa(pessoa);
+            faixa.lock();
+            try {
+                if (usuarios.get(pessoa) == null) {
+                    continue;
+                }
+                for (String nome : getUsuario(pessoa).getComunidades()) {
+                    if (!minhas.contains(nome)) {
+                        participantes.computeIfAbsent(nome, n -> new int[1])[0]++;
+                    }
+                }
+            } finally {
+                faixa.unlock();
+            }
+        }
+        if (participantes.isEmpty()) {
+            return "{}";
+        }
 
-        if (user.getLogin().equals(amigo)) {
-            throw new ConflitoInformacaoException("Usurio no pode adicionar a si mesmo como amigo.");
+        // A assinatura da união das comunidades do usuário é o mínimo, posição a posição, das assinaturas delas.
+        AssinaturaMinHash perfil = new AssinaturaMinHash();
+        for (String nome : minhas) {
+            ReentrantLock faixa = travas.faixa(nome);
+            faixa.lock();
+            try {
+                Comunidade c = getComunidade(nome);
+                if (c != null) {
+                    perfil.unir(c.getAssinatura());
+                }
+            } finally {
+                faixa.unlock();
+            }
         }
 
-        if (user.ehInimigo(amigo) || user2.ehInimigo(user.getLogin())) {
-            throw new InimigoException(String.format("Funo invlida: %s  seu inimigo.", user2.getNome()));
+        PriorityQueue<SugestaoComunidade> melhores = new PriorityQueue<>(Math.min(k, participantes.size()) + 1);
+        for (Map.Entry<String, int[]> p : participantes.entrySet()) {
+            SugestaoComunidade s;
+            ReentrantLock faixa = travas.faixa(p.getKey());
+            faixa.lock();
+            try {
+                Comunidade c = getComunidade(p.getKey());
+                if (c == null || c.getMembrosSet().contains(login)) {
+                    continue;
+                }
+                s = new SugestaoComunidade(c.getNome(), p.getValue()[0], c.getMembrosSet().size(),
+                        perfil.similaridade(c.getAssinatura()));
+            } finally {
+                faixa.unlock();
+            }
+            melhores.add(s);
+            if (melhores.size() > k) {
+                melhores.poll();
+            }
         }
 
-        if (user.checaConvite(amigo)) {
-            user.adicionarAmigo(amigo);
-            user2.adicionarAmigo(user.getLogin());
-        } else {
-            user2.adicionarConvite(user.getLogin());
+        String[] nomes = new String[melhores.size()];
+        for (int i = nomes.length - 1; i >= 0; i--) {
+            nomes[i] = melhores.poll().nome;
         }
+        return "{" + String.join(",", nomes) + "}";
     }
 
     /**
-     * Verifica se dois usurios so amigos.
-     *
-     * @param login Login do primeiro usurio
-     * @param amigo Login do segundo usurio
-     * @return true se forem amigos, false caso contrrio
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no estiver cadastrado
+     * Comunidade candidata em {@link #sugerirComunidades(String, int)}. A ordem natural vai da pior sugestão para a
+     * melhor, para que a raiz da fila de prioridade seja a próxima a ser descartada. Os critérios, em ordem:
+     * amigos e ídolos na comunidade, tamanho da comunidade, semelhança MinHash e nome.
      */
-    public boolean ehAmigo(String login, String amigo) {
-        Usuario user = getUsuario(login);
-        getUsuario(amigo); // apenas para verificar se existe
-        return user.ehAmigo(amigo);
+    private static final class SugestaoComunidade implements Comparable<SugestaoComunidade> {
+        final String nome;
+        final int conhecidos;
+        final int tamanho;
+        final double similaridade;
+
+        SugestaoComunidade(String nome, int conhecidos, int tamanho, double similaridade) {
+            this.nome = nome;
+            this.conhecidos = conhecidos;
+            this.tamanho = tamanho;
+            this.similaridade = similaridade;
+        }
+
+        @Override
+        public int compareTo(SugestaoComunidade outra) {
+            if (conhecidos != outra.conhecidos) {
+                return Integer.compare(conhecidos, outra.conhecidos);
+            }
+            if (tamanho != outra.tamanho) {
+                return Integer.compare(tamanho, outra.tamanho);
+            }
+            if (similaridade != outra.similaridade) {
+                return Double.compare(similaridade, outra.similaridade);
+            }
+            return outra.nome.compareTo(nome);
+        }
     }
 
     /**
-     * Retorna a lista de amigos de um usurio.
+     * Envia um recado para outro usuário.
      *
-     * @param login Login do usurio
-     * @return Lista de amigos do usurio no formato "{amigo1,amigo2,...}"
+     * @param id           ID da sessão do remetente
+     * @param destinatario Login do destinatário
+     * @param mensagem     Conteúdo do recado
+     * @throws UsuarioNaoCadastradoException Se remetente ou destinatário não estiverem cadastrados
+     * @throws ConflitoInformacaoException   Se o usuário tentar enviar um recado para si mesmo
+     * @throws InimigoException Se o usuário ou destinatário forem inimigos
      */
-    public String getAmigos(String login) {
-        Usuario user = getUsuario(login);
-        return "{" + String.join(",", user.getAmigos()) + "}";
+    public void enviarRecado(String id, String destinatario, String mensagem) {
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travas.travar(login, destinatario);
+        try (t) {
+            enviarRecado(getUsuario(login), destinatario, mensagem);
+            registrar(Operacao.ENVIAR_RECADO, login, destinatario, mensagem);
+        }
     }
 
     /**
-     * Envia um recado para outro usurio.
+     * Envia vários recados de uma vez (importação em lote), com as mesmas regras de
+     * {@link #enviarRecado(String, String, String)}.
+     * <p>
+     * Não exige sessão, então só é exposto por {@link ImportacaoEmLote}, e não pela {@link Facade}.
+     * </p>
      *
-     * @param id           ID da sesso do remetente
-     * @param destinatario Login do destinatrio
-     * @param mensagem     Contedo do recado
-     * @throws UsuarioNaoCadastradoException Se remetente ou destinatrio no estiverem cadastrados
-     * @throws ConflitoInformacaoException   Se o usurio tentar enviar um recado para si mesmo
-     * @throws InimigoException Se o usurio ou destinatrio forem inimigos
+     * @param recados Recados, cada um como {remetente, destinatario, mensagem}
+     * @return Resultado de cada item, na ordem do lote
      */
-    public void enviarRecado(String id, String destinatario, String mensagem) {
-        Usuario user = getUsuarioPorSessao(id);
+    ResultadoLote enviarRecados(List<String[]> recados) {
+        return aplicarEmLote(recados, 3, Operacao.ENVIAR_RECADO, r -> enviarRecado(getUsuario(r[0]), r[1], r[2]));
+    }
+
+    private void enviarRecado(Usuario user, String destinatario, String mensagem) {
         Usuario user2 = getUsuario(destinatario);
 
         if (user == user2) {
-            throw new ConflitoInformacaoException("Usurio no pode enviar recado para si mesmo.");
+            throw new ConflitoInformacaoException("Usuário não pode enviar recado para si mesmo.");
         }
         if (user.ehInimigo(destinatario) || user2.ehInimigo(user.getLogin())) {
-            throw new InimigoException(String.format("Funo invlida: %s  seu inimigo.", user2.getNome()));
+            throw new InimigoException(String.format("Função inválida: %s é seu inimigo.", user2.getNome()));
         }
 
         user2.adicionarRecado(mensagem, user.getLogin());
         user.adicionarDestinatario(destinatario);
+        user.adicionarReferenciaDe(destinatario);
+        user2.adicionarReferenciaDe(user.getLogin());
     }
 
     /**
-     * L um recado do usurio autenticado.
+     * Lê um recado do usuário autenticado.
      *
-     * @param id ID da sesso
+     * @param id ID da sessão
      * @return O recado recebido
-     * @throws UsuarioNaoCadastradoException Se a sesso for invlida
+     * @throws UsuarioNaoCadastradoException Se a sessão for inválida
      */
     public String lerRecado(String id) {
-        Usuario user = getUsuarioPorSessao(id);
-        return user.getRecado();
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            String recado = getUsuario(login).getRecado();
+            registrar(Operacao.LER_RECADO, login);
+            return recado;
+        }
     }
 
     /**
      * Cria uma comunidade nova.
      *
-     * @param id        ID da sesso do criador
+     * @param id        ID da sessão do criador
      * @param nome      Nome da comunidade a ser criada
-     * @param descricao Descrio da comunidade
-     * @throws UsuarioNaoCadastradoException  Se a sesso for invlida
-     * @throws ComunidadeJaExistenteException Se o nome da comunidade j existir
+     * @param descricao Descrição da comunidade
+     * @throws UsuarioNaoCadastradoException  Se a sessão for inválida
+     * @throws ComunidadeJaExistenteException Se o nome da comunidade já existir
      */
     public void criarComunidade(String id, String nome, String descricao) {
-        Usuario user = getUsuarioPorSessao(id);
+        String login = getLoginPorSessao(id);
+        // Assim como logins, nomes de comunidades deletadas só são reutilizados depois de concluída a exclusão.
+        for (Exclusao e : exclusoes.values()) {
+            for (Comunidade c : e.comunidades) {
+                if (c.getNome().equals(nome)) {
+                    e.aguardar();
+                }
+            }
+        }
+        Travas.Trava t = travas.travar(login, nome);
+        try (t) {
+            criarComunidade(getUsuario(login), nome, descricao);
+            registrar(Operacao.CRIAR_COMUNIDADE, login, nome, descricao);
+        }
+    }
 
-        if (comunidades.containsKey(nome)) {
-            throw new ComunidadeJaExistenteException("Comunidade com esse nome j existe.");
+    private void criarComunidade(Usuario user, String nome, String descricao) {
+        if (nome == null) {
+            throw new InformacaoInvalidaException("Nome inválido.");
         }
-        Comunidade comunidade = new Comunidade(user.getLogin(), nome, descricao);
+        if (getComunidade(nome) != null) {
+            throw new ComunidadeJaExistenteException("Comunidade com esse nome já existe.");
+        }
+        Comunidade comunidade = new Comunidade(user.getLogin(), nome, descricao, dicionario);
         comunidades.put(nome, comunidade);
         user.adicionarComunidade(nome);
+        user.setCursor(nome, comunidade.getMensagens().getFim());
     }
 
     /**
-     * Mostra a descrio de uma comunidade.
+     * Mostra a descrição de uma comunidade.
      *
      * @param nomecomunidade nome da comunidade
-     * @return Descrio da comunidade
-     * @throws ComunidadeNaoExistenteException se a comunidade no existir
+     * @return Descrição da comunidade
+     * @throws ComunidadeNaoExistenteException se a comunidade não existir
      */
     public String getDescricaoComunidade(String nomecomunidade) {
-        if (!comunidades.containsKey(nomecomunidade)) {
-            throw new ComunidadeNaoExistenteException("Comunidade no existe.");
+        // getComunidade pode alterar a comunidade (limpeza de exclusões pendentes), então exige a faixa dela
+        Travas.Trava t = travas.travar(nomecomunidade);
+        try (t) {
+            Comunidade c = getComunidade(nomecomunidade);
+            if (c == null) {
+                throw new ComunidadeNaoExistenteException("Comunidade não existe.");
+            }
+            return c.getDescricao();
         }
-        Comunidade c = comunidades.get(nomecomunidade);
-        return c.getDescricao();
     }
 
     /**
@@ -298,315 +1507,848 @@ public class Sistema {
      *
      * @param nomecomunidade Nome da comunidade
      * @return nome do dono
-     * @throws ComunidadeNaoExistenteException se a comunidade no existir
+     * @throws ComunidadeNaoExistenteException se a comunidade não existir
      */
     public String getDonoComunidade(String nomecomunidade) {
-        if (!comunidades.containsKey(nomecomunidade)) {
-            throw new ComunidadeNaoExistenteException("Comunidade no existe.");
+        Travas.Trava t = travas.travar(nomecomunidade);
+        try (t) {
+            Comunidade c = getComunidade(nomecomunidade);
+            if (c == null) {
+                throw new ComunidadeNaoExistenteException("Comunidade não existe.");
+            }
+            return c.getDono();
         }
-        Comunidade c = comunidades.get(nomecomunidade);
-        return c.getDono();
     }
 
     /**
-     * Obtm a lista de membros da comunidade.
+     * Obtém a lista de membros da comunidade.
      *
      * @param nomecomunidade nome da comunidade
      * @return lista de membros no formato "{membro1,membro2,...}"
-     * @throws ComunidadeNaoExistenteException se a comunidade no existir
+     * @throws ComunidadeNaoExistenteException se a comunidade não existir
      */
     public String getMembrosComunidade(String nomecomunidade) {
-        if (!comunidades.containsKey(nomecomunidade)) {
-            throw new ComunidadeNaoExistenteException("Comunidade no existe.");
+        Travas.Trava t = travas.travar(nomecomunidade);
+        try (t) {
+            Comunidade c = getComunidade(nomecomunidade);
+            if (c == null) {
+                throw new ComunidadeNaoExistenteException("Comunidade não existe.");
+            }
+            return c.getMembros();
         }
-        Comunidade c = comunidades.get(nomecomunidade);
-        return c.getMembros();
     }
 
     /**
-     * Obtm a lista de comunidades da qual o usurio participa.
+     * Retorna uma página da lista de membros da comunidade (ver {@link Pagina}).
      *
-     * @param login nome de usurio
+     * @param nomecomunidade nome da comunidade
+     * @param limite         Quantidade máxima de membros na página
+     * @param cursor         Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return Página de membros
+     * @throws ComunidadeNaoExistenteException se a comunidade não existir
+     * @throws InformacaoInvalidaException     Se o limite ou o cursor forem inválidos
+     */
+    public Pagina paginarMembrosComunidade(String nomecomunidade, int limite, String cursor) {
+        Travas.Trava t = travas.travar(nomecomunidade);
+        try (t) {
+            Comunidade c = getComunidade(nomecomunidade);
+            if (c == null) {
+                throw new ComunidadeNaoExistenteException("Comunidade não existe.");
+            }
+            return Pagina.de(c.getMembrosSet(), limite, cursor);
+        }
+    }
+
+    /**
+     * Escreve a lista de membros da comunidade em um destino, no formato da listagem completa,
+     * sem montá-la em uma String.
+     *
+     * @param nomecomunidade nome da comunidade
+     * @param destino        Destino da listagem (ex.: um Writer)
+     * @throws IOException                     Se a escrita no destino falhar
+     * @throws ComunidadeNaoExistenteException se a comunidade não existir
+     */
+    public void escreverMembrosComunidade(String nomecomunidade, Appendable destino) throws IOException {
+        String[] itens;
+        Travas.Trava t = travas.travar(nomecomunidade);
+        try (t) {
+            Comunidade c = getComunidade(nomecomunidade);
+            if (c == null) {
+                throw new ComunidadeNaoExistenteException("Comunidade não existe.");
+            }
+            itens = c.getMembrosSet().toArray(new String[0]);
+        }
+        escrever(itens, destino);
+    }
+
+    /**
+     * Conta os membros da comunidade sem montar a listagem e sem alocar objetos.
+     *
+     * @param nomecomunidade nome da comunidade
+     * @return Quantidade de membros
+     * @throws ComunidadeNaoExistenteException se a comunidade não existir
+     */
+    public int contarMembros(String nomecomunidade) {
+        ReentrantLock faixa = travas.faixa(nomecomunidade);
+        faixa.lock();
+        try {
+            Comunidade c = getComunidade(nomecomunidade);
+            if (c == null) {
+                throw new ComunidadeNaoExistenteException("Comunidade não existe.");
+            }
+            return c.getMembrosSet().size();
+        } finally {
+            faixa.unlock();
+        }
+    }
+
+    /**
+     * Obtém a lista de comunidades da qual o usuário participa.
+     *
+     * @param login nome de usuário
      * @return lista de comunidades no formato "{comunidade1,comunidade2,...}"
-     * @throws UsuarioNaoCadastradoException se o usurio no existir
+     * @throws UsuarioNaoCadastradoException se o usuário não existir
      */
     public String getComunidades(String login) {
-        Usuario user = getUsuario(login);
-        return "{" + String.join(",", user.getComunidades()) + "}";
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            Usuario user = getUsuario(login);
+            return "{" + String.join(",", user.getComunidades()) + "}";
+        }
+    }
+
+    /**
+     * Retorna uma página da lista de comunidades da qual o usuário participa (ver {@link Pagina}).
+     *
+     * @param login  Login do usuário
+     * @param limite Quantidade máxima de comunidades na página
+     * @param cursor Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return Página de comunidades
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se o limite ou o cursor forem inválidos
+     */
+    public Pagina paginarComunidades(String login, int limite, String cursor) {
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            return Pagina.de(getUsuario(login).getComunidades(), limite, cursor);
+        }
     }
 
     /**
-     * Adiciona a comunidade  lista de comunidades do usurio. Adiciona o usurio  lista de membros da comunidade.
+     * Escreve a lista de comunidades da qual o usuário participa em um destino, no formato da listagem completa,
+     * sem montá-la em uma String.
      *
-     * @param id   id da sesso do usurio
+     * @param login   Login do usuário
+     * @param destino Destino da listagem (ex.: um Writer)
+     * @throws IOException                   Se a escrita no destino falhar
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public void escreverComunidades(String login, Appendable destino) throws IOException {
+        String[] itens;
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            itens = getUsuario(login).getComunidades().toArray(new String[0]);
+        }
+        escrever(itens, destino);
+    }
+
+    /**
+     * Conta as comunidades da qual o usuário participa sem montar a listagem e sem alocar objetos.
+     *
+     * @param login  Login do usuário
+     * @return Quantidade de comunidades
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public int contarComunidades(String login) {
+        ReentrantLock faixa = travas.faixa(login);
+        faixa.lock();
+        try {
+            return getUsuario(login).getComunidades().size();
+        } finally {
+            faixa.unlock();
+        }
+    }
+
+    /**
+     * Adiciona a comunidade à lista de comunidades do usuário. Adiciona o usuário à lista de membros da comunidade.
+     *
+     * @param id   id da sessão do usuário
      * @param nome nome da comunidade
-     * @throws UsuarioNaoCadastradoException   se o usurio no existir
-     * @throws ComunidadeNaoExistenteException se a comunidade no existir
+     * @throws UsuarioNaoCadastradoException   se o usuário não existir
+     * @throws ComunidadeNaoExistenteException se a comunidade não existir
      */
     public void adicionarComunidade(String id, String nome) {
-        Usuario user = getUsuarioPorSessao(id);
-        if (!comunidades.containsKey(nome)) {
-            throw new ComunidadeNaoExistenteException("Comunidade no existe.");
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travas.travar(login, nome);
+        try (t) {
+            adicionarComunidade(getUsuario(login), nome);
+            registrar(Operacao.ADICIONAR_COMUNIDADE, login, nome);
+        }
+    }
+
+    private void adicionarComunidade(Usuario user, String nome) {
+        if (getComunidade(nome) == null) {
+            throw new ComunidadeNaoExistenteException("Comunidade não existe.");
         }
-        Comunidade c = comunidades.get(nome);
+        Comunidade c = getComunidade(nome);
         c.adicionarMembro(user.getLogin());
         user.adicionarComunidade(nome);
+        user.setCursor(nome, c.getMensagens().getFim());
     }
 
     /**
-     * L uma mensagem do usurio autenticado.
+     * Lê uma mensagem do usuário autenticado.
      *
-     * @param id ID da sesso
+     * @param id ID da sessão
      * @return A mensagem recebida
-     * @throws UsuarioNaoCadastradoException Se a sesso for invlida
+     * @throws UsuarioNaoCadastradoException Se a sessão for inválida
      */
     public String lerMensagem(String id) {
-        Usuario user = getUsuarioPorSessao(id);
-        return user.lerMensagem();
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travarComComunidades(login);
+        try (t) {
+            String mensagem = lerMensagem(getUsuario(login));
+            registrar(Operacao.LER_MENSAGEM, login);
+            return mensagem;
+        }
+    }
+
+    /**
+     * Lê a próxima mensagem do usuário, intercalando, pelo número de sequência, a fila de mensagens do usuário
+     * e os logs das comunidades de que ele participa.
+     */
+    private String lerMensagem(Usuario user) {
+        Comunicado escolhida = user.espiarMensagem();
+        Comunidade origem = null;
+        for (String nome : user.getComunidades()) {
+            Comunidade c = getComunidade(nome);
+            if (c == null) {
+                continue;
+            }
+            long cursor = c.getMensagens().pularRemovidas(getCursor(user, c));
+            user.setCursor(nome, cursor);
+            Comunicado m = c.getMensagens().get(cursor);
+            if (m != null && (escolhida == null || m.getSequencia() < escolhida.getSequencia())) {
+                escolhida = m;
+                origem = c;
+            }
+        }
+        if (origem == null) {
+            return user.lerMensagem();
+        }
+        long cursor = getCursor(user, origem);
+        origem.getMensagens().marcarLida(cursor);
+        user.setCursor(origem.getNome(), cursor + 1);
+        return escolhida.getMensagem();
+    }
+
+    /**
+     * Obtém o cursor de um membro no log de uma comunidade. Membros de antes dos logs não têm cursor
+     * e leem desde o início do log.
+     */
+    private static long getCursor(Usuario user, Comunidade c) {
+        Long cursor = user.getCursor(c.getNome());
+        return cursor == null ? c.getMensagens().getInicio() : cursor;
+    }
+
+    /**
+     * Trava a faixa de um usuário e as das comunidades de que ele participa. As comunidades só podem ser lidas
+     * com a faixa do usuário travada; se mudarem entre a leitura e o travamento de todas as faixas, a tentativa
+     * é refeita.
+     *
+     * @param login Login do usuário
+     * @return Trava a ser fechada ao fim da operação
+     */
+    private Travas.Trava travarComComunidades(String login) {
+        while (true) {
+            Set<String> chaves = new HashSet<>();
+            chaves.add(login);
+            Travas.Trava t = travas.travar(login);
+            try (t) {
+                Usuario user = usuarios.get(login);
+                if (user != null) {
+                    chaves.addAll(user.getComunidades());
+                }
+            }
+            Travas.Trava trava = travas.travar(chaves);
+            Usuario user = usuarios.get(login);
+            if (user == null || chaves.containsAll(user.getComunidades())) {
+                return trava;
+            }
+            trava.close();
+        }
     }
 
     /**
      * Envia uma mensagem para todos os membros de uma comunidade.
      *
-     * @param id         ID da sesso do remetente
+     * @param id         ID da sessão do remetente
      * @param comunidade Nome da comunidade
-     * @param mensagem   Contedo da mensagem
-     * @throws UsuarioNaoCadastradoException   Se a sesso for invlida
-     * @throws ComunidadeNaoExistenteException Se a comunidade no existir
+     * @param mensagem   Conteúdo da mensagem
+     * @throws UsuarioNaoCadastradoException   Se a sessão for inválida
+     * @throws ComunidadeNaoExistenteException Se a comunidade não existir
      */
     public void enviarMensagem(String id, String comunidade, String mensagem) {
-        Usuario user = getUsuarioPorSessao(id);
-        if (!comunidades.containsKey(comunidade)) {
-            throw new ComunidadeNaoExistenteException("Comunidade no existe.");
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travarParaEnvio(login, comunidade);
+        try (t) {
+            enviarMensagem(getUsuario(login), comunidade, mensagem);
+            registrar(Operacao.ENVIAR_MENSAGEM, login, comunidade, mensagem);
+        }
+    }
+
+    /**
+     * Entrega uma mensagem de comunidade. Em comunidades pequenas, a mensagem é colocada na fila de cada membro;
+     * nas grandes, é guardada uma única vez no log da comunidade e cada membro a lê pelo seu cursor. Como
+     * {@link #lerMensagem(Usuario)} intercala as duas origens pelo número de sequência, a ordem de leitura não
+     * depende da forma de entrega.
+     */
+    private void enviarMensagem(Usuario user, String comunidade, String mensagem) {
+        if (getComunidade(comunidade) == null) {
+            throw new ComunidadeNaoExistenteException("Comunidade não existe.");
+        }
+        Comunidade c = getComunidade(comunidade);
+        Set<String> membros = c.getMembrosSet();
+        Comunicado m = new Comunicado(mensagem, user.getLogin(), ultimaSequencia.incrementAndGet());
+        if (membros.size() <= limiteEntregaDireta) {
+            for (String membro : membros) {
+                getUsuario(membro).receberMensagem(m);
+                user.adicionarReferenciaDe(membro);
+            }
+            entregasDiretas.increment();
+        } else {
+            c.getMensagens().publicar(m, membros.size());
+            publicacoesNoLog.increment();
         }
-        Comunidade c = comunidades.get(comunidade);
-        Set<String> m = c.getMembrosSet();
+    }
 
-        for (String membro : m) {
-            getUsuario(membro).adicionarMensagem(mensagem, user.getLogin());
+    /**
+     * Trava as faixas do remetente e da comunidade e, se a mensagem for entregue diretamente, as dos membros.
+     * Os membros só podem ser lidos com a faixa da comunidade travada; se mudarem entre a leitura e o
+     * travamento de todas as faixas, a tentativa é refeita.
+     *
+     * @param login      Login do remetente
+     * @param comunidade Nome da comunidade
+     * @return Trava a ser fechada ao fim da operação
+     */
+    private Travas.Trava travarParaEnvio(String login, String comunidade) {
+        while (true) {
+            Set<String> chaves = new HashSet<>();
+            chaves.add(login);
+            chaves.add(comunidade);
+            Travas.Trava t = travas.travar(comunidade);
+            try (t) {
+                Comunidade c = getComunidade(comunidade);
+                if (c != null && c.getMembrosSet().size() <= limiteEntregaDireta) {
+                    chaves.addAll(c.getMembrosSet());
+                }
+            }
+            Travas.Trava trava = travas.travar(chaves);
+            Comunidade c = getComunidade(comunidade);
+            if (c == null || c.getMembrosSet().size() > limiteEntregaDireta || chaves.containsAll(c.getMembrosSet())) {
+                return trava;
+            }
+            trava.close();
         }
     }
 
     /**
-     * Verifica se um usurio  f de outro.
+     * Obtém as métricas de funcionamento do sistema.
+     *
+     * @return Métricas do sistema
+     */
+    public Metricas getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Verifica se um usuário é fã de outro.
      *
-     * @param login Login do usurio
-     * @param idolo Login do dolo
-     * @return true se for f, false caso contrrio
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
+     * @param login Login do usuário
+     * @param idolo Login do ídolo
+     * @return true se for fã, false caso contrário
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
      */
     public boolean ehFa(String login, String idolo) {
-        getUsuario(login); // apenas para verificar se existe
-        Usuario user2 = getUsuario(idolo);
-        return user2.ehFa(login);
+        Travas.Trava t = travas.travar(login, idolo);
+        try (t) {
+            getUsuario(login); // apenas para verificar se existe
+            Usuario user2 = getUsuario(idolo);
+            return user2.ehFa(login);
+        }
     }
 
     /**
-     * Adiciona um dolo  lista de dolos do usurio autenticado e adiciona o usurio  lista de fs do dolo.
+     * Adiciona um ídolo à lista de ídolos do usuário autenticado e adiciona o usuário à lista de fãs do ídolo.
      *
-     * @param id    ID da sesso do usurio
-     * @param idolo Login do dolo
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
-     * @throws ConflitoInformacaoException   Se o usurio tentar adicionar a si mesmo como dolo
-     * @throws InimigoException Se o usurio ou dolo forem inimigos
+     * @param id    ID da sessão do usuário
+     * @param idolo Login do ídolo
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
+     * @throws ConflitoInformacaoException   Se o usuário tentar adicionar a si mesmo como ídolo
+     * @throws InimigoException Se o usuário ou ídolo forem inimigos
      */
     public void adicionarIdolo(String id, String idolo) {
-        Usuario user = getUsuarioPorSessao(id);
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travas.travar(login, idolo);
+        try (t) {
+            adicionarIdolo(getUsuario(login), idolo);
+            registrar(Operacao.ADICIONAR_IDOLO, login, idolo);
+        }
+    }
+
+    private void adicionarIdolo(Usuario user, String idolo) {
         Usuario user2 = getUsuario(idolo);
 
         if (user.getLogin().equals(idolo)) {
-            throw new ConflitoInformacaoException("Usurio no pode ser f de si mesmo.");
+            throw new ConflitoInformacaoException("Usuário não pode ser fã de si mesmo.");
         }
         if (user.ehInimigo(idolo) || user2.ehInimigo(user.getLogin())) {
-            throw new InimigoException(String.format("Funo invlida: %s  seu inimigo.", user2.getNome()));
+            throw new InimigoException(String.format("Função inválida: %s é seu inimigo.", user2.getNome()));
         }
 
         user.adicionarIdolo(idolo);
         user2.adicionarFa(user.getLogin());
+        user2.adicionarReferenciaDe(user.getLogin());
+        user.adicionarReferenciaDe(idolo);
     }
 
     /**
-     * Retorna a lista de fs de um usurio.
+     * Retorna a lista de fãs de um usuário.
      *
-     * @param login Login do usurio
-     * @return Lista de fs no formato "{fa1,fa2,...}"
-     * @throws UsuarioNaoCadastradoException Se o usurio no existir
+     * @param login Login do usuário
+     * @return Lista de fãs no formato "{fa1,fa2,...}"
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
      */
     public String getFas(String login) {
-        Usuario user = getUsuario(login);
-        return "{" + String.join(",", user.getFas()) + "}";
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            Usuario user = getUsuario(login);
+            return user.formatarFas();
+        }
+    }
+
+    /**
+     * Retorna uma página da lista de fãs de um usuário (ver {@link Pagina}).
+     *
+     * @param login  Login do usuário
+     * @param limite Quantidade máxima de fãs na página
+     * @param cursor Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return Página de fãs
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se o limite ou o cursor forem inválidos
+     */
+    public Pagina paginarFas(String login, int limite, String cursor) {
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            return getUsuario(login).paginar(TipoRelacionamento.FAS, limite, cursor);
+        }
+    }
+
+    /**
+     * Escreve a lista de fãs de um usuário em um destino, no formato da listagem completa,
+     * sem montá-la em uma String.
+     *
+     * @param login   Login do usuário
+     * @param destino Destino da listagem (ex.: um Writer)
+     * @throws IOException                   Se a escrita no destino falhar
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public void escreverFas(String login, Appendable destino) throws IOException {
+        String[] itens;
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            itens = getUsuario(login).getFas().toArray(new String[0]);
+        }
+        escrever(itens, destino);
+    }
+
+    /**
+     * Conta os fãs de um usuário sem montar a listagem e sem alocar objetos.
+     *
+     * @param login  Login do usuário
+     * @return Quantidade de fãs
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public int contarFas(String login) {
+        ReentrantLock faixa = travas.faixa(login);
+        faixa.lock();
+        try {
+            return getUsuario(login).getFas().size();
+        } finally {
+            faixa.unlock();
+        }
     }
 
     /**
-     * Verifica se um usurio  paquera do usurio autenticado.
+     * Verifica se um usuário é paquera do usuário autenticado.
      *
-     * @param id   ID da sesso do usurio
-     * @param nome Login do possvel paquera
-     * @return true se for paquera, false caso contrrio
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
+     * @param id   ID da sessão do usuário
+     * @param nome Login do possível paquera
+     * @return true se for paquera, false caso contrário
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
      */
     public boolean ehPaquera(String id, String nome) {
-        Usuario user = getUsuarioPorSessao(id);
-        getUsuario(nome); // apenas para verificar se existe
-        return user.ehPaquera(nome);
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travas.travar(login, nome);
+        try (t) {
+            Usuario user = getUsuario(login);
+            getUsuario(nome); // apenas para verificar se existe
+            return user.ehPaquera(nome);
+        }
     }
 
     /**
-     * Adiciona um paquera  lista de paqueras do usurio autenticado.
-     * Se for um paquera mtuo, envia recados para ambos os usurios.
+     * Adiciona um paquera à lista de paqueras do usuário autenticado.
+     * Se for um paquera mútuo, envia recados para ambos os usuários.
      *
-     * @param id   ID da sesso do usurio
+     * @param id   ID da sessão do usuário
      * @param nome Login do paquera
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
-     * @throws InimigoException Se o usurio ou paquera forem inimigos
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
+     * @throws InimigoException Se o usuário ou paquera forem inimigos
      */
     public void adicionarPaquera(String id, String nome) {
-        Usuario user = getUsuarioPorSessao(id);
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travas.travar(login, nome);
+        try (t) {
+            adicionarPaquera(getUsuario(login), nome);
+            registrar(Operacao.ADICIONAR_PAQUERA, login, nome);
+        }
+    }
+
+    private void adicionarPaquera(Usuario user, String nome) {
         Usuario user2 = getUsuario(nome);
 
         if (user.ehInimigo(nome) || user2.ehInimigo(user.getLogin())) {
-            throw new InimigoException(String.format("Funo invlida: %s  seu inimigo.", user2.getNome()));
+            throw new InimigoException(String.format("Função inválida: %s é seu inimigo.", user2.getNome()));
         }
 
         user.adicionarPaquera(nome);
+        user2.adicionarReferenciaDe(user.getLogin());
         if (user2.ehPaquera(user.getLogin())) {
-            String msg = String.format("%s  seu paquera - Recado do Jackut.", user2.getNome());
+            String msg = String.format("%s é seu paquera - Recado do Jackut.", user2.getNome());
             user.adicionarRecado(msg, "Cupido");
-            msg = String.format("%s  seu paquera - Recado do Jackut.", user.getNome());
+            msg = String.format("%s é seu paquera - Recado do Jackut.", user.getNome());
             user2.adicionarRecado(msg, "Cupido");
         }
     }
 
     /**
-     * Retorna a lista de paqueras do usurio autenticado.
+     * Retorna a lista de paqueras do usuário autenticado.
      *
-     * @param id ID da sesso do usurio
+     * @param id ID da sessão do usuário
      * @return Lista de paqueras no formato "{paquera1,paquera2,...}"
-     * @throws UsuarioNaoCadastradoException Se a sesso for invlida
+     * @throws UsuarioNaoCadastradoException Se a sessão for inválida
      */
     public String getPaqueras(String id) {
-        Usuario user = getUsuarioPorSessao(id);
-        return "{" + String.join(",", user.getPaqueras()) + "}";
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            return getUsuario(login).formatarPaqueras();
+        }
+    }
+
+    /**
+     * Retorna uma página da lista de paqueras do usuário autenticado (ver {@link Pagina}).
+     *
+     * @param id     ID da sessão do usuário
+     * @param limite Quantidade máxima de paqueras na página
+     * @param cursor Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return Página de paqueras
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     * @throws InformacaoInvalidaException   Se o limite ou o cursor forem inválidos
+     */
+    public Pagina paginarPaqueras(String id, int limite, String cursor) {
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            return getUsuario(login).paginar(TipoRelacionamento.PAQUERAS, limite, cursor);
+        }
+    }
+
+    /**
+     * Escreve a lista de paqueras do usuário autenticado em um destino, no formato da listagem completa,
+     * sem montá-la em uma String.
+     *
+     * @param id      ID da sessão do usuário
+     * @param destino Destino da listagem (ex.: um Writer)
+     * @throws IOException                   Se a escrita no destino falhar
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public void escreverPaqueras(String id, Appendable destino) throws IOException {
+        String login = getLoginPorSessao(id);
+        String[] itens;
+        Travas.Trava t = travas.travar(login);
+        try (t) {
+            itens = getUsuario(login).getPaqueras().toArray(new String[0]);
+        }
+        escrever(itens, destino);
+    }
+
+    /**
+     * Conta os paqueras do usuário autenticado sem montar a listagem e sem alocar objetos.
+     *
+     * @param id ID da sessão do usuário
+     * @return Quantidade de paqueras
+     * @throws UsuarioNaoCadastradoException Se o usuário não existir
+     */
+    public int contarPaqueras(String id) {
+        String login = getLoginPorSessao(id);
+        ReentrantLock faixa = travas.faixa(login);
+        faixa.lock();
+        try {
+            return getUsuario(login).getPaqueras().size();
+        } finally {
+            faixa.unlock();
+        }
     }
 
     /**
-     * Adiciona um inimigo  lista de inimigos do usurio autenticado.
+     * Adiciona um inimigo à lista de inimigos do usuário autenticado.
      *
-     * @param id      ID da sesso do usurio
+     * @param id      ID da sessão do usuário
      * @param inimigo Login do inimigo
-     * @throws UsuarioNaoCadastradoException Se algum dos usurios no existir
+     * @throws UsuarioNaoCadastradoException Se algum dos usuários não existir
      */
     public void adicionarInimigo(String id, String inimigo) {
-        Usuario user = getUsuarioPorSessao(id);
-        getUsuario(inimigo); // apenas para verificar se existe
+        String login = getLoginPorSessao(id);
+        Travas.Trava t = travas.travar(login, inimigo);
+        try (t) {
+            adicionarInimigo(getUsuario(login), inimigo);
+            registrar(Operacao.ADICIONAR_INIMIGO, login, inimigo);
+        }
+    }
+
+    private void adicionarInimigo(Usuario user, String inimigo) {
+        Usuario user2 = getUsuario(inimigo);
         user.adicionarInimigo(inimigo);
+        user2.adicionarReferenciaDe(user.getLogin());
     }
 
     /**
-     * Remove um usurio do sistema, limpando todas as suas interaes com outros usurios e comunidades.
+     * Remove um usuário do sistema, limpando todas as suas interações com outros usuários e comunidades.
+     * <p>
+     * O usuário e as comunidades de que é dono deixam de existir imediatamente. As referências a ele guardadas
+     * pelos outros usuários e pelas demais comunidades são removidas em segundo plano, em lotes; até lá, cada
+     * usuário ou comunidade acessado tem a sua parte removida antes do acesso (ver {@link #exclusoes}).
+     * </p>
      *
-     * @param id ID da sesso do usurio a ser removido
-     * @throws UsuarioNaoCadastradoException Se a sesso for invlida
+     * @param id ID da sessão do usuário a ser removido
+     * @throws UsuarioNaoCadastradoException Se a sessão for inválida
      */
     public void removerUsuario(String id) {
-        Usuario user = getUsuarioPorSessao(id);
-        String login = user.getLogin();
-
-        // Remove interaes do usurio deletado com todos os outros usurios
-        // Para convites
-        for (String m : user.getConvites()) {
-            Usuario other = usuarios.get(m);
-            other.deletarUsuario(login);
+        String login = getLoginPorSessao(id);
+        Exclusao e;
+        Travas.Trava t = travarComComunidades(login);
+        try (t) {
+            e = marcarRemovido(getUsuario(login));
+            registrar(Operacao.REMOVER_USUARIO, login);
+        }
+        ExecutorService l = limpeza;
+        if (l != null) {
+            try {
+                l.execute(() -> concluirExclusao(e));
+                return;
+            } catch (RejectedExecutionException rejeitada) {
+                // Encerrado entre a leitura e o envio: conclui na própria chamada
+            }
         }
+        concluirExclusao(e);
+    }
 
-        // Para amigos
-        for (String m : user.getAmigos()) {
-            Usuario other = usuarios.get(m);
-            other.deletarUsuario(login);
+    private void removerUsuario(Usuario user) {
+        concluirExclusao(marcarRemovido(user));
+    }
+
+    /**
+     * Remove o usuário e as comunidades de que é dono, e registra a exclusão como pendente.
+     * Deve ser chamado com as faixas do usuário e das suas comunidades travadas.
+     */
+    private Exclusao marcarRemovido(Usuario user) {
+        String login = user.getLogin();
+        Exclusao e = new Exclusao(user);
+        // Encerra todas as sessões do usuário, não apenas a que pediu a remoção
+        sessoes.encerrarDoUsuario(login);
+        for (String nome : user.getComunidades()) {
+            Comunidade c = getComunidade(nome);
+            if (c != null && c.getDono().equals(login)) {
+                comunidades.remove(nome);
+                // As mensagens do dono não são transferidas para os membros
+                c.getMensagens().removerRemetente(login);
+                e.comunidades.add(c);
+            }
         }
+        IndicePerfis indice = indicePerfis;
+        if (indice != null) {
+            indice.remover(dicionario.id(login), user);
+        }
+        usuarios.remover(login);
+        exclusoes.put(login, e);
+        return e;
+    }
+
+    /**
+     * Remove, em lotes, as referências ao usuário excluído: primeiro nos usuários que as guardam (o índice
+     * reverso aponta exatamente quais) e nos membros das comunidades deletadas, depois nas demais comunidades.
+     */
+    private void concluirExclusao(Exclusao e) {
+        String login = e.usuario.getLogin();
+        try {
+            Set<String> afetados = new LinkedHashSet<>(e.usuario.getReferenciadoPor());
+            Set<String> adiadas = referenciasAdiadas.remove(login);
+            if (adiadas != null) {
+                afetados.addAll(adiadas);
+            }
+            for (Comunidade c : e.comunidades) {
+                afetados.addAll(c.getMembrosSet());
+            }
+            afetados.remove(login);
 
-        // Para idolos
-        for (String m : user.getIdolos()) {
-            Usuario other = usuarios.get(m);
-            other.deletarUsuario(login);
+            emLotes(afetados, m -> {
+                Usuario other = usuarios.get(m);
+                if (other != null) { // quem guardava a referência pode já ter sido removido
+                    limparUsuario(other, e);
+                }
+            });
+            emLotes(comunidades.keySet(), nome -> {
+                Comunidade c = comunidades.get(nome);
+                if (c != null) {
+                    limparComunidade(c, e);
+                }
+            });
+            exclusoesConcluidas.increment();
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+            System.err.println("Ocorreu um erro ao excluir o usuário " + login + ".");
+        } finally {
+            exclusoes.remove(login, e);
+            e.concluida.countDown();
         }
+    }
 
-        // Para fas
-        for (String m : user.getFas()) {
-            Usuario other = usuarios.get(m);
-            other.deletarUsuario(login);
+    /**
+     * Executa uma ação sobre cada chave, travando as faixas de um lote de chaves de cada vez.
+     */
+    private void emLotes(Collection<String> chaves, Consumer<String> acao) {
+        List<String> lista = new ArrayList<>(chaves);
+        for (int i = 0; i < lista.size(); i += loteExclusao) {
+            List<String> lote = lista.subList(i, Math.min(lista.size(), i + loteExclusao));
+            Travas.Trava t = travas.travar(lote);
+            try (t) {
+                lote.forEach(acao);
+            }
         }
+    }
 
-        // Para paqueras
-        for (String m : user.getPaqueras()) {
-            Usuario other = usuarios.get(m);
-            other.deletarUsuario(login);
+    /**
+     * Remove de um usuário as referências ao usuário excluído e as comunidades deletadas com ele. As mensagens
+     * não lidas das comunidades deletadas continuam disponíveis para o membro. Não faz nada se já tiver sido feito.
+     */
+    private void limparUsuario(Usuario user, Exclusao e) {
+        String deletado = e.usuario.getLogin();
+        if (user.guardaReferenciaA(deletado)) {
+            user.deletarUsuario(deletado);
+        }
+        for (Comunidade c : e.comunidades) {
+            if (user.getComunidades().contains(c.getNome())) {
+                for (Comunicado m : c.getMensagens().naoLidas(getCursor(user, c))) {
+                    user.receberMensagem(m);
+                    adiarReferencia(m.getRemetente(), user.getLogin());
+                }
+                user.deletarComunidade(c.getNome());
+            }
         }
+    }
 
-        // Para inimigos
-        for (String m : user.getInimigos()) {
-            Usuario other = usuarios.get(m);
-            other.deletarUsuario(login);
+    /**
+     * Remove de uma comunidade as mensagens e a participação do usuário excluído. Não faz nada se já tiver sido feito.
+     */
+    private void limparComunidade(Comunidade c, Exclusao e) {
+        String deletado = e.usuario.getLogin();
+        c.getMensagens().removerRemetente(deletado);
+        if (c.getMembrosSet().contains(deletado)) {
+            c.getMensagens().abandonar(getCursor(e.usuario, c));
+            c.removerMembro(deletado);
         }
+    }
 
-        // Para destinatarios
-        for (String m : user.getDestinatarios()) {
-            Usuario other = usuarios.get(m);
-            other.deletarUsuario(login);
+    private void adiarReferencia(String referenciado, String login) {
+        if (!referenciado.equals(login)) {
+            referenciasAdiadas.compute(referenciado, (r, logins) -> {
+                Set<String> atualizados = logins == null ? new HashSet<>() : logins;
+                atualizados.add(login);
+                return atualizados;
+            });
         }
+    }
 
-        // Remove o usurio de todas as comunidades
-        for (String comunidade : user.getComunidades()) {
-            Comunidade c = comunidades.get(comunidade);
-            if (c.getDono().equals(login)) {
-                Set<String> membros = c.getMembrosSet();
-                comunidades.remove(c.getNome());
-                for (String membro : membros) {
-                    getUsuario(membro).deletarComunidade(c.getNome());
-                }
-            } else if (c.getMembrosSet().contains(login)) {
-                c.removerMembro(login);
+    /**
+     * Aplica as referências adiadas aos usuários referenciados. Deve ser chamado com todas as faixas travadas
+     * e sem exclusões pendentes.
+     */
+    private void aplicarReferenciasAdiadas() {
+        for (String login : new ArrayList<>(referenciasAdiadas.keySet())) {
+            Set<String> adiadas = referenciasAdiadas.remove(login);
+            Usuario user = usuarios.get(login);
+            if (adiadas != null && user != null) {
+                adiadas.forEach(user::adicionarReferenciaDe);
             }
         }
+    }
 
-        // Remove o usurio do mapa de usurios
-        usuarios.remove(login);
-        // Remove a sesso associada
-        sessoes.remove(id);
+    /**
+     * Espera a conclusão das exclusões de usuários em andamento.
+     */
+    public void aguardarExclusoes() {
+        while (!exclusoes.isEmpty()) {
+            for (Exclusao e : exclusoes.values()) {
+                e.aguardar();
+            }
+        }
     }
 
     /**
-     * Salva os usurios cadastrados nos arquivos "usuarios.ser" e "comunidade.ser", ento encerra o sistema.
+     * Salva os dados pelo motor de armazenamento, então encerra o sistema.
+     * <p>
+     * Na serialização, os usuários e comunidades são gravados nos arquivos "usuarios.N.ser" e "comunidades.N.ser"
+     * ({@link Snapshot}).
+     * No journal, as operações já estão registradas; basta forçar os registros pendentes para o disco, sem
+     * regravar todos os dados. No banco SQL, o estado é regravado e as operações registradas são descartadas.
+     * </p>
+     * <p>
+     * O sistema continua utilizável: a primeira operação que altera o estado depois do encerramento reabre o
+     * motor, e um novo encerramento a salva. Sem alterações desde o último encerramento, não há o que salvar.
+     * </p>
      */
     public void encerrarSistema() {
-        try {
-            FileOutputStream fileOut = new FileOutputStream("usuarios.ser");
-            ObjectOutputStream objOut = new ObjectOutputStream(fileOut);
-            objOut.writeObject(usuarios);
-            objOut.close();
-            fileOut.close();
-
-            fileOut = new FileOutputStream("comunidades.ser");
-            objOut = new ObjectOutputStream(fileOut);
-            objOut.writeObject(comunidades);
-            objOut.close();
-            fileOut.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Ocorreu um erro ao salvar os dados.");
+        aguardarExclusoes();
+        if (store == null) {
+            return;
+        }
+        synchronized (reabertura) {
+            pararTarefas();
+            if (encerrado) {
+                return;
+            }
+            try {
+                store.encerrar(estado());
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.err.println("Ocorreu um erro ao salvar os dados.");
+            }
+            encerrado = true;
         }
     }
 
     /**
-     * Retorna uma representao textual do sistema.
+     * Retorna uma representação textual do sistema.
      *
-     * @return String com informaes dos usurios, sesses ativas e comunidades
+     * @return String com informações dos usuários, sessões ativas e comunidades
      */
     @Override
     public String toString() {
         return "Facade{" +
-                "usuarios=" + usuarios.keySet() +
-                ", sessoes=" + sessoes.keySet() +
+                "usuarios=" + usuarios.logins() +
+                ", sessoes=" + sessoes.tamanho() +
                 ", comunidades=" + comunidades.keySet() +
                 '}';
     }
@@ -0,0 +1,350 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Sugestão de amigos por amigos em comum: os amigos dos amigos de um usuário são contados, e os k mais frequentes
+ * (que ainda não sejam amigos dele) são sugeridos.
+ * <p>
+ * Tudo é feito sobre os IDs do {@link DicionarioLogins}, sem converter logins: as contagens ficam em um vetor
+ * indexado pelo ID, e os melhores candidatos são escolhidos com um heap limitado a k. Usuários com muitos amigos
+ * ({@link Configuracao#minimoParaleloSugestoes()}) têm a contagem dividida entre as threads do
+ * {@link ForkJoinPool#commonPool()}.
+ * </p>
+ * <p>
+ * O grafo é lido um usuário por vez, cada um com a sua própria trava, então a sugestão nunca segura mais de uma
+ * trava nem bloqueia o sistema inteiro; em troca, ela reflete as amizades de cada amigo no momento em que ele foi
+ * lido.
+ * </p>
+ */
+final class SugestaoAmigos {
+    private static final int EXCLUIDO = Integer.MIN_VALUE;
+
+    /**
+     * Quantidade de amigos contados por uma tarefa do fork/join.
+     */
+    private static final int AMIGOS_POR_TAREFA = 64;
+
+    /**
+     * Vetor de contagem reaproveitado entre as sugestões feitas pela mesma thread.
+     */
+    private static final ThreadLocal<ContagemEsparsa> contagens = ThreadLocal.withInitial(ContagemEsparsa::new);
+
+    /**
+     * Acesso ao grafo de amizades do sistema. Cada método trava o usuário consultado.
+     */
+    interface Grafo {
+        /**
+         * Percorre os IDs dos amigos de um usuário.
+         *
+         * @param id      ID do usuário; se ele não existir mais, nada é percorrido
+         * @param destino Recebe cada ID
+         */
+        void amigos(int id, IntConsumer destino);
+
+        /**
+         * Verifica, com a trava do candidato, se ele ainda pode ser sugerido.
+         *
+         * @param candidato ID do candidato
+         * @param usuario   Login de quem recebe a sugestão
+         * @return false se o candidato não existir mais, tiver o usuário como inimigo, tiver um convite pendente dele
+         * ou já for seu amigo
+         */
+        boolean aceita(int candidato, String usuario);
+
+        /**
+         * Quantidade de IDs atribuídos até agora.
+         *
+         * @return Limite superior dos IDs
+         */
+        int totalIds();
+
+        /**
+         * Obtém o login de um ID, usado para desempatar os candidatos.
+         *
+         * @param id ID do usuário
+         * @return Login do usuário
+         */
+        String login(int id);
+    }
+
+    private SugestaoAmigos() {
+    }
+
+    /**
+     * Escolhe as sugestões de um usuário.
+     *
+     * @param grafo     Grafo de amizades
+     * @param login     Login do usuário
+     * @param amigos    IDs dos amigos do usuário
+     * @param excluidos IDs que não podem ser sugeridos (o próprio usuário, inimigos, convites pendentes)
+     * @param k         Quantidade máxima de sugestões
+     * @return IDs sugeridos, do maior para o menor número de amigos em comum; em empate, na ordem dos logins
+     */
+    static int[] sugerir(Grafo grafo, String login, int[] amigos, int[] excluidos, int k) {
+        boolean paralela = amigos.length >= Configuracao.minimoParaleloSugestoes();
+        Contagem contagem = paralela ? new ContagemParalela(grafo.totalIds()) : contagens.get();
+        try {
+            for (int id : excluidos) {
+                contagem.excluir(id);
+            }
+            for (int id : amigos) {
+                contagem.excluir(id);
+            }
+            if (paralela) {
+                ForkJoinPool.commonPool().invoke(new Tarefa(grafo, amigos, 0, amigos.length, contagem));
+            } else {
+                for (int amigo : amigos) {
+                    grafo.amigos(amigo, contagem);
+                }
+            }
+
+            // Os candidatos recusados na verificação final são excluídos, e a escolha é refeita sem eles.
+            while (true) {
+                int[] escolhidos = melhores(grafo, contagem, k);
+                boolean recusado = false;
+                for (int id : escolhidos) {
+                    if (!grafo.aceita(id, login)) {
+                        contagem.excluir(id);
+                        recusado = true;
+                    }
+                }
+                if (!recusado) {
+                    return escolhidos;
+                }
+            }
+        } finally {
+            contagem.zerar();
+        }
+    }
+
+    /**
+     * Escolhe os k candidatos com mais amigos em comum, com um heap de mínimo limitado a k (o pior dos escolhidos
+     * fica na raiz e é trocado quando aparece um melhor).
+     */
+    private static int[] melhores(Grafo grafo, Contagem contagem, int k) {
+        int[] heap = new int[Math.min(k, contagem.candidatos())];
+        int n = 0;
+        for (int i = 0, total = contagem.candidatos(); i < total; i++) {
+            int id = contagem.candidato(i);
+            if (contagem.valor(id) <= 0) {
+                continue;
+            }
+            if (n < heap.length) {
+                heap[n] = id;
+                subir(heap, n++, contagem, grafo);
+            } else if (n > 0 && melhor(id, heap[0], contagem, grafo)) {
+                heap[0] = id;
+                descer(heap, n, contagem, grafo);
+            }
+        }
+        int[] ordenados = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            ordenados[i] = heap[0];
+            heap[0] = heap[--n];
+            descer(heap, n, contagem, grafo);
+        }
+        return ordenados;
+    }
+
+    private static boolean melhor(int a, int b, Contagem contagem, Grafo grafo) {
+        int va = contagem.valor(a);
+        int vb = contagem.valor(b);
+        return va != vb ? va > vb : grafo.login(a).compareTo(grafo.login(b)) < 0;
+    }
+
+    private static void subir(int[] heap, int i, Contagem contagem, Grafo grafo) {
+        while (i > 0) {
+            int pai = (i - 1) / 2;
+            if (!melhor(heap[pai], heap[i], contagem, grafo)) {
+                return;
+            }
+            trocar(heap, i, pai);
+            i = pai;
+        }
+    }
+
+    private static void descer(int[] heap, int n, Contagem contagem, Grafo grafo) {
+        int i = 0;
+        while (true) {
+            int pior = i;
+            for (int f = 2 * i + 1; f <= 2 * i + 2 && f < n; f++) {
+                if (melhor(heap[pior], heap[f], contagem, grafo)) {
+                    pior = f;
+                }
+            }
+            if (pior == i) {
+                return;
+            }
+            trocar(heap, i, pior);
+            i = pior;
+        }
+    }
+
+    private static void trocar(int[] heap, int i, int j) {
+        int t = heap[i];
+        heap[i] = heap[j];
+        heap[j] = t;
+    }
+
+    /**
+     * Contagem de amigos em comum por ID. Também recebe os IDs percorridos em {@link Grafo#amigos}.
+     */
+    private interface Contagem extends IntConsumer {
+        void excluir(int id);
+
+        int valor(int id);
+
+        /**
+         * Quantidade de posições a examinar na escolha dos candidatos.
+         */
+        int candidatos();
+
+        int candidato(int i);
+
+        void zerar();
+    }
+
+    /**
+     * Contagem de uma thread, que guarda quais IDs tocou para examinar e zerar apenas esses.
+     */
+    private static final class ContagemEsparsa implements Contagem {
+        private int[] valores = new int[0];
+        private int[] tocados = new int[16];
+        private int n;
+
+        private int tocar(int id) {
+            if (id >= valores.length) {
+                valores = Arrays.copyOf(valores, Math.max(id + 1, valores.length * 2));
+            }
+            int v = valores[id];
+            if (v == 0) {
+                if (n == tocados.length) {
+                    tocados = Arrays.copyOf(tocados, n * 2);
+                }
+                tocados[n++] = id;
+            }
+            return v;
+        }
+
+        @Override
+        public void accept(int id) {
+            int v = tocar(id);
+            if (v >= 0) {
+                valores[id] = v + 1;
+            }
+        }
+
+        @Override
+        public void excluir(int id) {
+            tocar(id);
+            valores[id] = EXCLUIDO;
+        }
+
+        @Override
+        public int valor(int id) {
+            return id < valores.length ? valores[id] : 0;
+        }
+
+        @Override
+        public int candidatos() {
+            return n;
+        }
+
+        @Override
+        public int candidato(int i) {
+            return tocados[i];
+        }
+
+        @Override
+        public void zerar() {
+            for (int i = 0; i < n; i++) {
+                valores[tocados[i]] = 0;
+            }
+            n = 0;
+        }
+    }
+
+    /**
+     * Contagem compartilhada pelas tarefas do fork/join. IDs atribuídos depois do início da sugestão (usuários
+     * cadastrados durante ela) não são contados.
+     */
+    private static final class ContagemParalela implements Contagem {
+        private final AtomicIntegerArray valores;
+
+        private ContagemParalela(int total) {
+            valores = new AtomicIntegerArray(total);
+        }
+
+        @Override
+        public void accept(int id) {
+            if (id < valores.length() && valores.get(id) >= 0) {
+                valores.incrementAndGet(id);
+            }
+        }
+
+        @Override
+        public void excluir(int id) {
+            if (id < valores.length()) {
+                valores.set(id, EXCLUIDO);
+            }
+        }
+
+        @Override
+        public int valor(int id) {
+            return valores.get(id);
+        }
+
+        @Override
+        public int candidatos() {
+            return valores.length();
+        }
+
+        @Override
+        public int candidato(int i) {
+            return i;
+        }
+
+        @Override
+        public void zerar() {
+        }
+    }
+
+    /**
+     * Conta os amigos de uma faixa da lista de amigos, dividindo-a ao meio enquanto for grande.
+     */
+    private static final class Tarefa extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Grafo grafo;
+        private final int[] amigos;
+        private final int inicio;
+        private final int fim;
+        private final IntConsumer contagem;
+
+        private Tarefa(Grafo grafo, int[] amigos, int inicio, int fim, IntConsumer contagem) {
+            this.grafo = grafo;
+            this.amigos = amigos;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.contagem = contagem;
+        }
+
+        @Override
+        protected void compute() {
+            if (fim - inicio <= AMIGOS_POR_TAREFA) {
+                for (int i = inicio; i < fim; i++) {
+                    grafo.amigos(amigos[i], contagem);
+                }
+                return;
+            }
+            int meio = (inicio + fim) >>> 1;
+            invokeAll(new Tarefa(grafo, amigos, inicio, meio, contagem),
+                    new Tarefa(grafo, amigos, meio, fim, contagem));
+        }
+    }
+}
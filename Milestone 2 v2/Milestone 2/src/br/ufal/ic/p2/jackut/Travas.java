@@ -0,0 +1,135 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Travas por faixa (lock striping) usadas pelo {@link Sistema} para permitir operações concorrentes.
+ * <p>
+ * Cada chave (login de usuário ou nome de comunidade) é associada a uma das faixas pelo seu hash. O estado de
+ * um usuário ou de uma comunidade só é lido ou alterado com a faixa correspondente travada, então operações
+ * sobre usuários independentes prosseguem em paralelo. Quando uma operação envolve várias chaves, as faixas
+ * são sempre travadas em ordem crescente de índice, o que evita deadlock entre operações que travam as mesmas
+ * faixas em ordens diferentes.
+ * </p>
+ */
+public class Travas {
+
+    /**
+     * Faixas travadas por uma operação. Deve ser fechada (de preferência com try-with-resources) para liberá-las.
+     */
+    public final class Trava implements AutoCloseable {
+        private final BitSet indices;
+
+        private Trava(BitSet indices) {
+            this.indices = indices;
+            for (int i = indices.nextSetBit(0); i >= 0; i = indices.nextSetBit(i + 1)) {
+                faixas[i].lock();
+            }
+        }
+
+        /**
+         * Libera as faixas, na ordem inversa à que foram travadas.
+         */
+        @Override
+        public void close() {
+            for (int i = indices.previousSetBit(faixas.length - 1); i >= 0; i = indices.previousSetBit(i - 1)) {
+                faixas[i].unlock();
+            }
+        }
+    }
+
+    private final ReentrantLock[] faixas;
+
+    /**
+     * Cria o conjunto de travas.
+     *
+     * @param quantidade Quantidade de faixas; é arredondada para a próxima potência de 2
+     */
+    public Travas(int quantidade) {
+        int n = Integer.highestOneBit(Math.max(1, quantidade - 1)) << 1;
+        faixas = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            faixas[i] = new ReentrantLock();
+        }
+    }
+
+    private int indice(String chave) {
+        int h = chave == null ? 0 : chave.hashCode();
+        return (h ^ (h >>> 16)) & (faixas.length - 1);
+    }
+
+    /**
+     * Trava a faixa de uma chave.
+     *
+     * @param chave Login ou nome de comunidade
+     * @return Trava a ser fechada ao fim da operação
+     */
+    public Trava travar(String chave) {
+        BitSet indices = new BitSet(faixas.length);
+        indices.set(indice(chave));
+        return new Trava(indices);
+    }
+
+    /**
+     * Trava as faixas de duas chaves, na ordem fixa das faixas. Se as duas caírem na mesma faixa, ela é travada uma vez.
+     *
+     * @param chave1 Primeira chave
+     * @param chave2 Segunda chave
+     * @return Trava a ser fechada ao fim da operação
+     */
+    public Trava travar(String chave1, String chave2) {
+        BitSet indices = new BitSet(faixas.length);
+        indices.set(indice(chave1));
+        indices.set(indice(chave2));
+        return new Trava(indices);
+    }
+
+    /**
+     * Trava as faixas de várias chaves, na ordem fixa das faixas.
+     *
+     * @param chaves Chaves envolvidas na operação
+     * @return Trava a ser fechada ao fim da operação
+     */
+    public Trava travar(Collection<String> chaves) {
+        BitSet indices = new BitSet(faixas.length);
+        for (String chave : chaves) {
+            indices.set(indice(chave));
+        }
+        return new Trava(indices);
+    }
+
+    /**
+     * Trava todas as faixas, para operações que alteram muitos usuários de uma vez (remoção de usuário,
+     * zerar o sistema, gravar o snapshot completo).
+     *
+     * @return Trava a ser fechada ao fim da operação
+     */
+    public Trava travarTudo() {
+        BitSet indices = new BitSet(faixas.length);
+        indices.set(0, faixas.length);
+        return new Trava(indices);
+    }
+
+    /**
+     * Obtém a faixa de uma chave, para leituras curtas que não devem alocar nada (nem mesmo uma {@link Trava}).
+     * Quem a travar deve liberá-la em um bloco finally.
+     *
+     * @param chave Login ou nome de comunidade
+     * @return Trava da faixa
+     */
+    public ReentrantLock faixa(String chave) {
+        return faixas[indice(chave)];
+    }
+
+    /**
+     * Verifica se alguma thread está com a faixa da chave travada.
+     *
+     * @param chave Login ou nome de comunidade
+     * @return true se a faixa estiver travada
+     */
+    public boolean emUso(String chave) {
+        return faixas[indice(chave)].isLocked();
+    }
+}
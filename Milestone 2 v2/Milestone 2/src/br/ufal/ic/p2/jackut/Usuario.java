@@ -3,33 +3,53 @@ package br.ufal.ic.p2.jackut;
 import br.ufal.ic.p2.jackut.exceptions.*;
 import br.ufal.ic.p2.jackut.Relacionamentos.*;
 
-import java.io.Serializable;
 import java.util.*;
 
 /**
- * Representa um usurio do Jackut, com todos seus atributos e relacionamentos.
+ * Representa um usuário do Jackut, com todos seus atributos e relacionamentos.
  * <p>
- * Armazena informaes bsicas do usurio (nome, login, senha), atributos adicionais,
- * mensagens, recados e todos os tipos de relacionamentos com outros usurios (amigos, dolos, fs...).
+ * Armazena informações básicas do usuário (nome, login, senha), atributos adicionais,
+ * mensagens, recados e todos os tipos de relacionamentos com outros usuários (amigos, ídolos, fãs...).
  * </p>
  * <p>
- * Implementa Serializable para permitir a persistncia dos objetos.
- * Precisou de uma imensa dose de caf para ser feita.
+ * É persistido pelo codec binário {@link br.ufal.ic.p2.jackut.persistencia.UsuarioCodec}.
+ * Precisou de uma imensa dose de café para ser feita.
  * </p>
  */
-public class Usuario implements Serializable {
+public class Usuario {
 
     private String nome;
     private String login;
     private String senha;
     private final Map<String, String> atributosMap = new HashMap<>();
-    private final Queue<Comunicado> comunicados = new LinkedList<>();
-    private final Queue<Comunicado> mensagens = new LinkedList<>();
+    private final CaixaDeEntrada<Comunicado> comunicados = new CaixaDeEntrada<>(Comunicado::isRemovido);
+    private final CaixaDeEntrada<Comunicado> mensagens = new CaixaDeEntrada<>(Comunicado::isRemovido);
+    /**
+     * Recados e mensagens ainda não lidos, agrupados por remetente, na ordem de chegada. Permitem remover os de
+     * um usuário deletado sem percorrer as filas inteiras. Não são gravados: são refeitos quando as filas são lidas.
+     */
+    private final Map<String, ArrayDeque<Comunicado>> recadosPorRemetente = new HashMap<>();
+    private final Map<String, ArrayDeque<Comunicado>> mensagensPorRemetente = new HashMap<>();
     private final Set<String> comunidades = new LinkedHashSet<>();
     /**
-     * "destinatrios"  um caso um pouco especial. No  necessrio para passar nos casos testes, mas foi implementado pois pode ser til no futuro.
+     * Posição da próxima mensagem não lida no log de cada comunidade (ver {@link LogDeMensagens}).
+     */
+    private final Map<String, Long> cursores = new HashMap<>();
+    /**
+     * "destinatários" é um caso um pouco especial. Não é necessário para passar nos casos testes, mas foi implementado pois pode ser útil no futuro.
+     */
+    private final Set<String> destinatarios;
+    /**
+     * Índice reverso: logins dos usuários que guardam alguma referência a este, em um relacionamento ou em um
+     * recado ou mensagem recebido dele. Ao deletar este usuário, apenas eles precisam ser visitados.
+     * Pode conter usuários que já deixaram de referenciá-lo (ou que já foram deletados).
+     */
+    private final Set<String> referenciadoPor;
+
+    /**
+     * Dicionário do sistema, que fornece os IDs dos relacionamentos e as instâncias canônicas dos logins.
      */
-    private final Set<String> destinatarios = new LinkedHashSet<>();
+    private final DicionarioLogins dicionario;
 
     // Relacionamentos
     private final Convites convites;
@@ -40,104 +60,137 @@ public class Usuario implements Serializable {
     private final Inimigos inimigos;
 
     /**
-     * Constri um novo usurio com informaes bsicas.
+     * Indica se o usuário foi alterado desde que foi lido do snapshot. Usuários novos já nascem alterados.
+     */
+    private boolean modificado = true;
+
+    // Visões somente leitura: toda alteração passa pelos métodos que marcam o usuário como modificado
+    private final Map<String, String> atributosLeitura = Collections.unmodifiableMap(atributosMap);
+    private final Set<String> comunidadesLeitura = Collections.unmodifiableSet(comunidades);
+    private final Map<String, Long> cursoresLeitura = Collections.unmodifiableMap(cursores);
+    private final Set<String> destinatariosLeitura;
+    private final Set<String> referenciadoPorLeitura;
+    private final Set<String> convitesLeitura;
+    private final Set<String> amigosLeitura;
+    private final Set<String> idolosLeitura;
+    private final Set<String> fasLeitura;
+    private final Set<String> paquerasLeitura;
+    private final Set<String> inimigosLeitura;
+
+    /**
+     * Constrói um novo usuário com informações básicas.
      *
-     * @param login Login nico do usurio
-     * @param senha Senha do usurio
-     * @param nome  Nome completo do usurio
+     * @param login Login único do usuário
+     * @param senha Senha do usuário
+     * @param nome  Nome completo do usuário
+     * @param dicionario Dicionário que atribui os IDs guardados nos relacionamentos
      */
-    public Usuario(String login, String senha, String nome) {
+    public Usuario(String login, String senha, String nome, DicionarioLogins dicionario) {
         this.nome = nome;
-        this.login = login;
+        this.login = dicionario.canonico(login);
         this.senha = senha;
+        this.dicionario = dicionario;
+        this.destinatarios = new ConjuntoLogins(dicionario);
+        this.referenciadoPor = new ConjuntoLogins(dicionario);
+        this.destinatariosLeitura = Collections.unmodifiableSet(destinatarios);
+        this.referenciadoPorLeitura = Collections.unmodifiableSet(referenciadoPor);
 
-        this.convites = new Convites(login);
-        this.amigos = new Amigos(login);
-        this.idolos = new Idolos(login);
-        this.fas = new Fas(login);
-        this.paqueras = new Paqueras(login);
-        this.inimigos = new Inimigos(login);
+        this.convites = new Convites(this.login, dicionario);
+        this.amigos = new Amigos(this.login, dicionario);
+        this.idolos = new Idolos(this.login, dicionario);
+        this.fas = new Fas(this.login, dicionario);
+        this.paqueras = new Paqueras(this.login, dicionario);
+        this.inimigos = new Inimigos(this.login, dicionario);
+        this.convitesLeitura = Collections.unmodifiableSet(convites.getRelacionamentos());
+        this.amigosLeitura = Collections.unmodifiableSet(amigos.getRelacionamentos());
+        this.idolosLeitura = Collections.unmodifiableSet(idolos.getRelacionamentos());
+        this.fasLeitura = Collections.unmodifiableSet(fas.getRelacionamentos());
+        this.paquerasLeitura = Collections.unmodifiableSet(paqueras.getRelacionamentos());
+        this.inimigosLeitura = Collections.unmodifiableSet(inimigos.getRelacionamentos());
     }
 
     /**
-     * Obtm o nome do usurio.
+     * Obtém o nome do usuário.
      *
-     * @return Nome do usurio
+     * @return Nome do usuário
      */
     public String getNome() {
         return nome;
     }
 
     /**
-     * Define o nome do usurio.
+     * Define o nome do usuário.
      *
-     * @param nome Novo nome do usurio
+     * @param nome Novo nome do usuário
      */
     public void setNome(String nome) {
+        modificado = true;
         this.nome = nome;
     }
 
     /**
-     * Obtm o login do usurio.
+     * Obtém o login do usuário.
      *
-     * @return Login do usurio
+     * @return Login do usuário
      */
     public String getLogin() {
         return login;
     }
 
     /**
-     * Define o login do usurio.
+     * Define o login do usuário.
      *
-     * @param login Novo login do usurio
+     * @param login Novo login do usuário
      */
     public void setLogin(String login) {
-        this.login = login;
+        modificado = true;
+        this.login = dicionario.canonico(login);
     }
 
     /**
-     * Compara a senha fornecida com a senha armazenada.
+     * Obtém a senha armazenada, a ser verificada por {@link Senhas#verificar(String, String)}.
      *
-     * @param senha Senha a ser verificada
-     * @return 1 se as senhas coincidirem, 0 caso contrrio
+     * @return Senha codificada, ou em texto puro se vier de um formato antigo ainda não atualizado
      */
-    public int comparaSenha(String senha) {
-        return senha.equals(this.senha) ? 1 : 0;
+    public String getSenha() {
+        return senha;
     }
 
     /**
-     * Define uma nova senha para o usurio.
+     * Define uma nova senha para o usuário.
      *
-     * @param senha Nova senha
+     * @param senha Nova senha, já codificada
      */
     public void setSenha(String senha) {
+        modificado = true;
         this.senha = senha;
     }
 
     /**
-     * Obtm o valor de um atributo especfico do usurio.
+     * Obtém o valor de um atributo específico do usuário.
      *
      * @param atributo Nome do atributo
      * @return Valor do atributo
-     * @throws InformacaoInvalidaException Se o atributo no existir
+     * @throws InformacaoInvalidaException Se o atributo não existir
      */
     public String getAtributo(String atributo) {
         if (!atributosMap.containsKey(atributo)) {
-            throw new InformacaoInvalidaException("Atributo no preenchido.");
+            throw new InformacaoInvalidaException("Atributo não preenchido.");
         }
         return atributosMap.get(atributo);
     }
 
     /**
-     * Edita um atributo do perfil do usurio.
+     * Edita um atributo do perfil do usuário.
      *
      * @param atributo Nome do atributo (pode ser "nome" ou "senha" para editar esses campos especiais)
      * @param valor    Novo valor do atributo
      */
     public void editarPerfil(String atributo, String valor) {
+        modificado = true;
         if (atributo.equals(nome)) {
             setNome(valor);
-        } else if (atributo.equals(senha)) {
+        } else if ("senha".equals(atributo)) {
             setSenha(valor);
         } else {
             atributosMap.put(atributo, valor);
@@ -145,32 +198,45 @@ public class Usuario implements Serializable {
     }
 
     /**
-     * Obtm o mapa completo de atributos adicionais do usurio.
+     * Define um atributo adicional do perfil, sem os casos especiais de {@link #editarPerfil(String, String)}.
+     * Usado apenas pela persistência.
      *
-     * @return Mapa de atributos adicionais
+     * @param atributo Nome do atributo
+     * @param valor    Valor do atributo
+     */
+    public void setAtributo(String atributo, String valor) {
+        modificado = true;
+        atributosMap.put(atributo, valor);
+    }
+
+    /**
+     * Obtém o mapa completo de atributos adicionais do usuário.
+     *
+     * @return Mapa de atributos adicionais, somente leitura
      */
     public Map<String, String> getAtributosMap() {
-        return atributosMap;
+        return atributosLeitura;
     }
 
     /**
-     * Adiciona um convite de amizade de outro usurio.
+     * Adiciona um convite de amizade de outro usuário.
      *
-     * @param user Login do usurio que enviou o convite
-     * @throws ConflitoInformacaoException Se o usurio j for amigo
+     * @param user Login do usuário que enviou o convite
+     * @throws ConflitoInformacaoException Se o usuário já for amigo
      */
     public void adicionarConvite(String user) {
+        modificado = true;
         if (amigos.contem(user)) {
-            throw new ConflitoInformacaoException("Usurio j est adicionado como amigo.");
+            throw new ConflitoInformacaoException("Usuário já está adicionado como amigo.");
         }
         convites.adicionar(user);
     }
 
     /**
-     * Verifica se existe um convite pendente de um usurio especfico.
+     * Verifica se existe um convite pendente de um usuário específico.
      *
-     * @param user Login do usurio a verificar
-     * @return true se existir convite, false caso contrrio
+     * @param user Login do usuário a verificar
+     * @return true se existir convite, false caso contrário
      */
     public boolean checaConvite(String user) {
         return convites.contem(user);
@@ -182,278 +248,523 @@ public class Usuario implements Serializable {
      * @param user Login do novo amigo
      */
     public void adicionarAmigo(String user) {
+        modificado = true;
         convites.remover(user);
         amigos.adicionar(user);
     }
 
     /**
-     * Verifica se um usurio  amigo.
+     * Verifica se um usuário é amigo.
      *
-     * @param user Login do usurio a verificar
-     * @return true se for amigo, false caso contrrio
+     * @param user Login do usuário a verificar
+     * @return true se for amigo, false caso contrário
      * @throws ConflitoInformacaoException Se tentar verificar amizade consigo mesmo
      */
     public boolean ehAmigo(String user) {
         if (user.equals(login)) {
-            throw new ConflitoInformacaoException("Usurio no pode ser amigo de si mesmo.");
+            throw new ConflitoInformacaoException("Usuário não pode ser amigo de si mesmo.");
         }
         return amigos.contem(user);
     }
 
     /**
-     * L o prximo recado no lido.
+     * Lê o próximo recado não lido.
      *
-     * @return Contedo do recado
-     * @throws InformacaoInvalidaException Se no houver recados
+     * @return Conteúdo do recado
+     * @throws InformacaoInvalidaException Se não houver recados
      */
     public String getRecado() {
-        if (comunicados.isEmpty()) {
-            throw new InformacaoInvalidaException("No h recados.");
+        Comunicado recado = comunicados.retirar();
+        if (recado == null) {
+            throw new InformacaoInvalidaException("Não há recados.");
         }
-        return comunicados.poll().getMensagem();
+        desindexar(recadosPorRemetente, recado);
+        modificado = true;
+        return recado.getMensagem();
     }
 
     /**
-     * Adiciona um novo recado  fila de recados.
+     * Adiciona um novo recado à fila de recados.
      *
-     * @param recado    Contedo do recado
+     * @param recado    Conteúdo do recado
      * @param remetente Login do remetente
      */
     public void adicionarRecado(String recado, String remetente) {
-        Comunicado r = new Comunicado(recado, remetente);
-        comunicados.add(r);
+        modificado = true;
+        Comunicado r = new Comunicado(recado, dicionario.canonico(remetente));
+        comunicados.adicionar(r);
+        indexar(recadosPorRemetente, r);
     }
 
     /**
-     * Adiciona o usurio a uma comunidade.
+     * Adiciona o usuário a uma comunidade.
      *
      * @param comunidade Nome da comunidade
      */
     public void adicionarComunidade(String comunidade) {
+        modificado = true;
         comunidades.add(comunidade);
     }
 
     /**
-     * Adiciona uma nova mensagem  fila de mensagens.
+     * Obtém a posição da próxima mensagem não lida no log de uma comunidade.
+     *
+     * @param comunidade Nome da comunidade
+     * @return Posição no log, ou null se não houver (membros de antes dos logs começam no início do log)
+     */
+    public Long getCursor(String comunidade) {
+        return cursores.get(comunidade);
+    }
+
+    /**
+     * Define a posição da próxima mensagem não lida no log de uma comunidade.
+     *
+     * @param comunidade Nome da comunidade
+     * @param cursor     Posição no log
+     */
+    public void setCursor(String comunidade, long cursor) {
+        modificado = true;
+        cursores.put(comunidade, cursor);
+    }
+
+    /**
+     * Obtém os cursores de todas as comunidades.
      *
-     * @param mensagem  Contedo da mensagem
+     * @return Mapa de nome da comunidade para posição no log, somente leitura
+     */
+    public Map<String, Long> getCursores() {
+        return cursoresLeitura;
+    }
+
+    /**
+     * Adiciona à fila de mensagens uma mensagem de comunidade entregue diretamente, ou que não está mais em
+     * um log (por exemplo, de uma comunidade deletada antes de a mensagem ser lida).
+     *
+     * @param mensagem Mensagem, com seu número de sequência
+     */
+    public void receberMensagem(Comunicado mensagem) {
+        modificado = true;
+        mensagens.adicionar(mensagem);
+        indexar(mensagensPorRemetente, mensagem);
+    }
+
+    /**
+     * Obtém a próxima mensagem da fila sem retirá-la.
+     *
+     * @return A mensagem, ou null se a fila estiver vazia
+     */
+    public Comunicado espiarMensagem() {
+        return mensagens.espiar();
+    }
+
+    /**
+     * Adiciona uma nova mensagem à fila de mensagens.
+     *
+     * @param mensagem  Conteúdo da mensagem
      * @param remetente Login do remetente
      */
     public void adicionarMensagem(String mensagem, String remetente) {
-        Comunicado m = new Comunicado(mensagem, remetente);
-        mensagens.add(m);
+        modificado = true;
+        Comunicado m = new Comunicado(mensagem, dicionario.canonico(remetente));
+        mensagens.adicionar(m);
+        indexar(mensagensPorRemetente, m);
     }
 
     /**
-     * L a prxima mensagem no lida.
+     * Lê a próxima mensagem não lida.
      *
-     * @return Contedo da mensagem
-     * @throws ListadeMensagensVaziaException Se no houver mensagens
+     * @return Conteúdo da mensagem
+     * @throws ListadeMensagensVaziaException Se não houver mensagens
      */
     public String lerMensagem() {
-        if (mensagens.isEmpty()) {
-            throw new ListadeMensagensVaziaException("No h mensagens.");
+        Comunicado mensagem = mensagens.retirar();
+        if (mensagem == null) {
+            throw new ListadeMensagensVaziaException("Não há mensagens.");
         }
-        return mensagens.poll().getMensagem();
+        desindexar(mensagensPorRemetente, mensagem);
+        modificado = true;
+        return mensagem.getMensagem();
     }
 
     /**
-     * Adiciona um novo dolo  lista do usurio.
+     * Adiciona um novo ídolo à lista do usuário.
      *
-     * @param nome Login do dolo
+     * @param nome Login do ídolo
      */
     public void adicionarIdolo(String nome) {
+        modificado = true;
         idolos.adicionar(nome);
     }
 
     /**
-     * Verifica se um usurio  f deste usurio.
+     * Verifica se um usuário é fã deste usuário.
      *
-     * @param nome Login do possvel f
-     * @return true se for f, false caso contrrio
+     * @param nome Login do possível fã
+     * @return true se for fã, false caso contrário
      */
     public boolean ehFa(String nome) {
         return fas.contem(nome);
     }
 
     /**
-     * Adiciona um novo f  lista do usurio.
+     * Adiciona um novo fã à lista do usuário.
      *
-     * @param nome Login do f
+     * @param nome Login do fã
      */
     public void adicionarFa(String nome) {
+        modificado = true;
         fas.adicionar(nome);
     }
 
     /**
-     * Verifica se um usurio  paquera deste usurio.
+     * Verifica se um usuário é paquera deste usuário.
      *
-     * @param nome Login do possvel paquera
-     * @return true se for paquera, false caso contrrio
+     * @param nome Login do possível paquera
+     * @return true se for paquera, false caso contrário
      */
     public boolean ehPaquera(String nome) {
         return paqueras.contem(nome);
     }
 
     /**
-     * Adiciona um novo paquera  lista do usurio.
+     * Adiciona um novo paquera à lista do usuário.
      *
      * @param paque Login do paquera
      */
     public void adicionarPaquera(String paque) {
+        modificado = true;
         paqueras.adicionar(paque);
     }
 
     /**
-     * Adiciona um novo inimigo  lista do usurio.
+     * Adiciona um novo inimigo à lista do usuário.
      *
      * @param inimigo Login do inimigo
      */
     public void adicionarInimigo(String inimigo) {
+        modificado = true;
         inimigos.adicionar(inimigo);
     }
 
     /**
-     * Verifica se um usurio  inimigo deste usurio.
+     * Verifica se um usuário é inimigo deste usuário.
      *
-     * @param inimigo Login do possvel inimigo
-     * @return true se for inimigo, false caso contrrio
+     * @param inimigo Login do possível inimigo
+     * @return true se for inimigo, false caso contrário
      */
     public boolean ehInimigo(String inimigo) {
         return inimigos.contem(inimigo);
     }
 
     /**
-     * Remove todas as referncias a um usurio que est sendo deletado.
+     * Remove todas as referências a um usuário que está sendo deletado. Os recados e mensagens dele são
+     * apenas marcados como removidos, sem percorrer as filas.
      *
-     * @param deletado Login do usurio sendo deletado
+     * @param deletado Login do usuário sendo deletado
      */
     public void deletarUsuario(String deletado) {
+        modificado = true;
         convites.remover(deletado);
         amigos.remover(deletado);
         idolos.remover(deletado);
         fas.remover(deletado);
         paqueras.remover(deletado);
         inimigos.remover(deletado);
+        destinatarios.remove(deletado);
 
-        mensagens.removeIf(m -> m.getRemetente().equals(deletado));
-        comunicados.removeIf(r -> r.getRemetente().equals(deletado));
+        descartarRemetente(mensagensPorRemetente, deletado);
+        descartarRemetente(recadosPorRemetente, deletado);
+    }
+
+    private static void indexar(Map<String, ArrayDeque<Comunicado>> porRemetente, Comunicado c) {
+        porRemetente.computeIfAbsent(c.getRemetente(), r -> new ArrayDeque<>()).addLast(c);
+    }
+
+    /**
+     * Retira do índice um comunicado lido. Cada remetente tem seus comunicados lidos na ordem de chegada,
+     * então a busca para logo no primeiro do remetente.
+     */
+    private static void desindexar(Map<String, ArrayDeque<Comunicado>> porRemetente, Comunicado c) {
+        ArrayDeque<Comunicado> doRemetente = porRemetente.get(c.getRemetente());
+        if (doRemetente != null) {
+            doRemetente.removeFirstOccurrence(c);
+            if (doRemetente.isEmpty()) {
+                porRemetente.remove(c.getRemetente());
+            }
+        }
+    }
+
+    private static void descartarRemetente(Map<String, ArrayDeque<Comunicado>> porRemetente, String remetente) {
+        ArrayDeque<Comunicado> doRemetente = porRemetente.remove(remetente);
+        if (doRemetente != null) {
+            for (Comunicado c : doRemetente) {
+                c.marcarRemovido();
+            }
+        }
+    }
+
+    /**
+     * Verifica se este usuário ainda guarda alguma referência a outro (em um relacionamento ou em um recado ou
+     * mensagem não lido), ou seja, se {@link #deletarUsuario(String)} teria efeito.
+     *
+     * @param outro Login do outro usuário
+     * @return true se houver alguma referência
+     */
+    public boolean guardaReferenciaA(String outro) {
+        return convites.contem(outro) || amigos.contem(outro) || idolos.contem(outro) || fas.contem(outro)
+                || paqueras.contem(outro) || inimigos.contem(outro) || destinatarios.contains(outro)
+                || recadosPorRemetente.containsKey(outro) || mensagensPorRemetente.containsKey(outro);
     }
 
     /**
-     * Remove o usurio de uma comunidade que est sendo deletada.
+     * Registra que outro usuário passou a guardar uma referência a este (ver {@link #getReferenciadoPor()}).
+     *
+     * @param login Login de quem guarda a referência
+     */
+    public void adicionarReferenciaDe(String login) {
+        if (!login.equals(this.login) && referenciadoPor.add(login)) {
+            modificado = true;
+        }
+    }
+
+    /**
+     * Obtém os usuários que guardam alguma referência a este, em relacionamentos, recados ou mensagens.
+     *
+     * @return Conjunto de logins, somente leitura
+     */
+    public Set<String> getReferenciadoPor() {
+        return referenciadoPorLeitura;
+    }
+
+    /**
+     * Preenche o índice reverso de usuários lidos de um formato que não o gravava, com os usuários com quem
+     * este se relaciona ou para quem enviou recados. Usado apenas pela persistência.
+     */
+    public void reconstruirReferencias() {
+        modificado = true;
+        referenciadoPor.addAll(convites.getRelacionamentos());
+        referenciadoPor.addAll(amigos.getRelacionamentos());
+        referenciadoPor.addAll(idolos.getRelacionamentos());
+        referenciadoPor.addAll(fas.getRelacionamentos());
+        referenciadoPor.addAll(paqueras.getRelacionamentos());
+        referenciadoPor.addAll(inimigos.getRelacionamentos());
+        referenciadoPor.addAll(destinatarios);
+    }
+
+    /**
+     * Remove o usuário de uma comunidade que está sendo deletada.
      *
      * @param deletado Nome da comunidade sendo deletada
      */
     public void deletarComunidade(String deletado) {
+        modificado = true;
         comunidades.remove(deletado);
+        cursores.remove(deletado);
     }
 
     /**
-     * Adiciona um destinatrio  lista de usurios para quem este usurio enviou recados.
+     * Adiciona um destinatário à lista de usuários para quem este usuário enviou recados.
      *
-     * @param destinatario Login do destinatrio
+     * @param destinatario Login do destinatário
      */
     public void adicionarDestinatario(String destinatario) {
+        modificado = true;
         destinatarios.add(destinatario);
     }
 
-    // Mtodos de acesso aos relacionamentos
+    /**
+     * Indica se o usuário foi alterado desde a última vez que foi lido do snapshot.
+     * Usuários não alterados podem ser descartados da memória e lidos de novo quando necessário.
+     *
+     * @return true se houver alterações ainda não gravadas em snapshot
+     */
+    public boolean isModificado() {
+        return modificado;
+    }
 
     /**
-     * Obtm a lista de paqueras do usurio.
+     * Marca ou desmarca o usuário como alterado. Usado apenas pela persistência.
      *
-     * @return Conjunto de logins dos paqueras
+     * @param modificado novo estado
+     */
+    public void setModificado(boolean modificado) {
+        this.modificado = modificado;
+    }
+
+    // Métodos de acesso aos relacionamentos
+
+    /**
+     * Obtém a lista de paqueras do usuário.
+     *
+     * @return Conjunto de logins dos paqueras, somente leitura
      */
     public Set<String> getPaqueras() {
-        return paqueras.getRelacionamentos();
+        return paquerasLeitura;
+    }
+
+    /**
+     * Obtém a lista de paqueras formatada, reaproveitada enquanto não houver alterações.
+     *
+     * @return Logins no formato "{paquera1,paquera2,...}"
+     */
+    public String formatarPaqueras() {
+        return paqueras.formatar();
     }
 
     /**
-     * Obtm a lista de destinatrios de recados.
+     * Obtém a lista de destinatários de recados.
      *
-     * @return Conjunto de logins dos destinatrios
+     * @return Conjunto de logins dos destinatários, somente leitura
      */
     public Set<String> getDestinatarios() {
-        return destinatarios;
+        return destinatariosLeitura;
     }
 
     /**
-     * Obtm a lista de amigos do usurio.
+     * Obtém a lista de amigos do usuário.
      *
-     * @return Conjunto de logins dos amigos
+     * @return Conjunto de logins dos amigos, somente leitura
      */
     public Set<String> getAmigos() {
-        return amigos.getRelacionamentos();
+        return amigosLeitura;
     }
 
     /**
-     * Obtm a lista de fs do usurio.
+     * Obtém a lista de amigos formatada, reaproveitada enquanto não houver alterações.
      *
-     * @return Conjunto de logins dos fs
+     * @return Logins no formato "{amigo1,amigo2,...}"
+     */
+    public String formatarAmigos() {
+        return amigos.formatar();
+    }
+
+    /**
+     * Obtém um dos relacionamentos do usuário. Só para leitura, dentro do pacote: as alterações passam pelos
+     * métodos que marcam o usuário como modificado.
+     *
+     * @param tipo Tipo do relacionamento
+     * @return O relacionamento
+     */
+    Relacionamento getRelacionamento(TipoRelacionamento tipo) {
+        return switch (tipo) {
+            case AMIGOS -> amigos;
+            case CONVITES -> convites;
+            case IDOLOS -> idolos;
+            case FAS -> fas;
+            case PAQUERAS -> paqueras;
+            case INIMIGOS -> inimigos;
+        };
+    }
+
+    /**
+     * Monta uma página de um dos relacionamentos (ver {@link Pagina}), percorrendo o conjunto sem copiá-lo.
+     *
+     * @param tipo   Tipo do relacionamento
+     * @param limite Quantidade máxima de logins na página
+     * @param cursor Cursor devolvido pela página anterior; null ou vazio para a primeira página
+     * @return A página
+     */
+    Pagina paginar(TipoRelacionamento tipo, int limite, String cursor) {
+        return Pagina.de(getRelacionamento(tipo).getRelacionamentos(), limite, cursor);
+    }
+
+    /**
+     * Adiciona um relacionamento lido de um arquivo (snapshot, importação ou dados legados), sem as validações
+     * de {@link #adicionarAmigo(String)} e dos demais métodos, que já foram feitas quando ele foi criado.
+     *
+     * @param tipo  Tipo do relacionamento
+     * @param outro Login do usuário relacionado
+     */
+    public void restaurarRelacionamento(TipoRelacionamento tipo, String outro) {
+        modificado = true;
+        getRelacionamento(tipo).getRelacionamentos().add(outro);
+    }
+
+    /**
+     * Obtém os IDs dos amigos (ver {@link DicionarioLogins}), para percorrê-los sem converter para String.
+     *
+     * @return Conjunto de IDs dos amigos
+     */
+    public ConjuntoInt getIdsAmigos() {
+        return amigos.getIds();
+    }
+
+    /**
+     * Obtém a lista de fãs do usuário.
+     *
+     * @return Conjunto de logins dos fãs, somente leitura
      */
     public Set<String> getFas() {
-        return fas.getRelacionamentos();
+        return fasLeitura;
+    }
+
+    /**
+     * Obtém a lista de fãs formatada, reaproveitada enquanto não houver alterações.
+     *
+     * @return Logins no formato "{fa1,fa2,...}"
+     */
+    public String formatarFas() {
+        return fas.formatar();
     }
 
     /**
-     * Obtm a lista de comunidades do usurio.
+     * Obtém a lista de comunidades do usuário.
      *
-     * @return Conjunto de nomes das comunidades
+     * @return Conjunto de nomes das comunidades, somente leitura
      */
     public Set<String> getComunidades() {
-        return comunidades;
+        return comunidadesLeitura;
     }
 
     /**
-     * Obtm a lista de dolos do usurio.
+     * Obtém a lista de ídolos do usuário.
      *
-     * @return Conjunto de logins dos dolos
+     * @return Conjunto de logins dos ídolos, somente leitura
      */
     public Set<String> getIdolos() {
-        return idolos.getRelacionamentos();
+        return idolosLeitura;
     }
 
     /**
-     * Obtm a lista de convites pendentes.
+     * Obtém a lista de convites pendentes.
      *
-     * @return Conjunto de logins com convites pendentes
+     * @return Conjunto de logins com convites pendentes, somente leitura
      */
     public Set<String> getConvites() {
-        return convites.getRelacionamentos();
+        return convitesLeitura;
     }
 
     /**
-     * Obtm a lista de inimigos do usurio.
+     * Obtém a lista de inimigos do usuário.
      *
-     * @return Conjunto de logins dos inimigos
+     * @return Conjunto de logins dos inimigos, somente leitura
      */
     public Set<String> getInimigos() {
-        return inimigos.getRelacionamentos();
+        return inimigosLeitura;
     }
 
     /**
-     * Obtm a fila de recados recebidos.
+     * Obtém os recados ainda não lidos, na ordem de leitura.
      *
-     * @return Fila de recados
+     * @return Cópia dos recados, somente leitura
      */
-    public Queue<Comunicado> getRecados() {
-        return comunicados;
+    public List<Comunicado> getRecados() {
+        return Collections.unmodifiableList(comunicados.paraLista());
     }
 
     /**
-     * Obtm a fila de mensagens recebidas.
+     * Obtém as mensagens ainda não lidas, na ordem de leitura.
      *
-     * @return Fila de mensagens
+     * @return Cópia das mensagens, somente leitura
      */
-    public Queue<Comunicado> getMensagens() {
-        return mensagens;
+    public List<Comunicado> getMensagens() {
+        return Collections.unmodifiableList(mensagens.paraLista());
     }
 
     /**
-     * Retorna uma representao textual do usurio.
+     * Retorna uma representação textual do usuário.
      *
-     * @return String com informaes bsicas do usurio
+     * @return String com informações básicas do usuário
      */
     @Override
     public String toString() {
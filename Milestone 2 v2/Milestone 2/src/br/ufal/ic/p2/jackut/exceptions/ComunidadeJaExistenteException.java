@@ -1,7 +1,7 @@
 package br.ufal.ic.p2.jackut.exceptions;
 
 /**
- * Lanada caso tentem criar uma comunidade com nome j existente.
+ * Lançada caso tentem criar uma comunidade com nome já existente.
  */
 public class ComunidadeJaExistenteException extends RuntimeException {
     public ComunidadeJaExistenteException(String message) {
@@ -1,7 +1,7 @@
 package br.ufal.ic.p2.jackut.exceptions;
 
 /**
- * Lanada caso busquem uma comunidade que no existe.
+ * Lançada caso busquem uma comunidade que não existe.
  */
 public class ComunidadeNaoExistenteException extends RuntimeException {
     public ComunidadeNaoExistenteException(String message) {
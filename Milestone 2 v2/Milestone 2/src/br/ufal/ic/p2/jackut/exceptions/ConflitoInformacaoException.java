@@ -1,15 +1,15 @@
 package br.ufal.ic.p2.jackut.exceptions;
 
 /**
- * Exception lanada quando h um conflito de informaes.
- * Exemplo: senha igual ao nome de usurio ou ao login.
+ * Exception lançada quando há um conflito de informações.
+ * Exemplo: senha igual ao nome de usuário ou ao login.
  *
  */
 public class ConflitoInformacaoException extends RuntimeException {
     /**
-     * Constri uma nova exceo com a mensagem especificada.
+     * Constrói uma nova exceção com a mensagem especificada.
      *
-     * @param mensagem Detalhes sobre o conflito de informaes.
+     * @param mensagem Detalhes sobre o conflito de informações.
      */
     public ConflitoInformacaoException(String mensagem) {
         super(mensagem);
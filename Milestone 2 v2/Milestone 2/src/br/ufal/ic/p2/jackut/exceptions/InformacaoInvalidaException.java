@@ -1,16 +1,16 @@
 package br.ufal.ic.p2.jackut.exceptions;
 
 /**
- * Exception lanada quando uma informao fornecida  invlida.
- * Geralmente utilizada para validaes de entradas como login, senha ou nome.
+ * Exception lançada quando uma informação fornecida é inválida.
+ * Geralmente utilizada para validações de entradas como login, senha ou nome.
  *
 
  */
 public class InformacaoInvalidaException extends RuntimeException {
     /**
-     * Constri uma nova exceo com a mensagem especificada.
+     * Constrói uma nova exceção com a mensagem especificada.
      *
-     * @param mensagem Detalhes sobre a informao invlida.
+     * @param mensagem Detalhes sobre a informação inválida.
      */
     public InformacaoInvalidaException(String mensagem) {
         super(mensagem);
@@ -1,7 +1,7 @@
 package br.ufal.ic.p2.jackut.exceptions;
 
 /**
- * Exception lanada caso tentem interagir com um inimigo.
+ * Exception lançada caso tentem interagir com um inimigo.
  */
 public class InimigoException extends RuntimeException {
     public InimigoException(String message) {
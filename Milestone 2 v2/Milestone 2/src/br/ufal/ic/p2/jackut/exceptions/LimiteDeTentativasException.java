@@ -0,0 +1,17 @@
+package br.ufal.ic.p2.jackut.exceptions;
+
+/**
+ * Exception lançada quando há tentativas de login (ou cadastros) demais em andamento ao mesmo tempo.
+ */
+public class LimiteDeTentativasException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constrói uma nova exceção com a mensagem especificada.
+     *
+     * @param mensagem Detalhes sobre o limite atingido.
+     */
+    public LimiteDeTentativasException(String mensagem) {
+        super(mensagem);
+    }
+}
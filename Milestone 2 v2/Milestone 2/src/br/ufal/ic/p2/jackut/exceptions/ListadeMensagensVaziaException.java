@@ -1,7 +1,7 @@
 package br.ufal.ic.p2.jackut.exceptions;
 
 /**
- * Exception lanada caso no haja mensagens para ser lidas.
+ * Exception lançada caso não haja mensagens para ser lidas.
  */
 public class ListadeMensagensVaziaException extends RuntimeException {
     public ListadeMensagensVaziaException(String message) {
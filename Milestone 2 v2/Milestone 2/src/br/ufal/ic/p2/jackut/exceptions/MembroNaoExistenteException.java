@@ -1,7 +1,7 @@
 package br.ufal.ic.p2.jackut.exceptions;
 
 /**
- * Exception lanada caso tente-se interagir com um membro no existente de comunidade.
+ * Exception lançada caso tente-se interagir com um membro não existente de comunidade.
  */
 public class MembroNaoExistenteException extends RuntimeException {
     public MembroNaoExistenteException(String message) {
@@ -1,15 +1,15 @@
 package br.ufal.ic.p2.jackut.exceptions;
 
 /**
- * Exception lanada quando se tenta cadastrar um usurio j existente ou inserir um usurio j existente numa lista.
- * Geralmente utilizada na criao de novos usurios no sistema ou na adio de usurios a alguma lista.
+ * Exception lançada quando se tenta cadastrar um usuário já existente ou inserir um usuário já existente numa lista.
+ * Geralmente utilizada na criação de novos usuários no sistema ou na adição de usuários a alguma lista.
  *
  */
 public class UsuarioJaExistenteException extends RuntimeException {
     /**
-     * Constri uma nova exceo com a mensagem especificada.
+     * Constrói uma nova exceção com a mensagem especificada.
      *
-     * @param mensagem Detalhes sobre o usurio j cadastrado.
+     * @param mensagem Detalhes sobre o usuário já cadastrado.
      */
     public UsuarioJaExistenteException(String mensagem) {
         super(mensagem);
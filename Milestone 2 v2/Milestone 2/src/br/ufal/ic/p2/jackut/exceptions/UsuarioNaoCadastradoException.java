@@ -1,15 +1,15 @@
 package br.ufal.ic.p2.jackut.exceptions;
 
 /**
- * Exception lanada quando um usurio no est cadastrado no sistema.
- * Utilizada para validaes onde a existncia do usurio  esperada.
+ * Exception lançada quando um usuário não está cadastrado no sistema.
+ * Utilizada para validações onde a existência do usuário é esperada.
  *
  */
 public class UsuarioNaoCadastradoException extends RuntimeException {
     /**
-     * Constri uma nova exceo com a mensagem especificada.
+     * Constrói uma nova exceção com a mensagem especificada.
      *
-     * @param mensagem Detalhes sobre o usurio no cadastrado.
+     * @param mensagem Detalhes sobre o usuário não cadastrado.
      */
     public UsuarioNaoCadastradoException(String mensagem) {
         super(mensagem);
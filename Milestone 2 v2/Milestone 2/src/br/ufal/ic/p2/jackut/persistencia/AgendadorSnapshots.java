@@ -0,0 +1,48 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executa periodicamente, em uma thread de fundo, a geração de snapshots com compactação do journal.
+ * Execuções nunca se sobrepõem: a próxima só é agendada depois que a anterior termina.
+ */
+public class AgendadorSnapshots {
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Cria e inicia o agendador.
+     *
+     * @param tarefa      tarefa que gera o snapshot
+     * @param intervaloMs intervalo entre execuções, em milissegundos
+     */
+    public AgendadorSnapshots(Runnable tarefa, long intervaloMs) {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "jackut-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                tarefa.run();
+            } catch (RuntimeException e) {
+                // Uma exceção cancelaria as próximas execuções.
+                e.printStackTrace();
+                System.err.println("Ocorreu um erro ao gerar o snapshot.");
+            }
+        }, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancela as próximas execuções e espera a execução em andamento, se houver, terminar.
+     */
+    public void parar() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
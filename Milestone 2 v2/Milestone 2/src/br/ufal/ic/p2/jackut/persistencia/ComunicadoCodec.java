@@ -0,0 +1,104 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import br.ufal.ic.p2.jackut.Comunicado;
+import br.ufal.ic.p2.jackut.DicionarioLogins;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Codec binário de {@link Comunicado}: referência ao remetente na tabela de strings, seguida da mensagem e,
+ * a partir da versão 3 do snapshot, nas mensagens, do número de sequência (long).
+ */
+public final class ComunicadoCodec {
+
+    private ComunicadoCodec() {
+    }
+
+    /**
+     * Grava um comunicado.
+     *
+     * @param saida      destino
+     * @param comunicado comunicado a gravar
+     * @param tabela     tabela de strings do arquivo
+     * @throws IOException se a escrita falhar
+     */
+    public static void escrever(SaidaBinaria saida, Comunicado comunicado, TabelaStrings tabela) throws IOException {
+        tabela.escreverReferencia(saida, comunicado.getRemetente());
+        saida.escreverTexto(comunicado.getMensagem());
+    }
+
+    /**
+     * Lê um comunicado.
+     *
+     * @param entrada origem
+     * @param tabela  tabela de strings do arquivo
+     * @param dicionario dicionário que fornece a instância canônica do remetente
+     * @return comunicado lido
+     * @throws IOException se os dados estiverem incompletos
+     */
+    public static Comunicado ler(EntradaBinaria entrada, TabelaStrings.Consulta tabela, DicionarioLogins dicionario)
+            throws IOException {
+        String remetente = dicionario.canonico(TabelaStrings.lerReferencia(entrada, tabela));
+        return new Comunicado(entrada.lerTexto(), remetente);
+    }
+
+    /**
+     * Grava um comunicado seguido do seu número de sequência.
+     *
+     * @param saida      destino
+     * @param comunicado comunicado a gravar
+     * @param tabela     tabela de strings do arquivo
+     * @throws IOException se a escrita falhar
+     */
+    public static void escreverComSequencia(SaidaBinaria saida, Comunicado comunicado, TabelaStrings tabela) throws IOException {
+        escrever(saida, comunicado, tabela);
+        saida.escreverLong(comunicado.getSequencia());
+    }
+
+    /**
+     * Lê um comunicado gravado por {@link #escreverComSequencia(SaidaBinaria, Comunicado, TabelaStrings)}.
+     *
+     * @param entrada origem
+     * @param tabela  tabela de strings do arquivo
+     * @param dicionario dicionário que fornece a instância canônica do remetente
+     * @return comunicado lido
+     * @throws IOException se os dados estiverem incompletos
+     */
+    public static Comunicado lerComSequencia(EntradaBinaria entrada, TabelaStrings.Consulta tabela,
+                                             DicionarioLogins dicionario) throws IOException {
+        String remetente = dicionario.canonico(TabelaStrings.lerReferencia(entrada, tabela));
+        String mensagem = entrada.lerTexto();
+        return new Comunicado(mensagem, remetente, entrada.lerLong());
+    }
+
+    /**
+     * Grava uma fila de comunicados, precedida da quantidade.
+     *
+     * @param saida  destino
+     * @param fila   comunicados, na ordem de leitura
+     * @param tabela tabela de strings do arquivo
+     * @throws IOException se a escrita falhar
+     */
+    public static void escreverFila(SaidaBinaria saida, Collection<Comunicado> fila, TabelaStrings tabela) throws IOException {
+        saida.escreverVarint(fila.size());
+        for (Comunicado c : fila) {
+            escrever(saida, c, tabela);
+        }
+    }
+
+    /**
+     * Grava uma fila de comunicados com seus números de sequência, precedida da quantidade.
+     *
+     * @param saida  destino
+     * @param fila   comunicados, na ordem de leitura
+     * @param tabela tabela de strings do arquivo
+     * @throws IOException se a escrita falhar
+     */
+    public static void escreverFilaComSequencia(SaidaBinaria saida, Collection<Comunicado> fila, TabelaStrings tabela) throws IOException {
+        saida.escreverVarint(fila.size());
+        for (Comunicado c : fila) {
+            escreverComSequencia(saida, c, tabela);
+        }
+    }
+}
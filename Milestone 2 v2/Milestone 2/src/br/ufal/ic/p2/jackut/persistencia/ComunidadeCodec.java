@@ -0,0 +1,82 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import br.ufal.ic.p2.jackut.Comunicado;
+import br.ufal.ic.p2.jackut.Comunidade;
+import br.ufal.ic.p2.jackut.DicionarioLogins;
+import br.ufal.ic.p2.jackut.LogDeMensagens;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Codec binário de {@link Comunidade}.
+ * <pre>
+ * nome (ref) | dono (ref) | descrição | membros (refs) |
+ * log: long início, n, (remetente (ref), mensagem, long sequência, varint leitores pendentes, byte removida)*
+ * </pre>
+ * <p>
+ * O log de mensagens ({@link LogDeMensagens}) existe a partir da versão 3 do snapshot.
+ * </p>
+ */
+public final class ComunidadeCodec {
+
+    private ComunidadeCodec() {
+    }
+
+    /**
+     * Grava uma comunidade.
+     *
+     * @param saida      destino
+     * @param comunidade comunidade a gravar
+     * @param tabela     tabela de strings do arquivo
+     * @throws IOException se a escrita falhar
+     */
+    public static void escrever(SaidaBinaria saida, Comunidade comunidade, TabelaStrings tabela) throws IOException {
+        tabela.escreverReferencia(saida, comunidade.getNome());
+        tabela.escreverReferencia(saida, comunidade.getDono());
+        saida.escreverTexto(comunidade.getDescricao());
+        RelacionamentoCodec.escrever(saida, comunidade.getMembrosSet(), tabela);
+
+        LogDeMensagens log = comunidade.getMensagens();
+        saida.escreverLong(log.getInicio());
+        saida.escreverVarint(log.tamanho());
+        log.<IOException>paraCada((comunicado, leitoresPendentes, removida) -> {
+            ComunicadoCodec.escreverComSequencia(saida, comunicado, tabela);
+            saida.escreverVarint(leitoresPendentes);
+            saida.escreverByte(removida ? 1 : 0);
+        });
+    }
+
+    /**
+     * Lê uma comunidade.
+     *
+     * @param entrada origem
+     * @param tabela  tabela de strings do arquivo
+     * @param versao  versão do snapshot de que o registro faz parte
+     * @param dicionario dicionário de logins do sistema
+     * @return comunidade lida
+     * @throws IOException se os dados estiverem incompletos
+     */
+    public static Comunidade ler(EntradaBinaria entrada, TabelaStrings.Consulta tabela, int versao,
+                                 DicionarioLogins dicionario) throws IOException {
+        String nome = TabelaStrings.lerReferencia(entrada, tabela);
+        String dono = TabelaStrings.lerReferencia(entrada, tabela);
+        Comunidade comunidade = new Comunidade(dono, nome, entrada.lerTexto(), dicionario);
+
+        Set<String> membros = comunidade.getMembrosSet();
+        membros.clear(); // a ordem gravada já inclui o dono
+        RelacionamentoCodec.ler(entrada, tabela, membros);
+
+        if (versao >= Snapshot.VERSAO_LOGS) {
+            LogDeMensagens log = comunidade.getMensagens();
+            log.setInicio(entrada.lerLong());
+            int n = entrada.lerVarint();
+            for (int i = 0; i < n; i++) {
+                Comunicado c = ComunicadoCodec.lerComSequencia(entrada, tabela, dicionario);
+                int leitoresPendentes = entrada.lerVarint();
+                log.restaurar(c, leitoresPendentes, entrada.lerByte() != 0);
+            }
+        }
+        return comunidade;
+    }
+}
@@ -0,0 +1,123 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Leitura dos tipos gravados por {@link SaidaBinaria}, a partir de um {@link ByteBuffer}
+ * (em memória ou mapeado de um arquivo).
+ */
+public class EntradaBinaria {
+    private final ByteBuffer origem;
+
+    /**
+     * Cria uma entrada sobre o buffer informado, a partir da posição atual dele.
+     *
+     * @param origem buffer de origem
+     */
+    public EntradaBinaria(ByteBuffer origem) {
+        this.origem = origem;
+    }
+
+    /**
+     * Posição atual de leitura.
+     *
+     * @return posição no buffer
+     */
+    public int getPosicao() {
+        return origem.position();
+    }
+
+    /**
+     * Move a leitura para outra posição.
+     *
+     * @param posicao nova posição no buffer
+     */
+    public void setPosicao(int posicao) {
+        origem.position(posicao);
+    }
+
+    /**
+     * Lê um byte.
+     *
+     * @return byte lido
+     * @throws IOException se os dados acabarem
+     */
+    public byte lerByte() throws IOException {
+        try {
+            return origem.get();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Fim inesperado dos dados.", e);
+        }
+    }
+
+    /**
+     * Lê um int de 4 bytes.
+     *
+     * @return valor lido
+     * @throws IOException se os dados acabarem
+     */
+    public int lerInt() throws IOException {
+        try {
+            return origem.getInt();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Fim inesperado dos dados.", e);
+        }
+    }
+
+    /**
+     * Lê um long de 8 bytes.
+     *
+     * @return valor lido
+     * @throws IOException se os dados acabarem
+     */
+    public long lerLong() throws IOException {
+        try {
+            return origem.getLong();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Fim inesperado dos dados.", e);
+        }
+    }
+
+    /**
+     * Lê um varint.
+     *
+     * @return valor lido
+     * @throws IOException se os dados acabarem ou o varint for inválido
+     */
+    public int lerVarint() throws IOException {
+        int valor = 0;
+        int deslocamento = 0;
+        byte b;
+        do {
+            if (deslocamento > 28) {
+                throw new IOException("Varint inválido.");
+            }
+            b = lerByte();
+            valor |= (b & 0x7F) << deslocamento;
+            deslocamento += 7;
+        } while ((b & 0x80) != 0);
+        return valor;
+    }
+
+    /**
+     * Lê um texto.
+     *
+     * @return texto lido, possivelmente null
+     * @throws IOException se os dados acabarem
+     */
+    public String lerTexto() throws IOException {
+        int n = lerVarint();
+        if (n == 0) {
+            return null;
+        }
+        if (n - 1 > origem.remaining()) {
+            throw new IOException("Fim inesperado dos dados.");
+        }
+        byte[] bytes = new byte[n - 1];
+        origem.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
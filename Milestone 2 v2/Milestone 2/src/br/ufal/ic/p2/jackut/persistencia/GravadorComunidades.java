@@ -0,0 +1,81 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import br.ufal.ic.p2.jackut.Comunidade;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Grava um arquivo de comunidades (ver {@link Snapshot}), uma comunidade de cada vez, sem que todas precisem
+ * estar em memória. Usado por {@link Snapshot#gravar} e pela importação em lote
+ * ({@link br.ufal.ic.p2.jackut.ImportadorCsv}).
+ */
+public class GravadorComunidades implements AutoCloseable {
+    private final FileOutputStream fileOut;
+    private final BufferedOutputStream buffer;
+    private final SaidaBinaria saida;
+    private final TabelaStrings tabela = new TabelaStrings();
+    private final int quantidade;
+    private int gravadas;
+
+    /**
+     * Cria o arquivo e grava o cabeçalho.
+     *
+     * @param arquivo         destino
+     * @param quantidade      quantidade de comunidades que serão gravadas
+     * @param ultimaSequencia maior número de sequência já atribuído a uma mensagem de comunidade
+     * @param geracao         geração do journal coberta pelo arquivo
+     * @throws IOException se o arquivo não puder ser criado
+     */
+    public GravadorComunidades(Path arquivo, int quantidade, long ultimaSequencia, long geracao) throws IOException {
+        this.quantidade = quantidade;
+        fileOut = new FileOutputStream(arquivo.toFile());
+        buffer = new BufferedOutputStream(fileOut, 64 * 1024);
+        saida = new SaidaBinaria(buffer);
+        Snapshot.escreverCabecalho(saida, Snapshot.VERSAO_LOGS, Snapshot.TIPO_COMUNIDADES, geracao);
+        saida.escreverLong(ultimaSequencia);
+        saida.escreverVarint(quantidade);
+    }
+
+    /**
+     * Grava uma comunidade.
+     *
+     * @param comunidade comunidade a gravar
+     * @throws IOException se a escrita falhar, ou se já tiverem sido gravadas todas as comunidades anunciadas
+     */
+    public void adicionar(Comunidade comunidade) throws IOException {
+        if (gravadas == quantidade) {
+            throw new IOException("Mais comunidades do que o anunciado no cabeçalho.");
+        }
+        ComunidadeCodec.escrever(saida, comunidade, tabela);
+        gravadas++;
+    }
+
+    /**
+     * Grava a tabela de strings e força o arquivo para o disco.
+     *
+     * @throws IOException se a escrita falhar, ou se faltarem comunidades
+     */
+    public void concluir() throws IOException {
+        if (gravadas != quantidade) {
+            throw new IOException("Menos comunidades do que o anunciado no cabeçalho.");
+        }
+        long posicaoTabela = saida.getPosicao();
+        tabela.escrever(saida);
+        saida.escreverLong(posicaoTabela);
+        buffer.flush();
+        fileOut.getFD().sync();
+    }
+
+    /**
+     * Fecha o arquivo. Se {@link #concluir()} não tiver sido chamado, o arquivo fica incompleto.
+     *
+     * @throws IOException se o fechamento falhar
+     */
+    @Override
+    public void close() throws IOException {
+        fileOut.close();
+    }
+}
@@ -0,0 +1,145 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import br.ufal.ic.p2.jackut.Usuario;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Grava um arquivo de usuários no formato indexado (ver {@link UsuarioStore}), um usuário de cada vez.
+ * <p>
+ * Os usuários não precisam estar todos em memória: cada um é codificado e gravado ao ser adicionado, e só o
+ * login e a posição do registro são guardados até o fim, para o índice. Usado por {@link UsuarioStore#gravar}
+ * e pela importação em lote ({@link br.ufal.ic.p2.jackut.ImportadorCsv}).
+ * </p>
+ */
+public class GravadorUsuarios implements AutoCloseable {
+    private final FileOutputStream fileOut;
+    private final BufferedOutputStream buffer;
+    private final SaidaBinaria saida;
+    private final TabelaStrings tabela = new TabelaStrings();
+    private final Indice indice = new Indice();
+
+    /**
+     * Cria o arquivo e grava o cabeçalho.
+     *
+     * @param arquivo destino
+     * @param geracao geração do journal coberta pelo arquivo
+     * @throws IOException se o arquivo não puder ser criado
+     */
+    public GravadorUsuarios(Path arquivo, long geracao) throws IOException {
+        fileOut = new FileOutputStream(arquivo.toFile());
+        buffer = new BufferedOutputStream(fileOut, 64 * 1024);
+        saida = new SaidaBinaria(buffer);
+        Snapshot.escreverCabecalho(saida, Snapshot.VERSAO_REFERENCIAS, Snapshot.TIPO_USUARIOS, geracao);
+    }
+
+    /**
+     * Grava um usuário. Cada login deve ser gravado uma única vez.
+     *
+     * @param usuario usuário a gravar
+     * @throws IOException se a escrita falhar
+     */
+    public void adicionar(Usuario usuario) throws IOException {
+        indice.adicionar(usuario.getLogin(), tabela, saida);
+        UsuarioCodec.escrever(saida, usuario, tabela);
+    }
+
+    /**
+     * Quantidade de usuários gravados até agora.
+     *
+     * @return quantidade de usuários
+     */
+    public int quantidade() {
+        return indice.quantidade;
+    }
+
+    /**
+     * Grava a tabela de strings, o índice e o rodapé, e força o arquivo para o disco.
+     *
+     * @throws IOException se a escrita falhar
+     */
+    public void concluir() throws IOException {
+        long[] posicoesStrings = tabela.escreverComPosicoes(saida);
+        long posicaoPosicoes = saida.getPosicao();
+        for (long p : posicoesStrings) {
+            saida.escreverInt(posicaoInt(p));
+        }
+        long posicaoIndice = saida.getPosicao();
+        int posicoesIndice = indice.escrever(saida);
+
+        saida.escreverInt(indice.quantidade);
+        saida.escreverInt(posicaoInt(posicaoPosicoes));
+        saida.escreverInt(posicaoInt(posicaoIndice));
+        saida.escreverInt(posicoesIndice);
+        posicaoInt(saida.getPosicao());
+        buffer.flush();
+        fileOut.getFD().sync();
+    }
+
+    /**
+     * Fecha o arquivo. Se {@link #concluir()} não tiver sido chamado, o arquivo fica incompleto.
+     *
+     * @throws IOException se o fechamento falhar
+     */
+    @Override
+    public void close() throws IOException {
+        fileOut.close();
+    }
+
+    private static int posicaoInt(long posicao) throws IOException {
+        if (posicao > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot de usuários grande demais para ser mapeado.");
+        }
+        return (int) posicao;
+    }
+
+    /**
+     * Acumula os logins e as posições dos registros durante a gravação e grava o índice no final.
+     */
+    private static class Indice {
+        private int[] hashes = new int[64];
+        private int[] logins = new int[64];
+        private int[] registros = new int[64];
+        private int quantidade;
+
+        void adicionar(String login, TabelaStrings tabela, SaidaBinaria saida) throws IOException {
+            if (quantidade == hashes.length) {
+                hashes = Arrays.copyOf(hashes, quantidade * 2);
+                logins = Arrays.copyOf(logins, quantidade * 2);
+                registros = Arrays.copyOf(registros, quantidade * 2);
+            }
+            hashes[quantidade] = login.hashCode();
+            logins[quantidade] = tabela.indice(login);
+            registros[quantidade] = posicaoInt(saida.getPosicao());
+            quantidade++;
+        }
+
+        /**
+         * Grava a tabela hash com endereçamento aberto, ocupando no máximo metade das posições.
+         *
+         * @return quantidade de posições gravadas (potência de 2)
+         */
+        int escrever(SaidaBinaria saida) throws IOException {
+            int n = Integer.highestOneBit(Math.max(1, quantidade)) * 4;
+            int[] ocupante = new int[n];
+            for (int i = 0; i < quantidade; i++) {
+                int p = UsuarioStore.espalhar(hashes[i]) & (n - 1);
+                while (ocupante[p] != 0) {
+                    p = (p + 1) & (n - 1);
+                }
+                ocupante[p] = i + 1;
+            }
+            for (int p = 0; p < n; p++) {
+                int i = ocupante[p] - 1;
+                saida.escreverInt(i < 0 ? 0 : hashes[i]);
+                saida.escreverInt(i < 0 ? 0 : logins[i] + 1);
+                saida.escreverInt(i < 0 ? 0 : registros[i]);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import br.ufal.ic.p2.jackut.Comunidade;
+import br.ufal.ic.p2.jackut.Configuracao;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Motor de armazenamento do {@link br.ufal.ic.p2.jackut.Sistema}: carrega o estado persistido (usuários, com os
+ * seus recados e mensagens, e comunidades, com os seus logs de mensagens), recebe as operações que o alteram e
+ * guarda o estado no encerramento.
+ * <p>
+ * O sistema trabalha sempre sobre o estado em memória; o motor decide apenas como ele é guardado, e com isso o
+ * equilíbrio entre memória, latência das escritas e perda de dados em um crash. Há três motores, escolhidos em
+ * "jackut.persistencia":
+ * </p>
+ * <ul>
+ *     <li>"serializacao" (padrão, {@link SerializacaoStore}): snapshot completo gravado só no encerramento;</li>
+ *     <li>"journal" ({@link JournalStore}): cada operação é anexada a um log em disco, compactado em snapshots
+ *     em segundo plano;</li>
+ *     <li>"sql" ({@link SqlStore}): estado e operações guardados em um banco acessado por JDBC.</li>
+ * </ul>
+ * <p>
+ * As sessões não fazem parte do estado persistido: em todos os motores, um reinício encerra as sessões abertas.
+ * </p>
+ */
+public interface JackutStore {
+
+    /**
+     * Estado de um sistema, visto pelo motor: recebe operações reproduzidas e pode ser exportado para gravação.
+     */
+    interface Estado extends Journal.Consumidor {
+        /**
+         * Entrega o estado completo, consistente, para ser gravado. Nenhuma operação o altera durante a gravação.
+         *
+         * @param gravacao quem grava o estado
+         * @throws IOException se a gravação falhar
+         */
+        void exportar(Gravacao gravacao) throws IOException;
+    }
+
+    /**
+     * Grava um estado completo.
+     */
+    @FunctionalInterface
+    interface Gravacao {
+        /**
+         * Grava o estado.
+         *
+         * @param usuarios        store de usuários
+         * @param comunidades     mapa de comunidades
+         * @param ultimaSequencia maior número de sequência já atribuído a uma mensagem de comunidade
+         * @throws IOException se a gravação falhar
+         */
+        void gravar(UsuarioStore usuarios, Map<String, Comunidade> comunidades, long ultimaSequencia) throws IOException;
+    }
+
+    /**
+     * Cria estados separados do que está em uso, usados pelos motores que compactam o seu log em segundo plano.
+     */
+    @FunctionalInterface
+    interface Reconstrutor {
+        /**
+         * Cria um estado a partir de um snapshot, sem registrar as operações aplicadas a ele.
+         *
+         * @param base snapshot carregado
+         * @return estado independente do sistema em uso
+         */
+        Estado criar(Snapshot base);
+    }
+
+    /**
+     * Cria o motor configurado.
+     *
+     * @return motor ainda não carregado
+     */
+    static JackutStore criar() {
+        return switch (Configuracao.motorPersistencia()) {
+            case "journal" -> new JournalStore(Paths.get(Configuracao.arquivoJournal()),
+                    Configuracao.usuariosResidentes(), Configuracao.politicaFsync(), Configuracao.intervaloFsyncMs(),
+                    Configuracao.intervaloSnapshotMs(), Configuracao.tamanhoMinimoSnapshot());
+            case "sql" -> new SqlStore(Configuracao.urlSql(), Configuracao.usuariosResidentes(),
+                    Configuracao.intervaloSnapshotMs(), Configuracao.tamanhoMinimoSnapshot());
+            default -> new SerializacaoStore(Paths.get(Configuracao.arquivoJournal()), Configuracao.usuariosResidentes());
+        };
+    }
+
+    /**
+     * Verifica se um motor pode ser usado neste ambiente.
+     *
+     * @param motor nome do motor, como em "jackut.persistencia"
+     * @return false apenas para o motor "sql" sem driver JDBC para a URL configurada
+     */
+    static boolean disponivel(String motor) {
+        return !"sql".equalsIgnoreCase(motor) || SqlStore.driverDisponivel(Configuracao.urlSql());
+    }
+
+    /**
+     * Carrega o estado guardado na última compactação ou no último encerramento.
+     *
+     * @return o estado base; vazio se não houver nada guardado
+     * @throws IOException se o armazenamento não puder ser lido
+     */
+    Snapshot carregar() throws IOException;
+
+    /**
+     * Reproduz sobre o estado carregado as operações registradas depois dele e passa a aceitar novos registros.
+     *
+     * @param estado       estado do sistema, já com o conteúdo de {@link #carregar()}
+     * @param reconstrutor cria os estados usados nas compactações em segundo plano
+     * @throws IOException se as operações não puderem ser lidas
+     */
+    void abrir(Estado estado, Reconstrutor reconstrutor) throws IOException;
+
+    /**
+     * Registra uma operação que alterou o estado.
+     *
+     * @param operacao operação realizada
+     * @param args     argumentos da operação
+     * @throws IOException se o registro falhar
+     */
+    void registrar(Operacao operacao, String... args) throws IOException;
+
+    /**
+     * Registra várias operações do mesmo tipo de uma vez, em sequência.
+     *
+     * @param operacao   operação realizada
+     * @param argumentos argumentos de cada ocorrência, na ordem em que foram realizadas
+     * @throws IOException se o registro falhar
+     */
+    void registrarTodos(Operacao operacao, List<String[]> argumentos) throws IOException;
+
+    /**
+     * Guarda o que ainda não estiver guardado e libera o armazenamento. Depois disso, nada mais é registrado até
+     * {@link #reabrir(Estado, Reconstrutor)}.
+     *
+     * @param estado estado final do sistema
+     * @throws IOException se a gravação falhar
+     */
+    void encerrar(Estado estado) throws IOException;
+
+    /**
+     * Volta a aceitar registros depois de {@link #encerrar(Estado)}. Nada é reproduzido sobre o estado, que já
+     * contém tudo o que foi registrado até o encerramento; o que foi carregado é descartado.
+     *
+     * @param estado       estado do sistema, o mesmo guardado no encerramento
+     * @param reconstrutor cria os estados usados nas compactações em segundo plano
+     * @throws IOException se o armazenamento não puder ser aberto
+     */
+    default void reabrir(Estado estado, Reconstrutor reconstrutor) throws IOException {
+        carregar();
+        abrir(new Estado() {
+            @Override
+            public void aplicar(Operacao operacao, String[] args) {
+                // Já aplicada ao estado antes do encerramento
+            }
+
+            @Override
+            public void exportar(Gravacao gravacao) throws IOException {
+                estado.exportar(gravacao);
+            }
+        }, reconstrutor);
+    }
+}
@@ -0,0 +1,483 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Journal (write-ahead log) do Jackut.
+ * <p>
+ * Cada operação que altera o estado é anexada ao final do arquivo como um registro binário compacto:
+ * </p>
+ * <pre>
+ * [int tamanho][byte código][argumentos: varint (tamanho + 1) + bytes UTF-8, 0 = null][int crc32]
+ * </pre>
+ * <p>
+ * Ao abrir, os registros existentes são reproduzidos em ordem. Um registro incompleto ou com CRC inválido no
+ * final do arquivo (escrita interrompida por um crash) é descartado, e o arquivo é truncado nesse ponto.
+ * </p>
+ * <p>
+ * As escritas são agrupadas em um buffer; o momento do fsync depende da {@link PoliticaFsync} escolhida.
+ * </p>
+ * <p>
+ * Cada arquivo de journal pertence a uma geração, gravada no cabeçalho. Ao gerar um snapshot, o arquivo ativo é
+ * selado ({@link #rotacionar(Path)}) e um novo arquivo, da geração seguinte, passa a receber os registros.
+ * Um snapshot da geração N já contém todos os registros dos journals de geração até N.
+ * </p>
+ */
+public class Journal {
+    private static final int MAGICO_V1 = 0x4A4B4A31; // "JKJ1", sem geração
+    private static final int MAGICO = 0x4A4B4A32; // "JKJ2"
+    private static final int TAMANHO_CABECALHO = 12;
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    /**
+     * Recebe as operações lidas do journal durante a reprodução.
+     */
+    public interface Consumidor {
+        /**
+         * Aplica uma operação lida do journal.
+         *
+         * @param operacao operação registrada
+         * @param args     argumentos, na mesma ordem em que foram registrados
+         */
+        void aplicar(Operacao operacao, String[] args);
+    }
+
+    private final Path arquivo;
+    private FileChannel canal;
+    private long geracao;
+    private final PoliticaFsync politica;
+    private final ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_BUFFER);
+    private final ScheduledExecutorService agendador;
+
+    /** Posição lógica (em bytes) do final do último registro anexado. */
+    private long anexado;
+    /** Posição lógica até a qual os registros já estão no disco. Só é alterada com {@link #sincronizacao}. */
+    private volatile long duravel;
+    private boolean fechado;
+
+    /**
+     * Serializa os fsyncs, que são feitos sem o monitor do journal para não bloquear quem está anexando.
+     * Quando as duas travas são necessárias, esta é obtida primeiro.
+     */
+    private final Object sincronizacao = new Object();
+
+    private Journal(Path arquivo, FileChannel canal, long geracao, PoliticaFsync politica, long intervaloMs) throws IOException {
+        this.arquivo = arquivo;
+        this.canal = canal;
+        this.geracao = geracao;
+        this.politica = politica;
+        this.anexado = canal.size();
+        this.duravel = anexado;
+
+        if (politica == PoliticaFsync.PERIODICO) {
+            agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "jackut-journal-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            agendador.scheduleWithFixedDelay(this::sincronizarPeriodicamente, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        } else {
+            agendador = null;
+        }
+    }
+
+    /**
+     * Abre (ou cria) o journal, reproduzindo os registros existentes antes de aceitar novas escritas.
+     *
+     * @param arquivo         caminho do arquivo de journal
+     * @param geracaoMinima   geração já coberta pelo snapshot carregado; um journal existente dessa geração
+     *                        ou anterior não é reproduzido, e um journal novo recebe a geração seguinte
+     * @param politica        política de fsync
+     * @param intervaloMs     intervalo entre fsyncs para a política PERIODICO
+     * @param consumidor      destino das operações reproduzidas
+     * @return o journal pronto para anexar novos registros
+     * @throws IOException se o arquivo não puder ser lido ou escrito
+     */
+    public static Journal abrir(Path arquivo, long geracaoMinima, PoliticaFsync politica, long intervaloMs,
+                                Consumidor consumidor) throws IOException {
+        FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long geracao = lerGeracao(canal);
+            long fimValido;
+            if (geracao < 0 || geracao <= geracaoMinima) {
+                fimValido = 0;
+            } else {
+                fimValido = reproduzir(canal, consumidor);
+            }
+            canal.truncate(fimValido);
+            canal.position(fimValido);
+            if (fimValido == 0) {
+                geracao = geracaoMinima + 1;
+                escreverCabecalho(canal, geracao);
+            }
+            return new Journal(arquivo, canal, geracao, politica, intervaloMs);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reproduz um journal selado, somente leitura.
+     *
+     * @param arquivo    caminho do journal selado
+     * @param consumidor destino das operações reproduzidas
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    public static void reproduzir(Path arquivo, Consumidor consumidor) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            if (lerGeracao(canal) >= 0) {
+                reproduzir(canal, consumidor);
+            }
+        }
+    }
+
+    /**
+     * Lê a geração gravada no cabeçalho de um journal.
+     *
+     * @param arquivo caminho do journal
+     * @return a geração, ou -1 se o arquivo estiver vazio
+     * @throws IOException se o arquivo não puder ser lido ou não for um journal
+     */
+    public static long lerGeracao(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            return lerGeracao(canal);
+        }
+    }
+
+    private static long lerGeracao(FileChannel canal) throws IOException {
+        long tamanho = canal.size();
+        if (tamanho < 4) {
+            return -1;
+        }
+        ByteBuffer magico = ByteBuffer.allocate(4);
+        lerCompleto(canal, magico, 0);
+        if (magico.getInt(0) == MAGICO_V1) {
+            return 0;
+        }
+        if (magico.getInt(0) != MAGICO) {
+            throw new IOException("Arquivo de journal inválido.");
+        }
+        if (tamanho < TAMANHO_CABECALHO) {
+            return -1;
+        }
+        ByteBuffer geracao = ByteBuffer.allocate(8);
+        lerCompleto(canal, geracao, 4);
+        return geracao.getLong(0);
+    }
+
+    private static void escreverCabecalho(FileChannel canal, long geracao) throws IOException {
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO).putInt(MAGICO).putLong(geracao);
+        cabecalho.flip();
+        while (cabecalho.hasRemaining()) {
+            canal.write(cabecalho);
+        }
+        canal.force(false);
+    }
+
+    /**
+     * Lê e aplica todos os registros válidos do canal.
+     *
+     * @return posição do final do último registro válido
+     */
+    private static long reproduzir(FileChannel canal, Consumidor consumidor) throws IOException {
+        long tamanho = canal.size();
+        ByteBuffer magico = ByteBuffer.allocate(4);
+        lerCompleto(canal, magico, 0);
+
+        long posicao = magico.getInt(0) == MAGICO_V1 ? 4 : TAMANHO_CABECALHO;
+        ByteBuffer tamanhoRegistro = ByteBuffer.allocate(4);
+        CRC32 crc = new CRC32();
+        while (posicao + 4 <= tamanho) {
+            tamanhoRegistro.clear();
+            lerCompleto(canal, tamanhoRegistro, posicao);
+            int n = tamanhoRegistro.getInt(0);
+            if (n <= 0 || posicao + 4 + n + 4 > tamanho) {
+                break; // registro truncado
+            }
+            ByteBuffer registro = ByteBuffer.allocate(n + 4);
+            lerCompleto(canal, registro, posicao + 4);
+            crc.reset();
+            crc.update(registro.array(), 0, n);
+            if ((int) crc.getValue() != registro.getInt(n)) {
+                break; // registro corrompido
+            }
+
+            registro.limit(n).position(0);
+            EntradaBinaria entrada = new EntradaBinaria(registro);
+            Operacao op = Operacao.porCodigo(entrada.lerByte());
+            if (op == null) {
+                throw new IOException("Operação desconhecida no journal.");
+            }
+            String[] args = new String[op.getAridade()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = entrada.lerTexto();
+            }
+            consumidor.aplicar(op, args);
+            posicao += 4 + n + 4;
+        }
+        return posicao;
+    }
+
+    private static void lerCompleto(FileChannel canal, ByteBuffer destino, long posicao) throws IOException {
+        while (destino.hasRemaining()) {
+            int lidos = canal.read(destino, posicao + destino.position());
+            if (lidos < 0) {
+                throw new IOException("Fim inesperado do journal.");
+            }
+        }
+    }
+
+    /**
+     * Anexa uma operação ao journal. Dependendo da política, só retorna quando o registro estiver no disco.
+     *
+     * @param operacao operação realizada
+     * @param args     argumentos da operação
+     * @throws IOException se a escrita falhar
+     */
+    public void registrar(Operacao operacao, String... args) throws IOException {
+        byte[] registro = codificar(operacao, args);
+        long minhaPosicao;
+        synchronized (this) {
+            anexar(registro);
+            minhaPosicao = anexado;
+
+            if (politica == PoliticaFsync.NUNCA) {
+                descarregar();
+            }
+        }
+        if (politica == PoliticaFsync.SEMPRE) {
+            sincronizarAte(minhaPosicao);
+        }
+    }
+
+    /**
+     * Anexa várias operações do mesmo tipo de uma vez, em sequência e sem operações de outras threads entre
+     * elas. Com a política {@link PoliticaFsync#SEMPRE}, é feito um único fsync para todas.
+     *
+     * @param operacao operação realizada
+     * @param argumentos argumentos de cada ocorrência da operação, na ordem em que foram realizadas
+     * @throws IOException se a escrita falhar
+     */
+    public void registrarTodos(Operacao operacao, List<String[]> argumentos) throws IOException {
+        if (argumentos.isEmpty()) {
+            return;
+        }
+        List<byte[]> registros = new ArrayList<>(argumentos.size());
+        for (String[] args : argumentos) {
+            registros.add(codificar(operacao, args));
+        }
+        long minhaPosicao;
+        synchronized (this) {
+            for (byte[] registro : registros) {
+                anexar(registro);
+            }
+            minhaPosicao = anexado;
+
+            if (politica == PoliticaFsync.NUNCA) {
+                descarregar();
+            }
+        }
+        if (politica == PoliticaFsync.SEMPRE) {
+            sincronizarAte(minhaPosicao);
+        }
+    }
+
+    private void anexar(byte[] registro) throws IOException {
+        if (fechado) {
+            throw new IOException("Journal fechado.");
+        }
+        if (buffer.remaining() < registro.length) {
+            descarregar();
+        }
+        if (registro.length > buffer.capacity()) {
+            escrever(ByteBuffer.wrap(registro));
+        } else {
+            buffer.put(registro);
+        }
+        anexado += registro.length;
+    }
+
+    /**
+     * Garante que tudo que foi anexado até a posição informada está no disco. Não deve ser chamado com o monitor
+     * do journal (ver {@link #sincronizacao}).
+     * <p>
+     * O buffer é descarregado com o monitor do journal, mas o fsync é feito fora dele, então novas operações
+     * continuam sendo anexadas durante o fsync. Quem chega enquanto outro fsync está em andamento espera por
+     * ele e, se ainda não estiver coberto, faz o próximo, que confirma de uma vez tudo que foi anexado nesse
+     * meio-tempo (group commit).
+     * </p>
+     */
+    private void sincronizarAte(long posicao) throws IOException {
+        if (duravel >= posicao) {
+            return;
+        }
+        synchronized (sincronizacao) {
+            if (duravel >= posicao) {
+                return;
+            }
+            long alvo;
+            synchronized (this) {
+                if (fechado) {
+                    return; // fechar já forçou tudo para o disco
+                }
+                alvo = anexado;
+                descarregar();
+            }
+            canal.force(false);
+            duravel = alvo;
+        }
+    }
+
+    /**
+     * Força o que estiver pendente para o disco. Deve ser chamado com as duas travas.
+     */
+    private void sincronizarTudo() throws IOException {
+        if (duravel < anexado) {
+            descarregar();
+            canal.force(false);
+            duravel = anexado;
+        }
+    }
+
+    private void sincronizarPeriodicamente() {
+        try {
+            long alvo;
+            synchronized (this) {
+                if (fechado) {
+                    return;
+                }
+                alvo = anexado;
+            }
+            sincronizarAte(alvo);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Ocorreu um erro ao sincronizar o journal.");
+        }
+    }
+
+    /**
+     * Escreve o conteúdo do buffer no canal, sem fsync.
+     */
+    private void descarregar() throws IOException {
+        buffer.flip();
+        escrever(buffer);
+        buffer.clear();
+    }
+
+    private void escrever(ByteBuffer dados) throws IOException {
+        while (dados.hasRemaining()) {
+            canal.write(dados);
+        }
+    }
+
+    /**
+     * Sela o arquivo ativo e passa a escrever em um novo arquivo, da geração seguinte.
+     * Os registros pendentes são forçados para o disco antes da troca.
+     *
+     * @param selado caminho para onde o arquivo ativo será movido
+     * @return a geração do arquivo selado
+     * @throws IOException se a troca falhar
+     */
+    public long rotacionar(Path selado) throws IOException {
+        synchronized (sincronizacao) {
+            synchronized (this) {
+                if (fechado) {
+                    throw new IOException("Journal fechado.");
+                }
+                sincronizarTudo();
+                canal.close();
+                Files.move(arquivo, selado, StandardCopyOption.ATOMIC_MOVE);
+
+                long geracaoSelada = geracao;
+                geracao++;
+                canal = FileChannel.open(arquivo, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                escreverCabecalho(canal, geracao);
+                anexado = canal.size();
+                duravel = anexado;
+                return geracaoSelada;
+            }
+        }
+    }
+
+    /**
+     * Obtém a geração do arquivo ativo.
+     *
+     * @return geração atual
+     */
+    public synchronized long getGeracao() {
+        return geracao;
+    }
+
+    /**
+     * Obtém o tamanho do arquivo ativo, contando os registros ainda no buffer.
+     *
+     * @return tamanho em bytes
+     */
+    public synchronized long tamanho() {
+        return anexado;
+    }
+
+    /**
+     * Força todos os registros pendentes para o disco e fecha o arquivo.
+     *
+     * @throws IOException se a escrita falhar
+     */
+    public void fechar() throws IOException {
+        if (agendador != null) {
+            // Sem interromper: uma interrupção durante o fsync fecharia o canal (ClosedByInterruptException).
+            agendador.shutdown();
+            try {
+                agendador.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (sincronizacao) {
+            synchronized (this) {
+                if (fechado) {
+                    return;
+                }
+                sincronizarTudo();
+                fechado = true;
+                canal.close();
+            }
+        }
+    }
+
+    private static byte[] codificar(Operacao operacao, String[] args) throws IOException {
+        if (args.length != operacao.getAridade()) {
+            throw new IllegalArgumentException("Número de argumentos inválido para " + operacao + ".");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        SaidaBinaria saida = new SaidaBinaria(bytes);
+        saida.escreverInt(0); // tamanho, preenchido abaixo
+        saida.escreverByte(operacao.getCodigo());
+        for (String arg : args) {
+            saida.escreverTexto(arg);
+        }
+        saida.escreverInt(0); // crc, preenchido abaixo
+
+        ByteBuffer registro = ByteBuffer.wrap(bytes.toByteArray());
+        int n = registro.capacity() - 8;
+        registro.putInt(0, n);
+        CRC32 crc = new CRC32();
+        crc.update(registro.array(), 4, n);
+        registro.putInt(4 + n, (int) crc.getValue());
+        return registro.array();
+    }
+}
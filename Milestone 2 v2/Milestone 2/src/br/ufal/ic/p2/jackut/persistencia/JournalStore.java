@@ -0,0 +1,195 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Motor "journal": armazenamento estruturado em log. Cada operação é anexada a um {@link Journal} antes de a
+ * chamada retornar (conforme a {@link PoliticaFsync}), então o encerramento não precisa regravar todos os dados e
+ * um crash perde apenas as últimas escritas.
+ * <p>
+ * Um agendador gera snapshots periodicamente em segundo plano: o journal ativo é selado ("jackut.journal.N") e
+ * trocado por um novo, o estado da geração selada é reconstruído à parte a partir do snapshot anterior e dos
+ * journals selados, e os journals cobertos pelo novo snapshot são apagados. O estado em uso nunca é lido, então as
+ * requisições não esperam pelo snapshot.
+ * </p>
+ */
+public class JournalStore implements JackutStore {
+    private final Path arquivo;
+    private final int residentes;
+    private final PoliticaFsync politica;
+    private final long intervaloFsyncMs;
+    private final long intervaloSnapshotMs;
+    private final long tamanhoMinimoSnapshot;
+
+    /**
+     * Geração de journal mais recente já refletida no estado carregado.
+     */
+    private long geracao;
+    private Journal journal;
+    private AgendadorSnapshots agendador;
+    private Reconstrutor reconstrutor;
+
+    /**
+     * Cria o motor.
+     *
+     * @param arquivo               caminho do journal ativo
+     * @param residentes            quantidade máxima de usuários não alterados mantidos em memória
+     * @param politica              política de fsync do journal
+     * @param intervaloFsyncMs      intervalo entre fsyncs para a política PERIODICO
+     * @param intervaloSnapshotMs   intervalo entre verificações do agendador de snapshots; 0 desativa
+     * @param tamanhoMinimoSnapshot tamanho mínimo do journal ativo, em bytes, para gerar um snapshot
+     */
+    public JournalStore(Path arquivo, int residentes, PoliticaFsync politica, long intervaloFsyncMs,
+                        long intervaloSnapshotMs, long tamanhoMinimoSnapshot) {
+        this.arquivo = arquivo;
+        this.residentes = residentes;
+        this.politica = politica;
+        this.intervaloFsyncMs = intervaloFsyncMs;
+        this.intervaloSnapshotMs = intervaloSnapshotMs;
+        this.tamanhoMinimoSnapshot = tamanhoMinimoSnapshot;
+    }
+
+    @Override
+    public Snapshot carregar() {
+        Snapshot base = Snapshot.ler(residentes);
+        geracao = base.getGeracao();
+        return base;
+    }
+
+    @Override
+    public void abrir(Estado estado, Reconstrutor reconstrutor) throws IOException {
+        this.reconstrutor = reconstrutor;
+        geracao = reproduzirSelados(arquivo, geracao, estado);
+        journal = Journal.abrir(arquivo, geracao, politica, intervaloFsyncMs, estado);
+        geracao = journal.getGeracao();
+        if (intervaloSnapshotMs > 0) {
+            agendador = new AgendadorSnapshots(this::gerarSnapshot, intervaloSnapshotMs);
+        }
+    }
+
+    @Override
+    public void registrar(Operacao operacao, String... args) throws IOException {
+        journal.registrar(operacao, args);
+    }
+
+    @Override
+    public void registrarTodos(Operacao operacao, List<String[]> argumentos) throws IOException {
+        journal.registrarTodos(operacao, argumentos);
+    }
+
+    /**
+     * Força os registros pendentes para o disco e fecha o journal. As operações já estão todas registradas, então
+     * o estado não é regravado.
+     *
+     * @param estado ignorado
+     * @throws IOException se a escrita falhar
+     */
+    @Override
+    public void encerrar(Estado estado) throws IOException {
+        if (agendador != null) {
+            agendador.parar();
+            agendador = null;
+        }
+        if (journal != null) {
+            journal.fechar();
+            journal = null;
+        }
+    }
+
+    /**
+     * Gera um novo snapshot e descarta os journals que ele cobre.
+     * <p>
+     * O journal ativo é selado e trocado por um novo, o que bloqueia as escritas apenas pelo tempo de um fsync.
+     * </p>
+     */
+    private void gerarSnapshot() {
+        Journal j = journal;
+        if (j == null || j.tamanho() < tamanhoMinimoSnapshot) {
+            return;
+        }
+        try {
+            long selada = j.getGeracao();
+            j.rotacionar(Paths.get(arquivo + "." + selada));
+
+            Snapshot base = Snapshot.ler(residentes);
+            Estado sombra = reconstrutor.criar(base);
+            for (Path selado : selados(arquivo, base.getGeracao())) {
+                if (geracaoSelada(selado) <= selada) {
+                    Journal.reproduzir(selado, sombra);
+                }
+            }
+            sombra.exportar((usuarios, comunidades, ultimaSequencia) ->
+                    Snapshot.gravar(usuarios, comunidades, ultimaSequencia, selada));
+
+            for (Path selado : selados(arquivo, -1)) {
+                if (geracaoSelada(selado) <= selada) {
+                    Files.delete(selado);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Ocorreu um erro ao gerar o snapshot.");
+        }
+    }
+
+    /**
+     * Reproduz, em ordem, os journals selados (aguardando snapshot) de geração posterior à informada.
+     *
+     * @param arquivo    caminho do journal ativo
+     * @param geracao    geração já coberta pelo estado
+     * @param consumidor destino das operações
+     * @return geração coberta depois da reprodução
+     * @throws IOException se algum journal não puder ser lido
+     */
+    static long reproduzirSelados(Path arquivo, long geracao, Journal.Consumidor consumidor) throws IOException {
+        for (Path selado : selados(arquivo, geracao)) {
+            Journal.reproduzir(selado, consumidor);
+            geracao = geracaoSelada(selado);
+        }
+        return geracao;
+    }
+
+    /**
+     * Lista os journals selados de geração posterior à informada, em ordem de geração.
+     *
+     * @param arquivo       caminho do journal ativo
+     * @param geracaoMinima geração já coberta pelo snapshot
+     * @return caminhos dos journals selados
+     * @throws IOException se o diretório não puder ser lido
+     */
+    static List<Path> selados(Path arquivo, long geracaoMinima) throws IOException {
+        Path ativo = arquivo.toAbsolutePath();
+        List<Path> selados = new ArrayList<>();
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(ativo.getParent(), ativo.getFileName() + ".*")) {
+            for (Path selado : arquivos) {
+                if (geracaoSelada(selado) > geracaoMinima) {
+                    selados.add(selado);
+                }
+            }
+        }
+        selados.sort(Comparator.comparingLong(JournalStore::geracaoSelada));
+        return selados;
+    }
+
+    /**
+     * Extrai a geração do nome de um journal selado ("jackut.journal.N").
+     *
+     * @param selado caminho do journal selado
+     * @return geração, ou -1 se o nome não seguir o padrão
+     */
+    private static long geracaoSelada(Path selado) {
+        String nome = selado.getFileName().toString();
+        try {
+            return Long.parseLong(nome.substring(nome.lastIndexOf('.') + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+/**
+ * Operações que alteram o estado do sistema e, portanto, são registradas no journal.
+ * <p>
+ * Cada operação tem um código fixo gravado no arquivo. Os códigos nunca devem ser reaproveitados,
+ * para que journals antigos continuem legíveis.
+ * </p>
+ */
+public enum Operacao {
+    ZERAR_SISTEMA(1, 0),
+    CRIAR_USUARIO(2, 3),
+    EDITAR_PERFIL(3, 3),
+    ADICIONAR_AMIGO(4, 2),
+    ENVIAR_RECADO(5, 3),
+    LER_RECADO(6, 1),
+    CRIAR_COMUNIDADE(7, 3),
+    ADICIONAR_COMUNIDADE(8, 2),
+    LER_MENSAGEM(9, 1),
+    ENVIAR_MENSAGEM(10, 3),
+    ADICIONAR_IDOLO(11, 2),
+    ADICIONAR_PAQUERA(12, 2),
+    ADICIONAR_INIMIGO(13, 2),
+    REMOVER_USUARIO(14, 1);
+
+    private static final Operacao[] POR_CODIGO = new Operacao[16];
+
+    static {
+        for (Operacao op : values()) {
+            POR_CODIGO[op.codigo] = op;
+        }
+    }
+
+    private final byte codigo;
+    private final int aridade;
+
+    Operacao(int codigo, int aridade) {
+        this.codigo = (byte) codigo;
+        this.aridade = aridade;
+    }
+
+    /**
+     * Código gravado no journal.
+     *
+     * @return código da operação
+     */
+    public byte getCodigo() {
+        return codigo;
+    }
+
+    /**
+     * Quantidade de argumentos que a operação grava.
+     *
+     * @return número de argumentos
+     */
+    public int getAridade() {
+        return aridade;
+    }
+
+    /**
+     * Obtém a operação a partir do código lido do arquivo.
+     *
+     * @param codigo código lido
+     * @return a operação, ou null se o código for desconhecido
+     */
+    public static Operacao porCodigo(byte codigo) {
+        if (codigo < 0 || codigo >= POR_CODIGO.length) {
+            return null;
+        }
+        return POR_CODIGO[codigo];
+    }
+}
@@ -0,0 +1,20 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+/**
+ * Define quando os registros do journal são forçados para o disco.
+ */
+public enum PoliticaFsync {
+    /**
+     * Cada operação só retorna depois de estar no disco. Operações concorrentes compartilham o mesmo fsync (group commit).
+     */
+    SEMPRE,
+    /**
+     * Os registros são agrupados em memória e uma thread de fundo faz o fsync a cada intervalo configurado.
+     * Um crash perde no máximo os últimos milissegundos de escrita.
+     */
+    PERIODICO,
+    /**
+     * Os registros são entregues ao sistema operacional a cada operação, mas o fsync só acontece ao fechar o journal.
+     */
+    NUNCA
+}
@@ -0,0 +1,59 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Codec binário dos conjuntos de logins dos relacionamentos (e dos demais conjuntos de logins ou nomes, como
+ * membros e comunidades): quantidade seguida das referências à tabela de strings, na ordem de inserção.
+ */
+public final class RelacionamentoCodec {
+
+    private RelacionamentoCodec() {
+    }
+
+    /**
+     * Grava um conjunto de logins.
+     *
+     * @param saida   destino
+     * @param logins  logins do relacionamento
+     * @param tabela  tabela de strings do arquivo
+     * @throws IOException se a escrita falhar
+     */
+    public static void escrever(SaidaBinaria saida, Collection<String> logins, TabelaStrings tabela) throws IOException {
+        saida.escreverVarint(logins.size());
+        for (String login : logins) {
+            tabela.escreverReferencia(saida, login);
+        }
+    }
+
+    /**
+     * Lê um conjunto de logins, adicionando-os ao destino na ordem gravada.
+     *
+     * @param entrada origem
+     * @param tabela  tabela de strings do arquivo
+     * @param destino conjunto a preencher
+     * @throws IOException se os dados estiverem incompletos
+     */
+    public static void ler(EntradaBinaria entrada, TabelaStrings.Consulta tabela, Collection<String> destino)
+            throws IOException {
+        ler(entrada, tabela, (Consumer<String>) destino::add);
+    }
+
+    /**
+     * Lê um conjunto de logins, entregando-os ao destino na ordem gravada.
+     *
+     * @param entrada origem
+     * @param tabela  tabela de strings do arquivo
+     * @param destino recebe cada login
+     * @throws IOException se os dados estiverem incompletos
+     */
+    public static void ler(EntradaBinaria entrada, TabelaStrings.Consulta tabela, Consumer<String> destino)
+            throws IOException {
+        int n = entrada.lerVarint();
+        for (int i = 0; i < n; i++) {
+            destino.accept(TabelaStrings.lerReferencia(entrada, tabela));
+        }
+    }
+}
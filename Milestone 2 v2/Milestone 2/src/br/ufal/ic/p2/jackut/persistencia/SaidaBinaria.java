@@ -0,0 +1,118 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escrita dos tipos primitivos usados pelos formatos binários do Jackut (journal e snapshots).
+ * <p>
+ * Inteiros não negativos são gravados como varint (7 bits por byte, bit mais alto indicando continuação).
+ * Textos são gravados como varint (tamanho em bytes + 1) seguido dos bytes UTF-8; o valor 0 representa null.
+ * </p>
+ */
+public class SaidaBinaria {
+    private final OutputStream destino;
+    private long posicao;
+
+    /**
+     * Cria uma saída sobre o stream informado. O stream deve ser bufferizado.
+     *
+     * @param destino stream de destino
+     */
+    public SaidaBinaria(OutputStream destino) {
+        this.destino = destino;
+    }
+
+    /**
+     * Quantidade de bytes escritos até agora.
+     *
+     * @return posição atual
+     */
+    public long getPosicao() {
+        return posicao;
+    }
+
+    /**
+     * Escreve um byte.
+     *
+     * @param valor byte a escrever (apenas os 8 bits mais baixos são usados)
+     * @throws IOException se a escrita falhar
+     */
+    public void escreverByte(int valor) throws IOException {
+        destino.write(valor);
+        posicao++;
+    }
+
+    /**
+     * Escreve um int de 4 bytes, big-endian.
+     *
+     * @param valor valor a escrever
+     * @throws IOException se a escrita falhar
+     */
+    public void escreverInt(int valor) throws IOException {
+        for (int deslocamento = 24; deslocamento >= 0; deslocamento -= 8) {
+            destino.write(valor >>> deslocamento);
+        }
+        posicao += 4;
+    }
+
+    /**
+     * Escreve um long de 8 bytes, big-endian.
+     *
+     * @param valor valor a escrever
+     * @throws IOException se a escrita falhar
+     */
+    public void escreverLong(long valor) throws IOException {
+        escreverInt((int) (valor >>> 32));
+        escreverInt((int) valor);
+    }
+
+    /**
+     * Escreve um inteiro não negativo como varint.
+     *
+     * @param valor valor a escrever
+     * @throws IOException se a escrita falhar
+     */
+    public void escreverVarint(int valor) throws IOException {
+        while ((valor & ~0x7F) != 0) {
+            destino.write((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+            posicao++;
+        }
+        destino.write(valor);
+        posicao++;
+    }
+
+    /**
+     * Escreve um texto (pode ser null).
+     *
+     * @param texto texto a escrever
+     * @throws IOException se a escrita falhar
+     */
+    public void escreverTexto(String texto) throws IOException {
+        if (texto == null) {
+            escreverVarint(0);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        escreverVarint(bytes.length + 1);
+        destino.write(bytes);
+        posicao += bytes.length;
+    }
+
+    /**
+     * Calcula quantos bytes um varint ocupa.
+     *
+     * @param valor valor não negativo
+     * @return tamanho em bytes
+     */
+    public static int tamanhoVarint(int valor) {
+        int n = 1;
+        while ((valor & ~0x7F) != 0) {
+            valor >>>= 7;
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,74 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Motor "serializacao" (padrão): o estado fica todo em memória e é gravado por completo nos arquivos
+ * "usuarios.N.ser" e "comunidades.N.ser" ({@link Snapshot}) no encerramento. Nada é gravado entre a carga e o
+ * encerramento, então as operações não pagam nenhum custo de escrita, mas um crash perde tudo desde a última
+ * execução.
+ * <p>
+ * Journals deixados por uma execução anterior no motor "journal" são reproduzidos na abertura, pois as operações
+ * deles ainda não estão no snapshot, e apagados depois do próximo snapshot completo.
+ * </p>
+ */
+public class SerializacaoStore implements JackutStore {
+    private final Path arquivoJournal;
+    private final int residentes;
+
+    /**
+     * Geração de journal mais recente já refletida no estado carregado.
+     */
+    private long geracao;
+
+    /**
+     * Cria o motor.
+     *
+     * @param arquivoJournal caminho do journal ativo do motor "journal", lido se existir
+     * @param residentes     quantidade máxima de usuários não alterados mantidos em memória
+     */
+    public SerializacaoStore(Path arquivoJournal, int residentes) {
+        this.arquivoJournal = arquivoJournal;
+        this.residentes = residentes;
+    }
+
+    @Override
+    public Snapshot carregar() {
+        Snapshot base = Snapshot.ler(residentes);
+        geracao = base.getGeracao();
+        return base;
+    }
+
+    @Override
+    public void abrir(Estado estado, Reconstrutor reconstrutor) throws IOException {
+        geracao = JournalStore.reproduzirSelados(arquivoJournal, geracao, estado);
+        if (Files.exists(arquivoJournal)) {
+            Journal antigo = Journal.abrir(arquivoJournal, geracao, PoliticaFsync.NUNCA, 0, estado);
+            geracao = antigo.getGeracao();
+            antigo.fechar();
+        }
+    }
+
+    @Override
+    public void registrar(Operacao operacao, String... args) {
+    }
+
+    @Override
+    public void registrarTodos(Operacao operacao, List<String[]> argumentos) {
+    }
+
+    @Override
+    public void encerrar(Estado estado) throws IOException {
+        estado.exportar((usuarios, comunidades, ultimaSequencia) ->
+                Snapshot.gravar(usuarios, comunidades, ultimaSequencia, geracao));
+
+        // O snapshot completo já contém tudo que estava nos journals.
+        for (Path selado : JournalStore.selados(arquivoJournal, -1)) {
+            Files.delete(selado);
+        }
+        Files.deleteIfExists(arquivoJournal);
+    }
+}
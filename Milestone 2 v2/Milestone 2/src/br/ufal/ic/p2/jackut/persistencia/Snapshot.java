@@ -0,0 +1,486 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import br.ufal.ic.p2.jackut.Comunidade;
+import br.ufal.ic.p2.jackut.DicionarioLogins;
+import br.ufal.ic.p2.jackut.Usuario;
+import br.ufal.ic.p2.jackut.persistencia.legado.LeitorLegado;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot completo do sistema, guardado em um par de arquivos numerados "usuarios.N.ser" e "comunidades.N.ser".
+ * <p>
+ * Os arquivos usam um formato binário próprio e versionado (ver {@link UsuarioCodec} e {@link ComunidadeCodec}).
+ * O de comunidades usa a versão 3:
+ * </p>
+ * <pre>
+ * int "JKTB" | byte versão | byte tipo | long geração | long última sequência de mensagem | varint n |
+ * n registros | tabela de strings | long posição da tabela
+ * </pre>
+ * <p>
+ * A tabela de strings fica no final para que a gravação seja feita em uma única passada, sem manter os registros
+ * em memória. Na versão 1, sem os logs de mensagens das comunidades, não havia a última sequência. O de usuários
+ * usa o formato indexado (versão 2; 3 com os cursores de leitura; 4 com o índice reverso de referências), lido sob
+ * demanda por {@link UsuarioStore}; arquivos de usuários na versão 1 continuam sendo lidos por inteiro. Arquivos
+ * no formato antigo (serialização Java) continuam sendo lidos por {@link LeitorLegado} e são convertidos para o
+ * formato novo na próxima gravação; neles, a geração ausente vale 0.
+ * </p>
+ * <p>
+ * Cada gravação cria um par novo, com o número seguinte ao maior existente, em vez de substituir o anterior: o
+ * arquivo de usuários fica mapeado em memória por {@link UsuarioStore} enquanto o sistema está carregado, e no
+ * Windows um arquivo mapeado não pode ser substituído nem apagado. Os arquivos são gravados como temporários e
+ * renomeados (de forma atômica) depois de estarem completos no disco, primeiro o de usuários e por último o de
+ * comunidades, que marca o par como completo; {@link #ler(int)} carrega o maior par completo. Os pares anteriores
+ * são apagados quando possível; os que ainda estiverem mapeados ficam para a próxima gravação ou carga.
+ * </p>
+ * <p>
+ * Os arquivos "usuarios.ser" e "comunidades.ser", sem número, das versões anteriores continuam sendo lidos quando
+ * não há par numerado. Neles, os definitivos eram trocados na ordem comunidades, usuários; se um crash tiver
+ * acontecido entre as duas trocas, a troca pendente é completada antes de carregar.
+ * </p>
+ */
+public class Snapshot {
+    /**
+     * Arquivo de usuários sem número, das versões anteriores.
+     */
+    public static final Path USUARIOS = Paths.get("usuarios.ser");
+    /**
+     * Arquivo de comunidades sem número, das versões anteriores.
+     */
+    public static final Path COMUNIDADES = Paths.get("comunidades.ser");
+    private static final Path DIRETORIO = Paths.get("");
+    private static final String PREFIXO_USUARIOS = "usuarios.";
+    private static final String PREFIXO_COMUNIDADES = "comunidades.";
+    private static final String EXTENSAO = ".ser";
+    private static final String SUFIXO_TEMPORARIO = ".tmp";
+
+    private static final int MAGICO = 0x4A4B5442; // "JKTB"
+    private static final byte VERSAO_INICIAL = 1;
+    static final byte VERSAO_INDEXADA = 2;
+    static final byte VERSAO_LOGS = 3;
+    static final byte VERSAO_REFERENCIAS = 4;
+    static final byte TIPO_USUARIOS = 1;
+    static final byte TIPO_COMUNIDADES = 2;
+    static final int TAMANHO_CABECALHO = 14;
+
+    /**
+     * Dados do cabeçalho de um arquivo de comunidades.
+     */
+    private static final class CabecalhoComunidades {
+        final long geracao;
+        final long ultimaSequencia;
+
+        CabecalhoComunidades(long geracao, long ultimaSequencia) {
+            this.geracao = geracao;
+            this.ultimaSequencia = ultimaSequencia;
+        }
+    }
+
+    private final DicionarioLogins dicionario;
+    private final UsuarioStore usuarios;
+    private final Map<String, Comunidade> comunidades;
+    private final long ultimaSequencia;
+    private final long geracao;
+
+    Snapshot(DicionarioLogins dicionario, UsuarioStore usuarios, Map<String, Comunidade> comunidades,
+             long ultimaSequencia, long geracao) {
+        this.dicionario = dicionario;
+        this.usuarios = usuarios;
+        this.comunidades = comunidades;
+        this.ultimaSequencia = ultimaSequencia;
+        this.geracao = geracao;
+    }
+
+    /**
+     * Obtém o dicionário de logins com que usuários e comunidades foram lidos, a ser usado pelo sistema que os
+     * recebe.
+     *
+     * @return dicionário de logins
+     */
+    public DicionarioLogins getDicionario() {
+        return dicionario;
+    }
+
+    /**
+     * Obtém os usuários do snapshot.
+     *
+     * @return store de usuários, vazio se não houver snapshot
+     */
+    public UsuarioStore getUsuarios() {
+        return usuarios;
+    }
+
+    /**
+     * Obtém o mapa de comunidades do snapshot.
+     *
+     * @return mapa de comunidades, vazio se não houver snapshot
+     */
+    public Map<String, Comunidade> getComunidades() {
+        return comunidades;
+    }
+
+    /**
+     * Obtém o maior número de sequência já atribuído a uma mensagem de comunidade.
+     *
+     * @return última sequência, ou 0 se não houver snapshot (ou ele for anterior aos logs de mensagens)
+     */
+    public long getUltimaSequencia() {
+        return ultimaSequencia;
+    }
+
+    /**
+     * Obtém a geração do journal coberta pelo snapshot.
+     *
+     * @return geração, ou 0 se não houver snapshot
+     */
+    public long getGeracao() {
+        return geracao;
+    }
+
+    /**
+     * Carrega o último snapshot completo. Os usuários não são decodificados aqui, e sim sob demanda.
+     *
+     * @param residentes quantidade máxima de usuários não alterados mantidos em memória
+     * @return o snapshot lido; se algum arquivo não existir, os dados correspondentes vêm vazios
+     */
+    public static Snapshot ler(int residentes) {
+        DicionarioLogins dicionario = new DicionarioLogins();
+        UsuarioStore usuarios = UsuarioStore.vazio(residentes, dicionario);
+        Map<String, Comunidade> comunidades = new HashMap<>();
+        long ultimaSequencia = 0;
+        try {
+            long numero = ultimoCompleto(DIRETORIO);
+            if (numero == 0) {
+                recuperarTrocaInterrompida();
+            }
+            descartarAnteriores(DIRETORIO, numero);
+            Path arquivoUsuarios = numero == 0 ? USUARIOS : arquivoUsuarios(DIRETORIO, numero);
+            Path arquivoComunidades = numero == 0 ? COMUNIDADES : arquivoComunidades(DIRETORIO, numero);
+            if (Files.exists(arquivoUsuarios)) {
+                usuarios = lerUsuarios(mapear(arquivoUsuarios), residentes, dicionario);
+            }
+            if (Files.exists(arquivoComunidades)) {
+                ultimaSequencia = lerComunidades(arquivoComunidades, comunidades, dicionario).ultimaSequencia;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return new Snapshot(dicionario, usuarios, comunidades, ultimaSequencia, usuarios.getGeracao());
+    }
+
+    /**
+     * Grava um snapshot completo em um par novo de arquivos, que passa a valer de forma atômica no lugar do anterior.
+     *
+     * @param usuarios    store de usuários
+     * @param comunidades     mapa de comunidades
+     * @param ultimaSequencia maior número de sequência já atribuído a uma mensagem de comunidade
+     * @param geracao         geração do journal coberta por este snapshot
+     * @throws IOException se a gravação falhar; nesse caso o snapshot anterior continua valendo
+     */
+    public static void gravar(UsuarioStore usuarios, Map<String, Comunidade> comunidades, long ultimaSequencia,
+                              long geracao) throws IOException {
+        long numero = maiorNumero(DIRETORIO) + 1;
+        Path arquivoUsuarios = arquivoUsuarios(DIRETORIO, numero);
+        Path arquivoComunidades = arquivoComunidades(DIRETORIO, numero);
+        Path usuariosTmp = temporario(arquivoUsuarios);
+        Path comunidadesTmp = temporario(arquivoComunidades);
+        try {
+            usuarios.gravar(usuariosTmp, geracao);
+            gravarComunidades(comunidadesTmp, comunidades.values(), ultimaSequencia, geracao);
+
+            // Nenhum arquivo existente é substituído; o de comunidades completa o par
+            Files.move(usuariosTmp, arquivoUsuarios, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(comunidadesTmp, arquivoComunidades, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            apagarSePossivel(usuariosTmp);
+            apagarSePossivel(comunidadesTmp);
+            apagarSePossivel(arquivoUsuarios);
+            throw e;
+        }
+        descartarAnteriores(DIRETORIO, numero);
+    }
+
+    /**
+     * Obtém o arquivo de usuários de um par numerado.
+     *
+     * @param diretorio diretório dos arquivos do sistema
+     * @param numero    número do par
+     * @return caminho do arquivo
+     */
+    public static Path arquivoUsuarios(Path diretorio, long numero) {
+        return diretorio.resolve(PREFIXO_USUARIOS + numero + EXTENSAO);
+    }
+
+    /**
+     * Obtém o arquivo de comunidades de um par numerado.
+     *
+     * @param diretorio diretório dos arquivos do sistema
+     * @param numero    número do par
+     * @return caminho do arquivo
+     */
+    public static Path arquivoComunidades(Path diretorio, long numero) {
+        return diretorio.resolve(PREFIXO_COMUNIDADES + numero + EXTENSAO);
+    }
+
+    /**
+     * Verifica se um diretório já tem algum snapshot, numerado ou sem número.
+     *
+     * @param diretorio diretório dos arquivos do sistema
+     * @return true se houver algum arquivo de snapshot
+     * @throws IOException se o diretório não puder ser lido
+     */
+    public static boolean existe(Path diretorio) throws IOException {
+        return maiorNumero(diretorio) > 0 || Files.exists(diretorio.resolve(USUARIOS))
+                || Files.exists(diretorio.resolve(COMUNIDADES));
+    }
+
+    /**
+     * Encontra o maior par numerado completo, isto é, com o arquivo de comunidades presente.
+     *
+     * @return número do par, ou 0 se não houver nenhum
+     */
+    private static long ultimoCompleto(Path diretorio) throws IOException {
+        long ultimo = 0;
+        for (long numero : numeros(diretorio, PREFIXO_COMUNIDADES)) {
+            if (numero > ultimo && Files.exists(arquivoUsuarios(diretorio, numero))) {
+                ultimo = numero;
+            }
+        }
+        return ultimo;
+    }
+
+    private static long maiorNumero(Path diretorio) throws IOException {
+        long maior = 0;
+        for (long numero : numeros(diretorio, PREFIXO_USUARIOS)) {
+            maior = Math.max(maior, numero);
+        }
+        for (long numero : numeros(diretorio, PREFIXO_COMUNIDADES)) {
+            maior = Math.max(maior, numero);
+        }
+        return maior;
+    }
+
+    /**
+     * Lista os números dos arquivos "prefixo.N.ser" de um diretório. Temporários e nomes fora do padrão são
+     * ignorados.
+     */
+    private static List<Long> numeros(Path diretorio, String prefixo) throws IOException {
+        List<Long> numeros = new ArrayList<>();
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio.toAbsolutePath(),
+                prefixo + "*" + EXTENSAO)) {
+            for (Path arquivo : arquivos) {
+                String nome = arquivo.getFileName().toString();
+                try {
+                    numeros.add(Long.parseLong(nome.substring(prefixo.length(), nome.length() - EXTENSAO.length())));
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    // Não é um arquivo de snapshot numerado
+                }
+            }
+        }
+        return numeros;
+    }
+
+    /**
+     * Apaga os pares anteriores ao atual, os arquivos sem número (se o atual for numerado) e o que sobrou de
+     * gravações interrompidas. Arquivos que ainda estiverem mapeados e não puderem ser apagados ficam para a
+     * próxima vez.
+     *
+     * @param atual número do par em uso, ou 0 se for o sem número
+     */
+    private static void descartarAnteriores(Path diretorio, long atual) throws IOException {
+        for (String prefixo : new String[]{PREFIXO_USUARIOS, PREFIXO_COMUNIDADES}) {
+            for (long numero : numeros(diretorio, prefixo)) {
+                if (numero != atual) {
+                    apagarSePossivel(diretorio.resolve(prefixo + numero + EXTENSAO));
+                }
+            }
+            try (DirectoryStream<Path> temporarios = Files.newDirectoryStream(diretorio.toAbsolutePath(),
+                    prefixo + "*" + EXTENSAO + SUFIXO_TEMPORARIO)) {
+                for (Path temporario : temporarios) {
+                    apagarSePossivel(temporario);
+                }
+            }
+        }
+        if (atual > 0) {
+            apagarSePossivel(diretorio.resolve(USUARIOS));
+            apagarSePossivel(diretorio.resolve(COMUNIDADES));
+        }
+    }
+
+    private static void apagarSePossivel(Path arquivo) {
+        try {
+            Files.deleteIfExists(arquivo);
+        } catch (IOException e) {
+            // Provavelmente ainda mapeado; será apagado em outra ocasião
+        }
+    }
+
+    /**
+     * Formato sem número: se "comunidades.ser" já foi trocado mas "usuarios.ser" não, o temporário de usuários está completo
+     * (só trocamos depois de gravar os dois) e pode ser colocado no lugar. Temporários restantes são de
+     * gravações interrompidas e são descartados.
+     */
+    private static void recuperarTrocaInterrompida() {
+        Path usuariosTmp = temporario(USUARIOS);
+        try {
+            if (Files.exists(usuariosTmp) && Files.exists(COMUNIDADES)) {
+                DicionarioLogins descartavel = new DicionarioLogins();
+                long geracaoComunidades = lerComunidades(COMUNIDADES, new HashMap<>(), descartavel).geracao;
+                // Lidos sem mapeamento, que impediria a troca no Windows
+                long geracaoUsuarios = Files.exists(USUARIOS)
+                        ? lerUsuarios(lerInteiro(USUARIOS), 1, descartavel).getGeracao() : -1;
+                if (geracaoComunidades > geracaoUsuarios
+                        && lerUsuarios(lerInteiro(usuariosTmp), 1, descartavel).getGeracao() == geracaoComunidades) {
+                    Files.move(usuariosTmp, USUARIOS, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.deleteIfExists(usuariosTmp);
+            Files.deleteIfExists(temporario(COMUNIDADES));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Path temporario(Path arquivo) {
+        return arquivo.resolveSibling(arquivo.getFileName() + SUFIXO_TEMPORARIO);
+    }
+
+    /**
+     * Abre um arquivo de usuários. No formato indexado, apenas o cabeçalho e o rodapé são lidos;
+     * nos anteriores, o arquivo é lido por inteiro.
+     */
+    private static UsuarioStore lerUsuarios(ByteBuffer dados, int residentes, DicionarioLogins dicionario)
+            throws IOException {
+        Map<String, Usuario> usuarios = new HashMap<>();
+        if (dados.limit() >= 2 && LeitorLegado.ehFormatoLegado(dados.get(0), dados.get(1))) {
+            long geracao = LeitorLegado.lerUsuarios(new ByteArrayInputStream(copiar(dados)), usuarios, dicionario);
+            return UsuarioStore.emMemoria(usuarios, geracao, residentes, dicionario);
+        }
+        if (dados.limit() >= TAMANHO_CABECALHO && dados.get(4) != VERSAO_INICIAL) {
+            byte versao = validarCabecalho(dados, TIPO_USUARIOS, VERSAO_INDEXADA, VERSAO_LOGS, VERSAO_REFERENCIAS);
+            return UsuarioStore.mapeado(dados, versao, dados.getLong(6), residentes, dicionario);
+        }
+        TabelaStrings.Consulta tabela = TabelaStrings.consulta(lerTabela(dados, TIPO_USUARIOS, VERSAO_INICIAL));
+        EntradaBinaria entrada = new EntradaBinaria(dados.position(TAMANHO_CABECALHO));
+        int n = entrada.lerVarint();
+        for (int i = 0; i < n; i++) {
+            Usuario u = UsuarioCodec.ler(entrada, tabela, VERSAO_INICIAL, dicionario);
+            usuarios.put(u.getLogin(), u);
+        }
+        return UsuarioStore.emMemoria(usuarios, dados.getLong(6), residentes, dicionario);
+    }
+
+    /**
+     * Lê um arquivo de comunidades, no formato binário ou no antigo. O arquivo é lido por inteiro para a memória,
+     * sem mapeamento, para não ficar preso até a coleta do buffer.
+     *
+     * @return geração coberta pelo arquivo e última sequência de mensagem
+     */
+    private static CabecalhoComunidades lerComunidades(Path arquivo, Map<String, Comunidade> destino,
+                                                       DicionarioLogins dicionario) throws IOException {
+        ByteBuffer dados = lerInteiro(arquivo);
+        if (dados.limit() >= 2 && LeitorLegado.ehFormatoLegado(dados.get(0), dados.get(1))) {
+            long geracao = LeitorLegado.lerComunidades(new ByteArrayInputStream(copiar(dados)), destino, dicionario);
+            return new CabecalhoComunidades(geracao, 0);
+        }
+        TabelaStrings.Consulta tabela = TabelaStrings.consulta(lerTabela(dados, TIPO_COMUNIDADES, VERSAO_INICIAL, VERSAO_LOGS));
+        byte versao = dados.get(4);
+        EntradaBinaria entrada = new EntradaBinaria(dados.position(TAMANHO_CABECALHO));
+        long ultimaSequencia = versao >= VERSAO_LOGS ? entrada.lerLong() : 0;
+        int n = entrada.lerVarint();
+        for (int i = 0; i < n; i++) {
+            Comunidade c = ComunidadeCodec.ler(entrada, tabela, versao, dicionario);
+            destino.put(c.getNome(), c);
+        }
+        return new CabecalhoComunidades(dados.getLong(6), ultimaSequencia);
+    }
+
+    private static MappedByteBuffer mapear(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+    }
+
+    private static ByteBuffer lerInteiro(Path arquivo) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(arquivo));
+    }
+
+    private static byte[] copiar(ByteBuffer dados) {
+        byte[] bytes = new byte[dados.limit()];
+        dados.get(0, bytes);
+        return bytes;
+    }
+
+    /**
+     * Valida o cabeçalho e lê a tabela de strings do final do arquivo.
+     */
+    private static String[] lerTabela(ByteBuffer dados, byte tipo, byte... versoes) throws IOException {
+        if (dados.limit() < TAMANHO_CABECALHO + 8) {
+            throw new IOException("Arquivo de snapshot inválido.");
+        }
+        validarCabecalho(dados, tipo, versoes);
+        long posicaoTabela = dados.getLong(dados.limit() - 8);
+        if (posicaoTabela < TAMANHO_CABECALHO || posicaoTabela > dados.limit() - 8) {
+            throw new IOException("Arquivo de snapshot inválido.");
+        }
+        dados.position((int) posicaoTabela);
+        return TabelaStrings.ler(new EntradaBinaria(dados));
+    }
+
+    /**
+     * Valida o cabeçalho de um arquivo.
+     *
+     * @return versão do arquivo, uma das aceitas
+     */
+    private static byte validarCabecalho(ByteBuffer dados, byte tipo, byte... versoes) throws IOException {
+        if (dados.limit() < TAMANHO_CABECALHO || dados.getInt(0) != MAGICO) {
+            throw new IOException("Arquivo de snapshot inválido.");
+        }
+        if (dados.get(5) != tipo) {
+            throw new IOException("Tipo de snapshot inesperado.");
+        }
+        byte versao = dados.get(4);
+        for (byte aceita : versoes) {
+            if (versao == aceita) {
+                return versao;
+            }
+        }
+        throw new IOException("Versão de snapshot não suportada: " + versao);
+    }
+
+    /**
+     * Escreve o cabeçalho comum a todos os arquivos de snapshot.
+     */
+    static void escreverCabecalho(SaidaBinaria saida, byte versao, byte tipo, long geracao) throws IOException {
+        saida.escreverInt(MAGICO);
+        saida.escreverByte(versao);
+        saida.escreverByte(tipo);
+        saida.escreverLong(geracao);
+    }
+
+    private static void gravarComunidades(Path arquivo, Collection<Comunidade> comunidades, long ultimaSequencia,
+                                          long geracao) throws IOException {
+        try (GravadorComunidades gravador = new GravadorComunidades(arquivo, comunidades.size(), ultimaSequencia,
+                geracao)) {
+            for (Comunidade comunidade : comunidades) {
+                gravador.adicionar(comunidade);
+            }
+            gravador.concluir();
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import br.ufal.ic.p2.jackut.Comunidade;
+import br.ufal.ic.p2.jackut.DicionarioLogins;
+import br.ufal.ic.p2.jackut.Usuario;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Motor "sql": guarda o estado em um banco de dados acessado por JDBC, normalmente um banco embutido em um arquivo
+ * local (ex.: "jdbc:h2:./jackut", o padrão, ou "jdbc:sqlite:jackut.db"), cujo driver precisa estar no classpath.
+ * <p>
+ * As tabelas são criadas na primeira abertura:
+ * </p>
+ * <pre>
+ * jackut_usuarios    (login, dados)             um usuário por linha, no formato de {@link UsuarioCodec}
+ * jackut_comunidades (nome, dados)              uma comunidade por linha, no formato de {@link ComunidadeCodec}
+ * jackut_operacoes   (id, operacao, argumentos) operações posteriores ao estado das duas tabelas acima
+ * jackut_estado      (chave, valor)             versão do formato e última sequência de mensagem
+ * </pre>
+ * <p>
+ * Cada linha de usuário ou comunidade leva a sua própria tabela de strings na frente do registro. Cada operação
+ * é inserida em jackut_operacoes em uma transação (uma só para um lote), e a durabilidade fica a cargo do banco.
+ * No encerramento, e em segundo plano quando as operações guardadas passam de um tamanho mínimo, o estado é
+ * regravado nas tabelas e as operações cobertas por ele são apagadas, na mesma transação. A compactação em
+ * segundo plano reconstrói o estado à parte, mas novos registros esperam por ela.
+ * </p>
+ * <p>
+ * Todos os usuários são carregados em memória na abertura.
+ * </p>
+ */
+public class SqlStore implements JackutStore {
+    private static final int VERSAO = Snapshot.VERSAO_REFERENCIAS;
+    private static final int LOTE = 1000;
+
+    private final String url;
+    private final int residentes;
+    private final long intervaloCompactacaoMs;
+    private final long tamanhoMinimoCompactacao;
+
+    private Connection conexao;
+    private PreparedStatement inserirOperacao;
+    private long ultimaOperacao;
+    /**
+     * Bytes de argumentos guardados em jackut_operacoes desde a última compactação.
+     */
+    private long pendentes;
+    private AgendadorSnapshots agendador;
+    private Reconstrutor reconstrutor;
+
+    /**
+     * Trecho executado dentro de uma transação.
+     */
+    @FunctionalInterface
+    private interface Acao {
+        void executar() throws SQLException, IOException;
+    }
+
+    /**
+     * Registro gravado com uma tabela de strings própria.
+     */
+    @FunctionalInterface
+    private interface Registro {
+        void escrever(SaidaBinaria saida, TabelaStrings tabela) throws IOException;
+    }
+
+    /**
+     * Inserção de linhas (chave, dados) em lotes de {@value #LOTE}.
+     */
+    private static final class Insercao implements AutoCloseable {
+        private final PreparedStatement comando;
+        private int pendentes;
+
+        Insercao(Connection conexao, String tabela, String chave) throws SQLException {
+            comando = conexao.prepareStatement("INSERT INTO " + tabela + " (" + chave + ", dados) VALUES (?, ?)");
+        }
+
+        void inserir(String chave, byte[] dados) throws IOException {
+            try {
+                comando.setString(1, chave);
+                comando.setBytes(2, dados);
+                comando.addBatch();
+                if (++pendentes == LOTE) {
+                    concluir();
+                }
+            } catch (SQLException e) {
+                throw new IOException("Não foi possível inserir " + chave + ".", e);
+            }
+        }
+
+        void concluir() throws SQLException {
+            comando.executeBatch();
+            pendentes = 0;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            comando.close();
+        }
+    }
+
+    /**
+     * Cria o motor.
+     *
+     * @param url                      URL JDBC do banco
+     * @param residentes               quantidade máxima de usuários não alterados mantidos em memória
+     * @param intervaloCompactacaoMs   intervalo entre verificações da compactação em segundo plano; 0 desativa
+     * @param tamanhoMinimoCompactacao tamanho mínimo das operações guardadas, em bytes, para compactar
+     */
+    public SqlStore(String url, int residentes, long intervaloCompactacaoMs, long tamanhoMinimoCompactacao) {
+        this.url = url;
+        this.residentes = residentes;
+        this.intervaloCompactacaoMs = intervaloCompactacaoMs;
+        this.tamanhoMinimoCompactacao = tamanhoMinimoCompactacao;
+    }
+
+    /**
+     * Verifica se algum driver JDBC carregado aceita a URL.
+     *
+     * @param url URL JDBC do banco
+     * @return true se houver driver
+     */
+    static boolean driverDisponivel(String url) {
+        try {
+            DriverManager.getDriver(url);
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized Snapshot carregar() throws IOException {
+        try {
+            conexao = DriverManager.getConnection(url);
+            criarTabela("jackut_usuarios", "login VARCHAR(1024) PRIMARY KEY, dados BLOB NOT NULL");
+            criarTabela("jackut_comunidades", "nome VARCHAR(1024) PRIMARY KEY, dados BLOB NOT NULL");
+            criarTabela("jackut_operacoes", "id BIGINT PRIMARY KEY, operacao SMALLINT NOT NULL, argumentos BLOB NOT NULL");
+            criarTabela("jackut_estado", "chave VARCHAR(64) PRIMARY KEY, valor BIGINT NOT NULL");
+            return lerEstado();
+        } catch (SQLException e) {
+            throw new IOException("Não foi possível carregar o banco de dados " + url + ".", e);
+        }
+    }
+
+    @Override
+    public synchronized void abrir(Estado estado, Reconstrutor reconstrutor) throws IOException {
+        this.reconstrutor = reconstrutor;
+        try (Statement comando = conexao.createStatement();
+             ResultSet maior = comando.executeQuery("SELECT MAX(id) FROM jackut_operacoes")) {
+            ultimaOperacao = maior.next() ? maior.getLong(1) : 0;
+            pendentes = reproduzir(estado, ultimaOperacao);
+            inserirOperacao = conexao.prepareStatement(
+                    "INSERT INTO jackut_operacoes (id, operacao, argumentos) VALUES (?, ?, ?)");
+        } catch (SQLException e) {
+            throw new IOException("Não foi possível ler as operações do banco de dados.", e);
+        }
+        if (intervaloCompactacaoMs > 0) {
+            agendador = new AgendadorSnapshots(this::compactar, intervaloCompactacaoMs);
+        }
+    }
+
+    @Override
+    public synchronized void registrar(Operacao operacao, String... args) throws IOException {
+        byte[] argumentos = codificar(operacao, args);
+        try {
+            inserir(operacao, argumentos);
+            inserirOperacao.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Não foi possível registrar a operação no banco de dados.", e);
+        }
+    }
+
+    @Override
+    public synchronized void registrarTodos(Operacao operacao, List<String[]> argumentos) throws IOException {
+        if (argumentos.isEmpty()) {
+            return;
+        }
+        emTransacao(() -> {
+            int n = 0;
+            for (String[] args : argumentos) {
+                inserir(operacao, codificar(operacao, args));
+                inserirOperacao.addBatch();
+                if (++n % LOTE == 0) {
+                    inserirOperacao.executeBatch();
+                }
+            }
+            inserirOperacao.executeBatch();
+        });
+    }
+
+    /**
+     * Grava o estado final nas tabelas, apaga as operações e fecha a conexão.
+     *
+     * @param estado estado final do sistema
+     * @throws IOException se a gravação falhar; as operações continuam no banco para a próxima abertura
+     */
+    @Override
+    public void encerrar(Estado estado) throws IOException {
+        if (agendador != null) {
+            agendador.parar();
+            agendador = null;
+        }
+        try {
+            // O estado trava o sistema antes de chamar gravar, na mesma ordem (sistema, motor) dos registros.
+            estado.exportar(this::gravar);
+        } finally {
+            fechar();
+        }
+    }
+
+    /**
+     * Regrava o estado a partir das tabelas e das operações, se as operações já passaram do tamanho mínimo.
+     */
+    private synchronized void compactar() {
+        if (conexao == null || pendentes < tamanhoMinimoCompactacao) {
+            return;
+        }
+        try {
+            Estado sombra = reconstrutor.criar(lerEstado());
+            reproduzir(sombra, ultimaOperacao);
+            sombra.exportar(this::gravar);
+        } catch (IOException | SQLException e) {
+            e.printStackTrace();
+            System.err.println("Ocorreu um erro ao compactar o banco de dados.");
+        }
+    }
+
+    /**
+     * Substitui o estado guardado nas tabelas e apaga as operações registradas até agora, em uma só transação.
+     */
+    private synchronized void gravar(UsuarioStore usuarios, Map<String, Comunidade> comunidades,
+                                     long ultimaSequencia) throws IOException {
+        if (conexao == null) {
+            throw new IOException("Banco de dados fechado.");
+        }
+        emTransacao(() -> {
+            try (Statement comando = conexao.createStatement()) {
+                comando.executeUpdate("DELETE FROM jackut_usuarios");
+                comando.executeUpdate("DELETE FROM jackut_comunidades");
+                comando.executeUpdate("DELETE FROM jackut_estado");
+                comando.executeUpdate("DELETE FROM jackut_operacoes WHERE id <= " + ultimaOperacao);
+            }
+            try (Insercao insercao = new Insercao(conexao, "jackut_usuarios", "login")) {
+                usuarios.paraCada(u -> insercao.inserir(u.getLogin(),
+                        codificar((saida, tabela) -> UsuarioCodec.escrever(saida, u, tabela))));
+                insercao.concluir();
+            }
+            try (Insercao insercao = new Insercao(conexao, "jackut_comunidades", "nome")) {
+                for (Comunidade c : comunidades.values()) {
+                    insercao.inserir(c.getNome(), codificar((saida, tabela) -> ComunidadeCodec.escrever(saida, c, tabela)));
+                }
+                insercao.concluir();
+            }
+            try (PreparedStatement comando = conexao.prepareStatement(
+                    "INSERT INTO jackut_estado (chave, valor) VALUES (?, ?)")) {
+                comando.setString(1, "versao");
+                comando.setLong(2, VERSAO);
+                comando.executeUpdate();
+                comando.setString(1, "ultimaSequencia");
+                comando.setLong(2, ultimaSequencia);
+                comando.executeUpdate();
+            }
+        });
+        pendentes = 0;
+    }
+
+    /**
+     * Lê o estado guardado nas tabelas, sem as operações.
+     */
+    private Snapshot lerEstado() throws SQLException, IOException {
+        DicionarioLogins dicionario = new DicionarioLogins();
+        Map<String, Usuario> usuarios = new HashMap<>();
+        Map<String, Comunidade> comunidades = new HashMap<>();
+        long ultimaSequencia = 0;
+        try (Statement comando = conexao.createStatement()) {
+            try (ResultSet linhas = comando.executeQuery("SELECT chave, valor FROM jackut_estado")) {
+                while (linhas.next()) {
+                    if ("versao".equals(linhas.getString(1)) && linhas.getLong(2) != VERSAO) {
+                        throw new IOException("Versão do banco de dados não suportada: " + linhas.getLong(2));
+                    }
+                    if ("ultimaSequencia".equals(linhas.getString(1))) {
+                        ultimaSequencia = linhas.getLong(2);
+                    }
+                }
+            }
+            try (ResultSet linhas = comando.executeQuery("SELECT dados FROM jackut_usuarios")) {
+                while (linhas.next()) {
+                    EntradaBinaria entrada = new EntradaBinaria(ByteBuffer.wrap(linhas.getBytes(1)));
+                    TabelaStrings.Consulta tabela = TabelaStrings.consulta(TabelaStrings.ler(entrada));
+                    Usuario u = UsuarioCodec.ler(entrada, tabela, VERSAO, dicionario);
+                    usuarios.put(u.getLogin(), u);
+                }
+            }
+            try (ResultSet linhas = comando.executeQuery("SELECT dados FROM jackut_comunidades")) {
+                while (linhas.next()) {
+                    EntradaBinaria entrada = new EntradaBinaria(ByteBuffer.wrap(linhas.getBytes(1)));
+                    TabelaStrings.Consulta tabela = TabelaStrings.consulta(TabelaStrings.ler(entrada));
+                    Comunidade c = ComunidadeCodec.ler(entrada, tabela, VERSAO, dicionario);
+                    comunidades.put(c.getNome(), c);
+                }
+            }
+        }
+        return new Snapshot(dicionario, UsuarioStore.emMemoria(usuarios, 0, residentes, dicionario), comunidades,
+                ultimaSequencia, 0);
+    }
+
+    /**
+     * Reproduz as operações guardadas, em ordem, até a informada.
+     *
+     * @return tamanho dos argumentos reproduzidos, em bytes
+     */
+    private long reproduzir(Journal.Consumidor consumidor, long ate) throws SQLException, IOException {
+        long tamanho = 0;
+        try (PreparedStatement comando = conexao.prepareStatement(
+                "SELECT operacao, argumentos FROM jackut_operacoes WHERE id <= ? ORDER BY id")) {
+            comando.setLong(1, ate);
+            try (ResultSet linhas = comando.executeQuery()) {
+                while (linhas.next()) {
+                    Operacao operacao = Operacao.porCodigo((byte) linhas.getInt(1));
+                    if (operacao == null) {
+                        throw new IOException("Operação desconhecida no banco de dados: " + linhas.getInt(1));
+                    }
+                    byte[] dados = linhas.getBytes(2);
+                    EntradaBinaria entrada = new EntradaBinaria(ByteBuffer.wrap(dados));
+                    String[] args = new String[operacao.getAridade()];
+                    for (int i = 0; i < args.length; i++) {
+                        args[i] = entrada.lerTexto();
+                    }
+                    consumidor.aplicar(operacao, args);
+                    tamanho += dados.length;
+                }
+            }
+        }
+        return tamanho;
+    }
+
+    private void inserir(Operacao operacao, byte[] argumentos) throws SQLException {
+        if (inserirOperacao == null) {
+            throw new SQLException("Banco de dados fechado.");
+        }
+        inserirOperacao.setLong(1, ++ultimaOperacao);
+        inserirOperacao.setInt(2, operacao.getCodigo());
+        inserirOperacao.setBytes(3, argumentos);
+        pendentes += argumentos.length;
+    }
+
+    private void emTransacao(Acao acao) throws IOException {
+        try {
+            conexao.setAutoCommit(false);
+            try {
+                acao.executar();
+                conexao.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                conexao.rollback();
+                throw e;
+            } finally {
+                conexao.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Erro no banco de dados " + url + ".", e);
+        }
+    }
+
+    private void criarTabela(String nome, String colunas) throws SQLException {
+        DatabaseMetaData metadados = conexao.getMetaData();
+        // Alguns bancos guardam os nomes sem aspas em maiúsculas
+        for (String candidato : new String[]{nome, nome.toUpperCase()}) {
+            try (ResultSet tabelas = metadados.getTables(null, null, candidato, null)) {
+                if (tabelas.next()) {
+                    return;
+                }
+            }
+        }
+        try (Statement comando = conexao.createStatement()) {
+            comando.executeUpdate("CREATE TABLE " + nome + " (" + colunas + ")");
+        }
+    }
+
+    private synchronized void fechar() throws IOException {
+        if (conexao == null) {
+            return;
+        }
+        try {
+            if (inserirOperacao != null) {
+                inserirOperacao.close();
+            }
+            conexao.close();
+        } catch (SQLException e) {
+            throw new IOException("Não foi possível fechar o banco de dados.", e);
+        } finally {
+            inserirOperacao = null;
+            conexao = null;
+        }
+    }
+
+    private static byte[] codificar(Operacao operacao, String[] args) throws IOException {
+        if (args.length != operacao.getAridade()) {
+            throw new IllegalArgumentException("Número de argumentos inválido para " + operacao + ".");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        SaidaBinaria saida = new SaidaBinaria(bytes);
+        for (String arg : args) {
+            saida.escreverTexto(arg);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] codificar(Registro registro) throws IOException {
+        ByteArrayOutputStream dados = new ByteArrayOutputStream(256);
+        TabelaStrings tabela = new TabelaStrings();
+        registro.escrever(new SaidaBinaria(dados), tabela);
+        ByteArrayOutputStream linha = new ByteArrayOutputStream(dados.size() + 16 * tabela.tamanho());
+        tabela.escrever(new SaidaBinaria(linha));
+        dados.writeTo(linha);
+        return linha.toByteArray();
+    }
+}
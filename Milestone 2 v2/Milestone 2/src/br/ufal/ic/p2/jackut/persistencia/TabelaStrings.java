@@ -0,0 +1,141 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tabela de strings de um arquivo de snapshot.
+ * <p>
+ * Logins e nomes de comunidade aparecem muitas vezes (relacionamentos, membros, remetentes). Cada um é gravado
+ * uma única vez na tabela, e os registros guardam apenas o índice dele como varint.
+ * </p>
+ */
+public class TabelaStrings {
+    /**
+     * Acesso de leitura às strings de uma tabela já gravada, por índice.
+     */
+    public interface Consulta {
+        /**
+         * Obtém a string de um índice.
+         *
+         * @param indice índice lido de um registro
+         * @return string correspondente
+         * @throws IOException se o índice for inválido ou a string não puder ser lida
+         */
+        String string(int indice) throws IOException;
+    }
+
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Obtém o índice de uma string, incluindo-a na tabela se ainda não estiver lá.
+     *
+     * @param s string a indexar (não nula)
+     * @return índice da string
+     */
+    public int indice(String s) {
+        Integer i = indices.get(s);
+        if (i == null) {
+            i = strings.size();
+            indices.put(s, i);
+            strings.add(s);
+        }
+        return i;
+    }
+
+    /**
+     * Escreve o índice de uma string como varint.
+     *
+     * @param saida destino
+     * @param s     string referenciada
+     * @throws IOException se a escrita falhar
+     */
+    public void escreverReferencia(SaidaBinaria saida, String s) throws IOException {
+        saida.escreverVarint(indice(s));
+    }
+
+    /**
+     * Grava a tabela completa.
+     *
+     * @param saida destino
+     * @throws IOException se a escrita falhar
+     */
+    public void escrever(SaidaBinaria saida) throws IOException {
+        saida.escreverVarint(strings.size());
+        for (String s : strings) {
+            saida.escreverTexto(s);
+        }
+    }
+
+    /**
+     * Grava as strings da tabela sem a quantidade na frente, devolvendo a posição de cada uma, para que
+     * possam ser lidas individualmente sem carregar a tabela inteira.
+     *
+     * @param saida destino
+     * @return posição de cada string, na ordem dos índices
+     * @throws IOException se a escrita falhar
+     */
+    public long[] escreverComPosicoes(SaidaBinaria saida) throws IOException {
+        long[] posicoes = new long[strings.size()];
+        for (int i = 0; i < posicoes.length; i++) {
+            posicoes[i] = saida.getPosicao();
+            saida.escreverTexto(strings.get(i));
+        }
+        return posicoes;
+    }
+
+    /**
+     * Quantidade de strings na tabela.
+     *
+     * @return tamanho da tabela
+     */
+    public int tamanho() {
+        return strings.size();
+    }
+
+    /**
+     * Lê uma tabela gravada por {@link #escrever(SaidaBinaria)}.
+     *
+     * @param entrada origem
+     * @return as strings, na ordem dos índices
+     * @throws IOException se os dados estiverem incompletos
+     */
+    public static String[] ler(EntradaBinaria entrada) throws IOException {
+        String[] tabela = new String[entrada.lerVarint()];
+        for (int i = 0; i < tabela.length; i++) {
+            tabela[i] = entrada.lerTexto();
+        }
+        return tabela;
+    }
+
+    /**
+     * Cria uma consulta sobre uma tabela lida inteira por {@link #ler(EntradaBinaria)}.
+     *
+     * @param tabela strings lidas
+     * @return consulta por índice
+     */
+    public static Consulta consulta(String[] tabela) {
+        return i -> {
+            if (i < 0 || i >= tabela.length) {
+                throw new IOException("Referência inválida à tabela de strings.");
+            }
+            return tabela[i];
+        };
+    }
+
+    /**
+     * Lê um índice e devolve a string correspondente.
+     *
+     * @param entrada origem
+     * @param tabela  tabela do arquivo
+     * @return string referenciada
+     * @throws IOException se o índice for inválido
+     */
+    public static String lerReferencia(EntradaBinaria entrada, Consulta tabela) throws IOException {
+        return tabela.string(entrada.lerVarint());
+    }
+}
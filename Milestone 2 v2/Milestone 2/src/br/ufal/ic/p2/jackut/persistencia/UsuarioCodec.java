@@ -0,0 +1,127 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import br.ufal.ic.p2.jackut.Comunicado;
+import br.ufal.ic.p2.jackut.DicionarioLogins;
+import br.ufal.ic.p2.jackut.Relacionamentos.TipoRelacionamento;
+import br.ufal.ic.p2.jackut.Usuario;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Codec binário de {@link Usuario}.
+ * <pre>
+ * login (ref) | nome | senha | atributos: n, (chave, valor)* | recados | mensagens |
+ * comunidades (refs) | destinatários (refs) | convites | amigos | ídolos | fãs | paqueras | inimigos |
+ * cursores: n, (comunidade (ref), long posição)* | referenciado por (refs)
+ * </pre>
+ * <p>
+ * Os cursores, e a sequência de cada mensagem, existem a partir da versão 3 do snapshot; o índice reverso
+ * ({@link Usuario#getReferenciadoPor()}), a partir da 4. Em registros anteriores, ele é reconstruído a partir
+ * dos relacionamentos do usuário.
+ * </p>
+ */
+public final class UsuarioCodec {
+
+    private UsuarioCodec() {
+    }
+
+    /**
+     * Grava um usuário.
+     *
+     * @param saida   destino
+     * @param usuario usuário a gravar
+     * @param tabela  tabela de strings do arquivo
+     * @throws IOException se a escrita falhar
+     */
+    public static void escrever(SaidaBinaria saida, Usuario usuario, TabelaStrings tabela) throws IOException {
+        tabela.escreverReferencia(saida, usuario.getLogin());
+        saida.escreverTexto(usuario.getNome());
+        saida.escreverTexto(usuario.getSenha());
+
+        Map<String, String> atributos = usuario.getAtributosMap();
+        saida.escreverVarint(atributos.size());
+        for (Map.Entry<String, String> atributo : atributos.entrySet()) {
+            saida.escreverTexto(atributo.getKey());
+            saida.escreverTexto(atributo.getValue());
+        }
+
+        ComunicadoCodec.escreverFila(saida, usuario.getRecados(), tabela);
+        ComunicadoCodec.escreverFilaComSequencia(saida, usuario.getMensagens(), tabela);
+        RelacionamentoCodec.escrever(saida, usuario.getComunidades(), tabela);
+        RelacionamentoCodec.escrever(saida, usuario.getDestinatarios(), tabela);
+
+        RelacionamentoCodec.escrever(saida, usuario.getConvites(), tabela);
+        RelacionamentoCodec.escrever(saida, usuario.getAmigos(), tabela);
+        RelacionamentoCodec.escrever(saida, usuario.getIdolos(), tabela);
+        RelacionamentoCodec.escrever(saida, usuario.getFas(), tabela);
+        RelacionamentoCodec.escrever(saida, usuario.getPaqueras(), tabela);
+        RelacionamentoCodec.escrever(saida, usuario.getInimigos(), tabela);
+
+        Map<String, Long> cursores = usuario.getCursores();
+        saida.escreverVarint(cursores.size());
+        for (Map.Entry<String, Long> cursor : cursores.entrySet()) {
+            tabela.escreverReferencia(saida, cursor.getKey());
+            saida.escreverLong(cursor.getValue());
+        }
+        RelacionamentoCodec.escrever(saida, usuario.getReferenciadoPor(), tabela);
+    }
+
+    /**
+     * Lê um usuário.
+     *
+     * @param entrada origem
+     * @param tabela  tabela de strings do arquivo
+     * @param versao  versão do snapshot de que o registro faz parte
+     * @param dicionario dicionário de logins do store que vai guardar o usuário
+     * @return usuário lido
+     * @throws IOException se os dados estiverem incompletos
+     */
+    public static Usuario ler(EntradaBinaria entrada, TabelaStrings.Consulta tabela, int versao,
+                              DicionarioLogins dicionario) throws IOException {
+        boolean comLogs = versao >= Snapshot.VERSAO_LOGS;
+        String login = TabelaStrings.lerReferencia(entrada, tabela);
+        String nome = entrada.lerTexto();
+        String senha = entrada.lerTexto();
+        Usuario usuario = new Usuario(login, senha, nome, dicionario);
+
+        int atributos = entrada.lerVarint();
+        for (int i = 0; i < atributos; i++) {
+            usuario.setAtributo(entrada.lerTexto(), entrada.lerTexto());
+        }
+
+        int recados = entrada.lerVarint();
+        for (int i = 0; i < recados; i++) {
+            Comunicado c = ComunicadoCodec.ler(entrada, tabela, dicionario);
+            usuario.adicionarRecado(c.getMensagem(), c.getRemetente());
+        }
+        int mensagens = entrada.lerVarint();
+        for (int i = 0; i < mensagens; i++) {
+            usuario.receberMensagem(comLogs ? ComunicadoCodec.lerComSequencia(entrada, tabela, dicionario)
+                    : ComunicadoCodec.ler(entrada, tabela, dicionario));
+        }
+        RelacionamentoCodec.ler(entrada, tabela, usuario::adicionarComunidade);
+        RelacionamentoCodec.ler(entrada, tabela, usuario::adicionarDestinatario);
+
+        RelacionamentoCodec.ler(entrada, tabela, l -> usuario.restaurarRelacionamento(TipoRelacionamento.CONVITES, l));
+        RelacionamentoCodec.ler(entrada, tabela, l -> usuario.restaurarRelacionamento(TipoRelacionamento.AMIGOS, l));
+        RelacionamentoCodec.ler(entrada, tabela, l -> usuario.restaurarRelacionamento(TipoRelacionamento.IDOLOS, l));
+        RelacionamentoCodec.ler(entrada, tabela, l -> usuario.restaurarRelacionamento(TipoRelacionamento.FAS, l));
+        RelacionamentoCodec.ler(entrada, tabela, l -> usuario.restaurarRelacionamento(TipoRelacionamento.PAQUERAS, l));
+        RelacionamentoCodec.ler(entrada, tabela, l -> usuario.restaurarRelacionamento(TipoRelacionamento.INIMIGOS, l));
+
+        if (comLogs) {
+            int cursores = entrada.lerVarint();
+            for (int i = 0; i < cursores; i++) {
+                String comunidade = TabelaStrings.lerReferencia(entrada, tabela);
+                usuario.setCursor(comunidade, entrada.lerLong());
+            }
+        }
+        if (versao >= Snapshot.VERSAO_REFERENCIAS) {
+            RelacionamentoCodec.ler(entrada, tabela, usuario::adicionarReferenciaDe);
+        } else {
+            usuario.reconstruirReferencias();
+        }
+        return usuario;
+    }
+}
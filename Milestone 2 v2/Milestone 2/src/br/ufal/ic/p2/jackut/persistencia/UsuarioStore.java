@@ -0,0 +1,480 @@
+package br.ufal.ic.p2.jackut.persistencia;
+
+import br.ufal.ic.p2.jackut.DicionarioLogins;
+import br.ufal.ic.p2.jackut.Usuario;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Armazena os usuários do sistema, lendo-os sob demanda de um arquivo de usuários do {@link Snapshot} mapeado em memória.
+ * <p>
+ * Na abertura, apenas o cabeçalho e o final do arquivo são lidos, então o tempo de inicialização não depende
+ * da quantidade de dados. Um usuário só é decodificado na primeira vez que é acessado, localizado por um
+ * índice gravado no próprio arquivo (tabela hash de login para posição do registro).
+ * </p>
+ * <p>
+ * Usuários lidos e não alterados ficam em um cache LRU de tamanho limitado e podem ser descartados, pois
+ * continuam disponíveis no arquivo. Usuários alterados ({@link Usuario#isModificado()}) ou criados depois da
+ * leitura nunca são descartados: ficam em memória até o próximo snapshot. Como a verificação só acontece
+ * quando o usuário sai do cache, usuários em uso por alguma operação (ver {@link #setEmUso(Predicate)})
+ * nunca são descartados; sem esse predicado, quem obtém um usuário deve alterá-lo antes de obter muitos outros.
+ * </p>
+ * <p>
+ * Os métodos são thread-safe. Usuários alterados são consultados sem bloqueio; os demais acessos são serializados.
+ * </p>
+ * <p>
+ * Formato do arquivo (versões 2 a 4 do snapshot de usuários; as posteriores à 2 apenas acrescentam campos aos
+ * registros, e a gravada é a 4):
+ * </p>
+ * <pre>
+ * cabeçalho | registros ({@link UsuarioCodec}) | strings | int posição de cada string |
+ * índice: n posições de (int hash do login, int índice do login + 1, int posição do registro) |
+ * int quantidade de usuários | int posição das posições | int posição do índice | int posições no índice
+ * </pre>
+ */
+public class UsuarioStore {
+    private static final int TAMANHO_RODAPE = 16;
+    private static final int TAMANHO_POSICAO_INDICE = 12;
+
+    private final int capacidade;
+    private final long geracao;
+
+    /**
+     * IDs dos logins guardados nos relacionamentos dos usuários deste store.
+     */
+    private final DicionarioLogins dicionario;
+
+    /**
+     * Arquivo mapeado, ou null se não houver (ou depois de {@link #limpar()}).
+     */
+    private Base base;
+
+    /**
+     * Usuários alterados ou criados depois da leitura; nunca são descartados.
+     */
+    private final Map<String, Usuario> alterados = new ConcurrentHashMap<>();
+
+    /**
+     * Usuários lidos do arquivo e ainda não alterados, do menos para o mais recentemente usado.
+     */
+    private final LinkedHashMap<String, Usuario> lidos = new LinkedHashMap<>();
+
+    /**
+     * Logins presentes no arquivo mas removidos depois da leitura.
+     */
+    private final Set<String> removidos = new HashSet<>();
+
+    private volatile Predicate<String> emUso = login -> false;
+
+    private UsuarioStore(Base base, long geracao, int capacidade, DicionarioLogins dicionario) {
+        this.base = base;
+        this.geracao = geracao;
+        this.capacidade = capacidade;
+        this.dicionario = dicionario;
+    }
+
+    /**
+     * Cria um store vazio, sem arquivo.
+     *
+     * @param capacidade quantidade máxima de usuários não alterados mantidos em memória
+     * @param dicionario dicionário de logins do sistema
+     * @return store vazio
+     */
+    public static UsuarioStore vazio(int capacidade, DicionarioLogins dicionario) {
+        return new UsuarioStore(null, 0, capacidade, dicionario);
+    }
+
+    /**
+     * Cria um store com usuários já carregados (formatos antigos, lidos por inteiro). Todos são
+     * tratados como alterados, para que o próximo snapshot os grave no formato indexado.
+     *
+     * @param usuarios   usuários carregados
+     * @param geracao    geração coberta pelos dados
+     * @param capacidade quantidade máxima de usuários não alterados mantidos em memória
+     * @param dicionario dicionário com que os usuários foram criados
+     * @return store com os usuários
+     */
+    public static UsuarioStore emMemoria(Map<String, Usuario> usuarios, long geracao, int capacidade,
+                                         DicionarioLogins dicionario) {
+        UsuarioStore store = new UsuarioStore(null, geracao, capacidade, dicionario);
+        store.alterados.putAll(usuarios);
+        return store;
+    }
+
+    /**
+     * Cria um store sobre um arquivo indexado já mapeado. Apenas o rodapé é validado.
+     *
+     * @param dados      conteúdo do arquivo, com o cabeçalho já validado
+     * @param versao     versão lida do cabeçalho, usada na decodificação dos registros
+     * @param geracao    geração lida do cabeçalho
+     * @param capacidade quantidade máxima de usuários não alterados mantidos em memória
+     * @param dicionario dicionário de logins do sistema, usado na decodificação dos usuários
+     * @return store sobre o arquivo
+     * @throws IOException se o rodapé for inválido
+     */
+    static UsuarioStore mapeado(ByteBuffer dados, int versao, long geracao, int capacidade,
+                                DicionarioLogins dicionario) throws IOException {
+        return new UsuarioStore(new Base(dados, versao, dicionario), geracao, capacidade, dicionario);
+    }
+
+    /**
+     * Define quais usuários estão em uso por alguma operação e, portanto, não podem ser descartados do cache
+     * (mesmo que ainda não tenham sido alterados).
+     *
+     * @param emUso predicado aplicado ao login
+     */
+    public void setEmUso(Predicate<String> emUso) {
+        this.emUso = emUso;
+    }
+
+    /**
+     * Obtém o dicionário de logins com que os usuários deste store são (e devem ser) criados.
+     *
+     * @return Dicionário de logins
+     */
+    public DicionarioLogins getDicionario() {
+        return dicionario;
+    }
+
+    /**
+     * Obtém a geração do journal coberta pelo arquivo lido.
+     *
+     * @return geração, ou 0 se não houver arquivo
+     */
+    public long getGeracao() {
+        return geracao;
+    }
+
+    /**
+     * Obtém um usuário, lendo-o do arquivo se ainda não estiver em memória.
+     *
+     * @param login login do usuário
+     * @return o usuário, ou null se não existir
+     */
+    public Usuario get(String login) {
+        if (login == null) {
+            return null;
+        }
+        Usuario usuario = alterados.get(login);
+        return usuario != null ? usuario : lerSeNecessario(login);
+    }
+
+    private synchronized Usuario lerSeNecessario(String login) {
+        Usuario usuario = alterados.get(login);
+        if (usuario == null) {
+            usuario = lidos.remove(login);
+            if (usuario != null) {
+                // Passa a ser o mais recentemente usado
+                lidos.put(login, usuario);
+            }
+        }
+        if (usuario != null || base == null || removidos.contains(login)) {
+            return usuario;
+        }
+        usuario = lerDoArquivo(login);
+        if (usuario != null) {
+            lidos.put(login, usuario);
+            descartarExcedentes();
+        }
+        return usuario;
+    }
+
+    /**
+     * Obtém um usuário para uma leitura de passagem, como a montagem de um índice sobre todos os usuários: se ele
+     * não estiver em memória, é lido do arquivo sem entrar no cache, e os que estão no cache não mudam de posição.
+     * Assim, percorrer todos os usuários não descarta os que estão em uso nem aumenta a memória ocupada.
+     * <p>
+     * O usuário lido do arquivo é uma cópia descartável: alterá-lo não tem efeito.
+     * </p>
+     *
+     * @param login login do usuário
+     * @return o usuário, ou null se não existir
+     */
+    public synchronized Usuario lerSemCache(String login) {
+        Usuario usuario = alterados.get(login);
+        if (usuario == null) {
+            usuario = lidos.get(login);
+        }
+        if (usuario != null || base == null || removidos.contains(login)) {
+            return usuario;
+        }
+        return lerDoArquivo(login);
+    }
+
+    private Usuario lerDoArquivo(String login) {
+        try {
+            int posicao = base.procurar(login);
+            if (posicao < 0) {
+                return null;
+            }
+            Usuario usuario = base.ler(posicao);
+            usuario.setModificado(false);
+            return usuario;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível ler o usuário " + login + " do snapshot.", e);
+        }
+    }
+
+    /**
+     * Verifica se um usuário existe, sem decodificá-lo.
+     *
+     * @param login login do usuário
+     * @return true se existir
+     */
+    public boolean contem(String login) {
+        return login != null && (alterados.containsKey(login) || contemNoArquivo(login));
+    }
+
+    private synchronized boolean contemNoArquivo(String login) {
+        if (alterados.containsKey(login) || lidos.containsKey(login)) {
+            return true;
+        }
+        if (base == null || removidos.contains(login)) {
+            return false;
+        }
+        try {
+            return base.procurar(login) >= 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível consultar o índice do snapshot.", e);
+        }
+    }
+
+    /**
+     * Adiciona um usuário novo.
+     *
+     * @param usuario usuário a adicionar
+     */
+    public synchronized void adicionar(Usuario usuario) {
+        lidos.remove(usuario.getLogin());
+        alterados.put(usuario.getLogin(), usuario);
+    }
+
+    /**
+     * Adiciona vários usuários novos de uma vez (importação em lote). O mapa interno é redimensionado uma vez
+     * para comportar todos, em vez de crescer aos poucos.
+     *
+     * @param novos usuários a adicionar, por login
+     */
+    public synchronized void adicionarTodos(Map<String, Usuario> novos) {
+        lidos.keySet().removeAll(novos.keySet());
+        alterados.putAll(novos);
+    }
+
+    /**
+     * Remove um usuário.
+     *
+     * @param login login do usuário
+     */
+    public synchronized void remover(String login) {
+        alterados.remove(login);
+        lidos.remove(login);
+        if (base != null) {
+            removidos.add(login);
+        }
+    }
+
+    /**
+     * Remove todos os usuários, inclusive os do arquivo.
+     */
+    public synchronized void limpar() {
+        alterados.clear();
+        lidos.clear();
+        removidos.clear();
+        base = null;
+    }
+
+    /**
+     * Lista os logins de todos os usuários, sem decodificá-los.
+     *
+     * @return logins cadastrados
+     */
+    public synchronized Set<String> logins() {
+        Set<String> logins = new LinkedHashSet<>(alterados.keySet());
+        logins.addAll(lidos.keySet());
+        if (base != null) {
+            try {
+                for (int i = 0; i < base.posicoesIndice; i++) {
+                    String login = base.loginDaPosicao(i);
+                    if (login != null && !removidos.contains(login)) {
+                        logins.add(login);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Não foi possível consultar o índice do snapshot.", e);
+            }
+        }
+        return logins;
+    }
+
+    /**
+     * Grava todos os usuários em um arquivo no formato indexado. Os usuários que não estão em memória
+     * são lidos do arquivo atual apenas para a cópia, sem entrar no cache.
+     *
+     * @param arquivo destino
+     * @param geracao geração do journal coberta pelo arquivo
+     * @throws IOException se a leitura ou a gravação falharem
+     */
+    public synchronized void gravar(Path arquivo, long geracao) throws IOException {
+        try (GravadorUsuarios gravador = new GravadorUsuarios(arquivo, geracao)) {
+            paraCada(gravador::adicionar);
+            gravador.concluir();
+        }
+    }
+
+    /**
+     * Percorre todos os usuários, para a persistência. Os que não estão em memória são lidos do arquivo atual
+     * apenas para a visita, sem entrar no cache.
+     *
+     * @param visitante recebe cada usuário
+     * @throws IOException se a leitura falhar ou o visitante lançar; os usuários seguintes não são visitados
+     */
+    public synchronized void paraCada(Visitante visitante) throws IOException {
+        for (Usuario u : alterados.values()) {
+            visitante.visitar(u);
+        }
+        for (Usuario u : lidos.values()) {
+            visitante.visitar(u);
+        }
+        if (base != null) {
+            for (int i = 0; i < base.posicoesIndice; i++) {
+                String login = base.loginDaPosicao(i);
+                if (login == null || removidos.contains(login) || alterados.containsKey(login) || lidos.containsKey(login)) {
+                    continue;
+                }
+                visitante.visitar(base.ler(base.registroDaPosicao(i)));
+            }
+        }
+    }
+
+    /**
+     * Recebe os usuários em {@link #paraCada(Visitante)}.
+     */
+    public interface Visitante {
+        /**
+         * Recebe um usuário.
+         *
+         * @param usuario usuário visitado
+         * @throws IOException se o usuário não puder ser tratado
+         */
+        void visitar(Usuario usuario) throws IOException;
+    }
+
+    /**
+     * Tira do cache os usuários menos usados além da capacidade, exceto os que estão em uso. Os que foram
+     * alterados depois de lidos passam para o conjunto de alterados em vez de serem descartados.
+     */
+    private void descartarExcedentes() {
+        Iterator<Usuario> it = lidos.values().iterator();
+        while (lidos.size() > capacidade && it.hasNext()) {
+            Usuario u = it.next();
+            if (emUso.test(u.getLogin())) {
+                continue;
+            }
+            it.remove();
+            if (u.isModificado()) {
+                alterados.put(u.getLogin(), u);
+            }
+        }
+    }
+
+    static int espalhar(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Acesso ao arquivo mapeado. As strings são decodificadas sob demanda, direto do mapeamento.
+     */
+    private static class Base implements TabelaStrings.Consulta {
+        private final ByteBuffer dados;
+        private final int versao;
+        private final DicionarioLogins dicionario;
+        private final int posicaoPosicoes;
+        private final int quantidadeStrings;
+        private final int posicaoIndice;
+        private final int posicoesIndice;
+
+        Base(ByteBuffer dados, int versao, DicionarioLogins dicionario) throws IOException {
+            this.dados = dados;
+            this.versao = versao;
+            this.dicionario = dicionario;
+            int fim = dados.limit() - TAMANHO_RODAPE;
+            if (fim < Snapshot.TAMANHO_CABECALHO) {
+                throw new IOException("Arquivo de snapshot inválido.");
+            }
+            posicaoPosicoes = dados.getInt(fim + 4);
+            posicaoIndice = dados.getInt(fim + 8);
+            posicoesIndice = dados.getInt(fim + 12);
+            quantidadeStrings = (posicaoIndice - posicaoPosicoes) / 4;
+            if (posicaoPosicoes < Snapshot.TAMANHO_CABECALHO || quantidadeStrings < 0
+                    || Integer.bitCount(posicoesIndice) != 1
+                    || (long) posicaoIndice + (long) posicoesIndice * TAMANHO_POSICAO_INDICE != fim) {
+                throw new IOException("Arquivo de snapshot inválido.");
+            }
+        }
+
+        @Override
+        public String string(int indice) throws IOException {
+            if (indice < 0 || indice >= quantidadeStrings) {
+                throw new IOException("Referência inválida à tabela de strings.");
+            }
+            EntradaBinaria entrada = new EntradaBinaria(dados.duplicate());
+            entrada.setPosicao(dados.getInt(posicaoPosicoes + indice * 4));
+            return entrada.lerTexto();
+        }
+
+        /**
+         * Procura um login no índice.
+         *
+         * @return posição do registro, ou -1 se o login não estiver no arquivo
+         */
+        int procurar(String login) throws IOException {
+            int hash = login.hashCode();
+            int p = espalhar(hash) & (posicoesIndice - 1);
+            while (true) {
+                int posicao = posicaoIndice + p * TAMANHO_POSICAO_INDICE;
+                int indiceLogin = dados.getInt(posicao + 4) - 1;
+                if (indiceLogin < 0) {
+                    return -1;
+                }
+                if (dados.getInt(posicao) == hash && string(indiceLogin).equals(login)) {
+                    return dados.getInt(posicao + 8);
+                }
+                p = (p + 1) & (posicoesIndice - 1);
+            }
+        }
+
+        /**
+         * Login guardado em uma posição do índice.
+         *
+         * @return login, ou null se a posição estiver vazia
+         */
+        String loginDaPosicao(int p) throws IOException {
+            int indiceLogin = dados.getInt(posicaoIndice + p * TAMANHO_POSICAO_INDICE + 4) - 1;
+            return indiceLogin < 0 ? null : string(indiceLogin);
+        }
+
+        int registroDaPosicao(int p) {
+            return dados.getInt(posicaoIndice + p * TAMANHO_POSICAO_INDICE + 8);
+        }
+
+        Usuario ler(int posicao) throws IOException {
+            if (posicao < Snapshot.TAMANHO_CABECALHO || posicao >= posicaoPosicoes) {
+                throw new IOException("Posição de registro inválida.");
+            }
+            EntradaBinaria entrada = new EntradaBinaria(dados.duplicate());
+            entrada.setPosicao(posicao);
+            return UsuarioCodec.ler(entrada, this, versao, dicionario);
+        }
+    }
+}
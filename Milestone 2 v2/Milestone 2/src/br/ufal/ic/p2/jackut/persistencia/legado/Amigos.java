@@ -0,0 +1,8 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+/**
+ * Espelho de Amigos gravado por serialização Java, usado apenas para ler arquivos .ser antigos.
+ */
+class Amigos extends Relacionamento {
+    private static final long serialVersionUID = 5977614604504604701L;
+}
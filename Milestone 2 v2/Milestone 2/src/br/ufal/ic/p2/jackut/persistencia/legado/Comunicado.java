@@ -0,0 +1,13 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+import java.io.Serializable;
+
+/**
+ * Espelho do Comunicado gravado por serialização Java, usado apenas para ler arquivos .ser antigos.
+ */
+class Comunicado implements Serializable {
+    private static final long serialVersionUID = -222656378483162122L;
+
+    String remetente;
+    String mensagem;
+}
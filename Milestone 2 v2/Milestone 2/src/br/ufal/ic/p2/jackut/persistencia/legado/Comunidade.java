@@ -0,0 +1,16 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+import java.io.Serializable;
+import java.util.Set;
+
+/**
+ * Espelho da Comunidade gravada por serialização Java, usado apenas para ler arquivos .ser antigos.
+ */
+class Comunidade implements Serializable {
+    private static final long serialVersionUID = -5243431076726335642L;
+
+    String dono;
+    String nome;
+    String descricao;
+    Set<String> membros;
+}
@@ -0,0 +1,8 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+/**
+ * Espelho de Convites gravado por serialização Java, usado apenas para ler arquivos .ser antigos.
+ */
+class Convites extends Relacionamento {
+    private static final long serialVersionUID = -4279026772993995331L;
+}
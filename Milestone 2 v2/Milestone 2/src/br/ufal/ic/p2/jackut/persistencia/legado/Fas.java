@@ -0,0 +1,8 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+/**
+ * Espelho de Fas gravado por serialização Java, usado apenas para ler arquivos .ser antigos.
+ */
+class Fas extends Relacionamento {
+    private static final long serialVersionUID = 2373039609943581603L;
+}
@@ -0,0 +1,8 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+/**
+ * Espelho de Idolos gravado por serialização Java, usado apenas para ler arquivos .ser antigos.
+ */
+class Idolos extends Relacionamento {
+    private static final long serialVersionUID = 2889741382584967467L;
+}
@@ -0,0 +1,8 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+/**
+ * Espelho de Inimigos gravado por serialização Java, usado apenas para ler arquivos .ser antigos.
+ */
+class Inimigos extends Relacionamento {
+    private static final long serialVersionUID = 2835685788563983132L;
+}
@@ -0,0 +1,144 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+import br.ufal.ic.p2.jackut.DicionarioLogins;
+import br.ufal.ic.p2.jackut.Relacionamentos.TipoRelacionamento;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.Map;
+
+/**
+ * Lê os arquivos "usuarios.ser" e "comunidades.ser" gravados por serialização Java, nas versões anteriores ao
+ * formato binário próprio, e converte o conteúdo para as classes atuais.
+ * <p>
+ * As classes gravadas no stream são redirecionadas para os espelhos deste pacote, que preservam os campos e o
+ * serialVersionUID originais. Assim as classes do sistema podem mudar livremente sem quebrar a leitura dos arquivos
+ * antigos.
+ * </p>
+ */
+public final class LeitorLegado {
+    private static final String PACOTE_ANTIGO = "br.ufal.ic.p2.jackut.";
+    private static final String PACOTE_RELACIONAMENTOS_ANTIGO = "br.ufal.ic.p2.jackut.Relacionamentos.";
+    private static final String PACOTE_ESPELHOS = LeitorLegado.class.getPackageName() + ".";
+
+    private LeitorLegado() {
+    }
+
+    /**
+     * Verifica se os primeiros bytes de um arquivo são de um stream de serialização Java.
+     *
+     * @param b0 primeiro byte
+     * @param b1 segundo byte
+     * @return true se o arquivo estiver no formato antigo
+     */
+    public static boolean ehFormatoLegado(byte b0, byte b1) {
+        return (b0 & 0xFF) == 0xAC && (b1 & 0xFF) == 0xED;
+    }
+
+    /**
+     * Lê um arquivo de usuários no formato antigo.
+     *
+     * @param origem  stream do arquivo
+     * @param destino mapa a preencher, por login
+     * @param dicionario dicionário de logins dos usuários convertidos
+     * @return geração gravada após o mapa, ou 0 se não houver
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    public static long lerUsuarios(InputStream origem, Map<String, br.ufal.ic.p2.jackut.Usuario> destino,
+                                   DicionarioLogins dicionario) throws IOException {
+        try (Leitor in = new Leitor(origem)) {
+            Map<?, ?> mapa = (Map<?, ?>) in.readObject();
+            for (Object o : mapa.values()) {
+                br.ufal.ic.p2.jackut.Usuario u = converter((Usuario) o, dicionario);
+                destino.put(u.getLogin(), u);
+            }
+            return lerGeracao(in);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Arquivo de usuários antigo inválido.", e);
+        }
+    }
+
+    /**
+     * Lê um arquivo de comunidades no formato antigo.
+     *
+     * @param origem  stream do arquivo
+     * @param destino mapa a preencher, por nome
+     * @param dicionario dicionário de logins dos membros convertidos
+     * @return geração gravada após o mapa, ou 0 se não houver
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    public static long lerComunidades(InputStream origem, Map<String, br.ufal.ic.p2.jackut.Comunidade> destino,
+                                      DicionarioLogins dicionario) throws IOException {
+        try (Leitor in = new Leitor(origem)) {
+            Map<?, ?> mapa = (Map<?, ?>) in.readObject();
+            for (Object o : mapa.values()) {
+                Comunidade antiga = (Comunidade) o;
+                br.ufal.ic.p2.jackut.Comunidade c = new br.ufal.ic.p2.jackut.Comunidade(antiga.dono, antiga.nome, antiga.descricao,
+                        dicionario);
+                c.getMembrosSet().clear();
+                c.getMembrosSet().addAll(antiga.membros);
+                destino.put(c.getNome(), c);
+            }
+            return lerGeracao(in);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Arquivo de comunidades antigo inválido.", e);
+        }
+    }
+
+    private static long lerGeracao(ObjectInputStream in) throws IOException {
+        try {
+            return in.readLong();
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    private static br.ufal.ic.p2.jackut.Usuario converter(Usuario antigo, DicionarioLogins dicionario) {
+        br.ufal.ic.p2.jackut.Usuario u = new br.ufal.ic.p2.jackut.Usuario(antigo.login, antigo.senha, antigo.nome,
+                dicionario);
+        antigo.atributosMap.forEach(u::setAtributo);
+        for (Comunicado c : antigo.comunicados) {
+            u.adicionarRecado(c.mensagem, c.remetente);
+        }
+        for (Comunicado c : antigo.mensagens) {
+            u.adicionarMensagem(c.mensagem, c.remetente);
+        }
+        antigo.comunidades.forEach(u::adicionarComunidade);
+        antigo.destinatarios.forEach(u::adicionarDestinatario);
+        antigo.convites.relacionamentos.forEach(l -> u.restaurarRelacionamento(TipoRelacionamento.CONVITES, l));
+        antigo.amigos.relacionamentos.forEach(l -> u.restaurarRelacionamento(TipoRelacionamento.AMIGOS, l));
+        antigo.idolos.relacionamentos.forEach(l -> u.restaurarRelacionamento(TipoRelacionamento.IDOLOS, l));
+        antigo.fas.relacionamentos.forEach(l -> u.restaurarRelacionamento(TipoRelacionamento.FAS, l));
+        antigo.paqueras.relacionamentos.forEach(l -> u.restaurarRelacionamento(TipoRelacionamento.PAQUERAS, l));
+        antigo.inimigos.relacionamentos.forEach(l -> u.restaurarRelacionamento(TipoRelacionamento.INIMIGOS, l));
+        u.reconstruirReferencias();
+        return u;
+    }
+
+    /**
+     * ObjectInputStream que troca as classes antigas do Jackut pelos espelhos deste pacote.
+     */
+    private static class Leitor extends ObjectInputStream {
+        Leitor(InputStream origem) throws IOException {
+            super(origem);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String nome = desc.getName();
+            String simples = null;
+            if (nome.startsWith(PACOTE_RELACIONAMENTOS_ANTIGO)) {
+                simples = nome.substring(PACOTE_RELACIONAMENTOS_ANTIGO.length());
+            } else if (nome.startsWith(PACOTE_ANTIGO) && nome.indexOf('.', PACOTE_ANTIGO.length()) < 0) {
+                simples = nome.substring(PACOTE_ANTIGO.length());
+            }
+            if (simples != null) {
+                return Class.forName(PACOTE_ESPELHOS + simples, false, LeitorLegado.class.getClassLoader());
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
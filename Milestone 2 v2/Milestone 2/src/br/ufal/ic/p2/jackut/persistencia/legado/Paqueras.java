@@ -0,0 +1,8 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+/**
+ * Espelho de Paqueras gravado por serialização Java, usado apenas para ler arquivos .ser antigos.
+ */
+class Paqueras extends Relacionamento {
+    private static final long serialVersionUID = -3045157343455257643L;
+}
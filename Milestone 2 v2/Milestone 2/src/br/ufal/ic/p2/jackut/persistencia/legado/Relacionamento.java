@@ -0,0 +1,14 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+import java.io.Serializable;
+import java.util.Set;
+
+/**
+ * Espelho de Relacionamento gravado por serialização Java, usado apenas para ler arquivos .ser antigos.
+ */
+class Relacionamento implements Serializable {
+    private static final long serialVersionUID = -5070897794939301110L;
+
+    Set<String> relacionamentos;
+    String usuarioLogado;
+}
@@ -0,0 +1,29 @@
+package br.ufal.ic.p2.jackut.persistencia.legado;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Espelho do Usuario gravado por serialização Java, usado apenas para ler arquivos .ser antigos.
+ * Os campos e o serialVersionUID devem continuar idênticos aos da classe original.
+ */
+class Usuario implements Serializable {
+    private static final long serialVersionUID = 2444827342134255868L;
+
+    String nome;
+    String login;
+    String senha;
+    Map<String, String> atributosMap;
+    Queue<Comunicado> comunicados;
+    Queue<Comunicado> mensagens;
+    Set<String> comunidades;
+    Set<String> destinatarios;
+    Convites convites;
+    Amigos amigos;
+    Idolos idolos;
+    Fas fas;
+    Paqueras paqueras;
+    Inimigos inimigos;
+}